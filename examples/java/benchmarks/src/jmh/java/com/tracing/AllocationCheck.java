@@ -0,0 +1,153 @@
+package com.tracing;
+
+import com.sun.net.httpserver.HttpServer;
+import com.tracing.server.ExampleServers;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Checks the bytes allocated on the response path against a budget, so a change that brings back garbage per request
+ * fails the build ({@code ./gradlew :benchmarks:allocationCheck}, part of {@code check}).
+ *
+ * <p>Each handler set from {@link HandlerBenchmark} handles the same socket-less pathA and pathB exchanges over and
+ * over on this thread, which is measured with the thread's allocation counter; its budget is per pathA+pathB pair.
+ * What the JIT's escape analysis removes depends on the JVM and its flags, so the budgets are set above what a JVM
+ * without it ({@code -XX:-DoEscapeAnalysis}) measures: the responses encoded once stay within one small object per
+ * pair without a tracer, and with one the spans may take the rest. The last check serves the lean pathA handler from
+ * an NIO server whose event loop runs it, and measures that thread per request: request parsing, the exchange and the
+ * response head.
+ */
+public class AllocationCheck {
+
+	private static final int WARMUP_REQUESTS = 200_000;
+	private static final int MEASURED_REQUESTS = 200_000;
+	private static final int SERVER_REQUESTS = 20_000;
+	private static final int PIPELINED_REQUESTS = 100;
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	public static void main(String[] args) throws Exception {
+		// bytes per pathA+pathB pair each handler set may allocate
+		Map<String, Long> budgets = new LinkedHashMap<>();
+		budgets.put("untraced", 128L);
+		budgets.put("untracedLean", 32L);
+		// the tracing-core facade with tracing off must be as free as no tracing at all
+		budgets.put("tracingCoreOff", 32L);
+		budgets.put("opentracingInMemory", 4_000L);
+		budgets.put("opentracingInMemoryLean", 4_000L);
+
+		boolean failed = false;
+		for (Map.Entry<String, Long> budget : budgets.entrySet()) {
+			long bytes = handlerBytesPerPair(HandlerBenchmark.newHandlers(budget.getKey()));
+			failed |= !report(budget.getKey(), bytes, "pair", budget.getValue());
+		}
+		failed |= !report("nioServer/untracedLean", serverBytesPerRequest(), "request", 4_000L);
+		if (failed) {
+			System.exit(1);
+		}
+	}
+
+	private static boolean report(String name, long bytes, String unit, long budget) {
+		boolean ok = bytes <= budget;
+		System.out.printf("%-26s %6d bytes/%-7s (budget %d)%s%n", name, bytes, unit, budget, ok ? "" : "  FAILED");
+		return ok;
+	}
+
+	/**
+	 * Bytes this thread allocates per pathA+pathB pair of requests for a handler set.
+	 */
+	static long handlerBytesPerPair(ExampleHandlers handlers) throws Exception {
+		BenchmarkHttpExchange pathA = BenchmarkHttpExchange.tracedRequest("/pathA");
+		BenchmarkHttpExchange pathB = BenchmarkHttpExchange.tracedRequest("/pathB");
+		try {
+			// lets the JIT compile the handlers, and escape analysis remove what it can, before measuring
+			handle(handlers, pathA, pathB, WARMUP_REQUESTS);
+			long threadId = Thread.currentThread().getId();
+			long before = THREADS.getThreadAllocatedBytes(threadId);
+			handle(handlers, pathA, pathB, MEASURED_REQUESTS);
+			return (THREADS.getThreadAllocatedBytes(threadId) - before) / MEASURED_REQUESTS;
+		} finally {
+			if (handlers instanceof AutoCloseable) {
+				((AutoCloseable) handlers).close();
+			}
+		}
+	}
+
+	private static void handle(ExampleHandlers handlers, BenchmarkHttpExchange pathA, BenchmarkHttpExchange pathB,
+			int requests) throws IOException {
+		for (int i = 0; i < requests; i++) {
+			handlers.pathA(pathA);
+			handlers.pathB(pathB);
+		}
+	}
+
+	/**
+	 * Bytes the event-loop thread allocates per keep-alive request for the lean untraced handler.
+	 */
+	static long serverBytesPerRequest() throws Exception {
+		HttpServer server = ExampleServers.create(ExampleServers.Type.NIO, new InetSocketAddress("localhost", 0), 1);
+		LeanUntracedHandlers handlers = new LeanUntracedHandlers();
+		server.createContext("/pathA", handlers::pathA);
+		server.start();
+		try (Socket socket = new Socket("localhost", server.getAddress().getPort())) {
+			socket.setSoTimeout(10_000);
+			byte[] requests = pipelinedRequests();
+			int responseLength = "HTTP/1.1 200 OK\r\nContent-Length: 14\r\n\r\nThis is path A".length();
+			Thread eventLoop = null;
+			for (Thread thread : Thread.getAllStackTraces().keySet()) {
+				if (thread.getName().equals("nio-event-loop-1")) {
+					eventLoop = thread;
+				}
+			}
+			if (eventLoop == null) {
+				throw new IllegalStateException("No event loop thread found");
+			}
+			exchange(socket, requests, responseLength, SERVER_REQUESTS);
+			long before = THREADS.getThreadAllocatedBytes(eventLoop.getId());
+			exchange(socket, requests, responseLength, SERVER_REQUESTS);
+			return (THREADS.getThreadAllocatedBytes(eventLoop.getId()) - before) / SERVER_REQUESTS;
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	private static byte[] pipelinedRequests() {
+		StringBuilder requests = new StringBuilder();
+		for (int i = 0; i < PIPELINED_REQUESTS; i++) {
+			requests.append("GET /pathA HTTP/1.1\r\n")
+				.append("Host: localhost\r\n")
+				.append("X-B3-TraceId: 463ac35c9f6413ad\r\n")
+				.append("X-B3-SpanId: a2fb4a1d1a96d312\r\n")
+				.append("X-B3-Sampled: 1\r\n")
+				.append("\r\n");
+		}
+		return requests.toString().getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	// Sends the requests in batches of PIPELINED_REQUESTS and reads all responses of a batch before the next one
+	private static void exchange(Socket socket, byte[] requests, int responseLength, int count) throws IOException {
+		OutputStream out = socket.getOutputStream();
+		InputStream in = socket.getInputStream();
+		byte[] buffer = new byte[64 * 1024];
+		for (int sent = 0; sent < count; sent += PIPELINED_REQUESTS) {
+			out.write(requests);
+			out.flush();
+			long expected = (long) responseLength * PIPELINED_REQUESTS;
+			while (expected > 0) {
+				int read = in.read(buffer);
+				if (read < 0) {
+					throw new IOException("Connection closed by the server");
+				}
+				expected -= read;
+			}
+		}
+	}
+}
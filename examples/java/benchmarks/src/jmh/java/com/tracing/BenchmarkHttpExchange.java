@@ -0,0 +1,138 @@
+package com.tracing;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+
+/**
+ * An HttpExchange without a socket: the request headers are set up once, the response body is discarded. The same
+ * instance can be handled over and over, so the benchmark measures the handler and not the exchange.
+ */
+class BenchmarkHttpExchange extends HttpExchange {
+
+	private static final InetSocketAddress LOCAL_ADDRESS = InetSocketAddress.createUnresolved("localhost", 8000);
+	private static final InetSocketAddress REMOTE_ADDRESS = InetSocketAddress.createUnresolved("localhost", 54321);
+
+	private final Headers requestHeaders = new Headers();
+	private final Headers responseHeaders = new Headers();
+	private final URI requestURI;
+	private final OutputStream responseBody = new OutputStream() {
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	};
+	private int responseCode = -1;
+
+	BenchmarkHttpExchange(String path) {
+		this.requestURI = URI.create(path);
+	}
+
+	/**
+	 * A request as the example clients send it: B3 headers of the client span plus the usual HTTP/1.1 headers.
+	 */
+	static BenchmarkHttpExchange tracedRequest(String path) {
+		BenchmarkHttpExchange exchange = new BenchmarkHttpExchange(path);
+		Headers headers = exchange.getRequestHeaders();
+		headers.add("User-Agent", "Java/1.8.0");
+		headers.add("Host", "localhost:8000");
+		headers.add("Accept", "text/html, image/gif, image/jpeg, *; q=.2, */*; q=.2");
+		headers.add("Connection", "keep-alive");
+		headers.add("X-B3-TraceId", "463ac35c9f6413ad");
+		headers.add("X-B3-SpanId", "a2fb4a1d1a96d312");
+		headers.add("X-B3-ParentSpanId", "0020000000000001");
+		headers.add("X-B3-Sampled", "1");
+		return exchange;
+	}
+
+	@Override
+	public Headers getRequestHeaders() {
+		return requestHeaders;
+	}
+
+	@Override
+	public Headers getResponseHeaders() {
+		return responseHeaders;
+	}
+
+	@Override
+	public URI getRequestURI() {
+		return requestURI;
+	}
+
+	@Override
+	public String getRequestMethod() {
+		return "GET";
+	}
+
+	@Override
+	public HttpContext getHttpContext() {
+		return null;
+	}
+
+	@Override
+	public void close() {
+	}
+
+	@Override
+	public InputStream getRequestBody() {
+		return new ByteArrayInputStream(new byte[0]);
+	}
+
+	@Override
+	public OutputStream getResponseBody() {
+		return responseBody;
+	}
+
+	@Override
+	public void sendResponseHeaders(int rCode, long responseLength) {
+		this.responseCode = rCode;
+	}
+
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return REMOTE_ADDRESS;
+	}
+
+	@Override
+	public int getResponseCode() {
+		return responseCode;
+	}
+
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		return LOCAL_ADDRESS;
+	}
+
+	@Override
+	public String getProtocol() {
+		return "HTTP/1.1";
+	}
+
+	@Override
+	public Object getAttribute(String name) {
+		return null;
+	}
+
+	@Override
+	public void setAttribute(String name, Object value) {
+	}
+
+	@Override
+	public void setStreams(InputStream i, OutputStream o) {
+	}
+
+	@Override
+	public HttpPrincipal getPrincipal() {
+		return null;
+	}
+}
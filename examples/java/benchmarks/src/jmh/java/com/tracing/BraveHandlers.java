@@ -0,0 +1,112 @@
+package com.tracing;
+
+import brave.Span;
+import brave.Span.Kind;
+import brave.Tracer;
+import brave.Tracer.SpanInScope;
+import brave.Tracing;
+import brave.propagation.Propagation.Getter;
+import brave.propagation.TraceContext.Extractor;
+import brave.propagation.TraceContextOrSamplingFlags;
+import brave.sampler.Sampler;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import zipkin2.reporter.Reporter;
+
+/**
+ * The handlers of the brave module. Finished spans go to {@link Reporter#NOOP} instead of a Zipkin server.
+ */
+class BraveHandlers implements ExampleHandlers, AutoCloseable {
+
+	static final Getter<HttpExchange, String> GETTER = new Getter<HttpExchange, String>() {
+		@Override public String get(HttpExchange carrier, String key) {
+			List<String> values = carrier.getRequestHeaders().get(key);
+			if (values == null) return null;
+			if (values.size() > 0) return values.get(0);
+			return null;
+		}
+	};
+
+	private final Tracing tracing = Tracing.newBuilder()
+		.localServiceName("rpc-testing")
+		.spanReporter(Reporter.NOOP)
+		.sampler(Sampler.ALWAYS_SAMPLE)
+		.build();
+	private final Extractor<HttpExchange> tracingExtractor = tracing.propagation().extractor(GETTER);
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		// read incoming context
+		TraceContextOrSamplingFlags incomingContext = tracingExtractor.extract(t);
+		Tracer tracer = tracing.tracer();
+		// new span with parent info from incoming context
+		Span span = tracer.nextSpan(incomingContext).kind(Kind.SERVER).name("PathAHandler").start();
+		SpanInScope scope = tracer.withSpanInScope(span);
+		try {
+			String response = "This is path A";
+			t.sendResponseHeaders(200, response.length());
+			span.tag("http.url", t.getRequestURI().toString());
+			span.tag("http.method", t.getRequestMethod());
+			span.tag("http.status_code", "200");
+
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			os.close();
+		} catch (Exception e) {
+			span.tag("error", e.getMessage());
+		} finally {
+			scope.close();
+			// close the span
+			span.finish();
+		}
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		// read incoming context
+		TraceContextOrSamplingFlags incomingContext = tracingExtractor.extract(t);
+		Tracer tracer = tracing.tracer();
+		// new span with parent info from incoming context
+		Span span = tracer.nextSpan(incomingContext).kind(Kind.SERVER).name("PathBHandler").start();
+		SpanInScope scope = tracer.withSpanInScope(span);
+		try {
+			String response = "This is path B";
+			t.sendResponseHeaders(200, response.length());
+			span.tag("http.url", t.getRequestURI().toString());
+			span.tag("http.method", t.getRequestMethod());
+			span.tag("http.status_code", "200");
+
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			this.fakeDBCall("select * from table");
+			os.close();
+		} catch (Exception e) {
+			span.tag("error", e.getMessage());
+		} finally {
+			scope.close();
+			// close the span
+			span.finish();
+		}
+	}
+
+	void fakeDBCall(String statement) {
+		Span span = Tracing.currentTracer().nextSpan().name("database").start();
+		SpanInScope scope = Tracing.currentTracer().withSpanInScope(span);
+		try {
+			span.tag("db.instance", "mySampleDb");
+			span.tag("db.type", "sql");
+			span.tag("db.statement", statement);
+			// this is just to simulate a fake database call
+		} finally {
+			scope.close();
+			span.finish();
+		}
+	}
+
+	@Override
+	public void close() {
+		tracing.close();
+	}
+}
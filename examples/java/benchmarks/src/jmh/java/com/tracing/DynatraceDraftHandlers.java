@@ -0,0 +1,84 @@
+package com.tracing;
+
+import com.dynatrace.oneagent.sdk.OneAgentSDKFactory;
+import com.dynatrace.oneagent.sdk.api.DatabaseRequestTracer;
+import com.dynatrace.oneagent.sdk.api.IncomingWebRequestTracer;
+import com.dynatrace.oneagent.sdk.api.OneAgentSDK;
+import com.dynatrace.oneagent.sdk.api.enums.ChannelType;
+import com.dynatrace.oneagent.sdk.api.enums.DatabaseVendor;
+import com.dynatrace.oneagent.sdk.api.infos.DatabaseInfo;
+import com.dynatrace.oneagent.sdk.api.infos.WebApplicationInfo;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The handlers of the dynatracesdk-draft module, running against the draft's dummy implementation.
+ */
+class DynatraceDraftHandlers implements ExampleHandlers {
+
+	private final OneAgentSDK oneAgentSdk = OneAgentSDKFactory.createInstance();
+	private final WebApplicationInfo webApplicationInfo = oneAgentSdk.createWebApplicationInfo("PathAHandler", "", "/");
+	private final DatabaseInfo databaseInfo = oneAgentSdk.createDatabaseInfo("mySampleDb",
+		DatabaseVendor.POSTGRESQL.toString(), ChannelType.TCP_IP, "localhost");
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		IncomingWebRequestTracer tracer = oneAgentSdk.traceIncomingWebRequest(webApplicationInfo, t.getRequestURI().toString(), "GET");
+		tracer.setDynatraceStringTag(getHeader(t, OneAgentSDK.DYNATRACE_HTTP_HEADERNAME));
+		tracer.start();
+		try {
+			String response = "This is path A";
+			t.sendResponseHeaders(200, response.length());
+			tracer.setStatusCode(200);
+
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			os.close();
+		} catch (Exception e) {
+			tracer.error(e);
+		} finally {
+			tracer.end();
+		}
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		IncomingWebRequestTracer tracer = oneAgentSdk.traceIncomingWebRequest(webApplicationInfo, t.getRequestURI().toString(), "GET");
+		tracer.setDynatraceStringTag(getHeader(t, OneAgentSDK.DYNATRACE_HTTP_HEADERNAME));
+		tracer.start();
+		try {
+			String response = "This is path B";
+			t.sendResponseHeaders(200, response.length());
+			tracer.setStatusCode(200);
+
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			this.fakeDBCall("select * from table");
+			os.close();
+		} catch (Exception e) {
+			tracer.error(e);
+		} finally {
+			tracer.end();
+		}
+	}
+
+	void fakeDBCall(String statement) {
+		DatabaseRequestTracer tracer = oneAgentSdk.traceSQLDatabaseRequest(databaseInfo, statement);
+		tracer.start();
+		try {
+			// this is just to simulate a fake database call
+		} catch (Exception e) {
+			tracer.error(e);
+		} finally {
+			tracer.end();
+		}
+	}
+
+	static String getHeader(HttpExchange t, String key) {
+		List<String> values = t.getRequestHeaders().get(key);
+		if (values == null || values.isEmpty()) return null;
+		return values.get(0);
+	}
+}
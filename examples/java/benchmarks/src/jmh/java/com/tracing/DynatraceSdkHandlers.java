@@ -0,0 +1,68 @@
+package com.tracing;
+
+import com.dynatrace.oneagent.sdk.OneAgentSDKFactory;
+import com.dynatrace.oneagent.sdk.api.IncomingRemoteCallTracer;
+import com.dynatrace.oneagent.sdk.api.OneAgentSDK;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The handlers of the dynatracesdk module. Only uses the parts of the API that the released SDK and the draft have in
+ * common, so this class can be compiled against the draft and run against the released SDK - see
+ * {@link HandlerBenchmark}, which loads it next to the released SDK in a class loader of its own. Without a OneAgent
+ * the released SDK is inactive, which is what this measures.
+ */
+public class DynatraceSdkHandlers implements ExampleHandlers {
+
+	private final OneAgentSDK oneAgentSdk = OneAgentSDKFactory.createInstance();
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		IncomingRemoteCallTracer tracer = oneAgentSdk.traceIncomingRemoteCall("handle", "PathAHandler", "http://localhost:8000/");
+		readDynatraceTag(t, tracer);
+		tracer.start();
+		try {
+			String response = "This is path A";
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			os.close();
+		} catch (Throwable e) {
+			tracer.error(e);
+		} finally {
+			tracer.end();
+		}
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		IncomingRemoteCallTracer tracer = oneAgentSdk.traceIncomingRemoteCall("handle", "PathBHandler", "http://localhost:8000/");
+		readDynatraceTag(t, tracer);
+		tracer.start();
+		try {
+			String response = "This is path B";
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			this.fakeDBCall("select * from table");
+			os.close();
+		} catch (Throwable e) {
+			tracer.error(e);
+		} finally {
+			tracer.end();
+		}
+	}
+
+	void fakeDBCall(String statement) {
+		// this is just to simulate a fake database call
+	}
+
+	private static void readDynatraceTag(HttpExchange t, IncomingRemoteCallTracer tracer) {
+		List<String> tags = t.getRequestHeaders().get("MyDynatraceTag");
+		if (tags != null && tags.size() == 1) {
+			tracer.setDynatraceStringTag(tags.get(0));
+		}
+	}
+}
@@ -0,0 +1,17 @@
+package com.tracing;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+
+/**
+ * The logic of an example's PathAHandler and PathBHandler, instrumented with one tracer.
+ *
+ * Every implementation mirrors the handlers of its example module, minus the console output and the simulated sleeps,
+ * which would cost the same for every tracer and drown out the difference between them.
+ */
+public interface ExampleHandlers {
+
+	void pathA(HttpExchange t) throws IOException;
+
+	void pathB(HttpExchange t) throws IOException;
+}
@@ -0,0 +1,180 @@
+package com.tracing;
+
+import com.tracing.tracer.InMemoryTracer;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Per-request cost of the PathAHandler/PathBHandler logic of every example, one {@link #tracer} at a time.
+ *
+ * The handlers run on a socket-less exchange whose request carries the B3 headers of a client span, so every traced
+ * variant extracts a parent context, starts and finishes its spans and hands them to its (no-op or in-memory) export.
+ * Run through the gradle build ({@code ./gradlew :benchmarks:jmh}) or {@link #main(String[])}; both add the GC
+ * profiler, whose {@code gc.alloc.rate.norm} line is the number of bytes allocated per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class HandlerBenchmark {
+
+	/**
+	 * Class path of the released Dynatrace SDK. It uses the same class names as the draft in dynatracesdk-draft, so
+	 * it cannot be on the benchmark's class path as well - the gradle build passes it in this property instead.
+	 */
+	public static final String DYNATRACE_SDK_CLASSPATH_PROPERTY = "benchmarks.dynatraceSdk.classpath";
+
+	@Param({
+		"untraced",
+		"untracedLean",
+		"brave",
+		"wingtips",
+		"opentracingMock",
+		"opentracingInMemory",
+		"opentracingInMemoryLean",
+		"dynatraceDraft",
+		"dynatraceSdkInactive",
+		"newrelicStandin",
+		"tracingCoreOff",
+		"tracingCoreBrave"
+	})
+	public String tracer;
+
+	private ExampleHandlers handlers;
+	private BenchmarkHttpExchange pathARequest;
+	private BenchmarkHttpExchange pathBRequest;
+
+	@Setup
+	public void setUp() throws Exception {
+		handlers = newHandlers(tracer);
+		pathARequest = BenchmarkHttpExchange.tracedRequest("/pathA");
+		pathBRequest = BenchmarkHttpExchange.tracedRequest("/pathB");
+		if (tracer.startsWith("dynatrace")) {
+			// the Dynatrace examples send their trace tag in these headers instead of B3
+			for (BenchmarkHttpExchange request : new BenchmarkHttpExchange[] { pathARequest, pathBRequest }) {
+				request.getRequestHeaders().add("X-dynaTrace", "FW4;129;12;-2023406815;4539717;0;17;66;c511;2h01");
+				request.getRequestHeaders().add("MyDynatraceTag", "FW4;129;12;-2023406815;4539717;0;17;66;c511;2h01");
+			}
+		}
+		if (tracer.equals("newrelicStandin")) {
+			// the New Relic example sends a JSON payload instead of B3
+			String payload = NewRelicStandInHandlers.clientPayload();
+			pathARequest.getRequestHeaders().add(NewRelicStandInHandlers.PAYLOAD_HEADER, payload);
+			pathBRequest.getRequestHeaders().add(NewRelicStandInHandlers.PAYLOAD_HEADER, payload);
+		}
+	}
+
+	@TearDown
+	public void tearDown() throws Exception {
+		if (handlers instanceof AutoCloseable) {
+			((AutoCloseable) handlers).close();
+		}
+	}
+
+	@Benchmark
+	public int pathA() throws IOException {
+		handlers.pathA(pathARequest);
+		return pathARequest.getResponseCode();
+	}
+
+	@Benchmark
+	public int pathB() throws IOException {
+		handlers.pathB(pathBRequest);
+		return pathBRequest.getResponseCode();
+	}
+
+	static ExampleHandlers newHandlers(String tracer) throws Exception {
+		switch (tracer) {
+			case "untraced":
+				return new UntracedHandlers();
+			case "untracedLean":
+				return new LeanUntracedHandlers();
+			case "brave":
+				return new BraveHandlers();
+			case "wingtips":
+				return new WingtipsHandlers();
+			case "opentracingMock":
+				return new OpenTracingHandlers(OpenTracingHandlers.newMockTracer());
+			case "opentracingInMemory":
+				return new OpenTracingHandlers(new InMemoryTracer(TraceExample.IN_MEMORY_SPAN_CAPACITY));
+			case "opentracingInMemoryLean":
+				return new LeanOpenTracingHandlers(new InMemoryTracer(TraceExample.IN_MEMORY_SPAN_CAPACITY));
+			case "dynatraceDraft":
+				return new DynatraceDraftHandlers();
+			case "dynatraceSdkInactive":
+				return loadWithReleasedDynatraceSdk();
+			case "newrelicStandin":
+				return new NewRelicStandInHandlers();
+			case "tracingCoreOff":
+				return new TracingCoreHandlers("none");
+			case "tracingCoreBrave":
+				return new TracingCoreHandlers("brave");
+			default:
+				throw new IllegalArgumentException("Unknown tracer " + tracer);
+		}
+	}
+
+	/**
+	 * Loads {@link DynatraceSdkHandlers} in a class loader that finds com.dynatrace classes in the released SDK first
+	 * and everything else in the benchmark's own class loader.
+	 */
+	static ExampleHandlers loadWithReleasedDynatraceSdk() throws Exception {
+		String classpath = System.getProperty(DYNATRACE_SDK_CLASSPATH_PROPERTY);
+		if (classpath == null || classpath.trim().isEmpty()) {
+			throw new IllegalStateException("Set -D" + DYNATRACE_SDK_CLASSPATH_PROPERTY
+				+ " to the released oneagent-sdk jar to benchmark it");
+		}
+		List<URL> urls = new ArrayList<>();
+		for (String entry : classpath.split(File.pathSeparator)) {
+			urls.add(new File(entry).toURI().toURL());
+		}
+		urls.add(DynatraceSdkHandlers.class.getProtectionDomain().getCodeSource().getLocation());
+		ClassLoader loader = new URLClassLoader(urls.toArray(new URL[0]), HandlerBenchmark.class.getClassLoader()) {
+			@Override
+			protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+				if (!name.startsWith("com.dynatrace.") && !name.equals(DynatraceSdkHandlers.class.getName())) {
+					return super.loadClass(name, resolve);
+				}
+				synchronized (getClassLoadingLock(name)) {
+					Class<?> c = findLoadedClass(name);
+					if (c == null) {
+						c = findClass(name);
+					}
+					if (resolve) {
+						resolveClass(c);
+					}
+					return c;
+				}
+			}
+		};
+		return (ExampleHandlers) loader.loadClass(DynatraceSdkHandlers.class.getName())
+			.getDeclaredConstructor().newInstance();
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder()
+			.include(HandlerBenchmark.class.getSimpleName())
+			.addProfiler(GCProfiler.class)
+			.forks(1)
+			.warmupIterations(3)
+			.measurementIterations(5)
+			.build()).run();
+	}
+}
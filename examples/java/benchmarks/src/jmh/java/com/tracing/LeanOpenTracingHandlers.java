@@ -0,0 +1,48 @@
+package com.tracing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.tracing.TraceExample.TextMapExtractAdapter;
+import io.opentracing.Scope;
+import io.opentracing.Tracer;
+import io.opentracing.Tracer.SpanBuilder;
+import io.opentracing.propagation.Format.Builtin;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+
+/**
+ * The precomputed-response variants of the opentracing module's handlers ({@code -Dexample.precomputedResponses=true});
+ * {@link OpenTracingHandlers} is the {@code response.getBytes()} version they run by default.
+ */
+class LeanOpenTracingHandlers extends OpenTracingHandlers {
+
+	LeanOpenTracingHandlers(Tracer tracer) {
+		super(tracer);
+	}
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		SpanBuilder spanBuilder = tracer.buildSpan("server")
+			.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+			.withTag(Tags.HTTP_STATUS.getKey(), t.getResponseCode())
+			// Note that .asChildOf() accepts (and ignores) null
+			.asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TextMapExtractAdapter(t)));
+
+		try (Scope ignore = tracer.scopeManager().activate(spanBuilder.start(), true)) {
+			LeanUntracedHandlers.PATH_A.send(t);
+		}
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		SpanBuilder spanBuilder = tracer.buildSpan("server")
+			.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+			.withTag(Tags.HTTP_STATUS.getKey(), t.getResponseCode())
+			// Note that .asChildOf() accepts (and ignores) null
+			.asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TextMapExtractAdapter(t)));
+
+		try (Scope ignore = tracer.scopeManager().activate(spanBuilder.start(), true)) {
+			this.fakeDBCall("select * from table");
+			LeanUntracedHandlers.PATH_B.send(t);
+		}
+	}
+}
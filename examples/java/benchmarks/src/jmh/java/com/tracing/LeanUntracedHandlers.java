@@ -0,0 +1,30 @@
+package com.tracing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.tracing.server.PrecomputedResponse;
+import java.io.IOException;
+
+/**
+ * The precomputed-response variants of the template module's handlers ({@code -Dexample.precomputedResponses=true}),
+ * without tracing; {@link UntracedHandlers} is the {@code response.getBytes()} version they run by default.
+ */
+class LeanUntracedHandlers implements ExampleHandlers {
+
+	static final PrecomputedResponse PATH_A = PrecomputedResponse.of("This is path A");
+	static final PrecomputedResponse PATH_B = PrecomputedResponse.of("This is path B");
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		PATH_A.send(t);
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		this.fakeDBCall("select * from table");
+		PATH_B.send(t);
+	}
+
+	void fakeDBCall(String statement) {
+		// this is just to simulate a fake database call
+	}
+}
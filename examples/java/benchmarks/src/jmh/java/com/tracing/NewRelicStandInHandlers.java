@@ -0,0 +1,88 @@
+package com.tracing;
+
+import com.newrelic.agent.bridge.AgentBridge;
+import com.newrelic.agent.bridge.Transaction;
+import com.newrelic.api.agent.DatastoreParameters;
+import com.newrelic.api.agent.NewRelic;
+import com.newrelic.api.agent.Segment;
+import com.sun.net.httpserver.HttpExchange;
+import com.tracing.newrelic.StandInAgent;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * The handlers of the newrelic-manual module, against the stand-in agent of newrelic-standin. The transaction of
+ * each request is started and ended with the calls the stand-in's {@code -javaagent} weaves into the
+ * {@code @Trace(dispatcher=true)} handlers, so the benchmark runs without the agent attached.
+ */
+class NewRelicStandInHandlers implements ExampleHandlers {
+
+	static final String PAYLOAD_HEADER = "NewRelicPayload";
+
+	/**
+	 * @return the payload a client transaction of the example sends
+	 */
+	static String clientPayload() {
+		Object client = StandInAgent.enterTrace("TraceExample.callServer", true);
+		try {
+			return AgentBridge.getAgent().getTransaction().createDistributedTracePayload().text();
+		} finally {
+			StandInAgent.exitTrace(client);
+		}
+	}
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		Object transaction = StandInAgent.enterTrace("TraceExample$PathAHandler.handle", true);
+		try {
+			// add trace context to the Transaction
+			readNewRelicPayload(t, AgentBridge.getAgent().getTransaction());
+
+			String response = "This is path A";
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			os.close();
+		} finally {
+			StandInAgent.exitTrace(transaction);
+		}
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		Object transaction = StandInAgent.enterTrace("TraceExample$PathBHandler.handle", true);
+		try {
+			// add trace context to the Transaction
+			readNewRelicPayload(t, AgentBridge.getAgent().getTransaction());
+
+			String response = "This is path B";
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			this.fakeDBCall("select * from table");
+			os.close();
+		} finally {
+			StandInAgent.exitTrace(transaction);
+		}
+	}
+
+	private static void readNewRelicPayload(HttpExchange t, Transaction txn) {
+		List<String> tags = t.getRequestHeaders().get(PAYLOAD_HEADER);
+		if (tags != null && tags.size() == 1) {
+			txn.acceptDistributedTracePayload(tags.get(0));
+		}
+	}
+
+	void fakeDBCall(String statement) {
+		// add a segment to the Transaction
+		Segment segment = NewRelic.getAgent().getTransaction().startSegment("database");
+		segment.reportAsExternal(DatastoreParameters
+				.product("FakeDB")
+				.collection("tablename")
+				.operation("SELECT")
+				.build());
+		// this is just to simulate a fake database call
+		segment.end();
+	}
+}
@@ -0,0 +1,84 @@
+package com.tracing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.tracing.TraceExample.TextMapExtractAdapter;
+import io.opentracing.Scope;
+import io.opentracing.Tracer;
+import io.opentracing.Tracer.SpanBuilder;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.propagation.Format.Builtin;
+import io.opentracing.tag.Tags;
+import io.opentracing.util.ThreadLocalScopeManager;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The handlers of the opentracing module, for any OpenTracing {@link Tracer}.
+ */
+class OpenTracingHandlers implements ExampleHandlers {
+
+	final Tracer tracer;
+
+	OpenTracingHandlers(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	/**
+	 * A MockTracer that does not keep its finished spans - otherwise the benchmark would mostly measure a list
+	 * growing until the heap is full. MockTracer only reads its own "traceid"/"spanid" headers, so it ignores the
+	 * B3 headers of the request and starts root spans.
+	 */
+	static MockTracer newMockTracer() {
+		return new MockTracer(new ThreadLocalScopeManager(), MockTracer.Propagator.TEXT_MAP) {
+			@Override
+			protected void onSpanFinished(MockSpan mockSpan) {
+			}
+		};
+	}
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		SpanBuilder spanBuilder = tracer.buildSpan("server")
+			.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+			.withTag(Tags.HTTP_STATUS.getKey(), t.getResponseCode())
+			// Note that .asChildOf() accepts (and ignores) null
+			.asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TextMapExtractAdapter(t)));
+
+		try (Scope ignore = tracer.scopeManager().activate(spanBuilder.start(), true)) {
+			String response = "This is path A";
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			os.close();
+		}
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		SpanBuilder spanBuilder = tracer.buildSpan("server")
+			.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+			.withTag(Tags.HTTP_STATUS.getKey(), t.getResponseCode())
+			// Note that .asChildOf() accepts (and ignores) null
+			.asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TextMapExtractAdapter(t)));
+
+		try (Scope ignore = tracer.scopeManager().activate(spanBuilder.start(), true)) {
+			String response = "This is path B";
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			this.fakeDBCall("select * from table");
+			os.close();
+		}
+	}
+
+	void fakeDBCall(String statement) {
+		try (Scope ignore = tracer.scopeManager().activate(
+			tracer.buildSpan("database")
+				.withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+				.withTag(Tags.DB_STATEMENT.getKey(), statement)
+				.start(), true)) {
+			// this is just to simulate a fake database call
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.tracing;
+
+import brave.sampler.Sampler;
+import com.sun.net.httpserver.HttpExchange;
+import com.tracing.core.HeaderReader;
+import com.tracing.core.Span;
+import com.tracing.core.Tracing;
+import com.tracing.server.PrecomputedResponse;
+import java.io.IOException;
+import zipkin2.reporter.Reporter;
+
+/**
+ * The handlers of the template module, traced through the tracing-core facade with the given backend: "none" should
+ * cost what {@link LeanUntracedHandlers} does, "brave" what {@link BraveHandlers} does.
+ *
+ * <p>{@link Tracing} picks its backend once per JVM, when first used, so only the first instance decides it; JMH runs
+ * every {@link HandlerBenchmark#tracer} in a JVM of its own.
+ */
+class TracingCoreHandlers implements ExampleHandlers, AutoCloseable {
+
+	static final PrecomputedResponse PATH_A = PrecomputedResponse.of("This is path A");
+	static final PrecomputedResponse PATH_B = PrecomputedResponse.of("This is path B");
+
+	static final HeaderReader<HttpExchange> REQUEST_HEADERS = new HeaderReader<HttpExchange>() {
+		@Override
+		public String get(HttpExchange request, String name) {
+			return request.getRequestHeaders().getFirst(name);
+		}
+
+		@Override
+		public Iterable<String> names(HttpExchange request) {
+			return request.getRequestHeaders().keySet();
+		}
+	};
+
+	private final brave.Tracing braveTracing;
+
+	TracingCoreHandlers(String backend) {
+		System.setProperty(Tracing.BACKEND_PROPERTY, backend);
+		// the brave backend records to the current Tracing, this one drops the spans like BraveHandlers' does
+		braveTracing = backend.equals("brave") ? brave.Tracing.newBuilder()
+			.localServiceName("rpc-testing")
+			.spanReporter(Reporter.NOOP)
+			.sampler(Sampler.ALWAYS_SAMPLE)
+			.build() : null;
+		if (!Tracing.backend().equals(backend)) {
+			throw new IllegalStateException("Tracing was initialized with " + Tracing.backend() + ", not " + backend);
+		}
+	}
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		try (Span span = Tracing.startServer("PathAHandler", t, REQUEST_HEADERS)) {
+			span.tag("http.method", t.getRequestMethod());
+			PATH_A.send(t);
+		}
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		try (Span span = Tracing.startServer("PathBHandler", t, REQUEST_HEADERS)) {
+			span.tag("http.method", t.getRequestMethod());
+			this.fakeDBCall("select * from table");
+			PATH_B.send(t);
+		}
+	}
+
+	void fakeDBCall(String statement) {
+		try (Span span = Tracing.start("database")) {
+			span.tag("db.statement", statement);
+			// this is just to simulate a fake database call
+		}
+	}
+
+	@Override
+	public void close() {
+		if (braveTracing != null) {
+			braveTracing.close();
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.tracing;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The handlers of the template module, without any tracing - the baseline.
+ */
+class UntracedHandlers implements ExampleHandlers {
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		String response = "This is path A";
+		t.sendResponseHeaders(200, response.length());
+		OutputStream os = t.getResponseBody();
+		os.write(response.getBytes());
+		os.close();
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		String response = "This is path B";
+		t.sendResponseHeaders(200, response.length());
+		OutputStream os = t.getResponseBody();
+		os.write(response.getBytes());
+		this.fakeDBCall("select * from table");
+		os.close();
+	}
+
+	void fakeDBCall(String statement) {
+		// this is just to simulate a fake database call
+	}
+}
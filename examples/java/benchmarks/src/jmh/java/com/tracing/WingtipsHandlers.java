@@ -0,0 +1,91 @@
+package com.tracing;
+
+import com.nike.wingtips.Span;
+import com.nike.wingtips.Span.SpanPurpose;
+import com.nike.wingtips.Tracer;
+import com.sun.net.httpserver.HttpExchange;
+import com.tracing.propagation.B3Context;
+import com.tracing.propagation.B3HeaderExtractor;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The handlers of the wingtips-basic module. Wingtips logs completed spans through SLF4J; without a logging backend
+ * on the benchmark classpath that output is a no-op, as span export is for the other tracers.
+ */
+class WingtipsHandlers implements ExampleHandlers {
+
+	private static final Tracer wingtipsTracer = Tracer.getInstance();
+
+	@Override
+	public void pathA(HttpExchange t) throws IOException {
+		try {
+			// Start an overall request span based on the incoming request.
+			//      If the request has tracing headers then create a child span, otherwise start a root span.
+			startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(t);
+
+			String response = "This is path A";
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			os.close();
+		}
+		finally {
+			// Complete the overall request span.
+			wingtipsTracer.completeRequestSpan();
+		}
+	}
+
+	@Override
+	public void pathB(HttpExchange t) throws IOException {
+		try {
+			// Start an overall request span based on the incoming request.
+			//      If the request has tracing headers then create a child span, otherwise start a root span.
+			startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(t);
+
+			this.fakeDBCall("select * from table");
+
+			String response = "This is path B";
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			os.close();
+		}
+		finally {
+			// Complete the overall request span.
+			wingtipsTracer.completeRequestSpan();
+		}
+	}
+
+	void fakeDBCall(String statement) {
+		try {
+			// Start a subspan (child span) for the database call.
+			wingtipsTracer.startSubSpan("fakeDatabaseCall", SpanPurpose.CLIENT);
+			// this is just to simulate a fake database call
+		}
+		finally {
+			// Complete the subspan around the database call.
+			wingtipsTracer.completeSubSpan();
+		}
+	}
+
+	static void startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(HttpExchange t) {
+		B3Context incomingContext = new B3Context();
+		String spanName = "serverHandling-" + t.getRequestMethod() + "_" + t.getRequestURI().getPath();
+		if (!B3HeaderExtractor.extractB3OrTraceparent(t.getRequestHeaders(), incomingContext)) {
+			wingtipsTracer.startRequestWithRootSpan(spanName);
+		}
+		else {
+			wingtipsTracer.startRequestWithChildSpan(toParentSpan(incomingContext), spanName);
+		}
+	}
+
+	static Span toParentSpan(B3Context incomingContext) {
+		return Span.newBuilder("UNSPECIFIED", SpanPurpose.UNKNOWN)
+				   .withTraceId(incomingContext.traceIdString())
+				   .withSpanId(incomingContext.spanIdString())
+				   .withParentSpanId(incomingContext.parentIdString())
+				   .withSampleable(incomingContext.isSampled())
+				   .build();
+	}
+}
@@ -8,8 +8,12 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
+import java.net.URI;
 import java.net.URL;
+import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.function.BiConsumer;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
@@ -20,6 +24,7 @@ import brave.Tracer;
 import brave.Tracing;
 import brave.Span.Kind;
 import brave.Tracer.SpanInScope;
+import brave.propagation.TraceContext;
 import brave.propagation.TraceContextOrSamplingFlags;
 import brave.propagation.TraceContext.Extractor;
 import brave.propagation.TraceContext.Injector;
@@ -28,6 +33,18 @@ import zipkin2.reporter.Sender;
 import zipkin2.reporter.urlconnection.URLConnectionSender;
 import zipkin2.reporter.AsyncReporter;
 
+import com.tracing.client.AsyncTracedClient;
+import com.tracing.client.ClientSpanHandler;
+import com.tracing.db.DatabaseConnection;
+import com.tracing.db.ExampleDatabase;
+import com.tracing.db.QueryResult;
+import com.tracing.load.AsyncClientCall;
+import com.tracing.load.LoadGenerator;
+import com.tracing.server.ExampleServers;
+import com.tracing.server.ServerExecutors;
+import com.tracing.propagation.TraceHeadersInjector;
+import com.tracing.propagation.TraceIdGenerator;
+
 
 
 /**
@@ -54,6 +71,31 @@ public class TraceExample {
 		}
 	};
 
+	static final Setter<BiConsumer<String, String>, String> HEADER_SETTER = BiConsumer::accept;
+
+	static final Sampler SAMPLER = Sampler.ALWAYS_SAMPLE; /* or any other Sampler */
+
+	/**
+	 * IDs of the client's root spans come from per-thread PRNGs instead of Brave's default generator, choose 64-bit,
+	 * 128-bit or time-prefixed 128-bit trace IDs with -Dtracing.traceIdMode=BITS_64|BITS_128|BITS_128_TIME_PREFIXED
+	 */
+	static final TraceIdGenerator ID_GENERATOR = TraceIdGenerator.fromSystemProperty("tracing.traceIdMode");
+
+	// Trace header formats the async client sends in addition to Brave's B3 headers, e.g.
+	//		-Dtracing.propagation.additional=w3c
+	static final TraceHeadersInjector ADDITIONAL_TRACING_HEADERS =
+		TraceHeadersInjector.fromSystemProperty("tracing.propagation.additional");
+
+	// In-process stand-in for the database PathBHandler queries, with a connection pool and per-statement latencies;
+	//		-Dexample.db.latency=fixed:100ms brings back the fixed 100 ms the fake call used to sleep
+	static final ExampleDatabase DATABASE = ExampleDatabase.fromSystemProperties();
+
+	// -Dexample.requestLog=false keeps the handlers from printing a line per request, e.g. under load
+	static final boolean LOG_REQUESTS = ExampleServers.logRequests();
+
+	// -Dexample.simulatedWork=false skips the sleeps that simulate server time, e.g. to compare the tracers under load
+	static final boolean SIMULATE_WORK = ExampleServers.simulateWork();
+
 	public static void main(String[] args) {
 
 		final Sender sender = URLConnectionSender.create("http://localhost:9411/api/v2/spans");
@@ -63,7 +105,9 @@ public class TraceExample {
 			.newBuilder()
 			.localServiceName("rpc-testing")
 			.spanReporter(reporter)
-			.sampler(Sampler.ALWAYS_SAMPLE) /* or any other Sampler */
+			.sampler(SAMPLER)
+			// spans Brave creates itself must use the same trace ID width as the generated root spans
+			.traceId128Bit(ID_GENERATOR.traceId128Bit())
 			.build();
 
 		// Make sure spans get reported on control-c
@@ -85,56 +129,44 @@ public class TraceExample {
 	private static void initClient(final Tracing tracing) {
 		final Injector<HttpURLConnection> tracingInjector = tracing.propagation().injector(SETTER);
 
+		final String[] pathList = { "pathA", "pathB" };
+		// -Dexample.client=async sends the requests with a pooled, non-blocking HttpClient instead, see AsyncClient
+		final AsyncClient asyncClient = isAsyncClientEnabled() ? new AsyncClient(tracing) : null;
+		if (LoadGenerator.isEnabled()) {
+			// -Dload.rate, see LoadGenerator
+			if (asyncClient != null) {
+				LoadGenerator.fromSystemProperties(pathList).runAsyncInBackground(asyncClient);
+			} else {
+				LoadGenerator.fromSystemProperties(pathList)
+					.runInBackground(path -> callServer(tracing, tracingInjector, path));
+			}
+			return;
+		}
+
 		Thread thread = new Thread(new Runnable() {
 
 			@Override
 			public void run() {
 
 				int pos = 0;
-				String[] pathList = { "pathA", "pathB" };
 				for (;;) {
-					// start trace
-					Tracer tracer = tracing.tracer();
-					// start root span
-					Span span = tracer.nextSpan().name("client").kind(Kind.CLIENT);
-					SpanInScope scope = tracer.withSpanInScope(span);
 					try {
-						// add additional information
-						
 						// call the server in a loop
 						System.out.println("Client is calling");
 						pos = (pos + 1) % 2;
-						URL url = new URL("http://localhost:8000/" + pathList[pos]);
-						HttpURLConnection con = (HttpURLConnection) url.openConnection();
-						con.setRequestMethod("GET");
-						
-						span.tag("http.url", url.toString());
-						span.tag("http.method", "GET");
-						// add the trace-context
-						
-						tracingInjector.inject(span.context(), con);
-						span.start();
-						
-						con.addRequestProperty("testheader", "testvalue");
-						
-						con.connect();
-						
-						BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-						String inputLine;
-						StringBuffer content = new StringBuffer();
-						while ((inputLine = in.readLine()) != null) {
-							content.append(inputLine);
+						if (asyncClient != null) {
+							// returns right away, the span is finished when the response arrives
+							asyncClient.call(pathList[pos]).exceptionally(e -> {
+								System.err.println("Failed to talk to server");
+								System.err.println(e.toString());
+								return 0;
+							});
+						} else {
+							callServer(tracing, tracingInjector, pathList[pos]);
 						}
-						in.close();
-						span.tag("http.status_code", Integer.toString(con.getResponseCode()));
 					} catch (Exception e) {
-						span.tag("error", e.getMessage()); // exception tagging
-
 						System.err.println("Failed to talk to server");
 						System.err.println(e.toString());
-					} finally {
-						scope.close();
-						span.finish();
 					}
 					try {
 						Thread.sleep(1000);
@@ -147,17 +179,171 @@ public class TraceExample {
 		thread.start();
 	}
 
+	static int callServer(Tracing tracing, Injector<HttpURLConnection> tracingInjector, String path) throws IOException {
+		// start trace
+		Tracer tracer = tracing.tracer();
+		// start root span
+		Span span = newRootSpan(tracer).name("client").kind(Kind.CLIENT);
+		SpanInScope scope = tracer.withSpanInScope(span);
+		try {
+			// add additional information
+			URL url = new URL("http://localhost:8000/" + path);
+			HttpURLConnection con = (HttpURLConnection) url.openConnection();
+			con.setRequestMethod("GET");
+			
+			span.tag("http.url", url.toString());
+			span.tag("http.method", "GET");
+			// add the trace-context
+			
+			tracingInjector.inject(span.context(), con);
+			span.start();
+			
+			con.addRequestProperty("testheader", "testvalue");
+			
+			con.connect();
+			
+			BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
+			String inputLine;
+			StringBuffer content = new StringBuffer();
+			while ((inputLine = in.readLine()) != null) {
+				content.append(inputLine);
+			}
+			in.close();
+			int status = con.getResponseCode();
+			span.tag("http.status_code", Integer.toString(status));
+			return status;
+		} catch (IOException | RuntimeException e) {
+			span.tag("error", String.valueOf(e.getMessage())); // exception tagging
+			throw e;
+		} finally {
+			scope.close();
+			span.finish();
+		}
+	}
+
+	// Reads the property here rather than in AsyncClient: verifying that class loads the Java 11 ClientSpanHandler.
+	//		The property name is a constant, so AsyncTracedClient is not loaded either.
+	static boolean isAsyncClientEnabled() {
+		return "async".equalsIgnoreCase(System.getProperty(AsyncTracedClient.CLIENT_PROPERTY));
+	}
+
+	/**
+	 * The client side on the {@link AsyncTracedClient} of the example-client module. That module needs Java 11 while
+	 * this one runs on Java 8, so only this class and {@link BraveClientSpanHandler} refer to it, and they are only
+	 * loaded with {@code -Dexample.client=async}.
+	 */
+	static final class AsyncClient implements AsyncClientCall {
+
+		private final AsyncTracedClient client = AsyncTracedClient.fromSystemProperties("http://localhost:8000");
+		private final BraveClientSpanHandler spanHandler;
+
+		AsyncClient(Tracing tracing) {
+			this.spanHandler = new BraveClientSpanHandler(tracing);
+		}
+
+		@Override
+		public CompletionStage<Integer> call(String path) {
+			return client.send(path, spanHandler);
+		}
+	}
+
+	/**
+	 * The client span of a request sent with the {@link AsyncTracedClient}. It is never put in scope: it starts on the
+	 * sending thread and finishes in the client's callback on another thread.
+	 */
+	static class BraveClientSpanHandler implements ClientSpanHandler<Span> {
+
+		private final Tracer tracer;
+		private final Injector<BiConsumer<String, String>> injector;
+
+		BraveClientSpanHandler(Tracing tracing) {
+			this.tracer = tracing.tracer();
+			this.injector = tracing.propagation().injector(HEADER_SETTER);
+		}
+
+		@Override
+		public Span start(String method, URI uri) {
+			Span span = newRootSpan(tracer).name("client").kind(Kind.CLIENT);
+			span.tag("http.url", uri.toString());
+			span.tag("http.method", method);
+			return span.start();
+		}
+
+		@Override
+		public void inject(Span span, BiConsumer<String, String> header) {
+			// add the trace-context: Brave's own B3 headers, any additional formats with Brave's vendor entry in the
+			//		W3C tracestate, and the example's custom header
+			TraceContext context = span.context();
+			boolean sampled = !Boolean.FALSE.equals(context.sampled());
+			injector.inject(context, header);
+			ADDITIONAL_TRACING_HEADERS.inject(context.traceIdHigh(), context.traceId(), context.spanId(),
+				context.parentIdAsLong(), sampled, vendorTracestate(context, sampled), header, BiConsumer::accept);
+			header.accept("testheader", "testvalue");
+		}
+
+		// b3={single b3 header}, the tracestate entry Brave's W3C propagation writes; only sent next to a traceparent
+		private static String vendorTracestate(TraceContext context, boolean sampled) {
+			if (!ADDITIONAL_TRACING_HEADERS.emits(TraceHeadersInjector.Format.W3C)) {
+				return null;
+			}
+			char[] buffer = new char[3 + 68];
+			buffer[0] = 'b';
+			buffer[1] = '3';
+			buffer[2] = '=';
+			int length = TraceHeadersInjector.writeB3Single(context.traceIdHigh(), context.traceId(), context.spanId(),
+				context.parentIdAsLong(), sampled, buffer, 3);
+			return new String(buffer, 0, length);
+		}
+
+		@Override
+		public void finish(Span span, int statusCode, Throwable error) {
+			if (statusCode != 0) {
+				span.tag("http.status_code", Integer.toString(statusCode));
+			}
+			if (error != null) {
+				span.tag("error", String.valueOf(error.getMessage())); // exception tagging
+			}
+			span.finish();
+		}
+	}
+
+	static Span newRootSpan(Tracer tracer) {
+		long traceId = ID_GENERATOR.nextId();
+		TraceContext context = TraceContext.newBuilder()
+			.traceIdHigh(ID_GENERATOR.nextTraceIdHigh())
+			.traceId(traceId)
+			.spanId(traceId)
+			.sampled(SAMPLER.isSampled(traceId))
+			.build();
+		return tracer.toSpan(context);
+	}
+
 	private static void initServer(Tracing tracing) throws Exception {
 		// this extractor is needed, since zipkin does not support HttpExchange directly
 		Extractor<HttpExchange> tracingExtractor = tracing.propagation().extractor(GETTER);
 
-		HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
+		// -Dexample.server.type=nio runs the handlers on an NIO event-loop server instead of the JDK's HttpServer
+		HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(8000));
 		server.createContext("/pathA", new PathAHandler(tracing, tracingExtractor));
 		server.createContext("/pathB", new PathBHandler(tracing, tracingExtractor));
-		server.setExecutor(null); // creates a default executor
+		// -Dexample.server.executor, see ServerExecutors
+		server.setExecutor(ServerExecutors.fromSystemProperties(() -> clearCurrentTraceContext(tracing)));
 		server.start();
 	}
 
+	/**
+	 * Runs on the server thread after every request. A SpanInScope that was not closed would otherwise become the
+	 * parent of the next request handled by the same pooled thread.
+	 */
+	static boolean clearCurrentTraceContext(Tracing tracing) {
+		if (tracing.currentTraceContext().get() == null) {
+			return false;
+		}
+		// the returned scope is deliberately not closed - closing it would restore the leaked context
+		tracing.currentTraceContext().newScope(null);
+		return true;
+	}
+
 	// server side handlers
 
 	static class PathAHandler implements HttpHandler {
@@ -180,7 +366,9 @@ public class TraceExample {
 			SpanInScope scope = tracer.withSpanInScope(span);
 			try {
 				// simulate some server time
-				Thread.sleep(27);
+				if (SIMULATE_WORK) {
+					Thread.sleep(27);
+				}
 
 				String response = "This is path A";
 				t.sendResponseHeaders(200, response.length());
@@ -190,11 +378,15 @@ public class TraceExample {
 
 				OutputStream os = t.getResponseBody();
 				os.write(response.getBytes());
-				System.out.println("Path A was called.");
+				if (LOG_REQUESTS) {
+					System.out.println("Path A was called.");
+				}
 				os.close();
 				
 				// simulate some more time, AFTER response has been sent
-				Thread.sleep(7);
+				if (SIMULATE_WORK) {
+					Thread.sleep(7);
+				}
 			} catch (Exception e) {
 				span.tag("error", e.getMessage());
 				e.printStackTrace();
@@ -234,7 +426,9 @@ public class TraceExample {
 
 				OutputStream os = t.getResponseBody();
 				os.write(response.getBytes());
-				System.out.println("Path B was called");
+				if (LOG_REQUESTS) {
+					System.out.println("Path B was called");
+				}
 				this.fakeDBCall("select * from table");
 				os.close();
 
@@ -249,20 +443,40 @@ public class TraceExample {
 		}
 
 		public void fakeDBCall(String statement) {
-			Span span = Tracing.currentTracer().nextSpan().name("database").start();
+			// waiting for a pooled connection gets a span of its own, so an exhausted pool shows up as such instead
+			// of as a slow query
+			DatabaseConnection connection;
+			Span poolWait = Tracing.currentTracer().nextSpan().name("pool-wait").start();
+			try {
+				poolWait.tag("db.instance", DATABASE.name());
+				poolWait.tag("db.pool.idle", Integer.toString(DATABASE.idleConnections()));
+				connection = DATABASE.getConnection();
+			} catch (SQLException e) {
+				poolWait.tag("error", e.getMessage());
+				e.printStackTrace();
+				return;
+			} finally {
+				poolWait.finish();
+			}
+
+			Span span = Tracing.currentTracer().nextSpan().name("database").kind(Kind.CLIENT).start();
 			SpanInScope scope = Tracing.currentTracer().withSpanInScope(span);
 			try {
-				span.tag("db.instance", "mySampleDb");
+				span.tag("db.instance", DATABASE.name());
 				span.tag("db.type", "sql");
 				span.tag("db.statement", statement);
 				
 				// this is just to simulate a fake database call
-				System.out.println("Fake DB was called with statement " + statement);
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
+				QueryResult result = connection.query(statement);
+				span.tag("db.rows_returned", Integer.toString(result.rowCount()));
+				if (LOG_REQUESTS) {
+					System.out.println("Fake DB was called with statement " + statement);
+				}
+			} catch (SQLException e) {
 				span.tag("error", e.getMessage());
 				e.printStackTrace();
 			} finally {
+				connection.close();
 				scope.close();
 				span.finish();
 			}
@@ -0,0 +1,109 @@
+package com.tracing.agent;
+
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import brave.Span;
+import brave.Tracer.SpanInScope;
+import brave.Tracing;
+import brave.propagation.CurrentTraceContext;
+
+/**
+ * Measures what the agent adds to every instrumented {@code execute}/{@code submit} call: capturing the caller's
+ * context when the task is submitted, and attaching/detaching it around {@code run()}.
+ *
+ * <p>The advice inlines exactly {@link ContextPropagation#wrapExecuted(Runnable)} into {@code execute}, and
+ * {@link ContextPropagation#wrap(Runnable)} plus the enter/exit calls into {@code submit}, so calling them the way an
+ * instrumented executor does measures the instrumented path without having to attach the agent to the benchmark JVM.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ContextPropagationBenchmark {
+
+	private Tracing tracing;
+	private Span span;
+	private SpanInScope scope;
+	private Runnable task;
+
+	@Setup
+	public void setup(Blackhole blackhole) throws Exception {
+		tracing = Tracing.newBuilder().currentTraceContext(CurrentTraceContext.Default.create()).build();
+		if (!ContextPropagation.hasPropagators()) {
+			ContextPropagation.register(new BraveContextPropagator(getClass().getClassLoader()));
+		}
+		span = tracing.tracer().nextSpan().start();
+		task = () -> blackhole.consume(tracing.currentTraceContext().get());
+	}
+
+	@TearDown
+	public void tearDown() {
+		span.finish();
+		tracing.close();
+	}
+
+	@Benchmark
+	public void uninstrumented() {
+		task.run();
+	}
+
+	@Benchmark
+	public void instrumentedWithoutActiveSpan() {
+		// nothing to propagate - the task is submitted unchanged
+		ContextPropagation.wrapExecuted(task).run();
+	}
+
+	@Benchmark
+	public void instrumentedWithActiveSpan() {
+		try (SpanInScope ignored = tracing.tracer().withSpanInScope(span)) {
+			ContextPropagation.wrapExecuted(task).run();
+		}
+	}
+
+	@Benchmark
+	public void instrumentedSubmitWithActiveSpan() {
+		// AbstractExecutorService.submit: the task is wrapped, the future around it is passed to execute as is
+		try (SpanInScope ignored = tracing.tracer().withSpanInScope(span)) {
+			FutureTask<Void> future = new FutureTask<Void>(ContextPropagation.wrap(task), null);
+			ContextPropagation.enterSubmit();
+			try {
+				future = (FutureTask<Void>) ContextPropagation.wrapExecuted(future);
+			}
+			finally {
+				ContextPropagation.exitSubmit();
+			}
+			future.run();
+		}
+	}
+
+	@Benchmark
+	public void instrumentedExecuteFutureWithActiveSpan() {
+		// a FutureTask built by the caller and passed to execute is wrapped like any other task
+		try (SpanInScope ignored = tracing.tracer().withSpanInScope(span)) {
+			ContextPropagation.wrapExecuted(new FutureTask<Void>(task, null)).run();
+		}
+	}
+
+	@Benchmark
+	public void uninstrumentedSubmit() {
+		new FutureTask<Void>(task, null).run();
+	}
+
+	@Benchmark
+	public void manuallyWrappedWithActiveSpan() {
+		// what you would write by hand for an executor you can wrap
+		try (SpanInScope ignored = tracing.tracer().withSpanInScope(span)) {
+			tracing.currentTraceContext().wrap(task).run();
+		}
+	}
+}
@@ -0,0 +1,89 @@
+package com.tracing.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.asm.AsmVisitorWrapper;
+import net.bytebuddy.dynamic.ClassFileLocator;
+
+import static net.bytebuddy.matcher.ElementMatchers.isAbstract;
+import static net.bytebuddy.matcher.ElementMatchers.isInterface;
+import static net.bytebuddy.matcher.ElementMatchers.isSubTypeOf;
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith;
+import static net.bytebuddy.matcher.ElementMatchers.named;
+import static net.bytebuddy.matcher.ElementMatchers.namedOneOf;
+import static net.bytebuddy.matcher.ElementMatchers.not;
+import static net.bytebuddy.matcher.ElementMatchers.returns;
+import static net.bytebuddy.matcher.ElementMatchers.takesArgument;
+import static net.bytebuddy.matcher.ElementMatchers.takesArguments;
+
+/**
+ * Registers a {@link ContextPropagator} for every supported tracing library found on the application class path and
+ * instruments all {@link Executor} implementations. Loaded from the bootstrap class path by
+ * {@link ContextPropagationAgent}.
+ */
+public final class AgentInstaller {
+
+	private AgentInstaller() { }
+
+	public static void install(Instrumentation instrumentation, ClassLoader applicationClassLoader) {
+		registerIfPresent("Wingtips", WingtipsContextPropagator::new, applicationClassLoader);
+		registerIfPresent("Brave", BraveContextPropagator::new, applicationClassLoader);
+		registerIfPresent("OpenTracing", OpenTracingContextPropagator::new, applicationClassLoader);
+		if (!ContextPropagation.hasPropagators()) {
+			System.err.println("Context propagation agent found no supported tracing library - not instrumenting.");
+			return;
+		}
+
+		// The agent jar is on the system class path as well, which is where Byte Buddy reads the advice byte code from
+		ClassFileLocator adviceLocator = ClassFileLocator.ForClassLoader.ofSystemLoader();
+		// submit and invokeAll wrap the task before they build the future they hand to execute, which queues that
+		//		future as is while they run - every task is wrapped once and the queue holds what the caller got back
+		AsmVisitorWrapper wrapExecuted = Advice.to(ExecutorAdvice.WrapExecuted.class, adviceLocator).on(not(isAbstract())
+			.and(named("execute"))
+			.and(takesArgument(0, Runnable.class)));
+		AsmVisitorWrapper wrapRunnable = Advice.to(ExecutorAdvice.WrapRunnable.class, adviceLocator).on(not(isAbstract())
+			.and(named("submit"))
+			.and(takesArgument(0, Runnable.class)));
+		AsmVisitorWrapper wrapCallable = Advice.to(ExecutorAdvice.WrapCallable.class, adviceLocator).on(not(isAbstract())
+			.and(named("submit"))
+			.and(takesArgument(0, Callable.class)));
+		AsmVisitorWrapper wrapAll = Advice.to(ExecutorAdvice.WrapAll.class, adviceLocator).on(not(isAbstract())
+			.and(namedOneOf("invokeAll", "invokeAny"))
+			.and(takesArgument(0, Collection.class)));
+		AsmVisitorWrapper unwrapPending = Advice.to(ExecutorAdvice.UnwrapPending.class, adviceLocator).on(not(isAbstract())
+			.and(named("shutdownNow"))
+			.and(takesArguments(0))
+			.and(returns(List.class)));
+
+		new AgentBuilder.Default()
+			.ignore(nameStartsWith("net.bytebuddy.").or(nameStartsWith("com.tracing.agent.")))
+			.disableClassFormatChanges()
+			.with(AgentBuilder.RedefinitionStrategy.RETRANSFORMATION)
+			.type(isSubTypeOf(Executor.class).and(not(isInterface())))
+			.transform((builder, type, classLoader, module, protectionDomain) ->
+				builder.visit(wrapExecuted).visit(wrapRunnable).visit(wrapCallable).visit(wrapAll).visit(unwrapPending))
+			// JDK executors live in java.base, which does not read the unnamed module of the agent by default
+			.assureReadEdgeTo(instrumentation, ContextPropagation.class)
+			.installOn(instrumentation);
+	}
+
+	private static void registerIfPresent(String library, PropagatorFactory factory, ClassLoader loader) {
+		try {
+			ContextPropagation.register(factory.create(loader));
+			System.out.println("Context propagation agent: propagating " + library + " context");
+		}
+		catch (ReflectiveOperationException | LinkageError e) {
+			// library not on the class path
+		}
+	}
+
+	interface PropagatorFactory {
+		ContextPropagator create(ClassLoader loader) throws ReflectiveOperationException;
+	}
+}
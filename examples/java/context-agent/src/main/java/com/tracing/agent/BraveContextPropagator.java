@@ -0,0 +1,53 @@
+package com.tracing.agent;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Propagates the Brave {@code TraceContext} of {@code Tracing.current()} through its {@code CurrentTraceContext}.
+ */
+final class BraveContextPropagator extends ReflectiveContextPropagator {
+
+	private final MethodHandle currentTracing;
+	private final MethodHandle currentTraceContext;
+	private final MethodHandle get;
+	private final MethodHandle newScope;
+	private final MethodHandle closeScope;
+
+	BraveContextPropagator(ClassLoader loader) throws ReflectiveOperationException {
+		super("Brave");
+		Class<?> tracing = load(loader, "brave.Tracing");
+		Class<?> current = load(loader, "brave.propagation.CurrentTraceContext");
+		Class<?> scope = load(loader, "brave.propagation.CurrentTraceContext$Scope");
+		Class<?> traceContext = load(loader, "brave.propagation.TraceContext");
+		currentTracing = staticMethod(tracing, "current", tracing);
+		currentTraceContext = virtualMethod(tracing, "currentTraceContext", current);
+		get = virtualMethod(current, "get", traceContext);
+		newScope = virtualMethod(current, "newScope", scope, traceContext);
+		closeScope = virtualMethod(scope, "close", void.class);
+	}
+
+	@Override
+	Object doCapture() throws Throwable {
+		Object tracing = (Object) currentTracing.invokeExact();
+		if (tracing == null) {
+			return null;
+		}
+		return (Object) get.invokeExact((Object) currentTraceContext.invokeExact(tracing));
+	}
+
+	@Override
+	Object doAttach(Object captured) throws Throwable {
+		Object tracing = (Object) currentTracing.invokeExact();
+		if (tracing == null) {
+			return null;
+		}
+		return (Object) newScope.invokeExact((Object) currentTraceContext.invokeExact(tracing), captured);
+	}
+
+	@Override
+	void doDetach(Object token) throws Throwable {
+		if (token != null) {
+			closeScope.invokeExact(token);
+		}
+	}
+}
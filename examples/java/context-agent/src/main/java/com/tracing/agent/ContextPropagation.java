@@ -0,0 +1,212 @@
+package com.tracing.agent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Registry of the {@link ContextPropagator}s in use and entry point of the instrumented executor methods.
+ *
+ * <p>The agent appends itself to the bootstrap class path, so this class is visible from the JDK executors it
+ * instruments.
+ */
+public final class ContextPropagation {
+
+	private static volatile ContextPropagator[] propagators = new ContextPropagator[0];
+
+	// How many submit, invokeAll and invokeAny calls the current thread is in - an int[] so counting does not box
+	private static final ThreadLocal<int[]> SUBMITTING = ThreadLocal.withInitial(() -> new int[1]);
+
+	private ContextPropagation() { }
+
+	public static synchronized void register(ContextPropagator propagator) {
+		ContextPropagator[] updated = Arrays.copyOf(propagators, propagators.length + 1);
+		updated[propagators.length] = propagator;
+		propagators = updated;
+	}
+
+	public static boolean hasPropagators() {
+		return propagators.length > 0;
+	}
+
+	public static Runnable wrap(Runnable task) {
+		if (task == null || task instanceof TracingRunnable) {
+			return task;
+		}
+		Snapshot snapshot = capture();
+		return snapshot == null ? task : new TracingRunnable(task, snapshot);
+	}
+
+	/**
+	 * Wraps a task passed to {@code execute}, a {@link FutureTask} included. The only tasks left alone are the futures
+	 * {@code submit}, {@code invokeAll} and {@code invokeAny} hand on to {@code execute} while they run: they built
+	 * those around a task that is already wrapped, and queueing the future itself keeps
+	 * {@code ThreadPoolExecutor.remove(future)} and the tasks {@code shutdownNow()} returns working.
+	 */
+	public static Runnable wrapExecuted(Runnable task) {
+		// FutureTask rather than RunnableFuture: a class check, where an interface check that fails costs more than
+		//		the wrapping does - and the thread local is only read for futures
+		if (task == null || task instanceof TracingRunnable
+				|| task instanceof FutureTask && SUBMITTING.get()[0] > 0) {
+			return task;
+		}
+		Snapshot snapshot = capture();
+		return snapshot == null ? task : new TracingRunnable(task, snapshot);
+	}
+
+	/**
+	 * Called on entering {@code submit}, {@code invokeAll} and {@code invokeAny}, after their tasks were wrapped.
+	 */
+	public static void enterSubmit() {
+		SUBMITTING.get()[0]++;
+	}
+
+	/**
+	 * Called on leaving {@code submit}, {@code invokeAll} and {@code invokeAny}, also if they throw.
+	 */
+	public static void exitSubmit() {
+		SUBMITTING.get()[0]--;
+	}
+
+	public static <T> Callable<T> wrap(Callable<T> task) {
+		if (task == null || task instanceof TracingCallable) {
+			return task;
+		}
+		Snapshot snapshot = capture();
+		return snapshot == null ? task : new TracingCallable<T>(task, snapshot);
+	}
+
+	/**
+	 * Wraps the tasks passed to {@code invokeAll} and {@code invokeAny}, all with the same captured contexts.
+	 */
+	public static <T> Collection<? extends Callable<T>> wrapAll(Collection<? extends Callable<T>> tasks) {
+		if (tasks == null) {
+			return null;
+		}
+		Snapshot snapshot = capture();
+		if (snapshot == null) {
+			return tasks;
+		}
+		List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+		for (Callable<T> task : tasks) {
+			wrapped.add(task == null || task instanceof TracingCallable ? task : new TracingCallable<T>(task, snapshot));
+		}
+		return wrapped;
+	}
+
+	/**
+	 * Replaces the wrapped tasks {@code shutdownNow()} returns with the ones that were submitted.
+	 */
+	public static List<Runnable> unwrap(List<Runnable> tasks) {
+		if (tasks == null) {
+			return null;
+		}
+		List<Runnable> unwrapped = null;
+		for (int i = 0; i < tasks.size(); i++) {
+			Runnable task = tasks.get(i);
+			if (task instanceof TracingRunnable) {
+				if (unwrapped == null) {
+					unwrapped = new ArrayList<>(tasks);
+				}
+				unwrapped.set(i, ((TracingRunnable) task).delegate);
+			}
+		}
+		return unwrapped == null ? tasks : unwrapped;
+	}
+
+	/**
+	 * @return the contexts active on the current thread, or null if no tracing library has anything to propagate -
+	 * 			in that case the task is submitted unchanged
+	 */
+	static Snapshot capture() {
+		ContextPropagator[] current = propagators;
+		Object[] captured = null;
+		for (int i = 0; i < current.length; i++) {
+			Object context = current[i].capture();
+			if (context != null) {
+				if (captured == null) {
+					captured = new Object[current.length];
+				}
+				captured[i] = context;
+			}
+		}
+		return captured == null ? null : new Snapshot(current, captured);
+	}
+
+	static final class Snapshot {
+
+		private final ContextPropagator[] propagators;
+		private final Object[] captured;
+
+		Snapshot(ContextPropagator[] propagators, Object[] captured) {
+			this.propagators = propagators;
+			this.captured = captured;
+		}
+
+		Object[] attach() {
+			Object[] tokens = new Object[captured.length];
+			for (int i = 0; i < captured.length; i++) {
+				if (captured[i] != null) {
+					tokens[i] = propagators[i].attach(captured[i]);
+				}
+			}
+			return tokens;
+		}
+
+		void detach(Object[] tokens) {
+			// restore in reverse order of attaching
+			for (int i = tokens.length - 1; i >= 0; i--) {
+				if (captured[i] != null) {
+					propagators[i].detach(tokens[i]);
+				}
+			}
+		}
+	}
+
+	static final class TracingRunnable implements Runnable {
+
+		private final Runnable delegate;
+		private final Snapshot snapshot;
+
+		TracingRunnable(Runnable delegate, Snapshot snapshot) {
+			this.delegate = delegate;
+			this.snapshot = snapshot;
+		}
+
+		@Override
+		public void run() {
+			Object[] tokens = snapshot.attach();
+			try {
+				delegate.run();
+			}
+			finally {
+				snapshot.detach(tokens);
+			}
+		}
+	}
+
+	static final class TracingCallable<T> implements Callable<T> {
+
+		private final Callable<T> delegate;
+		private final Snapshot snapshot;
+
+		TracingCallable(Callable<T> delegate, Snapshot snapshot) {
+			this.delegate = delegate;
+			this.snapshot = snapshot;
+		}
+
+		@Override
+		public T call() throws Exception {
+			Object[] tokens = snapshot.attach();
+			try {
+				return delegate.call();
+			}
+			finally {
+				snapshot.detach(tokens);
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package com.tracing.agent;
+
+import java.io.File;
+import java.lang.instrument.Instrumentation;
+import java.util.concurrent.Executor;
+import java.util.jar.JarFile;
+
+/**
+ * Optional {@code -javaagent} that propagates the caller's tracing context through every {@link Executor}, including
+ * executors buried in third party code that cannot be wrapped.
+ *
+ * <p>It instruments {@code execute(Runnable)}, {@code submit(Runnable | Callable)}, {@code invokeAll} and
+ * {@code invokeAny} of all executor implementations, so submitted tasks run with the Wingtips, Brave and OpenTracing
+ * ({@code GlobalTracer}) context that was active when they were submitted. Libraries that are not on the class path
+ * are skipped, and a task is only wrapped if there is a context to propagate - and only once, where {@code submit}
+ * hands its future on to {@code execute}.
+ *
+ * <p>The future {@code submit} returns is the one queued, so {@code ThreadPoolExecutor.remove(future)} finds it, and
+ * {@code shutdownNow()} returns the tasks as they were submitted. A task passed to {@code execute} directly - a
+ * {@code FutureTask} built by hand included - is queued wrapped, so {@code remove(task)} can't find it.
+ *
+ * <p>Usage: {@code java -javaagent:context-agent.jar ...}
+ */
+public class ContextPropagationAgent {
+
+	public static void premain(String arguments, Instrumentation instrumentation) throws Exception {
+		// The advice is inlined into JDK executors, so the classes it calls must be visible from the bootstrap loader.
+		// Everything but this class is loaded from there, so nothing else may be referenced before this point.
+		File agentJar = new File(ContextPropagationAgent.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		instrumentation.appendToBootstrapClassLoaderSearch(new JarFile(agentJar));
+
+		AgentInstaller.install(instrumentation, ClassLoader.getSystemClassLoader());
+	}
+}
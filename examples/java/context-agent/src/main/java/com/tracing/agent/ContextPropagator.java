@@ -0,0 +1,30 @@
+package com.tracing.agent;
+
+/**
+ * Captures the tracing context of one tracing library on the submitting thread and restores it on the thread that
+ * runs the task.
+ *
+ * <p>Implementations must never throw - tracing code should never break an application.
+ */
+public interface ContextPropagator {
+
+	/**
+	 * @return the tracing context that is active on the current thread, or null if there is nothing to propagate
+	 */
+	Object capture();
+
+	/**
+	 * Makes a previously captured context the active one on the current thread.
+	 *
+	 * @param captured	a non-null value returned by {@link #capture()}
+	 * @return			a token that {@link #detach(Object)} uses to restore the thread's previous state
+	 */
+	Object attach(Object captured);
+
+	/**
+	 * Restores the state the current thread had before {@link #attach(Object)} was called.
+	 *
+	 * @param token		the value returned by {@link #attach(Object)}
+	 */
+	void detach(Object token);
+}
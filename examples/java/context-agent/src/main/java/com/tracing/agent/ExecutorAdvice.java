@@ -0,0 +1,76 @@
+package com.tracing.agent;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import net.bytebuddy.asm.Advice;
+
+/**
+ * Byte Buddy advice inlined into {@code Executor.execute} and {@code ExecutorService.submit}, {@code invokeAll} and
+ * {@code invokeAny} implementations. It replaces the submitted task with one that restores the caller's tracing
+ * context, and {@code shutdownNow()}'s wrapped tasks with the submitted ones. While {@code submit}, {@code invokeAll}
+ * or {@code invokeAny} run, {@code execute} leaves the futures they built around the wrapped tasks alone.
+ */
+final class ExecutorAdvice {
+
+	private ExecutorAdvice() { }
+
+	static final class WrapExecuted {
+
+		@Advice.OnMethodEnter
+		static void enter(@Advice.Argument(value = 0, readOnly = false) Runnable task) {
+			task = ContextPropagation.wrapExecuted(task);
+		}
+	}
+
+	static final class WrapRunnable {
+
+		@Advice.OnMethodEnter
+		static void enter(@Advice.Argument(value = 0, readOnly = false) Runnable task) {
+			task = ContextPropagation.wrap(task);
+			ContextPropagation.enterSubmit();
+		}
+
+		@Advice.OnMethodExit(onThrowable = Throwable.class)
+		static void exit() {
+			ContextPropagation.exitSubmit();
+		}
+	}
+
+	static final class WrapCallable {
+
+		@Advice.OnMethodEnter
+		static void enter(@Advice.Argument(value = 0, readOnly = false) Callable<?> task) {
+			task = ContextPropagation.wrap(task);
+			ContextPropagation.enterSubmit();
+		}
+
+		@Advice.OnMethodExit(onThrowable = Throwable.class)
+		static void exit() {
+			ContextPropagation.exitSubmit();
+		}
+	}
+
+	static final class WrapAll {
+
+		@Advice.OnMethodEnter
+		static void enter(@Advice.Argument(value = 0, readOnly = false) Collection<? extends Callable<Object>> tasks) {
+			tasks = ContextPropagation.wrapAll(tasks);
+			ContextPropagation.enterSubmit();
+		}
+
+		@Advice.OnMethodExit(onThrowable = Throwable.class)
+		static void exit() {
+			ContextPropagation.exitSubmit();
+		}
+	}
+
+	static final class UnwrapPending {
+
+		@Advice.OnMethodExit
+		static void exit(@Advice.Return(readOnly = false) List<Runnable> tasks) {
+			tasks = ContextPropagation.unwrap(tasks);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.tracing.agent;
+
+import java.lang.invoke.MethodHandle;
+
+/**
+ * Propagates the active span of the {@code GlobalTracer}'s {@code ScopeManager}. The span is re-activated without
+ * finishing it on close, since its owner finishes it.
+ */
+final class OpenTracingContextPropagator extends ReflectiveContextPropagator {
+
+	private final MethodHandle globalTracer;
+	private final MethodHandle scopeManager;
+	private final MethodHandle active;
+	private final MethodHandle span;
+	private final MethodHandle activate;
+	private final MethodHandle closeScope;
+
+	OpenTracingContextPropagator(ClassLoader loader) throws ReflectiveOperationException {
+		super("OpenTracing");
+		Class<?> global = load(loader, "io.opentracing.util.GlobalTracer");
+		Class<?> tracer = load(loader, "io.opentracing.Tracer");
+		Class<?> manager = load(loader, "io.opentracing.ScopeManager");
+		Class<?> scope = load(loader, "io.opentracing.Scope");
+		Class<?> spanType = load(loader, "io.opentracing.Span");
+		globalTracer = staticMethod(global, "get", tracer);
+		scopeManager = virtualMethod(tracer, "scopeManager", manager);
+		active = virtualMethod(manager, "active", scope);
+		span = virtualMethod(scope, "span", spanType);
+		activate = virtualMethod(manager, "activate", scope, spanType, boolean.class);
+		closeScope = virtualMethod(scope, "close", void.class);
+	}
+
+	@Override
+	Object doCapture() throws Throwable {
+		Object manager = (Object) scopeManager.invokeExact((Object) globalTracer.invokeExact());
+		Object activeScope = (Object) active.invokeExact(manager);
+		return activeScope == null ? null : (Object) span.invokeExact(activeScope);
+	}
+
+	@Override
+	Object doAttach(Object captured) throws Throwable {
+		Object manager = (Object) scopeManager.invokeExact((Object) globalTracer.invokeExact());
+		return (Object) activate.invokeExact(manager, captured, (Object) Boolean.FALSE);
+	}
+
+	@Override
+	void doDetach(Object token) throws Throwable {
+		if (token != null) {
+			closeScope.invokeExact(token);
+		}
+	}
+}
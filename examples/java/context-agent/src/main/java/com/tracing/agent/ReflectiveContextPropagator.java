@@ -0,0 +1,98 @@
+package com.tracing.agent;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Base class for propagators that talk to a tracing library through method handles.
+ *
+ * <p>The agent lives on the bootstrap class path and cannot link against the tracing libraries on the application
+ * class path, so their classes are resolved through the application class loader when the agent starts.
+ */
+abstract class ReflectiveContextPropagator implements ContextPropagator {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+	private final String libraryName;
+	private volatile boolean failed;
+
+	ReflectiveContextPropagator(String libraryName) {
+		this.libraryName = libraryName;
+	}
+
+	@Override
+	public final Object capture() {
+		if (failed) {
+			return null;
+		}
+		try {
+			return doCapture();
+		}
+		catch (Throwable t) {
+			return fail(t);
+		}
+	}
+
+	@Override
+	public final Object attach(Object captured) {
+		try {
+			return doAttach(captured);
+		}
+		catch (Throwable t) {
+			return fail(t);
+		}
+	}
+
+	@Override
+	public final void detach(Object token) {
+		try {
+			doDetach(token);
+		}
+		catch (Throwable t) {
+			fail(t);
+		}
+	}
+
+	abstract Object doCapture() throws Throwable;
+
+	abstract Object doAttach(Object captured) throws Throwable;
+
+	abstract void doDetach(Object token) throws Throwable;
+
+	// Tracing code should never break an application - stop propagating for this library instead.
+	private Object fail(Throwable t) {
+		if (!failed) {
+			failed = true;
+			System.err.println("Context propagation for " + libraryName + " disabled: " + t);
+		}
+		return null;
+	}
+
+	static Class<?> load(ClassLoader loader, String className) throws ClassNotFoundException {
+		return Class.forName(className, false, loader);
+	}
+
+	/**
+	 * Looks up a static method and adapts it to take and return {@code Object} so it can be called with
+	 * {@code invokeExact} without knowing the library's types.
+	 */
+	static MethodHandle staticMethod(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes)
+		throws ReflectiveOperationException {
+		MethodHandle handle = LOOKUP.findStatic(owner, name, MethodType.methodType(returnType, parameterTypes));
+		return handle.asType(handle.type().generic());
+	}
+
+	/**
+	 * Looks up an instance method and adapts it to take and return {@code Object} (or {@code void}).
+	 */
+	static MethodHandle virtualMethod(Class<?> owner, String name, Class<?> returnType, Class<?>... parameterTypes)
+		throws ReflectiveOperationException {
+		MethodHandle handle = LOOKUP.findVirtual(owner, name, MethodType.methodType(returnType, parameterTypes));
+		MethodType generic = handle.type().generic();
+		if (returnType == void.class) {
+			generic = generic.changeReturnType(void.class);
+		}
+		return handle.asType(generic);
+	}
+}
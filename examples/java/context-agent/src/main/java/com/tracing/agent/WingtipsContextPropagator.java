@@ -0,0 +1,47 @@
+package com.tracing.agent;
+
+import java.lang.invoke.MethodHandle;
+import java.util.Deque;
+
+/**
+ * Propagates the Wingtips span stack, the same way Wingtips' own {@code RunnableWithTracing} does.
+ */
+final class WingtipsContextPropagator extends ReflectiveContextPropagator {
+
+	private final MethodHandle getInstance;
+	private final MethodHandle getCurrentSpanStackCopy;
+	private final MethodHandle registerWithThread;
+	private final MethodHandle unregisterFromThread;
+
+	WingtipsContextPropagator(ClassLoader loader) throws ReflectiveOperationException {
+		super("Wingtips");
+		Class<?> tracer = load(loader, "com.nike.wingtips.Tracer");
+		getInstance = staticMethod(tracer, "getInstance", tracer);
+		getCurrentSpanStackCopy = virtualMethod(tracer, "getCurrentSpanStackCopy", Deque.class);
+		registerWithThread = virtualMethod(tracer, "registerWithThread", void.class, Deque.class);
+		unregisterFromThread = virtualMethod(tracer, "unregisterFromThread", Deque.class);
+	}
+
+	@Override
+	Object doCapture() throws Throwable {
+		Object spanStack = (Object) getCurrentSpanStackCopy.invokeExact((Object) getInstance.invokeExact());
+		return spanStack == null || ((Deque<?>) spanStack).isEmpty() ? null : spanStack;
+	}
+
+	@Override
+	Object doAttach(Object captured) throws Throwable {
+		Object tracer = (Object) getInstance.invokeExact();
+		Object previousSpanStack = (Object) unregisterFromThread.invokeExact(tracer);
+		registerWithThread.invokeExact(tracer, captured);
+		return previousSpanStack;
+	}
+
+	@Override
+	void doDetach(Object token) throws Throwable {
+		Object tracer = (Object) getInstance.invokeExact();
+		Object ignored = (Object) unregisterFromThread.invokeExact(tracer);
+		if (token != null) {
+			registerWithThread.invokeExact(tracer, token);
+		}
+	}
+}
@@ -7,6 +7,7 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URL;
+import java.sql.SQLException;
 import java.util.List;
 
 import com.sun.net.httpserver.HttpExchange;
@@ -23,6 +24,9 @@ import com.dynatrace.oneagent.sdk.api.enums.ChannelType;
 import com.dynatrace.oneagent.sdk.api.enums.DatabaseVendor;
 import com.dynatrace.oneagent.sdk.api.infos.DatabaseInfo;
 import com.dynatrace.oneagent.sdk.api.infos.WebApplicationInfo;
+import com.tracing.db.DatabaseConnection;
+import com.tracing.db.ExampleDatabase;
+import com.tracing.db.QueryResult;
 
 /**
  * Single self contained example for a distributed micro application to
@@ -37,6 +41,10 @@ public class TraceExample {
 	// If OneAgent is not present, OneAgentSDK will be inactive.
 	private static OneAgentSDK oneAgentSdk;
 
+	// in-process stand-in for the database PathBHandler queries, with a connection pool and per-statement latencies,
+	// see ExampleDatabase
+	private static final ExampleDatabase DATABASE = ExampleDatabase.fromSystemProperties();
+
 	public static void main(String[] args) {
 		oneAgentSdk = OneAgentSDKFactory.createInstance();
 		logSdkStatus();
@@ -229,17 +237,29 @@ public class TraceExample {
 		}
 
 		public void fakeDBCall(String statement) {
+			// waiting for a pooled connection is not part of the database request, so it happens before the tracer
+			// starts; the time shows up in the web request tracer around it
+			DatabaseConnection connection;
+			try {
+				connection = DATABASE.getConnection();
+			} catch (SQLException e) {
+				e.printStackTrace();
+				return;
+			}
 			DatabaseRequestTracer tracer = oneAgentSdk.traceSQLDatabaseRequest(databaseInfo, statement);
 
 			tracer.start();
 			try {
 				// this is just to simulate a fake database call
+				QueryResult result = connection.query(statement);
+				tracer.setRowsReturned(result.rowCount());
 				System.out.println("Fake DB was called with statement " + statement);
 			} catch (Exception e) {
 				tracer.error(e);
 				e.printStackTrace();
 			} finally {
 				tracer.end();
+				connection.close();
 			}
 		}
 	}
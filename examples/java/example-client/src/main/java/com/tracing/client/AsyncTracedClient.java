@@ -0,0 +1,209 @@
+package com.tracing.client;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A traced HTTP client for the examples' client side on {@link HttpClient}, as an alternative to opening a new
+ * HttpURLConnection per request and reading its body line by line.
+ *
+ * <p>All requests share one HttpClient, which keeps idle HTTP/1.1 connections open and reuses them, so the client
+ * spans measure the request rather than the TCP handshake. Requests are sent with {@code sendAsync}: the calling
+ * thread only starts the span and hands the request over, the span is finished in the completion callback and the
+ * response body is discarded as it arrives. At most {@code maxConnections} requests are in flight - and therefore at
+ * most that many connections open; further requests are queued and sent as earlier ones complete, without blocking
+ * the caller.
+ *
+ * <pre>
+ * AsyncTracedClient client = AsyncTracedClient.fromSystemProperties("http://localhost:8000");
+ * client.send("pathA", spanHandler).thenAccept(status -&gt; ...);
+ * </pre>
+ *
+ * An example switches to it with {@code -Dexample.client=async} ({@link #CLIENT_PROPERTY}), sized with
+ * {@code -Dexample.client.maxConnections}. This module needs Java 11; an example that runs on Java 8 otherwise must
+ * check the property itself and only load this class when it is set.
+ */
+public final class AsyncTracedClient {
+
+	public static final String CLIENT_PROPERTY = "example.client";
+	public static final String MAX_CONNECTIONS_PROPERTY = "example.client.maxConnections";
+
+	private final HttpClient client;
+	private final URI baseUri;
+	private final Duration timeout;
+	private final Semaphore connections;
+	private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+	private final ConcurrentHashMap<String, URI> uris = new ConcurrentHashMap<>();
+
+	private AsyncTracedClient(Builder builder) {
+		HttpClient.Builder client = HttpClient.newBuilder()
+				// the example servers speak HTTP/1.1 only, this also avoids the h2c upgrade headers
+				.version(HttpClient.Version.HTTP_1_1)
+				.connectTimeout(builder.timeout);
+		if (builder.executor != null) {
+			client.executor(builder.executor);
+		}
+		this.client = client.build();
+		this.baseUri = URI.create(builder.baseUrl.endsWith("/") ? builder.baseUrl : builder.baseUrl + "/");
+		this.timeout = builder.timeout;
+		this.connections = new Semaphore(builder.maxConnections);
+	}
+
+	/**
+	 * @param baseUrl e.g. {@code http://localhost:8000}
+	 */
+	public static Builder newBuilder(String baseUrl) {
+		return new Builder(baseUrl);
+	}
+
+	/**
+	 * Configures a client from the {@code example.client.*} system properties.
+	 */
+	public static AsyncTracedClient fromSystemProperties(String baseUrl) {
+		return newBuilder(baseUrl).maxConnections(Integer.getInteger(MAX_CONNECTIONS_PROPERTY, 64)).build();
+	}
+
+	/**
+	 * Sends a GET request for {@code path} (without a leading slash) within a client span.
+	 *
+	 * @return completes with the HTTP status once the response was read, or exceptionally if the request failed
+	 */
+	public <S> CompletableFuture<Integer> send(String path, ClientSpanHandler<S> spanHandler) {
+		CompletableFuture<Integer> result = new CompletableFuture<>();
+		if (connections.tryAcquire()) {
+			sendNow(path, spanHandler, result);
+		} else {
+			waiting.add(() -> sendNow(path, spanHandler, result));
+			sendWaiting();
+		}
+		return result;
+	}
+
+	/**
+	 * @return the number of requests waiting for a connection
+	 */
+	public int waitingCount() {
+		return waiting.size();
+	}
+
+	// Called with a connection permit, which is released when the response arrived
+	private <S> void sendNow(String path, ClientSpanHandler<S> spanHandler, CompletableFuture<Integer> result) {
+		URI uri = uris.computeIfAbsent(path, baseUri::resolve);
+		S span;
+		try {
+			span = spanHandler.start("GET", uri);
+		} catch (RuntimeException e) {
+			connections.release();
+			sendWaiting();
+			result.completeExceptionally(e);
+			return;
+		}
+		HttpRequest request;
+		try {
+			HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(timeout).GET();
+			spanHandler.inject(span, builder::header);
+			request = builder.build();
+		} catch (RuntimeException e) {
+			complete(spanHandler, span, 0, e, result);
+			return;
+		}
+		CompletableFuture<HttpResponse<Void>> response;
+		try {
+			response = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+		} catch (RuntimeException e) {
+			// e.g. a header the client does not allow: there is no callback to release the permit
+			complete(spanHandler, span, 0, e, result);
+			return;
+		}
+		response.whenComplete((received, error) ->
+				complete(spanHandler, span, received == null ? 0 : received.statusCode(), unwrap(error), result));
+	}
+
+	private <S> void complete(ClientSpanHandler<S> spanHandler, S span, int statusCode, Throwable error,
+			CompletableFuture<Integer> result) {
+		try {
+			spanHandler.finish(span, statusCode, error);
+		} finally {
+			connections.release();
+			sendWaiting();
+		}
+		if (error == null) {
+			result.complete(statusCode);
+		} else {
+			result.completeExceptionally(error);
+		}
+	}
+
+	private void sendWaiting() {
+		while (!waiting.isEmpty() && connections.tryAcquire()) {
+			Runnable next = waiting.poll();
+			if (next == null) {
+				// another thread took it in the meantime
+				connections.release();
+				return;
+			}
+			next.run();
+		}
+	}
+
+	private static Throwable unwrap(Throwable error) {
+		return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+	}
+
+	public static final class Builder {
+
+		private final String baseUrl;
+		private int maxConnections = 64;
+		private Duration timeout = Duration.ofSeconds(10);
+		private Executor executor;
+
+		private Builder(String baseUrl) {
+			this.baseUrl = baseUrl;
+		}
+
+		/**
+		 * The most requests in flight, and therefore connections open, at once.
+		 */
+		public Builder maxConnections(int maxConnections) {
+			if (maxConnections <= 0) {
+				throw new IllegalArgumentException("Max connections must be positive: " + maxConnections);
+			}
+			this.maxConnections = maxConnections;
+			return this;
+		}
+
+		/**
+		 * Timeout for connecting and for each request.
+		 */
+		public Builder timeout(Duration timeout) {
+			if (timeout.isNegative() || timeout.isZero()) {
+				throw new IllegalArgumentException("Timeout must be positive: " + timeout);
+			}
+			this.timeout = timeout;
+			return this;
+		}
+
+		/**
+		 * The executor the HttpClient runs its callbacks on, and with them {@link ClientSpanHandler#finish}; by
+		 * default the HttpClient's own cached thread pool.
+		 */
+		public Builder executor(Executor executor) {
+			this.executor = executor;
+			return this;
+		}
+
+		public AsyncTracedClient build() {
+			return new AsyncTracedClient(this);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package com.tracing.client;
+
+import java.net.URI;
+import java.util.function.BiConsumer;
+
+/**
+ * The tracer-specific part of an {@link AsyncTracedClient} request: starts the client span, writes its context into
+ * the request headers and finishes it when the response arrived. {@code S} is whatever the tracer needs to finish the
+ * span later, usually the span itself. None of it refers to {@code java.net.http}, so an example on Java 8 can
+ * implement it and only needs Java 11 when it actually sends with the client.
+ *
+ * <p>Nothing here may rely on a thread-local scope: {@link #start} runs on the thread that sends the request, but
+ * {@link #finish} runs in the client's completion callback, on one of its executor threads.
+ */
+public interface ClientSpanHandler<S> {
+
+	/**
+	 * Starts the client span of a request that is about to be sent.
+	 */
+	S start(String method, URI uri);
+
+	/**
+	 * Adds the trace context of {@code span} to the request, e.g. B3 or W3C headers or a vendor's own tag.
+	 *
+	 * @param header sets a request header, name first
+	 */
+	void inject(S span, BiConsumer<String, String> header);
+
+	/**
+	 * Finishes the span once the response has been read completely, or the request failed.
+	 *
+	 * @param statusCode the HTTP status, 0 if there is no response
+	 * @param error why the request failed, null if there is a response
+	 */
+	void finish(S span, int statusCode, Throwable error);
+}
@@ -0,0 +1,57 @@
+package com.tracing.db;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A connection taken from the {@link ExampleDatabase} pool. Closing it returns it to the pool; it cannot be used
+ * afterwards.
+ */
+public final class DatabaseConnection implements AutoCloseable {
+
+	private final ExampleDatabase database;
+	private final AtomicBoolean closed = new AtomicBoolean();
+
+	DatabaseConnection(ExampleDatabase database) {
+		this.database = database;
+	}
+
+	/**
+	 * Runs a query, holding this connection - and the calling thread - for the statement's latency.
+	 *
+	 * @param parameters the values of the statement's {@code ?} placeholders, in order
+	 * @throws java.sql.SQLSyntaxErrorException if the statement is not supported or reads a table or column that does
+	 * 		not exist
+	 */
+	public QueryResult query(String statement, Object... parameters) throws SQLException {
+		if (closed.get()) {
+			throw new SQLException("Connection is closed");
+		}
+		Query query = database.parse(statement);
+		Table table = database.table(query.tableName());
+		long latencyNanos = query.latency().nextNanos();
+		long deadline = System.nanoTime() + latencyNanos;
+		QueryResult result = query.execute(table, parameters);
+		// like a database waiting for its disk: the thread is blocked, not busy
+		for (long remaining = latencyNanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+			LockSupport.parkNanos(remaining);
+			if (Thread.interrupted()) {
+				Thread.currentThread().interrupt();
+				throw new SQLTimeoutException("Interrupted while executing " + statement);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the connection to the pool; closing it again does nothing.
+	 */
+	@Override
+	public void close() {
+		if (closed.compareAndSet(false, true)) {
+			database.release();
+		}
+	}
+}
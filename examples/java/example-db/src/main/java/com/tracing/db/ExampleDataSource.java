@@ -0,0 +1,89 @@
+package com.tracing.db;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * A JDBC view on an {@link ExampleDatabase}, for code written against JDBC rather than the database's own API:
+ *
+ * <pre>
+ * DataSource dataSource = new ExampleDataSource(ExampleDatabase.fromSystemProperties());
+ * try (Connection connection = dataSource.getConnection();
+ *         PreparedStatement statement = connection.prepareStatement("select * from table where id = ?")) {
+ *     statement.setLong(1, 7);
+ *     try (ResultSet rows = statement.executeQuery()) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ *
+ * {@link #getConnection()} takes a connection from the database's pool, closing it returns it. Only what the
+ * examples need is implemented: prepared and plain statements, parameters set with setLong/setInt/setString/setObject,
+ * reading a ResultSet forward by column index or label, and the URL and product name of the DatabaseMetaData. Anything
+ * else throws SQLFeatureNotSupportedException; transactions are accepted and ignored, as the data is read-only.
+ */
+public final class ExampleDataSource implements DataSource {
+
+	public static final String URL_PREFIX = "jdbc:example:";
+	public static final String PRODUCT_NAME = "ExampleDatabase";
+
+	private final ExampleDatabase database;
+
+	public ExampleDataSource(ExampleDatabase database) {
+		this.database = database;
+	}
+
+	public ExampleDatabase database() {
+		return database;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return StandInJdbc.connection(database, database.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return getConnection();
+	}
+
+	@Override
+	public PrintWriter getLogWriter() {
+		return null;
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) {
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) {
+	}
+
+	@Override
+	public int getLoginTimeout() {
+		return 0;
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		throw new SQLFeatureNotSupportedException("No java.util.logging");
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> type) throws SQLException {
+		if (type.isInstance(this)) {
+			return type.cast(this);
+		}
+		throw new SQLException("Not a wrapper for " + type.getName());
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> type) {
+		return type.isInstance(this);
+	}
+}
@@ -0,0 +1,277 @@
+package com.tracing.db;
+
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process stand-in for the database behind the examples' fakeDBCall, so database spans cover real work without
+ * an external database.
+ *
+ * <p>Like a real client it hands out connections from a bounded pool: once all {@code poolSize} connections are in
+ * use, {@link #getConnection()} waits for one to be returned - the pool wait a load test should see - and gives up
+ * with an {@link SQLTransientConnectionException} after {@code poolTimeout}. A query holds its connection for a
+ * latency drawn from the statement's {@link LatencyDistribution} and returns actual rows, so instrumentation can
+ * record the row count:
+ *
+ * <pre>
+ * static final ExampleDatabase DATABASE = ExampleDatabase.fromSystemProperties();
+ * ...
+ * try (DatabaseConnection connection = DATABASE.getConnection()) {
+ *     QueryResult result = connection.query("select * from table");
+ *     tracer.setRowsReturned(result.rowCount());
+ * }
+ * </pre>
+ *
+ * configured with {@code -Dexample.db.poolSize=10 -Dexample.db.poolTimeout=1000 -Dexample.db.rows=25} and
+ * {@code -Dexample.db.latency="lognormal:2ms:0.5;select * from table where id = 1=fixed:1ms"}: a default distribution
+ * and any number of {@code statement=distribution} overrides, separated by semicolons.
+ */
+public final class ExampleDatabase {
+
+	public static final String POOL_SIZE_PROPERTY = "example.db.poolSize";
+	public static final String POOL_TIMEOUT_PROPERTY = "example.db.poolTimeout";
+	public static final String LATENCY_PROPERTY = "example.db.latency";
+	public static final String ROWS_PROPERTY = "example.db.rows";
+
+	public static final String DEFAULT_NAME = "mySampleDb";
+	public static final String SAMPLE_TABLE = "table";
+
+	// statements are parsed once; arbitrary statement texts cannot grow the cache beyond this
+	private static final int MAX_CACHED_QUERIES = 256;
+
+	private final String name;
+	private final int poolSize;
+	private final long poolTimeoutNanos;
+	private final Semaphore connections;
+	private final LatencyDistribution defaultLatency;
+	private final Map<String, LatencyDistribution> statementLatencies;
+	private final Map<String, Table> tables;
+	private final ConcurrentMap<String, Query> queries = new ConcurrentHashMap<>();
+
+	private ExampleDatabase(Builder builder) {
+		this.name = builder.name;
+		this.poolSize = builder.poolSize;
+		this.poolTimeoutNanos = builder.poolTimeoutNanos;
+		// fair, so a waiting request is not overtaken by one that just arrived
+		this.connections = new Semaphore(builder.poolSize, true);
+		this.defaultLatency = builder.defaultLatency;
+		this.statementLatencies = new HashMap<>(builder.statementLatencies);
+		this.tables = new LinkedHashMap<>();
+		for (Table table : builder.tables.values()) {
+			tables.put(table.name().toLowerCase(Locale.ROOT), table);
+		}
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * Configures a database from the {@code example.db.*} system properties. It has one table,
+	 * {@value #SAMPLE_TABLE}, with {@code -Dexample.db.rows} rows of id, name and amount.
+	 */
+	public static ExampleDatabase fromSystemProperties() {
+		return newBuilder()
+				.poolSize(Integer.getInteger(POOL_SIZE_PROPERTY, 10))
+				.poolTimeout(Long.getLong(POOL_TIMEOUT_PROPERTY, 1000), TimeUnit.MILLISECONDS)
+				.latencies(System.getProperty(LATENCY_PROPERTY, "lognormal:2ms:0.5"))
+				.sampleTable(SAMPLE_TABLE, Integer.getInteger(ROWS_PROPERTY, 25))
+				.build();
+	}
+
+	/**
+	 * Takes a connection from the pool, waiting up to the pool timeout for one to be returned.
+	 *
+	 * @throws SQLTransientConnectionException if no connection became available in time
+	 */
+	public DatabaseConnection getConnection() throws SQLException {
+		try {
+			if (!connections.tryAcquire(poolTimeoutNanos, TimeUnit.NANOSECONDS)) {
+				throw new SQLTransientConnectionException("No connection available within "
+						+ TimeUnit.NANOSECONDS.toMillis(poolTimeoutNanos) + " ms, all " + poolSize + " in use");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+		}
+		return new DatabaseConnection(this);
+	}
+
+	/**
+	 * @return the name instrumentation reports as the database instance, e.g. {@code db.instance}
+	 */
+	public String name() {
+		return name;
+	}
+
+	public int poolSize() {
+		return poolSize;
+	}
+
+	/**
+	 * @return the connections in the pool right now, i.e. not handed out
+	 */
+	public int idleConnections() {
+		return connections.availablePermits();
+	}
+
+	/**
+	 * @return an estimate of the threads waiting for a connection
+	 */
+	public int waitingThreads() {
+		return connections.getQueueLength();
+	}
+
+	void release() {
+		connections.release();
+	}
+
+	Query parse(String statement) throws SQLSyntaxErrorException {
+		Query query = queries.get(statement);
+		if (query == null) {
+			query = Query.parse(statement, latency(statement));
+			if (queries.size() < MAX_CACHED_QUERIES) {
+				queries.putIfAbsent(statement, query);
+			}
+		}
+		return query;
+	}
+
+	Table table(String tableName) throws SQLSyntaxErrorException {
+		Table table = tables.get(tableName.toLowerCase(Locale.ROOT));
+		if (table == null) {
+			throw new SQLSyntaxErrorException("Table " + tableName + " does not exist in " + name);
+		}
+		return table;
+	}
+
+	LatencyDistribution latency(String statement) {
+		LatencyDistribution latency = statementLatencies.get(normalize(statement));
+		return latency == null ? defaultLatency : latency;
+	}
+
+	// Statements match their latency override regardless of case and whitespace
+	static String normalize(String statement) {
+		return statement.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+	}
+
+	@Override
+	public String toString() {
+		List<String> tableNames = new ArrayList<>();
+		for (Table table : tables.values()) {
+			tableNames.add(table.name() + " (" + table.rows().size() + " rows)");
+		}
+		return name + " " + tableNames + ", pool of " + poolSize + ", latency " + defaultLatency
+				+ (statementLatencies.isEmpty() ? "" : " " + statementLatencies);
+	}
+
+	public static final class Builder {
+
+		private String name = DEFAULT_NAME;
+		private int poolSize = 10;
+		private long poolTimeoutNanos = TimeUnit.SECONDS.toNanos(1);
+		private LatencyDistribution defaultLatency = LatencyDistribution.none();
+		private final Map<String, LatencyDistribution> statementLatencies = new HashMap<>();
+		private final Map<String, Table> tables = new LinkedHashMap<>();
+
+		private Builder() {
+		}
+
+		public Builder name(String name) {
+			this.name = name;
+			return this;
+		}
+
+		/**
+		 * The number of connections, i.e. how many queries can run at once.
+		 */
+		public Builder poolSize(int poolSize) {
+			if (poolSize <= 0) {
+				throw new IllegalArgumentException("Pool size must be positive: " + poolSize);
+			}
+			this.poolSize = poolSize;
+			return this;
+		}
+
+		/**
+		 * How long {@link ExampleDatabase#getConnection()} waits for a connection before it fails.
+		 */
+		public Builder poolTimeout(long timeout, TimeUnit unit) {
+			if (timeout < 0) {
+				throw new IllegalArgumentException("Pool timeout must not be negative: " + timeout);
+			}
+			this.poolTimeoutNanos = unit.toNanos(timeout);
+			return this;
+		}
+
+		/**
+		 * The latency of statements without an override of their own.
+		 */
+		public Builder defaultLatency(LatencyDistribution latency) {
+			this.defaultLatency = latency;
+			return this;
+		}
+
+		/**
+		 * The latency of {@code statement}; case and whitespace do not matter.
+		 */
+		public Builder latency(String statement, LatencyDistribution latency) {
+			statementLatencies.put(normalize(statement), latency);
+			return this;
+		}
+
+		/**
+		 * Parses latencies in the form of {@code -Dexample.db.latency}: a default distribution and
+		 * {@code statement=distribution} overrides, separated by semicolons. The distribution follows the last
+		 * {@code =}, so the statement may contain one.
+		 */
+		public Builder latencies(String specification) {
+			for (String entry : specification.split(";")) {
+				if (entry.trim().isEmpty()) {
+					continue;
+				}
+				int separator = entry.lastIndexOf('=');
+				if (separator < 0) {
+					defaultLatency(LatencyDistribution.parse(entry));
+				} else {
+					latency(entry.substring(0, separator), LatencyDistribution.parse(entry.substring(separator + 1)));
+				}
+			}
+			return this;
+		}
+
+		/**
+		 * Adds a table; every row holds one Long or String per column.
+		 */
+		public Builder table(String tableName, List<String> columnNames, List<Object[]> rows) {
+			tables.put(tableName, new Table(tableName, columnNames, rows));
+			return this;
+		}
+
+		/**
+		 * Adds a table of {@code rows} rows with the columns id, name and amount.
+		 */
+		public Builder sampleTable(String tableName, int rows) {
+			if (rows < 0) {
+				throw new IllegalArgumentException("Row count must not be negative: " + rows);
+			}
+			tables.put(tableName, Table.sample(tableName, rows));
+			return this;
+		}
+
+		public ExampleDatabase build() {
+			return new ExampleDatabase(this);
+		}
+	}
+}
@@ -0,0 +1,166 @@
+package com.tracing.db;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long the {@link ExampleDatabase} takes to execute a statement. Real database latencies are skewed: most calls
+ * are close to the median, a few take many times as long - {@link #logNormal} models that, {@link #fixed} is the
+ * sleep the examples used to have.
+ *
+ * <p>{@link #parse(String)} reads the forms used in {@code -Dexample.db.latency}:
+ *
+ * <pre>
+ * none                   no latency at all
+ * fixed:100ms            always 100 ms
+ * uniform:1ms:10ms       anything between 1 and 10 ms, equally likely
+ * exponential:5ms        5 ms on average, memoryless
+ * lognormal:5ms:0.5      median 5 ms, log-space standard deviation 0.5 (p99 is about 16 ms)
+ * </pre>
+ *
+ * Durations take the units ns, us, ms and s.
+ */
+public abstract class LatencyDistribution {
+
+	private final String description;
+
+	private LatencyDistribution(String description) {
+		this.description = description;
+	}
+
+	/**
+	 * @return the latency of the next statement, in nanoseconds
+	 */
+	public abstract long nextNanos();
+
+	@Override
+	public String toString() {
+		return description;
+	}
+
+	public static LatencyDistribution none() {
+		return fixed(0, TimeUnit.NANOSECONDS);
+	}
+
+	public static LatencyDistribution fixed(long duration, TimeUnit unit) {
+		long nanos = nonNegative(unit.toNanos(duration));
+		return new LatencyDistribution("fixed:" + nanos + "ns") {
+			@Override
+			public long nextNanos() {
+				return nanos;
+			}
+		};
+	}
+
+	public static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+		long minNanos = nonNegative(unit.toNanos(min));
+		long maxNanos = nonNegative(unit.toNanos(max));
+		if (maxNanos < minNanos) {
+			throw new IllegalArgumentException("Maximum latency below minimum: " + max + " < " + min);
+		}
+		return new LatencyDistribution("uniform:" + minNanos + "ns:" + maxNanos + "ns") {
+			@Override
+			public long nextNanos() {
+				return minNanos + (long) (ThreadLocalRandom.current().nextDouble() * (maxNanos - minNanos));
+			}
+		};
+	}
+
+	public static LatencyDistribution exponential(long mean, TimeUnit unit) {
+		long meanNanos = nonNegative(unit.toNanos(mean));
+		return new LatencyDistribution("exponential:" + meanNanos + "ns") {
+			@Override
+			public long nextNanos() {
+				// 1 - nextDouble() is in (0, 1], so the logarithm is finite
+				return (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * meanNanos);
+			}
+		};
+	}
+
+	/**
+	 * @param sigma the standard deviation of the latency's logarithm: 0 is always the median, 1 has a p99 ten times
+	 * 		the median
+	 */
+	public static LatencyDistribution logNormal(long median, TimeUnit unit, double sigma) {
+		long medianNanos = nonNegative(unit.toNanos(median));
+		if (sigma < 0 || Double.isNaN(sigma)) {
+			throw new IllegalArgumentException("Sigma must not be negative: " + sigma);
+		}
+		return new LatencyDistribution("lognormal:" + medianNanos + "ns:" + sigma) {
+			@Override
+			public long nextNanos() {
+				return (long) (medianNanos * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+			}
+		};
+	}
+
+	/**
+	 * Parses a distribution such as {@code lognormal:5ms:0.5}, see the class comment for the forms.
+	 */
+	public static LatencyDistribution parse(String text) {
+		String[] parts = text.trim().split(":");
+		try {
+			switch (parts[0].trim().toLowerCase(Locale.ROOT)) {
+				case "none":
+					if (parts.length == 1) {
+						return none();
+					}
+					break;
+				case "fixed":
+					if (parts.length == 2) {
+						return fixed(parseNanos(parts[1]), TimeUnit.NANOSECONDS);
+					}
+					break;
+				case "uniform":
+					if (parts.length == 3) {
+						return uniform(parseNanos(parts[1]), parseNanos(parts[2]), TimeUnit.NANOSECONDS);
+					}
+					break;
+				case "exponential":
+					if (parts.length == 2) {
+						return exponential(parseNanos(parts[1]), TimeUnit.NANOSECONDS);
+					}
+					break;
+				case "lognormal":
+					if (parts.length == 3) {
+						return logNormal(parseNanos(parts[1]), TimeUnit.NANOSECONDS, Double.parseDouble(parts[2].trim()));
+					}
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown latency distribution " + text);
+			}
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid latency distribution " + text, e);
+		}
+		throw new IllegalArgumentException("Wrong number of parameters for latency distribution " + text);
+	}
+
+	static long parseNanos(String text) {
+		String duration = text.trim().toLowerCase(Locale.ROOT);
+		int unitStart = duration.length();
+		while (unitStart > 0 && Character.isLetter(duration.charAt(unitStart - 1))) {
+			unitStart--;
+		}
+		double value = Double.parseDouble(duration.substring(0, unitStart));
+		switch (duration.substring(unitStart)) {
+			case "ns":
+				return (long) value;
+			case "us":
+				return (long) (value * 1_000);
+			case "ms":
+				return (long) (value * 1_000_000);
+			case "s":
+				return (long) (value * 1_000_000_000);
+			default:
+				throw new IllegalArgumentException("Duration needs a unit of ns, us, ms or s: " + text);
+		}
+	}
+
+	private static long nonNegative(long nanos) {
+		if (nanos < 0) {
+			throw new IllegalArgumentException("Latency must not be negative: " + nanos + " ns");
+		}
+		return nanos;
+	}
+}
@@ -0,0 +1,139 @@
+package com.tracing.db;
+
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A parsed statement. The stand-in understands just enough SQL for the examples:
+ *
+ * <pre>
+ * select * | column, ... from table [where column = 'text' | number | ?] [limit n]
+ * </pre>
+ *
+ * A {@code ?} takes its value from the parameter the statement is executed with.
+ */
+final class Query {
+
+	private static final Pattern SELECT = Pattern.compile(
+			"\\s*select\\s+(.+?)\\s+from\\s+(\\w+)"
+					+ "(?:\\s+where\\s+(\\w+)\\s*=\\s*('(?:[^']|'')*'|-?\\d+|\\?))?"
+					+ "(?:\\s+limit\\s+(\\d+))?\\s*;?\\s*",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+	// stands for the where value of "where column = ?"
+	private static final Object PARAMETER = new Object();
+
+	private final String tableName;
+	// null for "*"
+	private final List<String> columns;
+	private final String whereColumn;
+	private final Object whereValue;
+	private final int limit;
+	private final LatencyDistribution latency;
+
+	private Query(String tableName, List<String> columns, String whereColumn, Object whereValue, int limit,
+			LatencyDistribution latency) {
+		this.tableName = tableName;
+		this.columns = columns;
+		this.whereColumn = whereColumn;
+		this.whereValue = whereValue;
+		this.limit = limit;
+		this.latency = latency;
+	}
+
+	static Query parse(String statement, LatencyDistribution latency) throws SQLSyntaxErrorException {
+		Matcher matcher = SELECT.matcher(statement);
+		if (!matcher.matches()) {
+			throw new SQLSyntaxErrorException("Unsupported statement: " + statement);
+		}
+		List<String> columns = null;
+		if (!matcher.group(1).trim().equals("*")) {
+			columns = new ArrayList<>();
+			for (String column : matcher.group(1).split(",")) {
+				columns.add(column.trim());
+			}
+		}
+		Object whereValue = null;
+		String literal = matcher.group(4);
+		if ("?".equals(literal)) {
+			whereValue = PARAMETER;
+		} else if (literal != null) {
+			whereValue = literal.startsWith("'")
+					? literal.substring(1, literal.length() - 1).replace("''", "'")
+					: (Object) Long.valueOf(literal);
+		}
+		int limit = matcher.group(5) == null ? Integer.MAX_VALUE : Integer.parseInt(matcher.group(5));
+		return new Query(matcher.group(2), columns, matcher.group(3), whereValue, limit, latency);
+	}
+
+	String tableName() {
+		return tableName;
+	}
+
+	LatencyDistribution latency() {
+		return latency;
+	}
+
+	int parameterCount() {
+		return whereValue == PARAMETER ? 1 : 0;
+	}
+
+	/**
+	 * @param parameters one value per {@code ?}, a String or a whole number of any type
+	 */
+	QueryResult execute(Table table, Object... parameters) throws SQLException {
+		if (parameters.length != parameterCount()) {
+			throw new SQLException("Statement takes " + parameterCount() + " parameters, got " + parameters.length);
+		}
+		Object whereValue = this.whereValue;
+		if (whereValue == PARAMETER) {
+			whereValue = parameters[0];
+			if (whereValue instanceof Integer || whereValue instanceof Short || whereValue instanceof Byte) {
+				whereValue = ((Number) whereValue).longValue();
+			}
+		}
+		int[] projection = null;
+		List<String> columnNames = table.columnNames();
+		if (columns != null) {
+			projection = new int[columns.size()];
+			for (int i = 0; i < projection.length; i++) {
+				projection[i] = table.columnIndex(columns.get(i));
+			}
+			columnNames = new ArrayList<>(columns);
+		}
+		int whereIndex = whereColumn == null ? -1 : table.columnIndex(whereColumn);
+
+		List<Object[]> rows = new ArrayList<>();
+		for (Object[] row : table.rows()) {
+			if (rows.size() >= limit) {
+				break;
+			}
+			if (whereIndex >= 0 && !row[whereIndex].equals(whereValue)) {
+				continue;
+			}
+			rows.add(projection == null ? row : project(row, projection));
+		}
+		return new QueryResult(Collections.unmodifiableList(columnNames), rows);
+	}
+
+	private static Object[] project(Object[] row, int[] projection) {
+		Object[] projected = new Object[projection.length];
+		for (int i = 0; i < projection.length; i++) {
+			projected[i] = row[projection[i]];
+		}
+		return projected;
+	}
+
+	@Override
+	public String toString() {
+		return "select " + (columns == null ? "*" : String.join(", ", columns)) + " from " + tableName
+				+ (whereColumn == null ? "" : " where " + whereColumn + " = "
+						+ (whereValue == PARAMETER ? "?" : whereValue))
+				+ (limit == Integer.MAX_VALUE ? "" : " limit " + limit);
+	}
+}
@@ -0,0 +1,36 @@
+package com.tracing.db;
+
+import java.util.List;
+
+/**
+ * The rows a query returned, as a read-only table: {@code get(row, column)} with both indexes starting at 0.
+ */
+public final class QueryResult {
+
+	private final List<String> columnNames;
+	private final List<Object[]> rows;
+
+	QueryResult(List<String> columnNames, List<Object[]> rows) {
+		this.columnNames = columnNames;
+		this.rows = rows;
+	}
+
+	public List<String> columnNames() {
+		return columnNames;
+	}
+
+	public int columnCount() {
+		return columnNames.size();
+	}
+
+	public int rowCount() {
+		return rows.size();
+	}
+
+	/**
+	 * @return a Long or a String, never null
+	 */
+	public Object get(int row, int column) {
+		return rows.get(row)[column];
+	}
+}
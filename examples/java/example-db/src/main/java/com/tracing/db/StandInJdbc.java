@@ -0,0 +1,365 @@
+package com.tracing.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+/**
+ * The JDBC objects of {@link ExampleDataSource}. They are dynamic proxies: the few methods the examples call are
+ * implemented below, all others throw SQLFeatureNotSupportedException.
+ */
+final class StandInJdbc {
+
+	private StandInJdbc() {
+	}
+
+	static Connection connection(ExampleDatabase database, DatabaseConnection pooled) {
+		return proxy(Connection.class, new ConnectionHandler(database, pooled));
+	}
+
+	private static <T> T proxy(Class<T> type, JdbcHandler handler) {
+		handler.proxy = Proxy.newProxyInstance(StandInJdbc.class.getClassLoader(), new Class<?>[] { type }, handler);
+		return type.cast(handler.proxy);
+	}
+
+	/**
+	 * The methods every JDBC object has: close, isClosed, unwrap and those of Object.
+	 */
+	private abstract static class JdbcHandler implements InvocationHandler {
+
+		Object proxy;
+		boolean closed;
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			switch (method.getName()) {
+				case "close":
+					if (!closed) {
+						closed = true;
+						closed();
+					}
+					return null;
+				case "isClosed":
+					return closed;
+				case "unwrap":
+					if (((Class<?>) args[0]).isInstance(proxy)) {
+						return proxy;
+					}
+					throw new SQLException("Not a wrapper for " + ((Class<?>) args[0]).getName());
+				case "isWrapperFor":
+					return ((Class<?>) args[0]).isInstance(proxy);
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "equals":
+					return proxy == args[0];
+				case "toString":
+					return getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+				default:
+					if (closed) {
+						throw new SQLException(method.getDeclaringClass().getSimpleName() + " is closed");
+					}
+					return handle(method, args == null ? new Object[0] : args);
+			}
+		}
+
+		abstract Object handle(Method method, Object[] args) throws SQLException;
+
+		void closed() throws SQLException {
+		}
+
+		static Object unsupported(Method method) throws SQLFeatureNotSupportedException {
+			throw new SQLFeatureNotSupportedException(
+					method.getDeclaringClass().getSimpleName() + "." + method.getName() + " is not supported");
+		}
+	}
+
+	private static final class ConnectionHandler extends JdbcHandler {
+
+		private final ExampleDatabase database;
+		private final DatabaseConnection pooled;
+
+		ConnectionHandler(ExampleDatabase database, DatabaseConnection pooled) {
+			this.database = database;
+			this.pooled = pooled;
+		}
+
+		@Override
+		Object handle(Method method, Object[] args) throws SQLException {
+			switch (method.getName()) {
+				case "prepareStatement":
+					// parsed here, so an unsupported statement fails when it is prepared, as with a real driver
+					Query query = database.parse((String) args[0]);
+					return proxy(PreparedStatement.class,
+							new StatementHandler(this, (String) args[0], query.parameterCount()));
+				case "createStatement":
+					return proxy(Statement.class, new StatementHandler(this, null, 0));
+				case "getMetaData":
+					return proxy(DatabaseMetaData.class, new MetaDataHandler(this));
+				case "nativeSQL":
+					return args[0];
+				case "getAutoCommit":
+				case "isReadOnly":
+				case "isValid":
+					return true;
+				case "getTransactionIsolation":
+					return Connection.TRANSACTION_SERIALIZABLE;
+				case "getWarnings":
+				case "getCatalog":
+				case "getSchema":
+					return null;
+				case "setAutoCommit":
+				case "setReadOnly":
+				case "setTransactionIsolation":
+				case "commit":
+				case "rollback":
+				case "clearWarnings":
+					// the data is read-only, there is nothing to commit
+					return null;
+				default:
+					return unsupported(method);
+			}
+		}
+
+		@Override
+		void closed() {
+			pooled.close();
+		}
+
+		QueryResult query(String statement, Object[] parameters) throws SQLException {
+			if (closed) {
+				throw new SQLException("Connection is closed");
+			}
+			return pooled.query(statement, parameters);
+		}
+	}
+
+	/**
+	 * A Statement, or a PreparedStatement if it has a statement text of its own.
+	 */
+	private static final class StatementHandler extends JdbcHandler {
+
+		private final ConnectionHandler connection;
+		private final String sql;
+		private final Object[] parameters;
+		private Object resultSet;
+
+		StatementHandler(ConnectionHandler connection, String sql, int parameterCount) {
+			this.connection = connection;
+			this.sql = sql;
+			this.parameters = new Object[parameterCount];
+		}
+
+		@Override
+		Object handle(Method method, Object[] args) throws SQLException {
+			switch (method.getName()) {
+				case "setLong":
+				case "setInt":
+				case "setShort":
+				case "setString":
+				case "setObject":
+					int index = (Integer) args[0];
+					if (index < 1 || index > parameters.length) {
+						throw new SQLException("Parameter index " + index + " out of range 1.." + parameters.length);
+					}
+					parameters[index - 1] = args[1];
+					return null;
+				case "clearParameters":
+					Arrays.fill(parameters, null);
+					return null;
+				case "executeQuery":
+					return execute(args);
+				case "execute":
+					execute(args);
+					return true;
+				case "executeUpdate":
+				case "executeLargeUpdate":
+				case "addBatch":
+				case "executeBatch":
+					throw new SQLFeatureNotSupportedException("The example database is read-only");
+				case "getResultSet":
+					return resultSet;
+				case "getUpdateCount":
+					return -1;
+				case "getMoreResults":
+					closeResultSet();
+					return false;
+				case "getConnection":
+					return connection.proxy;
+				case "getFetchSize":
+				case "getMaxRows":
+				case "getQueryTimeout":
+					return 0;
+				case "getWarnings":
+					return null;
+				case "setFetchSize":
+				case "setMaxRows":
+				case "setQueryTimeout":
+				case "setPoolable":
+				case "setEscapeProcessing":
+				case "clearWarnings":
+					return null;
+				default:
+					return unsupported(method);
+			}
+		}
+
+		private Object execute(Object[] args) throws SQLException {
+			closeResultSet();
+			QueryResult result;
+			if (sql != null) {
+				if (args.length > 0) {
+					throw new SQLException("A PreparedStatement executes its own statement");
+				}
+				for (int i = 0; i < parameters.length; i++) {
+					if (parameters[i] == null) {
+						throw new SQLException("Parameter " + (i + 1) + " is not set");
+					}
+				}
+				result = connection.query(sql, parameters.clone());
+			} else {
+				result = connection.query((String) args[0], new Object[0]);
+			}
+			resultSet = proxy(ResultSet.class, new ResultSetHandler(this, result));
+			return resultSet;
+		}
+
+		private void closeResultSet() throws SQLException {
+			if (resultSet != null) {
+				((ResultSet) resultSet).close();
+				resultSet = null;
+			}
+		}
+
+		@Override
+		void closed() throws SQLException {
+			closeResultSet();
+		}
+	}
+
+	private static final class ResultSetHandler extends JdbcHandler {
+
+		private final StatementHandler statement;
+		private final QueryResult result;
+		private int row = -1;
+
+		ResultSetHandler(StatementHandler statement, QueryResult result) {
+			this.statement = statement;
+			this.result = result;
+		}
+
+		@Override
+		Object handle(Method method, Object[] args) throws SQLException {
+			switch (method.getName()) {
+				case "next":
+					if (row < result.rowCount()) {
+						row++;
+					}
+					return row < result.rowCount();
+				case "getObject":
+					return value(args[0]);
+				case "getString":
+					return value(args[0]).toString();
+				case "getLong":
+					return number(args[0]).longValue();
+				case "getInt":
+					return number(args[0]).intValue();
+				case "wasNull":
+					// the example tables have no nulls
+					return false;
+				case "findColumn":
+					return column(args[0]) + 1;
+				case "getRow":
+					return row < result.rowCount() ? row + 1 : 0;
+				case "getStatement":
+					return statement.proxy;
+				case "getWarnings":
+					return null;
+				case "clearWarnings":
+				case "setFetchSize":
+					return null;
+				default:
+					return unsupported(method);
+			}
+		}
+
+		private Object value(Object column) throws SQLException {
+			if (row < 0 || row >= result.rowCount()) {
+				throw new SQLException("No current row");
+			}
+			return result.get(row, column(column));
+		}
+
+		private Number number(Object column) throws SQLException {
+			Object value = value(column);
+			if (value instanceof Number) {
+				return (Number) value;
+			}
+			try {
+				return Long.valueOf((String) value);
+			} catch (NumberFormatException e) {
+				throw new SQLException("Not a number: " + value, e);
+			}
+		}
+
+		// JDBC columns are numbered from 1 or found by their label
+		private int column(Object column) throws SQLException {
+			if (column instanceof Integer) {
+				int index = (Integer) column;
+				if (index < 1 || index > result.columnCount()) {
+					throw new SQLException("Column index " + index + " out of range 1.." + result.columnCount());
+				}
+				return index - 1;
+			}
+			for (int i = 0; i < result.columnCount(); i++) {
+				if (result.columnNames().get(i).equalsIgnoreCase((String) column)) {
+					return i;
+				}
+			}
+			throw new SQLException("No column " + column);
+		}
+	}
+
+	private static final class MetaDataHandler extends JdbcHandler {
+
+		private final ConnectionHandler connection;
+
+		MetaDataHandler(ConnectionHandler connection) {
+			this.connection = connection;
+		}
+
+		@Override
+		Object handle(Method method, Object[] args) throws SQLException {
+			switch (method.getName()) {
+				case "getURL":
+					return ExampleDataSource.URL_PREFIX + connection.database.name();
+				case "getDatabaseProductName":
+					return ExampleDataSource.PRODUCT_NAME;
+				case "getDatabaseProductVersion":
+				case "getDriverVersion":
+					return "1.0";
+				case "getDriverName":
+					return "example-db";
+				case "getUserName":
+					return "example";
+				case "getJDBCMajorVersion":
+					return 4;
+				case "getJDBCMinorVersion":
+					return 2;
+				case "isReadOnly":
+					return true;
+				case "getConnection":
+					return connection.proxy;
+				default:
+					return unsupported(method);
+			}
+		}
+	}
+}
@@ -0,0 +1,72 @@
+package com.tracing.db;
+
+import java.sql.SQLSyntaxErrorException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The rows of one table, fixed once the database is built.
+ */
+final class Table {
+
+	private final String name;
+	private final List<String> columnNames;
+	private final List<Object[]> rows;
+
+	Table(String name, List<String> columnNames, List<Object[]> rows) {
+		for (Object[] row : rows) {
+			if (row.length != columnNames.size()) {
+				throw new IllegalArgumentException("Table " + name + " has " + columnNames.size()
+						+ " columns, a row has " + row.length);
+			}
+			for (Object value : row) {
+				if (!(value instanceof Long) && !(value instanceof String)) {
+					throw new IllegalArgumentException("Table " + name + " holds Long and String values only: "
+							+ value);
+				}
+			}
+		}
+		this.name = name;
+		this.columnNames = Collections.unmodifiableList(new ArrayList<>(columnNames));
+		List<Object[]> copy = new ArrayList<>(rows.size());
+		for (Object[] row : rows) {
+			copy.add(row.clone());
+		}
+		this.rows = Collections.unmodifiableList(copy);
+	}
+
+	/**
+	 * The table {@code select * from table} reads: {@code rows} rows of id, name and amount.
+	 */
+	static Table sample(String name, int rows) {
+		List<Object[]> sampleRows = new ArrayList<>(rows);
+		for (long id = 1; id <= rows; id++) {
+			sampleRows.add(new Object[] { id, "item-" + id, id * 100 });
+		}
+		List<String> columns = new ArrayList<>();
+		Collections.addAll(columns, "id", "name", "amount");
+		return new Table(name, columns, sampleRows);
+	}
+
+	String name() {
+		return name;
+	}
+
+	List<String> columnNames() {
+		return columnNames;
+	}
+
+	List<Object[]> rows() {
+		return rows;
+	}
+
+	int columnIndex(String column) throws SQLSyntaxErrorException {
+		for (int i = 0; i < columnNames.size(); i++) {
+			if (columnNames.get(i).equalsIgnoreCase(column)) {
+				return i;
+			}
+		}
+		throw new SQLSyntaxErrorException("Table " + name + " has no column " + column);
+	}
+}
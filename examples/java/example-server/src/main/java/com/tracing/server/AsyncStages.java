@@ -0,0 +1,229 @@
+package com.tracing.server;
+
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * Where the examples' CompletableFuture stages run. By default they run on the common ForkJoinPool and wait by
+ * sleeping, as the asyncWithCompletableFuture handlers always did - every sleeping stage holds one of the few common
+ * pool threads the whole JVM shares. The dedicated mode gives them a pool of their own and waits on a timer instead:
+ *
+ * <pre>
+ * AsyncStages stages = AsyncStages.fromSystemProperties(scopeManager::runnableWithActiveSpan);
+ * stages.supplyAfter(5, TimeUnit.MILLISECONDS, () -> loadData())
+ *     .thenAcceptAsync(data -> respond(data), stages.executor());
+ * </pre>
+ *
+ * selected with {@code -Dexample.async.stages=commonPool|dedicated}. The dedicated pool has
+ * {@code -Dexample.async.threads} threads (default: two per CPU) and admits at most {@code -Dexample.async.queue}
+ * stages (default 1024) waiting or running; beyond that submitting a stage throws RejectedExecutionException right
+ * away, so a handler can answer 503 instead of queueing without bound. {@link AsyncStagesComparison} measures both
+ * modes.
+ *
+ * <p>Every task is wrapped with the given context propagation when it is submitted, i.e. while the submitting stage's
+ * trace context is current, and runs with that context on whatever thread picks it up.
+ */
+public final class AsyncStages {
+
+	public static final String STAGES_PROPERTY = "example.async.stages";
+	public static final String THREADS_PROPERTY = "example.async.threads";
+	public static final String QUEUE_PROPERTY = "example.async.queue";
+
+	public enum Mode {
+		/** Stages on ForkJoinPool.commonPool(), delays are slept on a pool thread */
+		COMMON_POOL,
+		/** Stages on a bounded pool of their own, delays are waited on a timer thread */
+		DEDICATED;
+
+		/**
+		 * Accepts the names in any case, with or without the underscore, e.g. "commonpool".
+		 */
+		public static Mode parse(String name) {
+			String normalized = name.trim().toUpperCase(Locale.ROOT).replace("-", "").replace("_", "");
+			for (Mode mode : values()) {
+				if (mode.name().replace("_", "").equals(normalized)) {
+					return mode;
+				}
+			}
+			throw new IllegalArgumentException("Unknown async stages mode " + name);
+		}
+	}
+
+	private final Mode mode;
+	private final UnaryOperator<Runnable> contextPropagation;
+	private final ExecutorService pool;
+	private final ScheduledExecutorService timer;
+	// stages admitted to the dedicated pool and not finished yet, whether waiting on the timer, queued or running
+	private final Semaphore admitted;
+	private final int capacity;
+	private final Executor executor;
+
+	private AsyncStages(Mode mode, int threads, int capacity, UnaryOperator<Runnable> contextPropagation) {
+		this.mode = mode;
+		this.contextPropagation = contextPropagation;
+		this.capacity = capacity;
+		if (mode == Mode.DEDICATED) {
+			this.pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+					newThreadFactory("async-stage-"));
+			this.timer = Executors.newSingleThreadScheduledExecutor(newThreadFactory("async-stage-timer-"));
+			this.admitted = new Semaphore(capacity);
+			this.executor = this::executeDedicated;
+		} else {
+			this.pool = null;
+			this.timer = null;
+			this.admitted = null;
+			this.executor = task -> ForkJoinPool.commonPool().execute(contextPropagation.apply(task));
+		}
+	}
+
+	/**
+	 * Reads the mode, pool size and capacity from the system properties; without them stages run on the common pool,
+	 * as before.
+	 *
+	 * @param contextPropagation wraps a task so that it runs with the trace context current when it was submitted,
+	 * 		e.g. {@code scopeManager::runnableWithActiveSpan} or Wingtips' {@code runnableWithTracing}
+	 */
+	public static AsyncStages fromSystemProperties(UnaryOperator<Runnable> contextPropagation) {
+		String mode = System.getProperty(STAGES_PROPERTY);
+		return create(mode == null || mode.trim().isEmpty() ? Mode.COMMON_POOL : Mode.parse(mode),
+				Integer.getInteger(THREADS_PROPERTY, 2 * Runtime.getRuntime().availableProcessors()),
+				Integer.getInteger(QUEUE_PROPERTY, 1024), contextPropagation);
+	}
+
+	/**
+	 * @param threads number of threads of the DEDICATED pool, ignored by COMMON_POOL
+	 * @param capacity number of stages the DEDICATED pool admits at once, ignored by COMMON_POOL
+	 */
+	public static AsyncStages create(Mode mode, int threads, int capacity, UnaryOperator<Runnable> contextPropagation) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Need at least one thread: " + threads);
+		}
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		}
+		return new AsyncStages(mode, threads, capacity, contextPropagation);
+	}
+
+	public Mode mode() {
+		return mode;
+	}
+
+	/**
+	 * @return the Executor to pass to the {@code ...Async} methods of a CompletableFuture
+	 * @throws RejectedExecutionException from {@code execute} if the dedicated pool is at its capacity
+	 */
+	public Executor executor() {
+		return executor;
+	}
+
+	/**
+	 * Like Java 9's {@code CompletableFuture.delayedExecutor(delay, unit, executor())}: runs a task on
+	 * {@link #executor()} once the delay has passed. In the dedicated mode no thread is held while waiting.
+	 */
+	public Executor delayedExecutor(long delay, TimeUnit unit) {
+		if (mode == Mode.DEDICATED) {
+			return task -> {
+				Runnable propagating = admit(task);
+				timer.schedule(() -> pool.execute(propagating), delay, unit);
+			};
+		}
+		return task -> {
+			Runnable propagating = contextPropagation.apply(task);
+			ForkJoinPool.commonPool().execute(() -> {
+				sleep(unit.toNanos(delay));
+				propagating.run();
+			});
+		};
+	}
+
+	/**
+	 * Same as {@link CompletableFuture#supplyAsync(Supplier, Executor)} on {@link #executor()}.
+	 */
+	public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+		return CompletableFuture.supplyAsync(supplier, executor);
+	}
+
+	/**
+	 * Supplies the value once the delay has passed - the stand-in for waiting on a remote call.
+	 */
+	public <T> CompletableFuture<T> supplyAfter(long delay, TimeUnit unit, Supplier<T> supplier) {
+		return CompletableFuture.supplyAsync(supplier, delayedExecutor(delay, unit));
+	}
+
+	/**
+	 * @return the stages admitted and not finished yet; for the common pool its running and queued tasks
+	 */
+	public int inFlight() {
+		if (mode == Mode.DEDICATED) {
+			return capacity - admitted.availablePermits();
+		}
+		ForkJoinPool commonPool = ForkJoinPool.commonPool();
+		return commonPool.getActiveThreadCount() + (int) Math.min(Integer.MAX_VALUE, commonPool.getQueuedTaskCount()
+				+ commonPool.getQueuedSubmissionCount());
+	}
+
+	/**
+	 * Stops the dedicated pool and timer once the stages already admitted are done. The common pool is left alone.
+	 */
+	public void shutdown() {
+		if (mode == Mode.DEDICATED) {
+			timer.shutdown();
+			try {
+				timer.awaitTermination(1, TimeUnit.MINUTES);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			pool.shutdown();
+		}
+	}
+
+	private void executeDedicated(Runnable task) {
+		pool.execute(admit(task));
+	}
+
+	// Takes a permit for the task or rejects it; the permit is returned when the task has run
+	private Runnable admit(Runnable task) {
+		if (!admitted.tryAcquire()) {
+			throw new RejectedExecutionException("All " + capacity + " async stages are in use");
+		}
+		Runnable propagating = contextPropagation.apply(task);
+		return () -> {
+			try {
+				propagating.run();
+			} finally {
+				admitted.release();
+			}
+		};
+	}
+
+	private static void sleep(long nanos) {
+		try {
+			TimeUnit.NANOSECONDS.sleep(nanos);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static ThreadFactory newThreadFactory(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return task -> {
+			Thread thread = new Thread(task, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
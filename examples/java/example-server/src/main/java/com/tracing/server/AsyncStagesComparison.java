@@ -0,0 +1,155 @@
+package com.tracing.server;
+
+import com.tracing.load.LatencyHistogram;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the asyncWithCompletableFuture pipeline - wait 5 ms for the data, then build the response on another stage -
+ * once per {@link AsyncStages.Mode} and prints how each one copes with a burst of requests:
+ *
+ * <ul>
+ * <li>the latency of the requests, from submitting the first stage until the last one ran, and how many were
+ * rejected;</li>
+ * <li>the peak number of stages in flight;</li>
+ * <li>how long an unrelated task waited for the common ForkJoinPool meanwhile - a bystander submits one every
+ * millisecond, as parallel streams or other libraries in the same JVM would;</li>
+ * <li>how many stages ran without the trace context of their request. The context is a thread-local that the
+ * propagation carries from stage to stage, as a tracer's current span would be.</li>
+ * </ul>
+ *
+ * <p>{@code -Dcomparison.requests} (default 1000) requests are submitted at once. The dedicated pool is configured
+ * like the examples' ({@code -Dexample.async.threads}, {@code -Dexample.async.queue}).
+ */
+public final class AsyncStagesComparison {
+
+	private static final ThreadLocal<Integer> CONTEXT = new ThreadLocal<>();
+
+	private AsyncStagesComparison() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		int requests = Integer.getInteger("comparison.requests", 1000);
+		System.out.println(String.format(Locale.ROOT,
+				"%d requests at once, common pool parallelism %d%n%-12s %8s %10s %10s %10s %10s %12s %14s %10s",
+				requests, ForkJoinPool.getCommonPoolParallelism(), "mode", "rejected", "p50 ms", "p99 ms", "max ms",
+				"total ms", "peakInFlight", "bystander p99", "noContext"));
+		for (AsyncStages.Mode mode : AsyncStages.Mode.values()) {
+			// warm up once so class loading and JIT don't end up in the measured run
+			run(mode, Math.min(requests, 100));
+			System.out.println(run(mode, requests));
+		}
+	}
+
+	private static String run(AsyncStages.Mode mode, int requests) throws InterruptedException {
+		AsyncStages stages = AsyncStages.create(mode,
+				Integer.getInteger(AsyncStages.THREADS_PROPERTY, 2 * Runtime.getRuntime().availableProcessors()),
+				Integer.getInteger(AsyncStages.QUEUE_PROPERTY, 1024), AsyncStagesComparison::propagating);
+		LatencyHistogram latencies = new LatencyHistogram();
+		LatencyHistogram bystander = new LatencyHistogram();
+		AtomicInteger rejected = new AtomicInteger();
+		AtomicInteger withoutContext = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(requests);
+
+		Bystander sampler = new Bystander(stages, bystander);
+		sampler.start();
+		long started = System.nanoTime();
+		for (int i = 0; i < requests; i++) {
+			Integer request = i;
+			long submitted = System.nanoTime();
+			CONTEXT.set(request);
+			try {
+				stages.supplyAfter(5, TimeUnit.MILLISECONDS, () -> {
+					checkContext(request, withoutContext);
+					return "cf-data_" + request;
+				}).thenApplyAsync(data -> {
+					checkContext(request, withoutContext);
+					return "This is the asyncWithCompletableFuture path - data supplied by the CompletableFuture: " + data;
+				}, stages.executor()).whenComplete((response, error) -> {
+					if (error != null) {
+						rejected.incrementAndGet();
+					}
+					latencies.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - submitted));
+					done.countDown();
+				});
+			} catch (RejectedExecutionException e) {
+				// a handler answers 503 here
+				rejected.incrementAndGet();
+				done.countDown();
+			} finally {
+				CONTEXT.remove();
+			}
+		}
+		done.await();
+		long total = System.nanoTime() - started;
+		sampler.interrupt();
+		sampler.join();
+		stages.shutdown();
+
+		return String.format(Locale.ROOT, "%-12s %8d %10.2f %10.2f %10.2f %10.1f %12d %14.2f %10d",
+				mode.name().toLowerCase(Locale.ROOT), rejected.get(), millis(latencies.valueAtPercentile(50)),
+				millis(latencies.valueAtPercentile(99)), millis(latencies.max()), total / 1_000_000.0,
+				sampler.peakInFlight, millis(bystander.valueAtPercentile(99)), withoutContext.get());
+	}
+
+	// The propagation a tracer would do: capture the context when the task is submitted, restore it around the task
+	private static Runnable propagating(Runnable task) {
+		Integer context = CONTEXT.get();
+		return () -> {
+			Integer previous = CONTEXT.get();
+			CONTEXT.set(context);
+			try {
+				task.run();
+			} finally {
+				CONTEXT.set(previous);
+			}
+		};
+	}
+
+	private static void checkContext(Integer request, AtomicInteger withoutContext) {
+		if (!request.equals(CONTEXT.get())) {
+			withoutContext.incrementAndGet();
+		}
+	}
+
+	private static double millis(long micros) {
+		return micros / 1000.0;
+	}
+
+	/**
+	 * Submits a trivial task to the common pool every millisecond and records how long it waited to run; samples the
+	 * stages in flight at the same time.
+	 */
+	private static final class Bystander extends Thread {
+
+		private final AsyncStages stages;
+		private final LatencyHistogram waits;
+		volatile int peakInFlight;
+
+		Bystander(AsyncStages stages, LatencyHistogram waits) {
+			super("bystander");
+			setDaemon(true);
+			this.stages = stages;
+			this.waits = waits;
+		}
+
+		@Override
+		public void run() {
+			while (!isInterrupted()) {
+				long submitted = System.nanoTime();
+				ForkJoinPool.commonPool().execute(
+						() -> waits.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - submitted)));
+				peakInFlight = Math.max(peakInFlight, stages.inFlight());
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+	}
+}
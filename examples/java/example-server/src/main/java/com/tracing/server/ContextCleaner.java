@@ -0,0 +1,17 @@
+package com.tracing.server;
+
+/**
+ * Removes the tracing context a request left on its thread, e.g. a span that was never closed or a scope that was
+ * activated but not restored. Each tracer keeps its current span in a thread-local, so on a pooled thread a leaked
+ * context would become the parent of whatever request runs next on that thread.
+ */
+@FunctionalInterface
+public interface ContextCleaner {
+
+	/**
+	 * Called on the request thread after every request.
+	 *
+	 * @return true if there was a context to remove, i.e. the request leaked it
+	 */
+	boolean clean();
+}
@@ -0,0 +1,98 @@
+package com.tracing.server;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+
+/**
+ * Creates the HttpServer the examples register their handlers with:
+ *
+ * <pre>
+ * HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(8000));
+ * </pre>
+ *
+ * selected with {@code -Dexample.server.type=jdk|nio}. The default is the JDK's own server; {@code nio} runs the same
+ * handlers on a {@link NioHttpServer} with {@code -Dexample.server.eventLoops} selector threads (default: one per
+ * CPU). Either way the executor from {@link ServerExecutors} decides which thread a handler runs on - for the NIO
+ * server, {@code dispatcher} means the event loop itself.
+ *
+ * <p>Under load the handlers' "Path A was called" lines and the sleeps that stand in for server time would dominate
+ * any measurement; they skip the lines with {@code -Dexample.requestLog=false}, see {@link #logRequests()}, and the
+ * sleeps with {@code -Dexample.simulatedWork=false}, see {@link #simulateWork()}. With
+ * {@code -Dexample.precomputedResponses=true} the examples register the variants of their path handlers that send a
+ * {@link PrecomputedResponse} instead of encoding the body per request, see {@link #precomputedResponses()}.
+ */
+public final class ExampleServers {
+
+	public static final String TYPE_PROPERTY = "example.server.type";
+	public static final String EVENT_LOOPS_PROPERTY = "example.server.eventLoops";
+	public static final String REQUEST_LOG_PROPERTY = "example.requestLog";
+	public static final String SIMULATED_WORK_PROPERTY = "example.simulatedWork";
+	public static final String PRECOMPUTED_RESPONSES_PROPERTY = "example.precomputedResponses";
+
+	public enum Type {
+		/** com.sun.net.httpserver.HttpServer as shipped with the JDK */
+		JDK,
+		/** {@link NioHttpServer} */
+		NIO;
+
+		public static Type parse(String name) {
+			try {
+				return valueOf(name.trim().toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown server type " + name);
+			}
+		}
+	}
+
+	private ExampleServers() {
+	}
+
+	/**
+	 * Reads the server type and the number of event loops from the system properties; without them this is
+	 * {@code HttpServer.create(address, 0)}, as before.
+	 */
+	public static HttpServer fromSystemProperties(InetSocketAddress address) throws IOException {
+		String type = System.getProperty(TYPE_PROPERTY);
+		return create(type == null || type.trim().isEmpty() ? Type.JDK : Type.parse(type), address,
+				Integer.getInteger(EVENT_LOOPS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @return false if {@code -Dexample.requestLog=false} is set, i.e. the handlers should not print a line per request
+	 */
+	public static boolean logRequests() {
+		return !"false".equalsIgnoreCase(System.getProperty(REQUEST_LOG_PROPERTY));
+	}
+
+	/**
+	 * @return false if {@code -Dexample.simulatedWork=false} is set, i.e. the handlers should not sleep to simulate
+	 *         server time
+	 */
+	public static boolean simulateWork() {
+		return !"false".equalsIgnoreCase(System.getProperty(SIMULATED_WORK_PROPERTY));
+	}
+
+	/**
+	 * @return true if {@code -Dexample.precomputedResponses=true} is set, i.e. the handlers should send their fixed
+	 *         bodies as a {@link PrecomputedResponse}
+	 */
+	public static boolean precomputedResponses() {
+		return Boolean.getBoolean(PRECOMPUTED_RESPONSES_PROPERTY);
+	}
+
+	/**
+	 * @param eventLoops number of selector threads of the NIO server, ignored by the JDK server
+	 */
+	public static HttpServer create(Type type, InetSocketAddress address, int eventLoops) throws IOException {
+		switch (type) {
+			case JDK:
+				return HttpServer.create(address, 0);
+			case NIO:
+				return NioHttpServer.create(address, eventLoops);
+			default:
+				throw new IllegalArgumentException("Unknown server type " + type);
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package com.tracing.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.tracing.load.HttpClientCall;
+import com.tracing.load.LatencyHistogram;
+import com.tracing.load.LoadGenerator;
+import com.tracing.load.LoadReport;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the same load against the example's pathA/pathB handlers once per {@link ServerExecutors.Strategy} and server
+ * type and prints the throughput and latency each one achieved. pathB blocks for {@code -Dcomparison.dbMillis}
+ * (default 5) to stand in for the database call, which is where the strategies differ.
+ *
+ * <p>The load is configured like the examples' load generator ({@code -Dload.rate}, {@code -Dload.duration},
+ * {@code -Dload.concurrency}); {@code -Dcomparison.strategies=fixed,virtual} picks the strategies and
+ * {@code -Dcomparison.servers=jdk,nio} the {@link ExampleServers.Type}s. To compare them with a tracer, run an example
+ * once per combination instead, e.g. {@code -Dexample.server.type=nio -Dexample.server.executor=forkjoin
+ * -Dload.rate=1000}.
+ *
+ * <p>The JDK HttpServer writes response headers and body in separate packets; with Nagle's algorithm and delayed ACKs
+ * on the client that adds about 40 ms to every keep-alive request, far more than anything measured here. The
+ * comparison therefore turns on {@code sun.net.httpserver.nodelay} unless it is set explicitly - pass the same
+ * property to an example when load testing it.
+ */
+public final class ExecutorStrategyComparison {
+
+	public static void main(String[] args) throws Exception {
+		if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+			// read once when the first HttpServer is created
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+		}
+		long dbMillis = Long.getLong("comparison.dbMillis", 5);
+		int threads = Integer.getInteger(ServerExecutors.THREADS_PROPERTY, 2 * Runtime.getRuntime().availableProcessors());
+		List<ServerExecutors.Strategy> strategies = new ArrayList<>();
+		for (String name : System.getProperty("comparison.strategies", "dispatcher,fixed,forkjoin,virtual").split(",")) {
+			ServerExecutors.Strategy strategy = ServerExecutors.Strategy.parse(name);
+			if (strategy == ServerExecutors.Strategy.VIRTUAL && !ServerExecutors.virtualThreadsAvailable()) {
+				System.out.println("Skipping virtual - needs Java 21+");
+				continue;
+			}
+			strategies.add(strategy);
+		}
+
+		List<ExampleServers.Type> types = new ArrayList<>();
+		for (String name : System.getProperty("comparison.servers", "jdk,nio").split(",")) {
+			types.add(ExampleServers.Type.parse(name));
+		}
+		int eventLoops = Integer.getInteger(ExampleServers.EVENT_LOOPS_PROPERTY,
+				Runtime.getRuntime().availableProcessors());
+
+		List<String> results = new ArrayList<>();
+		for (ExampleServers.Type type : types) {
+			for (ServerExecutors.Strategy strategy : strategies) {
+				results.add(run(type, eventLoops, strategy, threads, dbMillis));
+			}
+		}
+
+		System.out.println(String.format(Locale.ROOT,
+				"%nthreads %d, event loops %d, pathB blocks %d ms%n%-16s %12s %8s %10s %10s %10s",
+				threads, eventLoops, dbMillis, "server/strategy", "req/s", "errors", "p50 ms", "p99 ms", "p99.9 ms"));
+		for (String result : results) {
+			System.out.println(result);
+		}
+	}
+
+	private static String run(ExampleServers.Type type, int eventLoops, ServerExecutors.Strategy strategy, int threads,
+			long dbMillis) throws Exception {
+		String name = (type + "/" + strategy).toLowerCase(Locale.ROOT);
+		ServerExecutor executor = ServerExecutors.create(strategy, threads);
+		HttpServer server = ExampleServers.create(type, new InetSocketAddress(0), eventLoops);
+		server.createContext("/pathA", new PathAHandler());
+		server.createContext("/pathB", new PathBHandler(dbMillis));
+		server.setExecutor(executor);
+		server.start();
+		try {
+			HttpClientCall call = new HttpClientCall("http://localhost:" + server.getAddress().getPort());
+			// a short run first, so the JIT has compiled both sides before the measured run
+			LoadGenerator.newBuilder().ratePerSecond(100).duration(2, TimeUnit.SECONDS).path("pathA", 1)
+					.path("pathB", 1).build().run(call);
+			LoadGenerator generator = LoadGenerator.fromSystemProperties("pathA", "pathB");
+			System.out.println("\n" + name + ": " + generator);
+			LoadReport report = generator.run(call);
+			report.printTo(System.out);
+			return summary(name, report);
+		} finally {
+			server.stop(0);
+			executor.shutdown(5, TimeUnit.SECONDS);
+		}
+	}
+
+	private static String summary(String name, LoadReport report) {
+		LatencyHistogram responseTime = report.responseTime("all");
+		return String.format(Locale.ROOT, "%-16s %12.1f %8d %10.3f %10.3f %10.3f", name, report.achievedRate(),
+				report.errorCount(), responseTime.valueAtPercentile(50) / 1000.0,
+				responseTime.valueAtPercentile(99) / 1000.0, responseTime.valueAtPercentile(99.9) / 1000.0);
+	}
+
+	static class PathAHandler implements HttpHandler {
+		@Override
+		public void handle(HttpExchange t) throws IOException {
+			String response = "This is path A";
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			os.close();
+		}
+	}
+
+	static class PathBHandler implements HttpHandler {
+
+		private final long dbMillis;
+
+		PathBHandler(long dbMillis) {
+			this.dbMillis = dbMillis;
+		}
+
+		@Override
+		public void handle(HttpExchange t) throws IOException {
+			String response = "This is path B";
+			this.fakeDBCall("select * from table");
+			t.sendResponseHeaders(200, response.length());
+			OutputStream os = t.getResponseBody();
+			os.write(response.getBytes());
+			os.close();
+		}
+
+		void fakeDBCall(String statement) {
+			// a blocking call, as a JDBC driver would make
+			try {
+				Thread.sleep(dbMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+}
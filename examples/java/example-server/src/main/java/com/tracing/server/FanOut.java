@@ -0,0 +1,113 @@
+package com.tracing.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Runs the branches of the fan-out endpoint concurrently: one request, {@code -Dexample.fanout.branches=K} downstream
+ * calls at once, the even branches querying the database and the odd ones calling pathA over HTTP. The results are
+ * merged in branch order once all of them are done, with {@code CompletableFuture.allOf}:
+ *
+ * <pre>
+ * FAN_OUT.run(branch -> FAN_OUT.kind(branch) == Kind.DATABASE ? query() : callPathA())
+ *     .thenAccept(results -> respond(String.join("\n", results)));
+ * </pre>
+ *
+ * Every branch is submitted while the request's trace context is current and runs with it on a pool thread, so each
+ * can start a child span of the request's span - what one request spawning many parallel children costs is what the
+ * endpoint measures. The branches block, so they get a dedicated {@link AsyncStages} pool rather than the common
+ * ForkJoinPool, with {@code -Dexample.fanout.threads} threads (default: four per branch) admitting
+ * {@code -Dexample.async.queue} branches at once. Without the property there is no fan-out endpoint.
+ */
+public final class FanOut {
+
+	public static final String BRANCHES_PROPERTY = "example.fanout.branches";
+	public static final String THREADS_PROPERTY = "example.fanout.threads";
+	public static final String PATH = "/fanout";
+
+	public enum Kind {
+		/** The branch queries the database */
+		DATABASE,
+		/** The branch calls pathA over HTTP */
+		HTTP
+	}
+
+	private final int branches;
+	private final AsyncStages stages;
+
+	private FanOut(int branches, AsyncStages stages) {
+		this.branches = branches;
+		this.stages = stages;
+	}
+
+	/**
+	 * @param contextPropagation wraps a branch so that it runs with the trace context current when it was submitted,
+	 * 		see {@link AsyncStages#fromSystemProperties(UnaryOperator)}
+	 */
+	public static FanOut fromSystemProperties(UnaryOperator<Runnable> contextPropagation) {
+		int branches = Integer.getInteger(BRANCHES_PROPERTY, 0);
+		return create(branches, Integer.getInteger(THREADS_PROPERTY, Math.max(1, 4 * branches)),
+				Integer.getInteger(AsyncStages.QUEUE_PROPERTY, 1024), contextPropagation);
+	}
+
+	/**
+	 * @param branches the number of concurrent downstream calls per request, 0 for no fan-out
+	 */
+	public static FanOut create(int branches, int threads, int capacity, UnaryOperator<Runnable> contextPropagation) {
+		if (branches < 0) {
+			throw new IllegalArgumentException("The number of branches can't be negative: " + branches);
+		}
+		return new FanOut(branches, branches == 0 ? null
+				: AsyncStages.create(AsyncStages.Mode.DEDICATED, threads, capacity, contextPropagation));
+	}
+
+	public boolean isEnabled() {
+		return branches > 0;
+	}
+
+	public int branches() {
+		return branches;
+	}
+
+	/**
+	 * @param branch 0 for the first branch
+	 */
+	public Kind kind(int branch) {
+		return branch % 2 == 0 ? Kind.DATABASE : Kind.HTTP;
+	}
+
+	/**
+	 * Starts all branches and completes with their results, in branch order, once every one of them is done;
+	 * exceptionally if any of them failed.
+	 *
+	 * @throws RejectedExecutionException if the pool is at its capacity, a handler answers 503. The branches
+	 * 		submitted before still run, their results are dropped.
+	 */
+	public <T> CompletableFuture<List<T>> run(IntFunction<T> branch) {
+		if (!isEnabled()) {
+			throw new IllegalStateException("No fan-out, set -D" + BRANCHES_PROPERTY);
+		}
+		List<CompletableFuture<T>> futures = new ArrayList<>(branches);
+		for (int i = 0; i < branches; i++) {
+			int index = i;
+			futures.add(stages.supplyAsync(() -> branch.apply(index)));
+		}
+		return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+			List<T> results = new ArrayList<>(branches);
+			for (CompletableFuture<T> future : futures) {
+				results.add(future.join());
+			}
+			return results;
+		});
+	}
+
+	public void shutdown() {
+		if (stages != null) {
+			stages.shutdown();
+		}
+	}
+}
@@ -0,0 +1,601 @@
+package com.tracing.server;
+
+import com.sun.net.httpserver.Headers;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * One keep-alive connection of a {@link NioHttpServer}. Reads requests, one at a time, into a buffer that is reused
+ * for the whole connection, hands each to the server and writes its response back. While an exchange is in progress
+ * the connection does not read: pipelined requests wait in the buffer until the response before them is written.
+ *
+ * <p>A response either goes out in one piece with {@link #respond}, or with chunked encoding: {@link #startChunked},
+ * {@link #writeChunk} and {@link #endChunked}. Then the output buffer holds the chunks written since the last send,
+ * and the handler thread waits for the event loop to write them before it fills the buffer again - a slow client
+ * slows the handler down instead of the response piling up in memory.
+ *
+ * <p>Apart from these methods and {@link #closeLater}, which an exchange may call from any thread, everything runs on
+ * the connection's event loop.
+ */
+final class NioConnection {
+
+	static final int BUFFER_SIZE = 8192;
+	// a buffer a large response grew beyond this is not kept for the next exchange
+	private static final int MAX_KEPT_BUFFER_SIZE = 64 * 1024;
+	// the most a chunk adds to its data: up to 8 hex digits and two line ends
+	private static final int CHUNK_OVERHEAD = 12;
+	private static final int MAX_HEAD_SIZE = 64 * 1024;
+	private static final int MAX_BODY_SIZE = 16 * 1024 * 1024;
+	private static final byte[] NO_BODY = new byte[0];
+	private static final byte[] CONTENT_LENGTH = ascii("Content-Length: ");
+	private static final byte[] TRANSFER_ENCODING_CHUNKED = ascii("Transfer-Encoding: chunked\r\n");
+	private static final byte[] LAST_CHUNK = ascii("0\r\n\r\n");
+	private static final byte[] HEX_DIGITS = ascii("0123456789abcdef");
+	private static final byte[] CONNECTION_CLOSE = ascii("Connection: close\r\n");
+	private static final byte[] CONNECTION_KEEP_ALIVE = ascii("Connection: keep-alive\r\n");
+	// "HTTP/1.1 200 OK\r\n" and so on, encoded once for every status code
+	private static final byte[][] STATUS_LINES = new byte[600][];
+
+	static {
+		for (int code = 100; code < STATUS_LINES.length; code++) {
+			STATUS_LINES[code] = ascii("HTTP/1.1 " + code + " " + reasonPhrase(code) + "\r\n");
+		}
+	}
+
+	private final NioHttpServer server;
+	private final NioEventLoop eventLoop;
+	private final SocketChannel channel;
+	private final InetSocketAddress localAddress;
+	private final InetSocketAddress remoteAddress;
+	private final ResponseBuffer responseBuffer = new ResponseBuffer();
+	private final Runnable flushTask = this::flush;
+	private final Runnable closeTask = this::close;
+	private final Object chunkLock = new Object();
+	private SelectionKey key;
+	// bytes read but not yet consumed are at [0, position). flip(), clear() and position(int) are called on the
+	//		buffers as Buffer: since Java 9 ByteBuffer overrides them, and a call compiled against those overrides fails
+	//		on Java 8 - the Gradle build has no --release 8 like the pom's java8-api profile
+	private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+	private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+	// how far the input has been searched for the end of the request head
+	private int scanned;
+	private RequestHead head;
+	private NioHttpExchange exchange;
+	// true from the moment a request is dispatched until its response is written
+	private boolean busy;
+	private volatile boolean closeAfterResponse;
+	private boolean keepAliveHeader;
+	// true while a chunked response is sent and more chunks are to come
+	private boolean streaming;
+	// guarded by chunkLock: true while the handler thread waits for the event loop to write its chunks
+	private boolean chunksPending;
+	// only on the event loop, for a handler that streams on the event loop itself
+	private Selector writeSelector;
+
+	NioConnection(NioHttpServer server, NioEventLoop eventLoop, SocketChannel channel) throws IOException {
+		this.server = server;
+		this.eventLoop = eventLoop;
+		this.channel = channel;
+		this.localAddress = (InetSocketAddress) channel.getLocalAddress();
+		this.remoteAddress = (InetSocketAddress) channel.getRemoteAddress();
+	}
+
+	void attach(SelectionKey key) {
+		this.key = key;
+	}
+
+	InetSocketAddress localAddress() {
+		return localAddress;
+	}
+
+	InetSocketAddress remoteAddress() {
+		return remoteAddress;
+	}
+
+	void read() {
+		int read;
+		try {
+			read = channel.read(in);
+		} catch (IOException e) {
+			close();
+			return;
+		}
+		if (read < 0) {
+			close();
+			return;
+		}
+		processInput();
+	}
+
+	private void processInput() {
+		if (busy) {
+			return;
+		}
+		if (head == null) {
+			int end = findHeadEnd();
+			if (end < 0) {
+				if (in.position() >= MAX_HEAD_SIZE) {
+					reject(431);
+				} else if (!in.hasRemaining()) {
+					in = grow(in, Math.min(2 * in.capacity(), MAX_HEAD_SIZE));
+				}
+				return;
+			}
+			try {
+				head = RequestHead.parse(in.array(), end);
+			} catch (IllegalArgumentException e) {
+				reject(400);
+				return;
+			}
+			if (head.chunked) {
+				reject(501);
+				return;
+			}
+			if (head.contentLength > MAX_BODY_SIZE) {
+				reject(413);
+				return;
+			}
+			if (in.capacity() < head.length + head.contentLength) {
+				in = grow(in, head.length + head.contentLength);
+			}
+		}
+		int requestLength = head.length + head.contentLength;
+		if (in.position() < requestLength) {
+			// wait for the rest of the body
+			return;
+		}
+		byte[] body = NO_BODY;
+		if (head.contentLength > 0) {
+			body = new byte[head.contentLength];
+			System.arraycopy(in.array(), head.length, body, 0, body.length);
+		}
+		consume(requestLength);
+		RequestHead request = head;
+		head = null;
+		busy = true;
+		closeAfterResponse = !request.keepAlive;
+		keepAliveHeader = request.keepAlive && "HTTP/1.0".equals(request.protocol);
+		key.interestOps(0);
+
+		NioHttpContext context = server.findContext(request.uri.getPath());
+		if (context == null || context.getHandler() == null) {
+			respond(404, null, null, 0);
+			return;
+		}
+		responseBuffer.recycle();
+		exchange = new NioHttpExchange(this, context, request, body, responseBuffer);
+		server.dispatch(exchange);
+	}
+
+	private int findHeadEnd() {
+		byte[] bytes = in.array();
+		int limit = in.position();
+		for (int i = Math.max(scanned, 3); i < limit; i++) {
+			if (bytes[i] == '\n' && bytes[i - 1] == '\r' && bytes[i - 2] == '\n' && bytes[i - 3] == '\r') {
+				scanned = 0;
+				return i + 1;
+			}
+		}
+		scanned = limit;
+		return -1;
+	}
+
+	private void consume(int length) {
+		((Buffer) in).flip();
+		((Buffer) in).position(length);
+		in.compact();
+		scanned = 0;
+	}
+
+	private void reject(int code) {
+		busy = true;
+		closeAfterResponse = true;
+		key.interestOps(0);
+		respond(code, null, null, 0);
+	}
+
+	/**
+	 * Queues the response of the current request for writing; called once per request, from any thread.
+	 *
+	 * @param headers the response headers, or null; Content-Length and Connection are set here
+	 * @param body the first {@code length} bytes are the response body, may be null if {@code length} is 0
+	 */
+	void respond(int code, Headers headers, byte[] body, int length) {
+		writeHead(code, headers, length);
+		if (length > 0) {
+			out.put(body, 0, length);
+		}
+		((Buffer) out).flip();
+		eventLoop.execute(flushTask);
+	}
+
+	/**
+	 * Starts the response of the current request with chunked encoding, from any thread. The head is sent together
+	 * with the first chunks.
+	 *
+	 * @param headers the response headers, or null; Transfer-Encoding and Connection are set here
+	 */
+	void startChunked(int code, Headers headers) {
+		streaming = true;
+		writeHead(code, headers, -1);
+	}
+
+	/**
+	 * Adds {@code length} bytes to the chunked response; blocks while the output buffer is full and the bytes before
+	 * them are being written.
+	 *
+	 * @throws IOException if the connection was closed in the meantime
+	 */
+	void writeChunk(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (out.remaining() <= CHUNK_OVERHEAD) {
+				sendChunks();
+			}
+			int size = Math.min(length, out.remaining() - CHUNK_OVERHEAD);
+			putHex(size);
+			out.put((byte) '\r').put((byte) '\n');
+			out.put(bytes, offset, size);
+			out.put((byte) '\r').put((byte) '\n');
+			offset += size;
+			length -= size;
+		}
+	}
+
+	/**
+	 * Ends the chunked response and queues the rest of it for writing, without waiting for it.
+	 */
+	void endChunked() throws IOException {
+		if (out.remaining() < LAST_CHUNK.length) {
+			sendChunks();
+		}
+		out.put(LAST_CHUNK);
+		streaming = false;
+		((Buffer) out).flip();
+		eventLoop.execute(flushTask);
+	}
+
+	private void sendChunks() throws IOException {
+		((Buffer) out).flip();
+		if (eventLoop.inEventLoop()) {
+			writeOnEventLoop();
+		} else {
+			synchronized (chunkLock) {
+				chunksPending = true;
+				eventLoop.execute(flushTask);
+				try {
+					// the timeout covers a server that is stopped while the handler waits
+					while (chunksPending && channel.isOpen()) {
+						chunkLock.wait(1000);
+					}
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					closeLater();
+					throw new IOException("Interrupted while sending the response", e);
+				}
+			}
+		}
+		if (!channel.isOpen()) {
+			throw new IOException("Connection closed while sending the response");
+		}
+		((Buffer) out).clear();
+	}
+
+	// A handler on the event loop can't wait for the loop to write its chunks, so it writes them itself and blocks the
+	// loop while the client is slow - like any other handler that blocks there
+	private void writeOnEventLoop() throws IOException {
+		try {
+			if (writeSelector == null) {
+				writeSelector = Selector.open();
+				channel.register(writeSelector, SelectionKey.OP_WRITE);
+			}
+			while (true) {
+				channel.write(out);
+				if (!out.hasRemaining()) {
+					return;
+				}
+				writeSelector.select();
+				writeSelector.selectedKeys().clear();
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	// Writes the status line and headers straight into the output buffer, without building a String first; a negative
+	// length announces a chunked body
+	private void writeHead(int code, Headers headers, int length) {
+		boolean hasHeaders = headers != null && !headers.isEmpty();
+		if (hasHeaders && "close".equalsIgnoreCase(headers.getFirst("Connection"))) {
+			closeAfterResponse = true;
+		}
+		byte[] statusLine = statusLine(code);
+		int size = statusLine.length + CONTENT_LENGTH.length + 10 + 2 + CONNECTION_KEEP_ALIVE.length + 2
+				+ Math.max(length, 0);
+		if (hasHeaders) {
+			for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+				for (String value : header.getValue()) {
+					size += header.getKey().length() + 2 + value.length() + 2;
+				}
+			}
+		}
+		if (out.capacity() < size) {
+			out = ByteBuffer.allocate(size);
+		}
+		out.put(statusLine);
+		if (hasHeaders) {
+			for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+				String name = header.getKey();
+				if (name.equalsIgnoreCase("Content-Length") || name.equalsIgnoreCase("Transfer-Encoding")
+						|| name.equalsIgnoreCase("Connection")) {
+					continue;
+				}
+				for (String value : header.getValue()) {
+					putAscii(name);
+					out.put((byte) ':').put((byte) ' ');
+					putAscii(value);
+					out.put((byte) '\r').put((byte) '\n');
+				}
+			}
+		}
+		if (length < 0) {
+			out.put(TRANSFER_ENCODING_CHUNKED);
+		} else if (code != 204 && code != 304) {
+			out.put(CONTENT_LENGTH);
+			putDecimal(length);
+			out.put((byte) '\r').put((byte) '\n');
+		}
+		if (closeAfterResponse) {
+			out.put(CONNECTION_CLOSE);
+		} else if (keepAliveHeader) {
+			out.put(CONNECTION_KEEP_ALIVE);
+		}
+		out.put((byte) '\r').put((byte) '\n');
+	}
+
+	private void putAscii(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			out.put((byte) text.charAt(i));
+		}
+	}
+
+	private void putHex(int value) {
+		for (int shift = (31 - Integer.numberOfLeadingZeros(value)) & ~3; shift >= 0; shift -= 4) {
+			out.put(HEX_DIGITS[value >>> shift & 0xf]);
+		}
+	}
+
+	private void putDecimal(int value) {
+		int divisor = 1;
+		while (divisor <= value / 10) {
+			divisor *= 10;
+		}
+		for (; divisor > 0; divisor /= 10) {
+			out.put((byte) ('0' + value / divisor % 10));
+		}
+	}
+
+	/**
+	 * Closes the connection on its event loop, e.g. because a handler failed half way through its response.
+	 */
+	void closeLater() {
+		eventLoop.execute(closeTask);
+	}
+
+	void flush() {
+		if (!channel.isOpen()) {
+			return;
+		}
+		try {
+			channel.write(out);
+		} catch (IOException e) {
+			close();
+			return;
+		}
+		if (out.hasRemaining()) {
+			key.interestOps(SelectionKey.OP_WRITE);
+			return;
+		}
+		if (streaming) {
+			// the handler thread fills the buffer again
+			key.interestOps(0);
+			synchronized (chunkLock) {
+				chunksPending = false;
+				chunkLock.notifyAll();
+			}
+			return;
+		}
+		if (out.capacity() > MAX_KEPT_BUFFER_SIZE) {
+			out = ByteBuffer.allocate(BUFFER_SIZE);
+		} else {
+			((Buffer) out).clear();
+		}
+		closeWriteSelector();
+		exchangeDone();
+		busy = false;
+		if (closeAfterResponse) {
+			close();
+			return;
+		}
+		key.interestOps(SelectionKey.OP_READ);
+		processInput();
+	}
+
+	void close() {
+		exchangeDone();
+		closeWriteSelector();
+		NioEventLoop.closeQuietly(channel);
+		synchronized (chunkLock) {
+			// wakes up a handler thread waiting for its chunks
+			chunkLock.notifyAll();
+		}
+	}
+
+	private void closeWriteSelector() {
+		if (writeSelector != null) {
+			NioEventLoop.closeQuietly(writeSelector);
+			writeSelector = null;
+		}
+	}
+
+	private void exchangeDone() {
+		if (exchange != null) {
+			exchange = null;
+			server.exchangeDone();
+		}
+	}
+
+	private static ByteBuffer grow(ByteBuffer buffer, int capacity) {
+		ByteBuffer grown = ByteBuffer.allocate(capacity);
+		((Buffer) buffer).flip();
+		grown.put(buffer);
+		return grown;
+	}
+
+	static byte[] statusLine(int code) {
+		return code >= 100 && code < STATUS_LINES.length
+				? STATUS_LINES[code] : ascii("HTTP/1.1 " + code + " " + reasonPhrase(code) + "\r\n");
+	}
+
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.ISO_8859_1);
+	}
+
+	static String reasonPhrase(int code) {
+		switch (code) {
+			case 200:
+				return "OK";
+			case 201:
+				return "Created";
+			case 202:
+				return "Accepted";
+			case 204:
+				return "No Content";
+			case 304:
+				return "Not Modified";
+			case 400:
+				return "Bad Request";
+			case 404:
+				return "Not Found";
+			case 413:
+				return "Payload Too Large";
+			case 431:
+				return "Request Header Fields Too Large";
+			case 500:
+				return "Internal Server Error";
+			case 501:
+				return "Not Implemented";
+			case 503:
+				return "Service Unavailable";
+			default:
+				return "";
+		}
+	}
+
+	/**
+	 * The request line and headers of a request.
+	 */
+	static final class RequestHead {
+		final String method;
+		final URI uri;
+		final String protocol;
+		final Headers headers;
+		// bytes up to and including the empty line after the headers
+		final int length;
+		final int contentLength;
+		final boolean chunked;
+		final boolean keepAlive;
+
+		private RequestHead(String method, URI uri, String protocol, Headers headers, int length) {
+			this.method = method;
+			this.uri = uri;
+			this.protocol = protocol;
+			this.headers = headers;
+			this.length = length;
+			String contentLength = headers.getFirst("Content-Length");
+			try {
+				this.contentLength = contentLength == null ? 0 : Integer.parseInt(contentLength.trim());
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid Content-Length " + contentLength);
+			}
+			if (this.contentLength < 0) {
+				throw new IllegalArgumentException("Invalid Content-Length " + contentLength);
+			}
+			String transferEncoding = headers.getFirst("Transfer-Encoding");
+			this.chunked = transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked");
+			String connection = headers.getFirst("Connection");
+			this.keepAlive = "HTTP/1.1".equals(protocol)
+					? !"close".equalsIgnoreCase(connection) : "keep-alive".equalsIgnoreCase(connection);
+		}
+
+		/**
+		 * @param length the number of bytes up to and including the empty line that ends the head
+		 * @throws IllegalArgumentException if the head is malformed
+		 */
+		static RequestHead parse(byte[] bytes, int length) {
+			int lineEnd = indexOfLineEnd(bytes, 0, length);
+			String[] requestLine = new String(bytes, 0, lineEnd, StandardCharsets.ISO_8859_1).split(" ");
+			if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/")) {
+				throw new IllegalArgumentException("Malformed request line");
+			}
+			URI uri = URI.create(requestLine[1]);
+			if (uri.getPath() == null) {
+				throw new IllegalArgumentException("Request without path: " + requestLine[1]);
+			}
+			Headers headers = new Headers();
+			int start = lineEnd + 2;
+			while (start < length - 2) {
+				lineEnd = indexOfLineEnd(bytes, start, length);
+				String line = new String(bytes, start, lineEnd - start, StandardCharsets.ISO_8859_1);
+				int colon = line.indexOf(':');
+				if (colon <= 0) {
+					throw new IllegalArgumentException("Malformed header: " + line);
+				}
+				headers.add(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+				start = lineEnd + 2;
+			}
+			return new RequestHead(requestLine[0], uri, requestLine[2], headers, length);
+		}
+
+		private static int indexOfLineEnd(byte[] bytes, int from, int limit) {
+			for (int i = from; i < limit - 1; i++) {
+				if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+					return i;
+				}
+			}
+			throw new IllegalArgumentException("Unterminated line");
+		}
+	}
+
+	/**
+	 * The response body of the exchange in progress, kept for the next one unless a large response grew it.
+	 */
+	static final class ResponseBuffer extends ByteArrayOutputStream {
+
+		ResponseBuffer() {
+			super(BUFFER_SIZE);
+		}
+
+		void recycle() {
+			if (buf.length > MAX_KEPT_BUFFER_SIZE) {
+				buf = new byte[BUFFER_SIZE];
+			}
+			reset();
+		}
+
+		byte[] array() {
+			return buf;
+		}
+	}
+}
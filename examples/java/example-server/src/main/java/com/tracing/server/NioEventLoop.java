@@ -0,0 +1,140 @@
+package com.tracing.server;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * One selector thread of a {@link NioHttpServer}. Everything that touches a connection's channel or selection key
+ * runs on this thread; other threads hand work over with {@link #execute(Runnable)}.
+ */
+final class NioEventLoop implements Runnable {
+
+	private final NioHttpServer server;
+	private final Selector selector;
+	private final Thread thread;
+	private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+	private volatile boolean running = true;
+
+	NioEventLoop(NioHttpServer server, String name) throws IOException {
+		this.server = server;
+		this.selector = Selector.open();
+		this.thread = new Thread(this, name);
+	}
+
+	void start() {
+		thread.start();
+	}
+
+	boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	/**
+	 * Runs the task on this event loop after the current round of I/O. Only wakes up the selector if called from
+	 * another thread - the loop itself checks the queue before it selects again.
+	 */
+	void execute(Runnable task) {
+		tasks.add(task);
+		if (!inEventLoop()) {
+			selector.wakeup();
+		}
+	}
+
+	// Only before start() or on the event loop
+	SelectionKey register(SelectableChannel channel, int ops, Object attachment) throws ClosedChannelException {
+		return channel.register(selector, ops, attachment);
+	}
+
+	void addConnection(SocketChannel channel) {
+		execute(() -> {
+			try {
+				NioConnection connection = new NioConnection(server, this, channel);
+				connection.attach(register(channel, SelectionKey.OP_READ, connection));
+			} catch (IOException e) {
+				closeQuietly(channel);
+			}
+		});
+	}
+
+	void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	void awaitTermination() {
+		try {
+			thread.join(5000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				if (tasks.isEmpty()) {
+					selector.select();
+				} else {
+					selector.selectNow();
+				}
+				processSelectedKeys();
+				runTasks();
+			} catch (IOException e) {
+				System.err.println("Event loop " + thread.getName() + " failed to select: " + e);
+			}
+		}
+		for (SelectionKey key : selector.keys()) {
+			closeQuietly(key.channel());
+		}
+		closeQuietly(selector);
+	}
+
+	private void processSelectedKeys() {
+		Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+		while (keys.hasNext()) {
+			SelectionKey key = keys.next();
+			keys.remove();
+			if (!key.isValid()) {
+				continue;
+			}
+			if (key.isAcceptable()) {
+				server.accept();
+				continue;
+			}
+			NioConnection connection = (NioConnection) key.attachment();
+			if (key.isReadable()) {
+				connection.read();
+			}
+			if (key.isValid() && key.isWritable()) {
+				connection.flush();
+			}
+		}
+	}
+
+	private void runTasks() {
+		Runnable task;
+		while ((task = tasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (RuntimeException e) {
+				System.err.println("Task on event loop " + thread.getName() + " failed: " + e);
+			}
+		}
+	}
+
+	static void closeQuietly(AutoCloseable closeable) {
+		try {
+			closeable.close();
+		} catch (Exception e) {
+			// nothing to do, the channel is gone either way
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.tracing.server;
+
+import com.sun.net.httpserver.Authenticator;
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A path of a {@link NioHttpServer} and its handler. Filters are applied, an authenticator is kept but not used.
+ */
+final class NioHttpContext extends HttpContext {
+
+	private final NioHttpServer server;
+	private final String path;
+	private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+	private final List<Filter> filters = new CopyOnWriteArrayList<>();
+	private volatile HttpHandler handler;
+	private volatile Authenticator authenticator;
+
+	NioHttpContext(NioHttpServer server, String path) {
+		this.server = server;
+		this.path = path;
+	}
+
+	@Override
+	public HttpHandler getHandler() {
+		return handler;
+	}
+
+	@Override
+	public void setHandler(HttpHandler handler) {
+		if (handler == null) {
+			throw new NullPointerException("handler");
+		}
+		if (this.handler != null) {
+			throw new IllegalArgumentException("Handler already set for " + path);
+		}
+		this.handler = handler;
+	}
+
+	@Override
+	public String getPath() {
+		return path;
+	}
+
+	@Override
+	public HttpServer getServer() {
+		return server;
+	}
+
+	@Override
+	public Map<String, Object> getAttributes() {
+		return attributes;
+	}
+
+	@Override
+	public List<Filter> getFilters() {
+		return filters;
+	}
+
+	@Override
+	public Authenticator setAuthenticator(Authenticator authenticator) {
+		Authenticator previous = this.authenticator;
+		this.authenticator = authenticator;
+		return previous;
+	}
+
+	@Override
+	public Authenticator getAuthenticator() {
+		return authenticator;
+	}
+}
@@ -0,0 +1,266 @@
+package com.tracing.server;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpPrincipal;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The adapter that lets an unchanged HttpHandler answer a request read by a {@link NioHttpServer}. The response body
+ * is collected in the connection's buffer and handed to the connection in one piece when the handler closes it. A body
+ * of any length that outgrows the buffer is streamed instead, with chunked encoding.
+ */
+final class NioHttpExchange extends HttpExchange {
+
+	private final NioConnection connection;
+	private final NioHttpContext context;
+	private final NioConnection.RequestHead request;
+	private final Headers responseHeaders = new Headers();
+	private final NioConnection.ResponseBuffer responseBuffer;
+	private final ResponseStream responseStream = new ResponseStream();
+	private final AtomicBoolean completed = new AtomicBoolean();
+	private InputStream requestBody;
+	private OutputStream responseBody = responseStream;
+	private Map<String, Object> attributes;
+	private volatile int responseCode = -1;
+	private volatile long responseLength;
+
+	NioHttpExchange(NioConnection connection, NioHttpContext context, NioConnection.RequestHead request, byte[] body,
+			NioConnection.ResponseBuffer responseBuffer) {
+		this.connection = connection;
+		this.context = context;
+		this.request = request;
+		this.requestBody = new ByteArrayInputStream(body);
+		this.responseBuffer = responseBuffer;
+	}
+
+	@Override
+	public Headers getRequestHeaders() {
+		return request.headers;
+	}
+
+	@Override
+	public Headers getResponseHeaders() {
+		return responseHeaders;
+	}
+
+	@Override
+	public URI getRequestURI() {
+		return request.uri;
+	}
+
+	@Override
+	public String getRequestMethod() {
+		return request.method;
+	}
+
+	@Override
+	public NioHttpContext getHttpContext() {
+		return context;
+	}
+
+	@Override
+	public void close() {
+		try {
+			requestBody.close();
+			responseBody.close();
+		} catch (IOException e) {
+			// the response could not be completed, the connection is closed below
+		}
+		abort(500);
+	}
+
+	@Override
+	public InputStream getRequestBody() {
+		return requestBody;
+	}
+
+	@Override
+	public OutputStream getResponseBody() {
+		return responseBody;
+	}
+
+	/**
+	 * @param responseLength as for the JDK server: the exact body length if positive, -1 for no body and 0 for a body
+	 * 		of any length - which is sent with a Content-Length as well if it fits into the connection's buffer, and
+	 * 		with chunked encoding otherwise
+	 */
+	@Override
+	public void sendResponseHeaders(int responseCode, long responseLength) throws IOException {
+		if (this.responseCode != -1) {
+			throw new IOException("Response headers already sent");
+		}
+		this.responseLength = responseLength;
+		this.responseCode = responseCode;
+	}
+
+	@Override
+	public InetSocketAddress getRemoteAddress() {
+		return connection.remoteAddress();
+	}
+
+	@Override
+	public int getResponseCode() {
+		return responseCode;
+	}
+
+	@Override
+	public InetSocketAddress getLocalAddress() {
+		return connection.localAddress();
+	}
+
+	@Override
+	public String getProtocol() {
+		return request.protocol;
+	}
+
+	@Override
+	public synchronized Object getAttribute(String name) {
+		return attributes == null ? null : attributes.get(name);
+	}
+
+	@Override
+	public synchronized void setAttribute(String name, Object value) {
+		if (attributes == null) {
+			attributes = new HashMap<>();
+		}
+		attributes.put(name, value);
+	}
+
+	@Override
+	public void setStreams(InputStream requestBody, OutputStream responseBody) {
+		if (requestBody != null) {
+			this.requestBody = requestBody;
+		}
+		if (responseBody != null) {
+			this.responseBody = responseBody;
+		}
+	}
+
+	@Override
+	public HttpPrincipal getPrincipal() {
+		return null;
+	}
+
+	/**
+	 * Ends the exchange if the handler has not: with an error response if nothing was sent yet, otherwise by closing
+	 * the connection, since the response is incomplete.
+	 */
+	void abort(int code) {
+		if (!completed.compareAndSet(false, true)) {
+			return;
+		}
+		if (responseCode == -1) {
+			responseHeaders.set("Connection", "close");
+			connection.respond(code, responseHeaders, null, 0);
+		} else {
+			connection.closeLater();
+		}
+	}
+
+	/**
+	 * Sends {@code body} as the complete response in one step, skipping the response stream and its buffer.
+	 *
+	 * @return false if a filter replaced the response stream - then the body has to go through it, nothing was sent
+	 */
+	boolean respond(int code, byte[] body) throws IOException {
+		if (responseBody != responseStream) {
+			return false;
+		}
+		sendResponseHeaders(code, body.length);
+		if (completed.compareAndSet(false, true)) {
+			responseStream.closed = true;
+			connection.respond(code, responseHeaders, body, "HEAD".equals(request.method) ? 0 : body.length);
+		}
+		return true;
+	}
+
+	private void complete() throws IOException {
+		if (!completed.compareAndSet(false, true)) {
+			return;
+		}
+		if (responseStream.streaming) {
+			connection.endChunked();
+			return;
+		}
+		int length = responseBuffer.size();
+		long expected = responseLength;
+		if (expected > 0 && length != expected) {
+			connection.closeLater();
+			throw new IOException("Response body has " + length + " bytes, the headers announced " + expected);
+		}
+		if (expected == -1 || "HEAD".equals(request.method)) {
+			length = 0;
+		}
+		connection.respond(responseCode, responseHeaders, responseBuffer.array(), length);
+	}
+
+	private final class ResponseStream extends OutputStream {
+
+		private boolean closed;
+		// true once the body went over to chunked encoding, see write
+		private boolean streaming;
+
+		@Override
+		public void write(int b) throws IOException {
+			if (streaming) {
+				write(new byte[] {(byte) b}, 0, 1);
+				return;
+			}
+			checkWritable(1);
+			responseBuffer.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			checkWritable(len);
+			if (streaming) {
+				connection.writeChunk(b, off, len);
+			} else if (responseLength == 0 && responseBuffer.size() + len > NioConnection.BUFFER_SIZE
+					&& "HTTP/1.1".equals(request.protocol) && !"HEAD".equals(request.method)) {
+				// a body of any length that does not fit into the buffer: send what there is and stream the rest
+				streaming = true;
+				connection.startChunked(responseCode, responseHeaders);
+				connection.writeChunk(responseBuffer.array(), 0, responseBuffer.size());
+				responseBuffer.reset();
+				connection.writeChunk(b, off, len);
+			} else {
+				responseBuffer.write(b, off, len);
+			}
+		}
+
+		private void checkWritable(int len) throws IOException {
+			if (closed) {
+				throw new IOException("Response body already closed");
+			}
+			if (responseCode == -1) {
+				throw new IOException("Response headers not sent yet");
+			}
+			if (responseLength > 0 && responseBuffer.size() + len > responseLength) {
+				throw new IOException("Response body longer than the " + responseLength + " bytes announced");
+			}
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (responseCode == -1) {
+				// closed before the response headers were sent, the handler gave up on the exchange
+				abort(500);
+				return;
+			}
+			complete();
+		}
+	}
+}
@@ -0,0 +1,277 @@
+package com.tracing.server;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpContext;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.BindException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A non-blocking HTTP/1.1 server on a few NIO selector threads, as a drop-in replacement for the JDK's HttpServer:
+ * the examples' HttpHandlers and their tracing code run on it unchanged, see {@link ExampleServers}.
+ *
+ * <p>Each event loop owns a Selector and the connections assigned to it; the first one also accepts new connections
+ * and hands them out round robin. Without an executor a handler runs directly on the event-loop thread that read its
+ * request - the model of Netty or Vert.x, where one thread interleaves many requests, so a tracer's thread-local
+ * context is only correct if every request cleans up after itself, and where a handler that blocks stalls every
+ * connection of its loop. With {@link #setExecutor(Executor)} handlers run on that executor instead and the event
+ * loops only do the I/O. A {@link ServerExecutor} runs its {@link ContextCleaner}s after every handler either way.
+ *
+ * <p>Like the JDK server, an exchange is complete once the handler closes the response body or the exchange, which
+ * may happen on another thread after {@code handle} returned. Unlike it, a response is buffered until then and sent
+ * with a Content-Length, also if the handler asked for chunked encoding - unless such a body outgrows the buffer, then
+ * it is streamed with chunked encoding and the handler waits while the client falls behind. Requests with a chunked
+ * body and authenticators are not supported.
+ */
+public final class NioHttpServer extends HttpServer {
+
+	private final int eventLoopCount;
+	private final List<NioHttpContext> contexts = new CopyOnWriteArrayList<>();
+	private final AtomicInteger nextEventLoop = new AtomicInteger();
+	private final AtomicInteger activeExchanges = new AtomicInteger();
+	private volatile Executor executor;
+	private ServerSocketChannel serverChannel;
+	private NioEventLoop[] eventLoops;
+
+	private NioHttpServer(int eventLoopCount) {
+		if (eventLoopCount <= 0) {
+			throw new IllegalArgumentException("Event loops must be positive: " + eventLoopCount);
+		}
+		this.eventLoopCount = eventLoopCount;
+	}
+
+	/**
+	 * @param address the address to listen on, or null to {@link #bind} later
+	 * @param eventLoops number of selector threads
+	 */
+	public static NioHttpServer create(InetSocketAddress address, int eventLoops) throws IOException {
+		NioHttpServer server = new NioHttpServer(eventLoops);
+		if (address != null) {
+			server.bind(address, 0);
+		}
+		return server;
+	}
+
+	@Override
+	public synchronized void bind(InetSocketAddress address, int backlog) throws IOException {
+		if (serverChannel != null) {
+			throw new BindException("Server is already bound to " + getAddress());
+		}
+		ServerSocketChannel channel = ServerSocketChannel.open();
+		try {
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			channel.bind(address, backlog);
+			channel.configureBlocking(false);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		serverChannel = channel;
+	}
+
+	@Override
+	public synchronized void start() {
+		if (serverChannel == null) {
+			throw new IllegalStateException("Server is not bound");
+		}
+		if (eventLoops != null) {
+			throw new IllegalStateException("Server has already been started");
+		}
+		NioEventLoop[] loops = new NioEventLoop[eventLoopCount];
+		try {
+			for (int i = 0; i < loops.length; i++) {
+				loops[i] = new NioEventLoop(this, "nio-event-loop-" + (i + 1));
+			}
+			loops[0].register(serverChannel, SelectionKey.OP_ACCEPT, null);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to open selector", e);
+		}
+		eventLoops = loops;
+		for (NioEventLoop loop : loops) {
+			loop.start();
+		}
+	}
+
+	/**
+	 * Stops accepting connections, waits up to {@code delay} seconds for the exchanges in progress to complete and
+	 * then closes all connections and stops the event loops.
+	 */
+	@Override
+	public void stop(int delay) {
+		if (delay < 0) {
+			throw new IllegalArgumentException("Negative delay: " + delay);
+		}
+		NioEventLoop[] loops;
+		synchronized (this) {
+			loops = eventLoops;
+			try {
+				if (serverChannel != null) {
+					serverChannel.close();
+				}
+			} catch (IOException e) {
+				// nothing to do, the server is going away anyway
+			}
+		}
+		if (loops == null) {
+			return;
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(delay);
+		while (activeExchanges.get() > 0 && System.nanoTime() < deadline) {
+			try {
+				Thread.sleep(10);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		for (NioEventLoop loop : loops) {
+			loop.shutdown();
+		}
+		for (NioEventLoop loop : loops) {
+			loop.awaitTermination();
+		}
+	}
+
+	@Override
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	@Override
+	public HttpContext createContext(String path, HttpHandler handler) {
+		NioHttpContext context = createContext(path);
+		context.setHandler(handler);
+		return context;
+	}
+
+	@Override
+	public NioHttpContext createContext(String path) {
+		if (path == null || !path.startsWith("/")) {
+			throw new IllegalArgumentException("Path must start with '/': " + path);
+		}
+		synchronized (contexts) {
+			for (NioHttpContext context : contexts) {
+				if (context.getPath().equals(path)) {
+					throw new IllegalArgumentException("Context already exists: " + path);
+				}
+			}
+			NioHttpContext context = new NioHttpContext(this, path);
+			contexts.add(context);
+			return context;
+		}
+	}
+
+	@Override
+	public void removeContext(String path) {
+		synchronized (contexts) {
+			for (NioHttpContext context : contexts) {
+				if (context.getPath().equals(path)) {
+					contexts.remove(context);
+					return;
+				}
+			}
+		}
+		throw new IllegalArgumentException("No context for " + path);
+	}
+
+	@Override
+	public void removeContext(HttpContext context) {
+		if (!contexts.remove(context)) {
+			throw new IllegalArgumentException("Context does not belong to this server: " + context.getPath());
+		}
+	}
+
+	@Override
+	public synchronized InetSocketAddress getAddress() {
+		try {
+			return serverChannel == null ? null : (InetSocketAddress) serverChannel.getLocalAddress();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	public int eventLoopCount() {
+		return eventLoopCount;
+	}
+
+	// Called on the accepting event loop whenever the server channel is ready
+	void accept() {
+		SocketChannel channel;
+		try {
+			while ((channel = serverChannel.accept()) != null) {
+				try {
+					channel.configureBlocking(false);
+					// the response goes out in a single write, there is nothing to gain from Nagle's algorithm
+					channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				} catch (IOException e) {
+					channel.close();
+					continue;
+				}
+				eventLoops[Math.floorMod(nextEventLoop.getAndIncrement(), eventLoops.length)].addConnection(channel);
+			}
+		} catch (IOException e) {
+			if (serverChannel.isOpen()) {
+				System.err.println("Failed to accept connection: " + e);
+			}
+		}
+	}
+
+	// The context with the longest path the request path starts with, as in the JDK server
+	NioHttpContext findContext(String path) {
+		NioHttpContext best = null;
+		for (NioHttpContext context : contexts) {
+			if (path.startsWith(context.getPath())
+					&& (best == null || context.getPath().length() > best.getPath().length())) {
+				best = context;
+			}
+		}
+		return best;
+	}
+
+	// Called on the event loop once a request has been read completely
+	void dispatch(NioHttpExchange exchange) {
+		activeExchanges.incrementAndGet();
+		NioHttpContext context = exchange.getHttpContext();
+		Runnable task = () -> {
+			try {
+				new Filter.Chain(context.getFilters(), context.getHandler()).doFilter(exchange);
+			} catch (Throwable e) {
+				System.err.println("Handler for " + exchange.getRequestURI() + " failed: " + e);
+				exchange.abort(500);
+			}
+		};
+		Executor executor = this.executor;
+		if (executor == null) {
+			task.run();
+			return;
+		}
+		try {
+			executor.execute(task);
+		} catch (RejectedExecutionException e) {
+			exchange.abort(503);
+		}
+	}
+
+	// Called once per dispatched exchange, when its response was handed to the connection or it was aborted
+	void exchangeDone() {
+		activeExchanges.decrementAndGet();
+	}
+}
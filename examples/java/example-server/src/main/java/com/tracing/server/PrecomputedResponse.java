@@ -0,0 +1,61 @@
+package com.tracing.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A response body encoded once, for handlers that answer every request with the same text. Sending it allocates
+ * nothing in the handler: no String, no byte[] from {@code getBytes()}. On a {@link NioHttpServer} the body is copied
+ * straight into the connection's reused output buffer, without going through the response stream.
+ *
+ * <pre>
+ * static final PrecomputedResponse PATH_A = PrecomputedResponse.of("This is path A");
+ * ...
+ * PATH_A.send(exchange);
+ * </pre>
+ */
+public final class PrecomputedResponse {
+
+	private final ByteBuffer body;
+	private final byte[] bytes;
+
+	private PrecomputedResponse(byte[] bytes) {
+		this.bytes = bytes;
+		this.body = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+	}
+
+	public static PrecomputedResponse of(String text) {
+		return new PrecomputedResponse(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return the body, read-only; the position and limit are shared, so use {@code duplicate()} to read it
+	 */
+	public ByteBuffer body() {
+		return body;
+	}
+
+	public int length() {
+		return bytes.length;
+	}
+
+	/**
+	 * Sends the body with status 200 and completes the exchange.
+	 */
+	public void send(HttpExchange exchange) throws IOException {
+		send(exchange, 200);
+	}
+
+	public void send(HttpExchange exchange, int statusCode) throws IOException {
+		if (exchange instanceof NioHttpExchange && ((NioHttpExchange) exchange).respond(statusCode, bytes)) {
+			return;
+		}
+		exchange.sendResponseHeaders(statusCode, bytes.length);
+		OutputStream os = exchange.getResponseBody();
+		os.write(bytes);
+		os.close();
+	}
+}
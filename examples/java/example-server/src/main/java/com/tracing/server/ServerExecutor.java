@@ -0,0 +1,81 @@
+package com.tracing.server;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Executor an HttpServer hands its requests to, see {@link ServerExecutors}. Runs every request with the
+ * configured {@link ContextCleaner}s afterwards, so no tracing context survives from one request to the next.
+ */
+public final class ServerExecutor implements Executor {
+
+	private final ServerExecutors.Strategy strategy;
+	private final Executor delegate;
+	private final ContextCleaner[] cleaners;
+	private final LongAdder leakedContexts = new LongAdder();
+	private final AtomicBoolean leakReported = new AtomicBoolean();
+
+	ServerExecutor(ServerExecutors.Strategy strategy, Executor delegate, ContextCleaner[] cleaners) {
+		this.strategy = strategy;
+		this.delegate = delegate;
+		this.cleaners = cleaners.clone();
+	}
+
+	@Override
+	public void execute(Runnable request) {
+		if (cleaners.length == 0) {
+			delegate.execute(request);
+			return;
+		}
+		delegate.execute(() -> {
+			try {
+				request.run();
+			} finally {
+				clean();
+			}
+		});
+	}
+
+	private void clean() {
+		for (ContextCleaner cleaner : cleaners) {
+			if (cleaner.clean()) {
+				leakedContexts.increment();
+				if (leakReported.compareAndSet(false, true)) {
+					System.err.println("A request left its tracing context on thread " + Thread.currentThread().getName()
+							+ " - it was removed, see leakedContexts() for the count");
+				}
+			}
+		}
+	}
+
+	public ServerExecutors.Strategy strategy() {
+		return strategy;
+	}
+
+	/**
+	 * @return how often a cleaner found a context left behind by a request
+	 */
+	public long leakedContexts() {
+		return leakedContexts.sum();
+	}
+
+	/**
+	 * Stops the worker threads, waiting up to the given time for running requests. The server must be stopped first.
+	 */
+	public void shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+		if (delegate instanceof ExecutorService) {
+			ExecutorService executorService = (ExecutorService) delegate;
+			executorService.shutdown();
+			executorService.awaitTermination(timeout, unit);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return strategy.name().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,152 @@
+package com.tracing.server;
+
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the Executor the examples' HttpServer runs requests on. With {@code server.setExecutor(null)} the JDK
+ * handles every request on its single dispatcher thread, which hides any contention in the tracers; the other
+ * strategies process requests concurrently, like a production server:
+ *
+ * <pre>
+ * server.setExecutor(ServerExecutors.fromSystemProperties(cleaner));
+ * </pre>
+ *
+ * selected with {@code -Dexample.server.executor=dispatcher|fixed|forkjoin|virtual} and sized with
+ * {@code -Dexample.server.threads} (default: two per CPU). {@link ExecutorStrategyComparison} measures them
+ * against each other.
+ */
+public final class ServerExecutors {
+
+	public static final String EXECUTOR_PROPERTY = "example.server.executor";
+	public static final String THREADS_PROPERTY = "example.server.threads";
+	public static final String REQUEST_PROCESSING_PROPERTY = "example.executor";
+
+	public enum Strategy {
+		/** Every request on the HttpServer's dispatcher thread - what setExecutor(null) does */
+		DISPATCHER,
+		/** A fixed pool of platform threads */
+		FIXED,
+		/** A work-stealing ForkJoinPool in FIFO mode */
+		FORK_JOIN,
+		/** A new virtual thread per request, needs Java 21+ */
+		VIRTUAL;
+
+		/**
+		 * Accepts the names in any case, with or without the underscore, e.g. "forkjoin".
+		 */
+		public static Strategy parse(String name) {
+			String normalized = name.trim().toUpperCase(Locale.ROOT).replace("-", "").replace("_", "");
+			for (Strategy strategy : values()) {
+				if (strategy.name().replace("_", "").equals(normalized)) {
+					return strategy;
+				}
+			}
+			throw new IllegalArgumentException("Unknown executor strategy " + name);
+		}
+	}
+
+	private ServerExecutors() {
+	}
+
+	/**
+	 * Reads the strategy and the number of threads from the system properties; without them requests stay on the
+	 * dispatcher thread, as before.
+	 */
+	public static ServerExecutor fromSystemProperties(ContextCleaner... cleaners) {
+		String strategy = System.getProperty(EXECUTOR_PROPERTY);
+		return create(strategy == null || strategy.trim().isEmpty() ? Strategy.DISPATCHER : Strategy.parse(strategy),
+				Integer.getInteger(THREADS_PROPERTY, 2 * Runtime.getRuntime().availableProcessors()), cleaners);
+	}
+
+	/**
+	 * @param threads number of worker threads of the FIXED and FORK_JOIN strategies, ignored by the others
+	 */
+	public static ServerExecutor create(Strategy strategy, int threads, ContextCleaner... cleaners) {
+		switch (strategy) {
+			case DISPATCHER:
+				return new ServerExecutor(strategy, Runnable::run, cleaners);
+			case FIXED:
+				return new ServerExecutor(strategy, Executors.newFixedThreadPool(threads, newThreadFactory()), cleaners);
+			case FORK_JOIN:
+				return new ServerExecutor(strategy, newForkJoinPool(threads), cleaners);
+			case VIRTUAL:
+				ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+				if (virtual == null) {
+					System.err.println("Virtual threads are not available on this JVM - falling back to a fixed pool.");
+					return create(Strategy.FIXED, threads, cleaners);
+				}
+				return new ServerExecutor(strategy, virtual, cleaners);
+			default:
+				throw new IllegalArgumentException("Unknown executor strategy " + strategy);
+		}
+	}
+
+	/**
+	 * Creates the executor the async examples hand a request to once the handler returns, selected with
+	 * {@code -Dexample.executor=platform|virtual}.
+	 */
+	public static ExecutorService newRequestProcessingExecutor() {
+		return newRequestProcessingExecutor(System.getProperty(REQUEST_PROCESSING_PROPERTY, "platform"));
+	}
+
+	/**
+	 * @param mode "platform" for a cached thread pool, "virtual" for a virtual thread per task - which falls back to
+	 * 			the cached pool before Java 21
+	 */
+	public static ExecutorService newRequestProcessingExecutor(String mode) {
+		if ("virtual".equalsIgnoreCase(mode)) {
+			ExecutorService virtual = newVirtualThreadPerTaskExecutor();
+			if (virtual != null) {
+				return virtual;
+			}
+			System.err.println("Virtual threads are not available on this JVM - falling back to a cached thread pool.");
+		}
+		return Executors.newCachedThreadPool();
+	}
+
+	/**
+	 * Only looks the factory method up, without creating an executor.
+	 */
+	public static boolean virtualThreadsAvailable() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return an executor that starts a new virtual thread for every task, null before Java 21
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			// Looked up reflectively so the examples still compile and run on Java 8.
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static ThreadFactory newThreadFactory() {
+		AtomicInteger count = new AtomicInteger();
+		return task -> new Thread(task, "http-worker-" + count.incrementAndGet());
+	}
+
+	private static ForkJoinPool newForkJoinPool(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		return new ForkJoinPool(threads, pool -> {
+			ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("http-worker-fj-" + count.incrementAndGet());
+			return thread;
+		}, null, true);
+	}
+}
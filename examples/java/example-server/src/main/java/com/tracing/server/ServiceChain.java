@@ -0,0 +1,109 @@
+package com.tracing.server;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * A chain of services in one process, for measuring what propagation and span creation cost per hop:
+ *
+ * <pre>
+ * client -> gateway (:8000/chain) -> service-a (:8001/chain) -> service-b (:8002/chain) -> database
+ * </pre>
+ *
+ * The gateway is the example's own server; {@code -Dexample.chain.services=2} adds the services behind it, each an
+ * HttpServer of its own on the next port. Every hop's handler calls the next hop over HTTP, the last one queries the
+ * database, so each hop extracts the caller's context, starts its spans and injects its context downstream, as
+ * separately deployed services would. Without the property there is no chain and the example is unchanged.
+ */
+public final class ServiceChain {
+
+	public static final String SERVICES_PROPERTY = "example.chain.services";
+	public static final String PATH = "/chain";
+
+	private final int gatewayPort;
+	private final int services;
+
+	private ServiceChain(int gatewayPort, int services) {
+		this.gatewayPort = gatewayPort;
+		this.services = services;
+	}
+
+	/**
+	 * @param gatewayPort the port of the example's server, the services listen on the ports after it
+	 */
+	public static ServiceChain fromSystemProperties(int gatewayPort) {
+		return create(gatewayPort, Integer.getInteger(SERVICES_PROPERTY, 0));
+	}
+
+	/**
+	 * @param services the number of services behind the gateway, 0 for no chain
+	 */
+	public static ServiceChain create(int gatewayPort, int services) {
+		if (services < 0 || services > 26) {
+			throw new IllegalArgumentException("Between 0 and 26 services are supported: " + services);
+		}
+		return new ServiceChain(gatewayPort, services);
+	}
+
+	public boolean isEnabled() {
+		return services > 0;
+	}
+
+	/**
+	 * @return the number of hops, the gateway included
+	 */
+	public int hops() {
+		return services + 1;
+	}
+
+	/**
+	 * @param hop 0 for the gateway, 1 for the first service behind it
+	 * @return "gateway", "service-a", "service-b", ...
+	 */
+	public String name(int hop) {
+		return hop == 0 ? "gateway" : "service-" + (char) ('a' + hop - 1);
+	}
+
+	/**
+	 * @return true if the hop is the last service, the one that queries the database
+	 */
+	public boolean isLast(int hop) {
+		return hop == services;
+	}
+
+	/**
+	 * @return the URL the hop calls, that of the next hop
+	 */
+	public String downstreamUrl(int hop) {
+		if (isLast(hop)) {
+			throw new IllegalArgumentException(name(hop) + " is the last hop");
+		}
+		return "http://localhost:" + (gatewayPort + hop + 1) + PATH;
+	}
+
+	/**
+	 * Starts the services behind the gateway; the gateway's handler is added to the example's server like any other.
+	 *
+	 * @param handlers the chain handler of a hop
+	 * @param executors a new Executor for each service, e.g. {@code () -> ServerExecutors.fromSystemProperties()}
+	 */
+	public List<HttpServer> startServices(IntFunction<HttpHandler> handlers, Supplier<Executor> executors)
+			throws IOException {
+		List<HttpServer> servers = new ArrayList<>();
+		for (int hop = 1; hop <= services; hop++) {
+			HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(gatewayPort + hop));
+			server.createContext(PATH, handlers.apply(hop));
+			server.setExecutor(executors.get());
+			server.start();
+			servers.add(server);
+		}
+		return servers;
+	}
+}
@@ -0,0 +1,165 @@
+package com.tracing.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The body of the streaming endpoint: {@code -Dexample.stream.bytes} (e.g. 64m) sent with chunked encoding, in chunks
+ * of {@code -Dexample.stream.chunk} bytes (default 16k). Every chunk is written from the same buffer, filled once, so
+ * sending the body allocates nothing and holds no more than one chunk in memory, however long it is. Without the
+ * property there is no streaming endpoint.
+ *
+ * <p>A {@link Listener} hears of the first byte and of every {@code -Dexample.stream.eventEvery} bytes sent (default
+ * 1m) - the events a tracer adds to the active span. Between them sending a chunk costs one comparison, so the events
+ * stay cheap however small the chunks.
+ *
+ * <p>Both the JDK HttpServer and the NIO server stream the body as it is written, and both block the handler while
+ * the client falls behind.
+ */
+public final class StreamingResponse {
+
+	public static final String BYTES_PROPERTY = "example.stream.bytes";
+	public static final String CHUNK_PROPERTY = "example.stream.chunk";
+	public static final String EVENT_EVERY_PROPERTY = "example.stream.eventEvery";
+	public static final String PATH = "/stream";
+
+	/**
+	 * Hears of the progress of a body while it is sent, on the thread that sends it.
+	 */
+	public interface Listener {
+
+		Listener NONE = new Listener() {
+			@Override
+			public void firstByte() {
+			}
+
+			@Override
+			public void progress(long bytesSent) {
+			}
+		};
+
+		/**
+		 * Called once the response headers and the first chunk are written.
+		 */
+		void firstByte();
+
+		/**
+		 * Called every time another {@code eventEvery} bytes are written.
+		 */
+		void progress(long bytesSent);
+	}
+
+	private final long bytes;
+	private final long eventEvery;
+	private final byte[] chunk;
+
+	private StreamingResponse(long bytes, int chunkSize, long eventEvery) {
+		this.bytes = bytes;
+		this.eventEvery = eventEvery;
+		this.chunk = new byte[chunkSize];
+		// printable lines, so the body can be looked at with curl
+		for (int i = 0; i < chunkSize; i++) {
+			chunk[i] = i % 64 == 63 ? (byte) '\n' : (byte) ('a' + i % 26);
+		}
+	}
+
+	public static StreamingResponse fromSystemProperties() {
+		return create(parseBytes(System.getProperty(BYTES_PROPERTY, "0")),
+				parseChunkSize(System.getProperty(CHUNK_PROPERTY, "16k")),
+				parseBytes(System.getProperty(EVENT_EVERY_PROPERTY, "1m")));
+	}
+
+	/**
+	 * @param bytes the length of the body, 0 for no streaming endpoint
+	 * @param chunkSize the number of bytes written at once
+	 * @param eventEvery the number of bytes between two {@link Listener#progress(long)} calls
+	 */
+	public static StreamingResponse create(long bytes, int chunkSize, long eventEvery) {
+		if (bytes < 0) {
+			throw new IllegalArgumentException("The body length can't be negative: " + bytes);
+		}
+		if (chunkSize < 1 || eventEvery < 1) {
+			throw new IllegalArgumentException("Chunk size and event interval must be positive: " + chunkSize + ", "
+					+ eventEvery);
+		}
+		return new StreamingResponse(bytes, chunkSize, eventEvery);
+	}
+
+	public boolean isEnabled() {
+		return bytes > 0;
+	}
+
+	public long bytes() {
+		return bytes;
+	}
+
+	public int chunkSize() {
+		return chunk.length;
+	}
+
+	/**
+	 * Sends the body with status 200 and chunked encoding and closes the exchange.
+	 *
+	 * @return the number of bytes sent
+	 */
+	public long send(HttpExchange exchange, Listener listener) throws IOException {
+		exchange.sendResponseHeaders(200, 0);
+		long sent = 0;
+		long nextEvent = eventEvery;
+		try (OutputStream os = exchange.getResponseBody()) {
+			while (sent < bytes) {
+				int length = (int) Math.min(chunk.length, bytes - sent);
+				os.write(chunk, 0, length);
+				if (sent == 0) {
+					listener.firstByte();
+				}
+				sent += length;
+				while (sent >= nextEvent) {
+					listener.progress(nextEvent);
+					nextEvent += eventEvery;
+				}
+			}
+		}
+		return sent;
+	}
+
+	@Override
+	public String toString() {
+		return bytes + " bytes in chunks of " + chunk.length + ", an event every " + eventEvery;
+	}
+
+	// Accepts a number of bytes with an optional k, m or g suffix, e.g. 64m
+	static long parseBytes(String text) {
+		String value = text.trim().toLowerCase(Locale.ROOT);
+		int shift = 0;
+		if (!value.isEmpty()) {
+			int unit = Arrays.asList('k', 'm', 'g').indexOf(value.charAt(value.length() - 1));
+			if (unit >= 0) {
+				shift = 10 * (unit + 1);
+				value = value.substring(0, value.length() - 1);
+			}
+		}
+		long number;
+		try {
+			number = Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Not a number of bytes: " + text, e);
+		}
+		if (number > Long.MAX_VALUE >> shift || number < Long.MIN_VALUE >> shift) {
+			throw new IllegalArgumentException("Not a number of bytes: " + text);
+		}
+		return number << shift;
+	}
+
+	// The chunk is a single array, so its size has to fit an int
+	static int parseChunkSize(String text) {
+		long chunkSize = parseBytes(text);
+		if (chunkSize > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Chunk size must be at most " + Integer.MAX_VALUE + " bytes: " + text);
+		}
+		return (int) chunkSize;
+	}
+}
@@ -0,0 +1,19 @@
+package com.tracing.load;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * One non-blocking request against the example server, e.g. with an async HTTP client. Unlike {@link ClientCall} it
+ * does not occupy a client thread while the request is in flight.
+ */
+@FunctionalInterface
+public interface AsyncClientCall {
+
+	/**
+	 * Starts a request on {@code path} (without a leading slash) and returns without waiting for the response.
+	 *
+	 * @return completes with the HTTP status code once the whole response was read - anything but 2xx is counted as
+	 * 		an error - or exceptionally if the request failed, also counted as an error
+	 */
+	CompletionStage<Integer> call(String path);
+}
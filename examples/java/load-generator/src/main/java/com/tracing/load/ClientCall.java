@@ -0,0 +1,16 @@
+package com.tracing.load;
+
+/**
+ * One request against the example server, including whatever client-side tracing the example does around it.
+ */
+@FunctionalInterface
+public interface ClientCall {
+
+	/**
+	 * Calls the server on {@code path} (without a leading slash) and reads the whole response.
+	 *
+	 * @return the HTTP status code; anything but 2xx is counted as an error
+	 * @throws Exception if the request failed, also counted as an error
+	 */
+	int call(String path) throws Exception;
+}
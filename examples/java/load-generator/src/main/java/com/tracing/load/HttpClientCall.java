@@ -0,0 +1,43 @@
+package com.tracing.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * A plain, untraced GET with {@link HttpURLConnection}. The response body is read to the end and closed, so the JDK
+ * can reuse the connection for the next request (keep-alive).
+ */
+public final class HttpClientCall implements ClientCall {
+
+	private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[8192]);
+
+	private final String baseUrl;
+
+	/**
+	 * @param baseUrl e.g. {@code http://localhost:8000}
+	 */
+	public HttpClientCall(String baseUrl) {
+		this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+	}
+
+	@Override
+	public int call(String path) throws IOException {
+		HttpURLConnection con = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+		con.setRequestMethod("GET");
+		int status = con.getResponseCode();
+		InputStream in = status < 400 ? con.getInputStream() : con.getErrorStream();
+		if (in != null) {
+			byte[] buffer = BUFFER.get();
+			try {
+				while (in.read(buffer) >= 0) {
+					// discard the body
+				}
+			} finally {
+				in.close();
+			}
+		}
+		return status;
+	}
+}
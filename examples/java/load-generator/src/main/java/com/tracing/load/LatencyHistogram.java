@@ -0,0 +1,115 @@
+package com.tracing.load;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size, log-linear latency histogram in the style of HdrHistogram.
+ *
+ * <p>Values below 256 are counted exactly; above that every power of two is split into 128 equally sized buckets,
+ * so a recorded value is off by less than 1% - the same precision as an HdrHistogram with two significant digits.
+ * Recording is a single atomic increment and safe from any number of threads. Values are unit-less; the load
+ * generator records microseconds.
+ */
+public final class LatencyHistogram {
+
+	private static final int EXACT_COUNT = 256;
+	private static final int SUB_BUCKET_BITS = 7;
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+	// 2^40 microseconds is about 12 days - anything longer ends up in the last bucket
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKET_COUNT = EXACT_COUNT + (MAX_EXPONENT - 8 + 1) * SUB_BUCKET_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final LongAdder totalCount = new LongAdder();
+	private final LongAdder totalValue = new LongAdder();
+	private final AtomicLong maxValue = new AtomicLong();
+
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		counts.incrementAndGet(indexOf(value));
+		totalCount.increment();
+		totalValue.add(value);
+		long max;
+		while (value > (max = maxValue.get()) && !maxValue.compareAndSet(max, value)) {
+			// retry until the max is at least this value
+		}
+	}
+
+	public long count() {
+		return totalCount.sum();
+	}
+
+	public long max() {
+		return maxValue.get();
+	}
+
+	public double mean() {
+		long count = totalCount.sum();
+		return count == 0 ? 0 : (double) totalValue.sum() / count;
+	}
+
+	/**
+	 * @param percentile between 0 and 100
+	 * @return the highest value that is equivalent to the value at the percentile, i.e. an upper bound that is less
+	 * 		than 1% too high, or 0 if nothing was recorded
+	 */
+	public long valueAtPercentile(double percentile) {
+		long count = totalCount.sum();
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100.0) / 100.0 * count));
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(highestEquivalentValue(i), max());
+			}
+		}
+		return max();
+	}
+
+	/**
+	 * Adds all values recorded in {@code other} to this histogram.
+	 */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			long c = other.counts.get(i);
+			if (c != 0) {
+				counts.addAndGet(i, c);
+			}
+		}
+		totalCount.add(other.totalCount.sum());
+		totalValue.add(other.totalValue.sum());
+		long otherMax = other.max();
+		long max;
+		while (otherMax > (max = maxValue.get()) && !maxValue.compareAndSet(max, otherMax)) {
+			// retry until the max is at least the other max
+		}
+	}
+
+	static int indexOf(long value) {
+		if (value < EXACT_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKET_COUNT;
+		return EXACT_COUNT + (exponent - 8) * SUB_BUCKET_COUNT + mantissa;
+	}
+
+	static long highestEquivalentValue(int index) {
+		if (index < EXACT_COUNT) {
+			return index;
+		}
+		int exponent = (index - EXACT_COUNT) / SUB_BUCKET_COUNT + 8;
+		long mantissa = (index - EXACT_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+		return ((mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+}
@@ -0,0 +1,390 @@
+package com.tracing.load;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An open-loop load generator for the example servers.
+ *
+ * <p>Requests are scheduled at a constant arrival rate, independent of how fast the server answers: request {@code i}
+ * is due at {@code start + i / rate}. A pool of client threads sends them, so up to {@code maxInFlight} requests are
+ * outstanding at once. If all client threads are busy, or the scheduler itself was delayed (e.g. by a GC pause),
+ * due requests queue up and are sent as soon as possible - never skipped - and their latency is measured from the
+ * time they were due, not from the time they were sent. That avoids coordinated omission: a stalled server cannot
+ * hide its stall by keeping the client from sending the requests that would have observed it.
+ *
+ * <p>Each example module can replace its one-request-per-second client loop with it:
+ *
+ * <pre>
+ * if (LoadGenerator.isEnabled()) {
+ *     LoadGenerator.fromSystemProperties("pathA", "pathB").runInBackground(path -> callServer(path));
+ *     return;
+ * }
+ * </pre>
+ *
+ * configured with {@code -Dload.rate=500 -Dload.duration=30 -Dload.concurrency=200 -Dload.paths=pathA:3,pathB:1}.
+ * {@code -Dload.warmup=10} sends the same load for ten seconds before the measured run and discards the results.
+ * Clients that do not block while a request is in flight use {@link #runAsync(AsyncClientCall)} instead; then
+ * {@code maxInFlight} bounds the outstanding requests without a thread for each.
+ * {@link #main(String[])} drives an already running example from a separate JVM with plain untraced requests.
+ */
+public final class LoadGenerator {
+
+	public static final String RATE_PROPERTY = "load.rate";
+	public static final String DURATION_PROPERTY = "load.duration";
+	public static final String WARMUP_PROPERTY = "load.warmup";
+	public static final String CONCURRENCY_PROPERTY = "load.concurrency";
+	public static final String PATHS_PROPERTY = "load.paths";
+	public static final String URL_PROPERTY = "load.url";
+
+	public static final String DEFAULT_URL = "http://localhost:8000";
+
+	private final double ratePerSecond;
+	private final long durationNanos;
+	private final long warmupNanos;
+	private final int maxInFlight;
+	private final Map<String, Integer> pathWeights;
+	private final String[] schedule;
+
+	private LoadGenerator(Builder builder) {
+		this.ratePerSecond = builder.ratePerSecond;
+		this.durationNanos = builder.durationNanos;
+		this.warmupNanos = builder.warmupNanos;
+		this.maxInFlight = builder.maxInFlight;
+		this.pathWeights = new LinkedHashMap<>(builder.pathWeights);
+		this.schedule = interleave(pathWeights);
+	}
+
+	public static Builder newBuilder() {
+		return new Builder();
+	}
+
+	/**
+	 * @return true if {@code -Dload.rate} is set, i.e. the example should run under load instead of its slow loop
+	 */
+	public static boolean isEnabled() {
+		return System.getProperty(RATE_PROPERTY) != null;
+	}
+
+	/**
+	 * Configures a generator from the {@code load.*} system properties.
+	 *
+	 * @param defaultPaths the paths to call, with equal weight, if {@code -Dload.paths} is not set
+	 */
+	public static LoadGenerator fromSystemProperties(String... defaultPaths) {
+		Builder builder = newBuilder()
+				.ratePerSecond(Double.parseDouble(System.getProperty(RATE_PROPERTY, "100")))
+				.duration(Long.getLong(DURATION_PROPERTY, 30), TimeUnit.SECONDS)
+				.warmup(Long.getLong(WARMUP_PROPERTY, 0), TimeUnit.SECONDS)
+				.maxInFlight(Integer.getInteger(CONCURRENCY_PROPERTY, 200));
+		String paths = System.getProperty(PATHS_PROPERTY);
+		if (paths == null || paths.trim().isEmpty()) {
+			for (String path : defaultPaths) {
+				builder.path(path, 1);
+			}
+		} else {
+			builder.pathMix(paths);
+		}
+		return builder.build();
+	}
+
+	/**
+	 * Sends the configured load and waits until every request has completed or timed out. The warmup, if any, runs
+	 * first and is not part of the report.
+	 */
+	public LoadReport run(ClientCall call) throws InterruptedException {
+		if (warmupNanos > 0) {
+			run(call, warmupNanos);
+		}
+		return run(call, durationNanos);
+	}
+
+	private LoadReport run(ClientCall call, long durationNanos) throws InterruptedException {
+		LoadReport report = new LoadReport(ratePerSecond, durationNanos, pathWeights.keySet());
+		ThreadPoolExecutor clients = newClientPool(maxInFlight);
+		long start;
+		try {
+			start = schedule(durationNanos, (path, due) -> {
+				report.sent();
+				clients.execute(() -> send(call, path, due, report));
+			});
+		} finally {
+			clients.shutdown();
+		}
+		if (!clients.awaitTermination(drainTimeoutNanos(durationNanos), TimeUnit.NANOSECONDS)) {
+			clients.shutdownNow();
+		}
+		report.finished(System.nanoTime() - start);
+		return report;
+	}
+
+	/**
+	 * Sends the configured load with a non-blocking client and waits until every request has completed or timed out.
+	 * Once {@code maxInFlight} requests are outstanding, due requests wait for one of them to complete.
+	 */
+	public LoadReport runAsync(AsyncClientCall call) throws InterruptedException {
+		if (warmupNanos > 0) {
+			runAsync(call, warmupNanos);
+		}
+		return runAsync(call, durationNanos);
+	}
+
+	private LoadReport runAsync(AsyncClientCall call, long durationNanos) throws InterruptedException {
+		LoadReport report = new LoadReport(ratePerSecond, durationNanos, pathWeights.keySet());
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		long start = schedule(durationNanos, (path, due) -> {
+			inFlight.acquire();
+			report.sent();
+			long sent = System.nanoTime();
+			CompletionStage<Integer> response;
+			try {
+				response = call.call(path);
+			} catch (RuntimeException e) {
+				completed(path, due, sent, true, report);
+				inFlight.release();
+				return;
+			}
+			response.whenComplete((status, error) -> {
+				completed(path, due, sent, error != null || status < 200 || status >= 300, report);
+				inFlight.release();
+			});
+		});
+		// requests still outstanding after the timeout are left behind
+		inFlight.tryAcquire(maxInFlight, drainTimeoutNanos(durationNanos), TimeUnit.NANOSECONDS);
+		report.finished(System.nanoTime() - start);
+		return report;
+	}
+
+	// Calls the sender for every request when it is due, from the calling thread
+	private long schedule(long durationNanos, Sender sender) throws InterruptedException {
+		double intervalNanos = 1e9 / ratePerSecond;
+		long start = System.nanoTime();
+		for (long i = 0; ; i++) {
+			long offset = (long) (i * intervalNanos);
+			if (offset >= durationNanos) {
+				break;
+			}
+			long due = start + offset;
+			long wait;
+			while ((wait = due - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(wait);
+			}
+			sender.send(schedule[(int) (i % schedule.length)], due);
+		}
+		return start;
+	}
+
+	// give the last requests as long as the run itself, but at least ten seconds
+	private static long drainTimeoutNanos(long durationNanos) {
+		return Math.max(durationNanos, TimeUnit.SECONDS.toNanos(10));
+	}
+
+	/**
+	 * Runs the load on a separate thread and prints the report to {@code System.out} when done.
+	 */
+	public Thread runInBackground(ClientCall call) {
+		Thread thread = new Thread(() -> {
+			System.out.println("Starting load: " + this);
+			try {
+				run(call).printTo(System.out);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "load-generator");
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Like {@link #runInBackground(ClientCall)}, with a non-blocking client.
+	 */
+	public Thread runAsyncInBackground(AsyncClientCall call) {
+		Thread thread = new Thread(() -> {
+			System.out.println("Starting load: " + this);
+			try {
+				runAsync(call).printTo(System.out);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, "load-generator");
+		thread.start();
+		return thread;
+	}
+
+	private static void send(ClientCall call, String path, long due, LoadReport report) {
+		long sent = System.nanoTime();
+		boolean error;
+		try {
+			int status = call.call(path);
+			error = status < 200 || status >= 300;
+		} catch (Exception e) {
+			error = true;
+		}
+		completed(path, due, sent, error, report);
+	}
+
+	private static void completed(String path, long due, long sent, boolean error, LoadReport report) {
+		long done = System.nanoTime();
+		report.completed(path, done - due, done - sent, error);
+	}
+
+	private static ThreadPoolExecutor newClientPool(int threads) {
+		AtomicInteger count = new AtomicInteger();
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(), task -> {
+					Thread thread = new Thread(task, "load-client-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		// start the threads up front so their creation does not show up in the first latencies
+		pool.prestartAllCoreThreads();
+		return pool;
+	}
+
+	// Smooth weighted round robin: the order in which paths are called, spreading every path evenly over the
+	// 		sequence instead of calling the same path several times in a row
+	static String[] interleave(Map<String, Integer> weights) {
+		int total = 0;
+		for (int weight : weights.values()) {
+			total += weight;
+		}
+		List<String> names = new ArrayList<>(weights.keySet());
+		int[] current = new int[names.size()];
+		String[] schedule = new String[total];
+		for (int slot = 0; slot < total; slot++) {
+			int best = 0;
+			for (int i = 0; i < names.size(); i++) {
+				current[i] += weights.get(names.get(i));
+				if (current[i] > current[best]) {
+					best = i;
+				}
+			}
+			current[best] -= total;
+			schedule[slot] = names.get(best);
+		}
+		return schedule;
+	}
+
+	@Override
+	public String toString() {
+		return ratePerSecond + " req/s for " + TimeUnit.NANOSECONDS.toSeconds(durationNanos) + " s"
+				+ (warmupNanos > 0 ? " after " + TimeUnit.NANOSECONDS.toSeconds(warmupNanos) + " s warmup" : "")
+				+ ", max " + maxInFlight + " in flight, paths " + pathWeights;
+	}
+
+	/**
+	 * Drives an already running example with plain GET requests, e.g.
+	 * {@code java -Dload.rate=1000 -cp load-generator.jar com.tracing.load.LoadGenerator pathA pathB}.
+	 * The base URL is taken from {@code -Dload.url}.
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		String[] paths = args.length > 0 ? args : new String[] { "pathA", "pathB" };
+		LoadGenerator generator = fromSystemProperties(paths);
+		System.out.println("Starting load: " + generator);
+		generator.run(new HttpClientCall(System.getProperty(URL_PROPERTY, DEFAULT_URL))).printTo(System.out);
+	}
+
+	@FunctionalInterface
+	private interface Sender {
+		void send(String path, long due) throws InterruptedException;
+	}
+
+	public static final class Builder {
+
+		private double ratePerSecond = 100;
+		private long durationNanos = TimeUnit.SECONDS.toNanos(30);
+		private long warmupNanos;
+		private int maxInFlight = 200;
+		private final Map<String, Integer> pathWeights = new LinkedHashMap<>();
+
+		private Builder() {
+		}
+
+		/**
+		 * Requests started per second, regardless of how many are still in flight.
+		 */
+		public Builder ratePerSecond(double ratePerSecond) {
+			if (!(ratePerSecond > 0)) {
+				throw new IllegalArgumentException("Rate must be positive: " + ratePerSecond);
+			}
+			this.ratePerSecond = ratePerSecond;
+			return this;
+		}
+
+		public Builder duration(long duration, TimeUnit unit) {
+			if (duration <= 0) {
+				throw new IllegalArgumentException("Duration must be positive: " + duration);
+			}
+			this.durationNanos = unit.toNanos(duration);
+			return this;
+		}
+
+		/**
+		 * How long to send the same load before the measured run, so that the JIT has compiled the request path and
+		 * connections are open. Zero, the default, measures from the first request.
+		 */
+		public Builder warmup(long warmup, TimeUnit unit) {
+			if (warmup < 0) {
+				throw new IllegalArgumentException("Warmup must not be negative: " + warmup);
+			}
+			this.warmupNanos = unit.toNanos(warmup);
+			return this;
+		}
+
+		/**
+		 * The number of client threads, i.e. how many requests may be outstanding at once. Requests that are due
+		 * while all of them are busy wait, and that wait counts towards their response time.
+		 */
+		public Builder maxInFlight(int maxInFlight) {
+			if (maxInFlight <= 0) {
+				throw new IllegalArgumentException("Max in flight must be positive: " + maxInFlight);
+			}
+			this.maxInFlight = maxInFlight;
+			return this;
+		}
+
+		/**
+		 * Adds a path (without a leading slash) that receives {@code weight} shares of the requests.
+		 */
+		public Builder path(String path, int weight) {
+			if (weight <= 0) {
+				throw new IllegalArgumentException("Weight must be positive: " + path + ":" + weight);
+			}
+			pathWeights.merge(path, weight, Integer::sum);
+			return this;
+		}
+
+		/**
+		 * Adds paths given as {@code "pathA:3,pathB:1"}; a path without a weight has weight 1.
+		 */
+		public Builder pathMix(String mix) {
+			for (String entry : mix.split(",")) {
+				entry = entry.trim();
+				if (entry.isEmpty()) {
+					continue;
+				}
+				int colon = entry.lastIndexOf(':');
+				String path = colon < 0 ? entry : entry.substring(0, colon).trim();
+				int weight = colon < 0 ? 1 : Integer.parseInt(entry.substring(colon + 1).trim());
+				path(path.startsWith("/") ? path.substring(1) : path, weight);
+			}
+			return this;
+		}
+
+		public LoadGenerator build() {
+			if (pathWeights.isEmpty()) {
+				throw new IllegalStateException("At least one path is required");
+			}
+			return new LoadGenerator(this);
+		}
+	}
+}
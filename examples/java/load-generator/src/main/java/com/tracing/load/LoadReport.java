@@ -0,0 +1,188 @@
+package com.tracing.load;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The outcome of one {@link LoadGenerator} run.
+ *
+ * <p>Latencies are kept twice, in microseconds:
+ * <ul>
+ * <li><b>response time</b> is measured from the moment the request was <em>scheduled</em> to be sent. If the server
+ * (or the generator itself) falls behind, the time a request waited to be sent is included. This is the latency a
+ * user arriving at that moment would have seen and the one to compare - it is corrected for coordinated omission.</li>
+ * <li><b>service time</b> is measured from the moment the request was actually sent, i.e. what a closed-loop client
+ * would report. A large gap between the two means the system was saturated.</li>
+ * </ul>
+ *
+ * <p>It also counts the garbage collections of the JVM during the run - of the example and, when the load runs
+ * in-process, of the load generator itself. {@link Macrobenchmark} reads the printed report, so the format of the
+ * "Load:", "GC:" and "all response time" lines should stay as it is.
+ */
+public final class LoadReport {
+
+	static final String ALL_PATHS = "all";
+
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	private final double targetRate;
+	private final long durationNanos;
+	private final Map<String, PathStats> paths;
+	private final LongAdder sent = new LongAdder();
+	private final long gcCountAtStart = totalGcCount();
+	private final long gcMillisAtStart = totalGcMillis();
+	private volatile long elapsedNanos;
+	private volatile long gcCountDuringRun;
+	private volatile long gcMillisDuringRun;
+
+	LoadReport(double targetRate, long durationNanos, Iterable<String> pathNames) {
+		this.targetRate = targetRate;
+		this.durationNanos = durationNanos;
+		Map<String, PathStats> paths = new LinkedHashMap<>();
+		for (String path : pathNames) {
+			paths.put(path, new PathStats());
+		}
+		paths.put(ALL_PATHS, new PathStats());
+		this.paths = Collections.unmodifiableMap(paths);
+	}
+
+	void sent() {
+		sent.increment();
+	}
+
+	void completed(String path, long responseNanos, long serviceNanos, boolean error) {
+		record(paths.get(path), responseNanos, serviceNanos, error);
+		record(paths.get(ALL_PATHS), responseNanos, serviceNanos, error);
+	}
+
+	private static void record(PathStats stats, long responseNanos, long serviceNanos, boolean error) {
+		stats.responseTime.record(TimeUnit.NANOSECONDS.toMicros(responseNanos));
+		stats.serviceTime.record(TimeUnit.NANOSECONDS.toMicros(serviceNanos));
+		if (error) {
+			stats.errors.increment();
+		}
+	}
+
+	void finished(long elapsedNanos) {
+		this.gcCountDuringRun = totalGcCount() - gcCountAtStart;
+		this.gcMillisDuringRun = totalGcMillis() - gcMillisAtStart;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public double targetRate() {
+		return targetRate;
+	}
+
+	public long sentCount() {
+		return sent.sum();
+	}
+
+	public long completedCount() {
+		return paths.get(ALL_PATHS).responseTime.count();
+	}
+
+	public long errorCount() {
+		return paths.get(ALL_PATHS).errors.sum();
+	}
+
+	/**
+	 * @return completed requests per second over the whole run, including the time spent waiting for the last
+	 * 		responses
+	 */
+	public double achievedRate() {
+		return elapsedNanos == 0 ? 0 : completedCount() * 1e9 / elapsedNanos;
+	}
+
+	/**
+	 * @return the number of garbage collections during the run
+	 */
+	public long gcCollections() {
+		return gcCountDuringRun;
+	}
+
+	/**
+	 * @return the time the garbage collectors reported for the run, pauses and - for concurrent collectors - the
+	 * 		concurrent phases
+	 */
+	public long gcMillis() {
+		return gcMillisDuringRun;
+	}
+
+	/**
+	 * @param path a path of the mix, or "all"
+	 */
+	public LatencyHistogram responseTime(String path) {
+		return stats(path).responseTime;
+	}
+
+	/**
+	 * @param path a path of the mix, or "all"
+	 */
+	public LatencyHistogram serviceTime(String path) {
+		return stats(path).serviceTime;
+	}
+
+	private PathStats stats(String path) {
+		PathStats stats = paths.get(path);
+		if (stats == null) {
+			throw new IllegalArgumentException("Unknown path " + path);
+		}
+		return stats;
+	}
+
+	public void printTo(PrintStream out) {
+		out.println(String.format(Locale.ROOT,
+				"Load: %.1f req/s for %d s - sent %d, completed %d, errors %d, achieved %.1f req/s",
+				targetRate, TimeUnit.NANOSECONDS.toSeconds(durationNanos), sentCount(), completedCount(), errorCount(),
+				achievedRate()));
+		out.println(String.format(Locale.ROOT, "GC: %d collections, %d ms (%.1f%% of the run)",
+				gcCountDuringRun, gcMillisDuringRun,
+				elapsedNanos == 0 ? 0 : gcMillisDuringRun * 1e8 / elapsedNanos));
+		out.println(String.format(Locale.ROOT, "%-36s %8s %9s %9s %9s %9s %9s %9s",
+				"latency in ms", "count", "mean", "p50", "p90", "p99", "p99.9", "max"));
+		for (Map.Entry<String, PathStats> path : paths.entrySet()) {
+			printLine(out, path.getKey() + " response time", path.getValue().responseTime);
+			printLine(out, path.getKey() + " service time", path.getValue().serviceTime);
+		}
+	}
+
+	private static void printLine(PrintStream out, String label, LatencyHistogram histogram) {
+		StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-36s %8d %9.3f",
+				label, histogram.count(), histogram.mean() / 1000.0));
+		for (double percentile : PERCENTILES) {
+			line.append(String.format(Locale.ROOT, " %9.3f", histogram.valueAtPercentile(percentile) / 1000.0));
+		}
+		line.append(String.format(Locale.ROOT, " %9.3f", histogram.max() / 1000.0));
+		out.println(line);
+	}
+
+	private static long totalGcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, collector.getCollectionCount());
+		}
+		return count;
+	}
+
+	// summed over all collectors, leaving out those that report -1 for unknown
+	private static long totalGcMillis() {
+		long millis = 0;
+		for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+			millis += Math.max(0, collector.getCollectionTime());
+		}
+		return millis;
+	}
+
+	private static final class PathStats {
+		final LatencyHistogram responseTime = new LatencyHistogram();
+		final LatencyHistogram serviceTime = new LatencyHistogram();
+		final LongAdder errors = new LongAdder();
+	}
+}
@@ -0,0 +1,292 @@
+package com.tracing.load;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the example modules end to end: each one is started in a JVM of its own, with its server and its client
+ * under {@link LoadGenerator} load, once per request rate. The rate starts at {@code -Dmacro.startRate} (default
+ * 100 req/s) and grows by {@code -Dmacro.rateFactor} (default 1.5) per step until the module saturates:
+ *
+ * <ul>
+ * <li>it completes less than 95% of the requests it was sent per second,</li>
+ * <li>more than 1% of the requests fail, or</li>
+ * <li>the p99 response time exceeds {@code -Dmacro.maxP99} (default 100 ms).</li>
+ * </ul>
+ *
+ * The highest rate before that is the module's maximum sustainable throughput. The report lists every step and then
+ * one line per module with the throughput and the latencies and GC time at that rate - response times are measured
+ * from when a request was due, see {@link LoadReport}.
+ *
+ * <p>The modules are given as {@code -Dmacro.modules=template,brave,opentracing}, each with
+ * {@code -Dmacro.module.<name>.classpath} and {@code -Dmacro.module.<name>.main}, and optionally
+ * {@code -Dmacro.module.<name>.jvmArgs}, e.g. a {@code -javaagent}; {@code gradle :benchmarks:macrobenchmark} sets them
+ * for the modules of this build. Each step runs {@code -Dmacro.warmup} (default 10) seconds of warmup, then
+ * {@code -Dmacro.duration} (default 20) measured seconds. A module that has not printed its report
+ * {@code -Dmacro.timeout} (default 60) seconds after warmup and duration are over is destroyed, and the step counts as
+ * saturated.
+ *
+ * <p>So that the modules differ in their tracing only, every module's JVM runs with
+ * {@code -Dexample.requestLog=false -Dexample.simulatedWork=false -Dexample.db.latency=none}: no line printed per
+ * request, none of the sleeps some handlers use to simulate server time, no simulated database latency. It also runs
+ * with {@code -Dexample.server.executor=fixed -Dsun.net.httpserver.nodelay=true}, so no module is held to the
+ * HttpServer's single dispatcher thread. {@code -Dmacro.jvmArgs} is passed after these and can override them, e.g.
+ * {@code "-Xmx512m -Dexample.server.executor=virtual"}. {@code -Dmacro.csv=results.csv} also writes every step to a
+ * file.
+ *
+ * <p>Server and client share a JVM, so the GC time includes the load generator's. Its share is the same for every
+ * module at a given rate - run the template module, which has no tracer, as the baseline. To keep the client out of
+ * the measurement entirely, start a module by hand and drive it with {@link LoadGenerator#main(String[])} from
+ * another JVM.
+ */
+public final class Macrobenchmark {
+
+	private static final Pattern LOAD_LINE = Pattern.compile(
+			"^Load: .* sent (\\d+), completed (\\d+), errors (\\d+), achieved ([0-9.]+) req/s");
+	private static final Pattern GC_LINE = Pattern.compile("^GC: (\\d+) collections, (\\d+) ms");
+	private static final Pattern ALL_RESPONSE_LINE = Pattern.compile(
+			"^" + LoadReport.ALL_PATHS + " response time\\s+(\\d+)\\s+([0-9.]+)\\s+([0-9.]+)\\s+([0-9.]+)\\s+([0-9.]+)"
+					+ "\\s+([0-9.]+)\\s+([0-9.]+)");
+
+	private static final double MIN_ACHIEVED_SHARE = 0.95;
+	private static final double MAX_ERROR_SHARE = 0.01;
+
+	private final double startRate;
+	private final double rateFactor;
+	private final double maxRate;
+	private final double maxP99Millis;
+	private final long warmupSeconds;
+	private final long durationSeconds;
+	private final long timeoutSeconds;
+	private final List<String> jvmArgs;
+
+	private Macrobenchmark() {
+		this.startRate = Double.parseDouble(System.getProperty("macro.startRate", "100"));
+		this.rateFactor = Double.parseDouble(System.getProperty("macro.rateFactor", "1.5"));
+		this.maxRate = Double.parseDouble(System.getProperty("macro.maxRate", "100000"));
+		this.maxP99Millis = Double.parseDouble(System.getProperty("macro.maxP99", "100"));
+		this.warmupSeconds = Long.getLong("macro.warmup", 10);
+		this.durationSeconds = Long.getLong("macro.duration", 20);
+		this.timeoutSeconds = Long.getLong("macro.timeout", 60);
+		this.jvmArgs = new ArrayList<>(Arrays.asList("-Dexample.requestLog=false", "-Dexample.simulatedWork=false",
+				"-Dexample.db.latency=none", "-Dexample.server.executor=fixed", "-Dsun.net.httpserver.nodelay=true"));
+		String extra = System.getProperty("macro.jvmArgs", "").trim();
+		if (!extra.isEmpty()) {
+			jvmArgs.addAll(Arrays.asList(extra.split("\\s+")));
+		}
+		if (!(startRate > 0) || !(rateFactor > 1)) {
+			throw new IllegalArgumentException("macro.startRate must be positive and macro.rateFactor above 1");
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String modules = System.getProperty("macro.modules");
+		if (modules == null || modules.trim().isEmpty()) {
+			System.err.println("Set -Dmacro.modules and for every module -Dmacro.module.<name>.classpath and "
+					+ "-Dmacro.module.<name>.main, or run gradle :benchmarks:macrobenchmark");
+			System.exit(2);
+		}
+		Macrobenchmark benchmark = new Macrobenchmark();
+		String csv = System.getProperty("macro.csv");
+		PrintStream csvOut = csv == null ? null : new PrintStream(csv, StandardCharsets.UTF_8.name());
+		if (csvOut != null) {
+			csvOut.println("module,targetRate,achievedRate,sent,errors,p50Ms,p99Ms,p999Ms,maxMs,gcCollections,gcMs,"
+					+ "saturated");
+		}
+
+		List<Step> sustained = new ArrayList<>();
+		for (String module : modules.split(",")) {
+			module = module.trim();
+			if (!module.isEmpty()) {
+				sustained.add(benchmark.sweep(module, csvOut));
+			}
+		}
+		if (csvOut != null) {
+			csvOut.close();
+		}
+
+		System.out.println(String.format(Locale.ROOT,
+				"%nMaximum sustainable throughput (p99 <= %.0f ms, errors <= 1%%, >= 95%% of the target rate)",
+				benchmark.maxP99Millis));
+		System.out.println(Step.HEADER);
+		for (Step step : sustained) {
+			System.out.println(step);
+		}
+	}
+
+	// Raises the rate until the module saturates and returns the last step that did not
+	private Step sweep(String module, PrintStream csvOut) throws IOException, InterruptedException {
+		String classpath = System.getProperty("macro.module." + module + ".classpath");
+		String mainClass = System.getProperty("macro.module." + module + ".main");
+		if (classpath == null || mainClass == null) {
+			throw new IllegalArgumentException("No classpath or main class for module " + module);
+		}
+		System.out.println(String.format(Locale.ROOT, "%n%s (%s)%n%s", module, mainClass, Step.HEADER));
+
+		Step sustained = Step.none(module);
+		for (double rate = startRate; rate <= maxRate; rate *= rateFactor) {
+			Step step = run(module, classpath, mainClass, Math.round(rate));
+			System.out.println(step);
+			if (csvOut != null) {
+				csvOut.println(step.toCsv());
+				csvOut.flush();
+			}
+			if (step.saturated) {
+				break;
+			}
+			sustained = step;
+		}
+		return sustained;
+	}
+
+	private Step run(String module, String classpath, String mainClass, long rate)
+			throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(jvmArgs);
+		String moduleJvmArgs = System.getProperty("macro.module." + module + ".jvmArgs", "").trim();
+		if (!moduleJvmArgs.isEmpty()) {
+			command.addAll(Arrays.asList(moduleJvmArgs.split("\\s+")));
+		}
+		command.add("-D" + LoadGenerator.RATE_PROPERTY + "=" + rate);
+		command.add("-D" + LoadGenerator.DURATION_PROPERTY + "=" + durationSeconds);
+		command.add("-D" + LoadGenerator.WARMUP_PROPERTY + "=" + warmupSeconds);
+		command.add("-cp");
+		command.add(classpath);
+		command.add(mainClass);
+
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		Step step = new Step(module, rate);
+		// a module that hangs, or never prints its report, would block readLine() forever; destroying it ends the
+		//		output, and with it the loop below
+		long deadlineSeconds = warmupSeconds + durationSeconds + timeoutSeconds;
+		Thread deadline = new Thread(() -> {
+			try {
+				if (!process.waitFor(deadlineSeconds, TimeUnit.SECONDS)) {
+					step.timedOut = true;
+					process.destroyForcibly();
+				}
+			} catch (InterruptedException e) {
+				// the report was read in time
+			}
+		}, "macrobenchmark-deadline");
+		deadline.setDaemon(true);
+		deadline.start();
+		try (BufferedReader output = new BufferedReader(
+				new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+			// the example keeps serving after the report, so the report's last line is the end of the step
+			for (String line; (line = output.readLine()) != null; ) {
+				if (step.parse(line)) {
+					break;
+				}
+			}
+		} finally {
+			deadline.interrupt();
+			process.destroy();
+			if (!process.waitFor(10, TimeUnit.SECONDS)) {
+				process.destroyForcibly().waitFor();
+			}
+		}
+		step.saturated = !step.complete()
+				|| step.achievedRate < MIN_ACHIEVED_SHARE * rate
+				|| step.errors > MAX_ERROR_SHARE * step.sent
+				|| step.p99Millis > maxP99Millis;
+		return step;
+	}
+
+	/**
+	 * One rate of one module, as parsed from the report the example printed.
+	 */
+	private static final class Step {
+
+		static final String HEADER = String.format(Locale.ROOT, "%-20s %9s %9s %8s %9s %9s %9s %9s %7s %8s",
+				"module", "target/s", "achiev/s", "errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "GCs", "GC ms");
+
+		final String module;
+		final long targetRate;
+		double achievedRate;
+		long sent;
+		long errors;
+		double p50Millis;
+		double p99Millis;
+		double p999Millis;
+		double maxMillis;
+		long gcCollections;
+		long gcMillis;
+		boolean saturated;
+		volatile boolean timedOut;
+		private boolean loadLine;
+		private boolean gcLine;
+		private boolean responseLine;
+
+		Step(String module, long targetRate) {
+			this.module = module;
+			this.targetRate = targetRate;
+		}
+
+		static Step none(String module) {
+			Step step = new Step(module, 0);
+			step.saturated = true;
+			return step;
+		}
+
+		// Returns true once the all-paths response time line is read, the last line needed
+		boolean parse(String line) {
+			Matcher matcher;
+			if ((matcher = LOAD_LINE.matcher(line)).find()) {
+				sent = Long.parseLong(matcher.group(1));
+				errors = Long.parseLong(matcher.group(3));
+				achievedRate = Double.parseDouble(matcher.group(4));
+				loadLine = true;
+			} else if ((matcher = GC_LINE.matcher(line)).find()) {
+				gcCollections = Long.parseLong(matcher.group(1));
+				gcMillis = Long.parseLong(matcher.group(2));
+				gcLine = true;
+			} else if (loadLine && (matcher = ALL_RESPONSE_LINE.matcher(line)).find()) {
+				// count, mean, p50, p90, p99, p99.9, max
+				p50Millis = Double.parseDouble(matcher.group(3));
+				p99Millis = Double.parseDouble(matcher.group(5));
+				p999Millis = Double.parseDouble(matcher.group(6));
+				maxMillis = Double.parseDouble(matcher.group(7));
+				responseLine = true;
+				return true;
+			}
+			return false;
+		}
+
+		boolean complete() {
+			return loadLine && gcLine && responseLine;
+		}
+
+		String toCsv() {
+			return String.format(Locale.ROOT, "%s,%d,%.1f,%d,%d,%.3f,%.3f,%.3f,%.3f,%d,%d,%b", module, targetRate,
+					achievedRate, sent, errors, p50Millis, p99Millis, p999Millis, maxMillis, gcCollections, gcMillis,
+					saturated);
+		}
+
+		@Override
+		public String toString() {
+			if (targetRate == 0) {
+				return String.format(Locale.ROOT, "%-20s saturated at the start rate", module);
+			}
+			if (!complete()) {
+				return String.format(Locale.ROOT, "%-20s %9d no report - the example %s", module, targetRate,
+						timedOut ? "was destroyed at the deadline" : "failed or did not finish");
+			}
+			return String.format(Locale.ROOT, "%-20s %9d %9.1f %8d %9.2f %9.2f %9.2f %9.2f %7d %8d%s", module,
+					targetRate, achievedRate, errors, p50Millis, p99Millis, p999Millis, maxMillis, gcCollections,
+					gcMillis, saturated ? "  saturated" : "");
+		}
+	}
+}
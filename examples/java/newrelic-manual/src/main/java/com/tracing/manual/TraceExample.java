@@ -9,6 +9,9 @@ import com.newrelic.api.agent.Trace;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import com.tracing.load.LoadGenerator;
+import com.tracing.server.ExampleServers;
+import com.tracing.server.ServerExecutors;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -17,17 +20,25 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URL;
+import java.util.List;
 
 
 /**
  * Single self contained example for a distributed micro application to
  * demonstrate how different tracing APIs instrument code
  * 
+ * <p>Without the New Relic agent, run it with the stand-in agent of the newrelic-standin module, which weaves the
+ * {@code @Trace} methods and records the transactions in memory:
+ * {@code java -javaagent:newrelic-standin.jar -cp ... com.tracing.manual.TraceExample}
+ * 
  * @author alois.reitbauer
  *
  */
 public class TraceExample {
 
+	// -Dexample.requestLog=false keeps the handlers from printing a line per request, e.g. under load
+	private static final boolean LOG_REQUESTS = ExampleServers.logRequests();
+
 	public static void main(String[] args) {
 
 		try {
@@ -42,44 +53,33 @@ public class TraceExample {
 
 	private static void initClient() {
 
+		final String[] pathList = { "pathA", "pathB" };
+		if (LoadGenerator.isEnabled()) {
+			// -Dload.rate, see LoadGenerator
+			LoadGenerator.fromSystemProperties(pathList).runInBackground(TraceExample::callServer);
+			return;
+		}
+
 		Thread thread = new Thread(new Runnable() {
 			int pos = 0;
-			String[] pathList = { "pathA", "pathB" };
 
 			@Override
 			public void run() {
 				for (;;) {
-					callHandler();
-				}
-			}
-
-			@Trace(dispatcher=true) // This annotation instruments the client
-			private void callHandler() {
-				try {
-					// call the server in a loop
-					System.out.println("Client is calling");
-					pos = (pos + 1) % 2;
-					URL url = new URL("http://localhost:8000/" + pathList[pos]);
-					String payload =  AgentBridge.getAgent().getTransaction().createDistributedTracePayload().text();
-
-					HttpURLConnection con = (HttpURLConnection) url.openConnection();
-					con.setRequestMethod("GET");
-					con.setRequestProperty("NewRelicPayload", payload);
-					BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-					String inputLine;
-					StringBuffer content = new StringBuffer();
-					while ((inputLine = in.readLine()) != null) {
-						content.append(inputLine);
+					try {
+						// call the server in a loop
+						System.out.println("Client is calling");
+						pos = (pos + 1) % 2;
+						callServer(pathList[pos]);
+					} catch (Exception e) {
+						System.err.println("Failed to talk to server");
+						System.err.println(e.toString());
+					}
+					try {
+						Thread.sleep(1000);
+					} catch (InterruptedException ex) {
+						return;
 					}
-					in.close();
-				} catch (Exception e) {
-					System.err.println("Failed to talk to server");
-					System.err.println(e.toString());
-				}
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException ex) {
-					return;
 				}
 			}
 
@@ -87,18 +87,38 @@ public class TraceExample {
 		thread.start();
 	}
 
+	@Trace(dispatcher=true) // This annotation instruments the client
+	static int callServer(String path) throws IOException {
+		URL url = new URL("http://localhost:8000/" + path);
+		String payload =  AgentBridge.getAgent().getTransaction().createDistributedTracePayload().text();
+
+		HttpURLConnection con = (HttpURLConnection) url.openConnection();
+		con.setRequestMethod("GET");
+		con.setRequestProperty("NewRelicPayload", payload);
+		BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
+		String inputLine;
+		StringBuffer content = new StringBuffer();
+		while ((inputLine = in.readLine()) != null) {
+			content.append(inputLine);
+		}
+		in.close();
+		return con.getResponseCode();
+	}
+
 	private static void initServer() throws Exception {
-		HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
+		// -Dexample.server.type=nio runs the handlers on an NIO event-loop server instead of the JDK's HttpServer
+		HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(8000));
 		server.createContext("/pathA", new PathAHandler());
 		server.createContext("/pathB", new PathBHandler());
-		server.setExecutor(null); // creates a default executor
+		// -Dexample.server.executor, see ServerExecutors
+		server.setExecutor(ServerExecutors.fromSystemProperties());
 		server.start();
 	}
 
 	// server side handlers
 	private static void readNewRelicPayload(HttpExchange t, Transaction txn) {
-		java.util.List<String> tags = t.getRequestHeaders().get("NewRelicPayload");
-		if (tags.size() == 1) {
+		List<String> tags = t.getRequestHeaders().get("NewRelicPayload");
+		if (tags != null && tags.size() == 1) {
 			txn.acceptDistributedTracePayload(tags.get(0));
 		} else {
 			System.err.println("zero or more than one tags");
@@ -116,7 +136,9 @@ public class TraceExample {
 			t.sendResponseHeaders(200, response.length());
 			OutputStream os = t.getResponseBody();
 			os.write(response.getBytes());
-			System.out.println("Path A was called.");
+			if (LOG_REQUESTS) {
+				System.out.println("Path A was called.");
+			}
 			os.close();
 		}
 	}
@@ -132,7 +154,9 @@ public class TraceExample {
 			t.sendResponseHeaders(200, response.length());
 			OutputStream os = t.getResponseBody();
 			os.write(response.getBytes());
-			System.out.println("Path B was called");
+			if (LOG_REQUESTS) {
+				System.out.println("Path B was called");
+			}
 			this.fakeDBCall("select * from table");
 			os.close();
 		}
@@ -146,7 +170,9 @@ public class TraceExample {
 					.operation("SELECT")
 					.build());
 			// this is just to simulate a fake database call
-			System.out.println("Fake DB! was called with statement " + statement);
+			if (LOG_REQUESTS) {
+				System.out.println("Fake DB! was called with statement " + statement);
+			}
 			segment.end();
 		}
 
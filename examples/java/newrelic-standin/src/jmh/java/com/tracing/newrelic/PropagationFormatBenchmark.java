@@ -0,0 +1,95 @@
+package com.tracing.newrelic;
+
+import com.sun.net.httpserver.Headers;
+import com.tracing.propagation.B3Context;
+import com.tracing.propagation.B3HeaderExtractor;
+import com.tracing.propagation.HexCodec;
+import com.tracing.propagation.TraceHeadersInjector;
+import com.tracing.propagation.W3CTraceContext;
+import com.tracing.propagation.W3CTraceContextCodec;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * What propagating the trace context of one request costs per format: the caller writes its headers, the callee reads
+ * them back. New Relic's payload is JSON, written and parsed as the stand-in agent does it - as text, as the
+ * newrelic-manual example sends it, or Base64 encoded ({@code httpSafe()}); B3 and W3C use the codecs of
+ * tracing-propagation.
+ *
+ * <p>The IDs are fixed, so generating them is not part of the measurement for any format. Run with the GC profiler
+ * ({@code ./gradlew :newrelic-standin:jmh}); {@code gc.alloc.rate.norm} is the number of bytes allocated per request.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PropagationFormatBenchmark {
+
+	private static final String NEWRELIC_HEADER = "NewRelicPayload";
+
+	private static final long TRACE_ID = 0x463ac35c9f6413adL;
+	private static final long SPAN_ID = 0x72485a3953bb6124L;
+	private static final long PARENT_ID = 0x0f3a7b2c1d4e5f60L;
+
+	@Param({ "b3", "b3Single", "w3c", "newrelic", "newrelicHttpSafe" })
+	public String format;
+
+	private final Headers headers = new Headers();
+	private final B3Context b3Context = new B3Context();
+	private final W3CTraceContext w3cContext = new W3CTraceContext();
+	private TraceHeadersInjector injector;
+	private String traceIdHex;
+	private String spanIdHex;
+	private String transactionIdHex;
+
+	@Setup
+	public void setUp() {
+		switch (format) {
+			case "b3":
+				injector = TraceHeadersInjector.create(TraceHeadersInjector.Format.B3);
+				break;
+			case "b3Single":
+				injector = TraceHeadersInjector.create(TraceHeadersInjector.Format.B3_SINGLE);
+				break;
+			case "w3c":
+				injector = TraceHeadersInjector.create(TraceHeadersInjector.Format.W3C);
+				break;
+			case "newrelic":
+			case "newrelicHttpSafe":
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown format " + format);
+		}
+		// the stand-in agent keeps its IDs as hex strings
+		traceIdHex = HexCodec.toHex(TRACE_ID);
+		spanIdHex = HexCodec.toHex(SPAN_ID);
+		transactionIdHex = HexCodec.toHex(PARENT_ID);
+	}
+
+	@Benchmark
+	public Object injectAndExtract() {
+		switch (format) {
+			case "newrelic":
+			case "newrelicHttpSafe":
+				Payload created = new Payload(traceIdHex, spanIdHex, transactionIdHex, true, 1.4262f,
+						1539000000000L);
+				headers.set(NEWRELIC_HEADER, format.equals("newrelic") ? created.text() : created.httpSafe());
+				Payload accepted = Payload.parse(headers.getFirst(NEWRELIC_HEADER));
+				return accepted.traceId;
+			case "w3c":
+				injector.inject(0, TRACE_ID, SPAN_ID, PARENT_ID, true, null, headers, Headers::set);
+				W3CTraceContextCodec.extract(headers, w3cContext);
+				return w3cContext;
+			default:
+				injector.inject(0, TRACE_ID, SPAN_ID, PARENT_ID, true, null, headers, Headers::set);
+				B3HeaderExtractor.extract(headers, b3Context);
+				return b3Context;
+		}
+	}
+}
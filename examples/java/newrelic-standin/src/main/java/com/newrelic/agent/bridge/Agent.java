@@ -0,0 +1,10 @@
+package com.newrelic.agent.bridge;
+
+/**
+ * Stand-in for the agent bridge's agent, which hands out the bridge's richer transaction.
+ */
+public interface Agent extends com.newrelic.api.agent.Agent {
+
+	@Override
+	Transaction getTransaction();
+}
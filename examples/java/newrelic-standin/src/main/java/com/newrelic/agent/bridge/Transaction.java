@@ -0,0 +1,22 @@
+package com.newrelic.agent.bridge;
+
+import com.newrelic.api.agent.DistributedTracePayload;
+
+/**
+ * Stand-in for the agent bridge's transaction, which adds distributed tracing to the API's.
+ */
+public interface Transaction extends com.newrelic.api.agent.Transaction {
+
+	/**
+	 * Creates the payload to send with an outgoing request. The transaction can't accept a payload afterwards.
+	 *
+	 * @return the payload, an empty one if the transaction is not active
+	 */
+	DistributedTracePayload createDistributedTracePayload();
+
+	/**
+	 * Continues the trace of the caller that created the payload. Ignored if the transaction already accepted or
+	 * created one, or if the payload can't be read.
+	 */
+	void acceptDistributedTracePayload(String payload);
+}
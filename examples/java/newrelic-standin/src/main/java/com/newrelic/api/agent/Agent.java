@@ -0,0 +1,12 @@
+package com.newrelic.api.agent;
+
+/**
+ * Stand-in for the New Relic API's agent, see {@link NewRelic#getAgent()}.
+ */
+public interface Agent {
+
+	/**
+	 * @return the transaction of the current thread, an inactive one outside of a {@link Trace dispatcher}
+	 */
+	Transaction getTransaction();
+}
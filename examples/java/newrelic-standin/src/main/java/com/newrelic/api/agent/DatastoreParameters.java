@@ -0,0 +1,57 @@
+package com.newrelic.api.agent;
+
+/**
+ * Stand-in for the New Relic API's description of a database call:
+ *
+ * <pre>
+ * segment.reportAsExternal(DatastoreParameters.product("FakeDB").collection("table").operation("SELECT").build());
+ * </pre>
+ */
+public final class DatastoreParameters implements ExternalParameters {
+
+	private final String product;
+	private final String collection;
+	private final String operation;
+
+	private DatastoreParameters(String product, String collection, String operation) {
+		this.product = product;
+		this.collection = collection;
+		this.operation = operation;
+	}
+
+	public static CollectionParameter product(String product) {
+		return collection -> operation -> () -> new DatastoreParameters(product, collection, operation);
+	}
+
+	public String getProduct() {
+		return product;
+	}
+
+	public String getCollection() {
+		return collection;
+	}
+
+	public String getOperation() {
+		return operation;
+	}
+
+	@Override
+	public String toString() {
+		return product + " " + operation + " " + collection;
+	}
+
+	public interface CollectionParameter {
+		OperationParameter collection(String collection);
+	}
+
+	public interface OperationParameter {
+		InstanceParameter operation(String operation);
+	}
+
+	public interface InstanceParameter extends Build {
+	}
+
+	public interface Build {
+		DatastoreParameters build();
+	}
+}
@@ -0,0 +1,18 @@
+package com.newrelic.api.agent;
+
+/**
+ * Stand-in for the New Relic API's distributed trace payload: the trace context a caller passes on, see
+ * {@code com.newrelic.agent.bridge.Transaction#createDistributedTracePayload()}.
+ */
+public interface DistributedTracePayload {
+
+	/**
+	 * @return the payload as JSON
+	 */
+	String text();
+
+	/**
+	 * @return the payload as Base64 encoded JSON, safe to send in an HTTP header
+	 */
+	String httpSafe();
+}
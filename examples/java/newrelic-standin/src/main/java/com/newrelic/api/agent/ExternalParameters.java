@@ -0,0 +1,7 @@
+package com.newrelic.api.agent;
+
+/**
+ * Stand-in for the New Relic API's description of an external call, see {@link Segment#reportAsExternal}.
+ */
+public interface ExternalParameters {
+}
@@ -0,0 +1,16 @@
+package com.newrelic.api.agent;
+
+import com.newrelic.agent.bridge.AgentBridge;
+
+/**
+ * Stand-in for the New Relic API's entry point. Only what the examples call is there.
+ */
+public final class NewRelic {
+
+	private NewRelic() {
+	}
+
+	public static Agent getAgent() {
+		return AgentBridge.getAgent();
+	}
+}
@@ -0,0 +1,17 @@
+package com.newrelic.api.agent;
+
+/**
+ * Stand-in for the New Relic API's segment, a timed piece of work within a transaction.
+ */
+public interface Segment {
+
+	/**
+	 * Records what the segment called, e.g. {@link DatastoreParameters} for a database.
+	 */
+	void reportAsExternal(ExternalParameters externalParameters);
+
+	/**
+	 * Stops timing the segment. Only the first call counts.
+	 */
+	void end();
+}
@@ -0,0 +1,21 @@
+package com.newrelic.api.agent;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stand-in for the New Relic API's {@code @Trace}. The stand-in agent's {@code -javaagent} weaves annotated methods
+ * like the real agent does: a dispatcher method runs in a transaction of its own, any other one in a segment of the
+ * current transaction. Both are named {@code Class.method}.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ ElementType.METHOD, ElementType.CONSTRUCTOR })
+public @interface Trace {
+
+	/**
+	 * @return true to start a transaction if none is current, as a request handler does
+	 */
+	boolean dispatcher() default false;
+}
@@ -0,0 +1,18 @@
+package com.newrelic.api.agent;
+
+/**
+ * Stand-in for the New Relic API's transaction: the work done for one request, from the {@link Trace dispatcher}
+ * method's entry to its exit.
+ */
+public interface Transaction {
+
+	/**
+	 * Starts timing a piece of work, e.g. a database call, that ends with {@link Segment#end()}.
+	 */
+	Segment startSegment(String segmentName);
+
+	/**
+	 * @return true if this is a real transaction, false outside of a dispatcher
+	 */
+	boolean isActive();
+}
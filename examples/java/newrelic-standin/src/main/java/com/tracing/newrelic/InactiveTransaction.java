@@ -0,0 +1,59 @@
+package com.tracing.newrelic;
+
+import com.newrelic.agent.bridge.Transaction;
+import com.newrelic.api.agent.DistributedTracePayload;
+import com.newrelic.api.agent.ExternalParameters;
+import com.newrelic.api.agent.Segment;
+
+/**
+ * What {@code getTransaction()} returns outside of a dispatcher, as the real agent's no-op transaction: everything is
+ * ignored.
+ */
+final class InactiveTransaction implements Transaction {
+
+	static final InactiveTransaction INSTANCE = new InactiveTransaction();
+
+	private static final Segment SEGMENT = new Segment() {
+		@Override
+		public void reportAsExternal(ExternalParameters externalParameters) {
+		}
+
+		@Override
+		public void end() {
+		}
+	};
+
+	private static final DistributedTracePayload PAYLOAD = new DistributedTracePayload() {
+		@Override
+		public String text() {
+			return "";
+		}
+
+		@Override
+		public String httpSafe() {
+			return "";
+		}
+	};
+
+	private InactiveTransaction() {
+	}
+
+	@Override
+	public Segment startSegment(String segmentName) {
+		return SEGMENT;
+	}
+
+	@Override
+	public boolean isActive() {
+		return false;
+	}
+
+	@Override
+	public DistributedTracePayload createDistributedTracePayload() {
+		return PAYLOAD;
+	}
+
+	@Override
+	public void acceptDistributedTracePayload(String payload) {
+	}
+}
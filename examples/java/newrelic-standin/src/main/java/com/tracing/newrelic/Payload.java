@@ -0,0 +1,120 @@
+package com.tracing.newrelic;
+
+import com.newrelic.api.agent.DistributedTracePayload;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * A distributed trace payload in the format of the real agent, so that creating, sending and reading one costs what it
+ * costs there:
+ *
+ * <pre>
+ * {"v":[0,1],"d":{"ty":"App","ac":"1","ap":"1","id":"5f0a...","tr":"9c31...","pr":1.4262,"sa":true,"ti":1539...,"tx":"77d4..."}}
+ * </pre>
+ *
+ * {@code tr} is the trace ID, {@code id} the ID of the caller's outgoing call and {@code tx} the caller's
+ * transaction. Account and application are always 1, the stand-in has no account.
+ */
+final class Payload implements DistributedTracePayload {
+
+	private static final String ACCOUNT = "1";
+	private static final String APPLICATION = "1";
+
+	final String traceId;
+	final String id;
+	final String transactionId;
+	final boolean sampled;
+	final float priority;
+	final long timestampMillis;
+	private String text;
+
+	Payload(String traceId, String id, String transactionId, boolean sampled, float priority, long timestampMillis) {
+		this.traceId = traceId;
+		this.id = id;
+		this.transactionId = transactionId;
+		this.sampled = sampled;
+		this.priority = priority;
+		this.timestampMillis = timestampMillis;
+	}
+
+	@Override
+	public String text() {
+		if (text == null) {
+			text = new StringBuilder(160)
+					.append("{\"v\":[0,1],\"d\":{\"ty\":\"App\",\"ac\":\"").append(ACCOUNT)
+					.append("\",\"ap\":\"").append(APPLICATION)
+					.append("\",\"id\":\"").append(id)
+					.append("\",\"tr\":\"").append(traceId)
+					.append("\",\"pr\":").append(priority)
+					.append(",\"sa\":").append(sampled)
+					.append(",\"ti\":").append(timestampMillis)
+					.append(",\"tx\":\"").append(transactionId)
+					.append("\"}}").toString();
+		}
+		return text;
+	}
+
+	@Override
+	public String httpSafe() {
+		return Base64.getEncoder().encodeToString(text().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Reads a payload as {@link #text()} or {@link #httpSafe()} wrote it.
+	 *
+	 * @return the payload, null if it is not one
+	 */
+	static Payload parse(String payload) {
+		if (payload == null || payload.isEmpty()) {
+			return null;
+		}
+		String json = payload;
+		if (json.charAt(0) != '{') {
+			try {
+				json = new String(Base64.getDecoder().decode(payload), StandardCharsets.UTF_8);
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+		if (!json.startsWith("{\"v\":[0,")) {
+			return null;
+		}
+		String traceId = stringField(json, "\"tr\":\"");
+		String id = stringField(json, "\"id\":\"");
+		if (traceId == null || id == null) {
+			return null;
+		}
+		String priority = numberField(json, "\"pr\":");
+		String timestamp = numberField(json, "\"ti\":");
+		try {
+			return new Payload(traceId, id, stringField(json, "\"tx\":\""), json.contains("\"sa\":true"),
+					priority == null ? 0 : Float.parseFloat(priority),
+					timestamp == null ? 0 : Long.parseLong(timestamp));
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static String stringField(String json, String key) {
+		int start = json.indexOf(key);
+		if (start < 0) {
+			return null;
+		}
+		start += key.length();
+		int end = json.indexOf('"', start);
+		return end < 0 ? null : json.substring(start, end);
+	}
+
+	private static String numberField(String json, String key) {
+		int start = json.indexOf(key);
+		if (start < 0) {
+			return null;
+		}
+		start += key.length();
+		int end = start;
+		while (end < json.length() && "-.0123456789Ee".indexOf(json.charAt(end)) >= 0) {
+			end++;
+		}
+		return end == start ? null : json.substring(start, end);
+	}
+}
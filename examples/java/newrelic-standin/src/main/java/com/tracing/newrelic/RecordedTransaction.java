@@ -0,0 +1,105 @@
+package com.tracing.newrelic;
+
+import java.util.List;
+
+/**
+ * A finished transaction as the stand-in agent recorded it.
+ */
+public final class RecordedTransaction {
+
+	private final String name;
+	private final String guid;
+	private final String traceId;
+	private final String parentId;
+	private final long startMicros;
+	private final long durationMicros;
+	private final List<Segment> segments;
+
+	RecordedTransaction(String name, String guid, String traceId, String parentId, long startMicros,
+			long durationMicros, List<Segment> segments) {
+		this.name = name;
+		this.guid = guid;
+		this.traceId = traceId;
+		this.parentId = parentId;
+		this.startMicros = startMicros;
+		this.durationMicros = durationMicros;
+		this.segments = segments;
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public String guid() {
+		return guid;
+	}
+
+	/**
+	 * @return the trace ID, the guid of the transaction that started the trace
+	 */
+	public String traceId() {
+		return traceId;
+	}
+
+	/**
+	 * @return the ID the caller sent in its payload, null if the transaction accepted none
+	 */
+	public String parentId() {
+		return parentId;
+	}
+
+	public long startMicros() {
+		return startMicros;
+	}
+
+	public long durationMicros() {
+		return durationMicros;
+	}
+
+	/**
+	 * @return the segments that ended before the transaction, in the order they ended
+	 */
+	public List<Segment> segments() {
+		return segments;
+	}
+
+	@Override
+	public String toString() {
+		return "Transaction{name=" + name + ", guid=" + guid + ", traceId=" + traceId + ", parentId="
+				+ (parentId == null ? "none" : parentId) + ", durationMicros=" + durationMicros + ", segments="
+				+ segments + "}";
+	}
+
+	public static final class Segment {
+
+		private final String name;
+		private final long durationMicros;
+		private final String external;
+
+		Segment(String name, long durationMicros, String external) {
+			this.name = name;
+			this.durationMicros = durationMicros;
+			this.external = external;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		public long durationMicros() {
+			return durationMicros;
+		}
+
+		/**
+		 * @return what the segment reported as external, e.g. "FakeDB SELECT tablename", or null
+		 */
+		public String external() {
+			return external;
+		}
+
+		@Override
+		public String toString() {
+			return name + (external == null ? "" : " (" + external + ")") + " " + durationMicros + "us";
+		}
+	}
+}
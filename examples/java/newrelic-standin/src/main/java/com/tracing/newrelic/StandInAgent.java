@@ -0,0 +1,129 @@
+package com.tracing.newrelic;
+
+import com.newrelic.agent.bridge.Agent;
+import com.newrelic.agent.bridge.Transaction;
+import com.newrelic.api.agent.Segment;
+import com.newrelic.api.agent.Trace;
+import com.tracing.propagation.HexCodec;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An offline stand-in for the New Relic agent, so that the newrelic-manual example runs - and can be measured -
+ * without the proprietary agent. It implements the bridge and API calls the example makes and records the finished
+ * transactions with their segments in memory, keeping the latest {@code -Dnewrelic.standin.capacity} (default 4096).
+ * {@code -Dnewrelic.standin.log=true} also prints every one.
+ *
+ * <p>Transactions are started and ended around {@link Trace @Trace} methods, which {@link TraceInstrumentation} weaves
+ * when the module's jar is attached with {@code -javaagent}, as the real agent would. Without it the calls still work,
+ * but outside of a transaction, where they are ignored.
+ *
+ * <p>Payloads are JSON in the real agent's format, see {@link Payload}, so propagating them costs about what it costs
+ * there; {@code PropagationFormatBenchmark} compares that with B3 and W3C headers.
+ */
+public final class StandInAgent implements Agent {
+
+	public static final String CAPACITY_PROPERTY = "newrelic.standin.capacity";
+	public static final String LOG_PROPERTY = "newrelic.standin.log";
+
+	private static final StandInAgent INSTANCE = new StandInAgent(Integer.getInteger(CAPACITY_PROPERTY, 4096),
+			Boolean.getBoolean(LOG_PROPERTY));
+
+	private final ThreadLocal<StandInTransaction> current = new ThreadLocal<>();
+	private final AtomicReferenceArray<RecordedTransaction> finished;
+	private final int mask;
+	private final AtomicLong finishedCount = new AtomicLong();
+	private final boolean log;
+
+	private StandInAgent(int capacity, boolean log) {
+		if (capacity < 1 || capacity > 1 << 30) {
+			throw new IllegalArgumentException(CAPACITY_PROPERTY + " must be between 1 and 2^30: " + capacity);
+		}
+		this.finished = new AtomicReferenceArray<>(Math.max(Integer.highestOneBit(capacity - 1) << 1, 1));
+		this.mask = finished.length() - 1;
+		this.log = log;
+	}
+
+	public static StandInAgent instance() {
+		return INSTANCE;
+	}
+
+	@Override
+	public Transaction getTransaction() {
+		StandInTransaction transaction = current.get();
+		return transaction != null ? transaction : InactiveTransaction.INSTANCE;
+	}
+
+	/**
+	 * Called on entry of a {@link Trace @Trace} method: a dispatcher starts a transaction if none is current, anything
+	 * else starts a segment of the current one.
+	 *
+	 * @return what {@link #exitTrace(Object)} ends, null if nothing was started
+	 */
+	public static Object enterTrace(String name, boolean dispatcher) {
+		StandInTransaction transaction = INSTANCE.current.get();
+		if (transaction != null) {
+			return transaction.startSegment(name);
+		}
+		if (!dispatcher) {
+			return null;
+		}
+		transaction = new StandInTransaction(name);
+		INSTANCE.current.set(transaction);
+		return transaction;
+	}
+
+	/**
+	 * Called on exit of a {@link Trace @Trace} method, also when it throws.
+	 *
+	 * @param started what {@link #enterTrace(String, boolean)} returned
+	 */
+	public static void exitTrace(Object started) {
+		if (started instanceof Segment) {
+			((Segment) started).end();
+		} else if (started instanceof StandInTransaction) {
+			INSTANCE.current.remove();
+			INSTANCE.record(((StandInTransaction) started).finish());
+		}
+	}
+
+	/**
+	 * @return the transactions currently kept, oldest first
+	 */
+	public List<RecordedTransaction> finishedTransactions() {
+		long written = finishedCount.get();
+		List<RecordedTransaction> transactions = new ArrayList<>();
+		for (long sequence = Math.max(0, written - finished.length()); sequence < written; sequence++) {
+			RecordedTransaction transaction = finished.get((int) (sequence & mask));
+			if (transaction != null) {
+				transactions.add(transaction);
+			}
+		}
+		return transactions;
+	}
+
+	/**
+	 * @return the number of transactions finished since the start
+	 */
+	public long finishedCount() {
+		return finishedCount.get();
+	}
+
+	private void record(RecordedTransaction transaction) {
+		finished.lazySet((int) (finishedCount.getAndIncrement() & mask), transaction);
+		if (log) {
+			System.out.println("[NEWRELIC] " + transaction);
+		}
+	}
+
+	static String newGuid() {
+		long id;
+		do {
+			id = ThreadLocalRandom.current().nextLong();
+		} while (id == 0);
+		return HexCodec.toHex(id);
+	}
+}
@@ -0,0 +1,37 @@
+package com.tracing.newrelic;
+
+import com.newrelic.api.agent.ExternalParameters;
+import com.newrelic.api.agent.Segment;
+
+/**
+ * A segment of a {@link StandInTransaction}, added to it when it ends.
+ */
+final class StandInSegment implements Segment {
+
+	private final StandInTransaction transaction;
+	private final String name;
+	private final long startNanos = System.nanoTime();
+	private volatile ExternalParameters external;
+	private volatile boolean ended;
+
+	StandInSegment(StandInTransaction transaction, String name) {
+		this.transaction = transaction;
+		this.name = name;
+	}
+
+	@Override
+	public void reportAsExternal(ExternalParameters externalParameters) {
+		this.external = externalParameters;
+	}
+
+	@Override
+	public void end() {
+		if (ended) {
+			return;
+		}
+		ended = true;
+		ExternalParameters reported = external;
+		transaction.segmentEnded(new RecordedTransaction.Segment(name, (System.nanoTime() - startNanos) / 1000,
+				reported == null ? null : reported.toString()));
+	}
+}
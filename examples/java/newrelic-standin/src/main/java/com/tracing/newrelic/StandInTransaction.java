@@ -0,0 +1,94 @@
+package com.tracing.newrelic;
+
+import com.newrelic.agent.bridge.Transaction;
+import com.newrelic.api.agent.DistributedTracePayload;
+import com.newrelic.api.agent.Segment;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A transaction of the stand-in agent, from the entry of a dispatcher method to its exit. It starts a trace of its
+ * own unless it accepts a caller's payload first, and keeps the segments that end while it runs.
+ */
+final class StandInTransaction implements Transaction {
+
+	// a transaction that loops over segments keeps the first ones, as a span keeps its first log entries
+	static final int MAX_SEGMENTS = 64;
+
+	private final String name;
+	private final String guid;
+	private final long startMicros;
+	private final long startNanos;
+	private String traceId;
+	private String parentId;
+	private boolean sampled = true;
+	private float priority;
+	private boolean payloadCreated;
+	private boolean payloadAccepted;
+	private List<RecordedTransaction.Segment> segments;
+
+	StandInTransaction(String name) {
+		this.name = name;
+		this.guid = StandInAgent.newGuid();
+		this.traceId = guid;
+		// sampled transactions get a priority above 1, as with the real agent
+		this.priority = 1 + ThreadLocalRandom.current().nextFloat();
+		this.startMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+		this.startNanos = System.nanoTime();
+	}
+
+	String name() {
+		return name;
+	}
+
+	@Override
+	public Segment startSegment(String segmentName) {
+		return new StandInSegment(this, segmentName);
+	}
+
+	@Override
+	public boolean isActive() {
+		return true;
+	}
+
+	@Override
+	public DistributedTracePayload createDistributedTracePayload() {
+		payloadCreated = true;
+		return new Payload(traceId, StandInAgent.newGuid(), guid, sampled, priority, System.currentTimeMillis());
+	}
+
+	@Override
+	public void acceptDistributedTracePayload(String payload) {
+		if (payloadCreated || payloadAccepted) {
+			return;
+		}
+		Payload accepted = Payload.parse(payload);
+		if (accepted == null) {
+			return;
+		}
+		payloadAccepted = true;
+		traceId = accepted.traceId;
+		parentId = accepted.id;
+		sampled = accepted.sampled;
+		priority = accepted.priority;
+	}
+
+	synchronized void segmentEnded(RecordedTransaction.Segment segment) {
+		if (segments == null) {
+			segments = new ArrayList<>();
+		}
+		if (segments.size() < MAX_SEGMENTS) {
+			segments.add(segment);
+		}
+	}
+
+	synchronized RecordedTransaction finish() {
+		return new RecordedTransaction(name, guid, traceId, parentId, startMicros,
+				(System.nanoTime() - startNanos) / 1000,
+				segments == null ? Collections.<RecordedTransaction.Segment>emptyList()
+						: Collections.unmodifiableList(segments));
+	}
+}
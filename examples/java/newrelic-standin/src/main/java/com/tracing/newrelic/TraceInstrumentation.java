@@ -0,0 +1,74 @@
+package com.tracing.newrelic;
+
+import com.newrelic.api.agent.Trace;
+import java.lang.instrument.Instrumentation;
+import net.bytebuddy.agent.builder.AgentBuilder;
+import net.bytebuddy.asm.Advice;
+import net.bytebuddy.asm.AsmVisitorWrapper;
+import net.bytebuddy.description.method.MethodDescription;
+import net.bytebuddy.matcher.ElementMatcher;
+
+import static net.bytebuddy.matcher.ElementMatchers.declaresMethod;
+import static net.bytebuddy.matcher.ElementMatchers.isAnnotatedWith;
+import static net.bytebuddy.matcher.ElementMatchers.isSynthetic;
+import static net.bytebuddy.matcher.ElementMatchers.nameStartsWith;
+
+/**
+ * The {@code -javaagent} of the stand-in agent: weaves every {@link Trace @Trace} method of the application so that
+ * it runs in a transaction or segment of the {@link StandInAgent}, which is what the real agent does at load time.
+ *
+ * <p>Usage: {@code java -javaagent:newrelic-standin.jar ...}
+ */
+public final class TraceInstrumentation {
+
+	private TraceInstrumentation() {
+	}
+
+	public static void premain(String arguments, Instrumentation instrumentation) {
+		install(instrumentation);
+	}
+
+	public static void install(Instrumentation instrumentation) {
+		AsmVisitorWrapper dispatchers = Advice.to(DispatcherAdvice.class).on(traced(true));
+		AsmVisitorWrapper segments = Advice.to(SegmentAdvice.class).on(traced(false));
+
+		new AgentBuilder.Default()
+			.ignore(nameStartsWith("net.bytebuddy.").or(nameStartsWith("com.newrelic.")).or(
+				nameStartsWith("com.tracing.newrelic.")).or(isSynthetic()))
+			.type(declaresMethod(isAnnotatedWith(Trace.class)))
+			.transform((builder, type, classLoader, module, protectionDomain) ->
+				builder.visit(dispatchers).visit(segments))
+			.installOn(instrumentation);
+	}
+
+	private static ElementMatcher.Junction<MethodDescription> traced(boolean dispatcher) {
+		return isAnnotatedWith(Trace.class).and(method ->
+			method.getDeclaredAnnotations().ofType(Trace.class).load().dispatcher() == dispatcher);
+	}
+
+	static class DispatcherAdvice {
+
+		@Advice.OnMethodEnter
+		static Object enter(@Advice.Origin("#t.#m") String name) {
+			return StandInAgent.enterTrace(name, true);
+		}
+
+		@Advice.OnMethodExit(onThrowable = Throwable.class)
+		static void exit(@Advice.Enter Object started) {
+			StandInAgent.exitTrace(started);
+		}
+	}
+
+	static class SegmentAdvice {
+
+		@Advice.OnMethodEnter
+		static Object enter(@Advice.Origin("#t.#m") String name) {
+			return StandInAgent.enterTrace(name, false);
+		}
+
+		@Advice.OnMethodExit(onThrowable = Throwable.class)
+		static void exit(@Advice.Enter Object started) {
+			StandInAgent.exitTrace(started);
+		}
+	}
+}
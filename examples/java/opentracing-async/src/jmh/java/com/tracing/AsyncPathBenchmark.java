@@ -0,0 +1,69 @@
+package com.tracing;
+
+import com.tracing.tracer.ContextScopeManager;
+import com.tracing.tracer.InMemoryTracer;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The tracing work of the asyncWithCompletableFuture path without the HTTP and sleep parts: start the request span,
+ * hop to another thread with supplyAsync, run a second stage and finish the span when the future completes.
+ *
+ * {@link WingtipsAsyncPathBenchmark} does the same with Wingtips as in the wingtips-async example, run both with
+ * e.g. {@code gradle :opentracing-async:jmh} and compare against {@link #untraced()}.
+ */
+@State(org.openjdk.jmh.annotations.Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class AsyncPathBenchmark {
+
+    private ExecutorService executor;
+    private ContextScopeManager scopeManager;
+    private InMemoryTracer tracer;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+        scopeManager = new ContextScopeManager();
+        tracer = new InMemoryTracer(scopeManager, 1024);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    // reads the active span like code in a stage would, e.g. for logging
+    private int currentSpanMarker() {
+        return tracer.activeSpan() == null ? -1 : 0;
+    }
+
+    @Benchmark
+    public Integer untraced() {
+        return CompletableFuture.supplyAsync(() -> "cf-data", executor)
+            .thenApply(String::length)
+            .join();
+    }
+
+    @Benchmark
+    public Integer openTracingContextScopeManager() {
+        Span requestSpan = tracer.buildSpan("serverHandling-GET_/asyncWithCompletableFuture").start();
+        try (Scope ignore = scopeManager.activate(requestSpan, false)) {
+            return scopeManager.supplyAsync(() -> "cf-data", executor)
+                .thenApply(scopeManager.functionWithActiveSpan(data -> data.length() + currentSpanMarker()))
+                .whenComplete(scopeManager.biConsumerWithActiveSpan((result, error) -> requestSpan.finish()))
+                .join();
+        }
+    }
+}
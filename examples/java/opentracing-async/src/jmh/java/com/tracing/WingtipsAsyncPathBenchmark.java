@@ -0,0 +1,66 @@
+package com.tracing;
+
+import static com.nike.wingtips.util.AsyncWingtipsHelperStatic.biConsumerWithTracing;
+import static com.nike.wingtips.util.AsyncWingtipsHelperStatic.functionWithTracing;
+import static com.nike.wingtips.util.AsyncWingtipsHelperStatic.runnableWithTracing;
+import static com.nike.wingtips.util.AsyncWingtipsHelperStatic.supplierWithTracing;
+
+import com.nike.wingtips.Tracer;
+import com.nike.wingtips.util.TracingState;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * {@link AsyncPathBenchmark} with the request span handled the way the wingtips-async example does it.
+ *
+ * There is no SLF4J binding on the benchmark classpath, so Wingtips' span logging is a no-op - it measures the
+ * tracing work only, like the in-memory tracer on the OpenTracing side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WingtipsAsyncPathBenchmark {
+
+    private final Tracer wingtipsTracer = Tracer.getInstance();
+    private ExecutorService executor;
+
+    @Setup
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    // reads the current span like code in a stage would, e.g. for logging
+    private int currentSpanMarker() {
+        return wingtipsTracer.getCurrentSpan() == null ? -1 : 0;
+    }
+
+    @Benchmark
+    public Integer wingtips() {
+        try {
+            wingtipsTracer.startRequestWithRootSpan("serverHandling-GET_/asyncWithCompletableFuture");
+            TracingState requestTracingState = TracingState.getCurrentThreadTracingState();
+            return CompletableFuture.supplyAsync(supplierWithTracing(() -> "cf-data"), executor)
+                .thenApply(functionWithTracing((String data) -> data.length() + currentSpanMarker()))
+                .whenComplete(biConsumerWithTracing((result, error) ->
+                    runnableWithTracing(wingtipsTracer::completeRequestSpan, requestTracingState).run()))
+                .join();
+        } finally {
+            wingtipsTracer.unregisterFromThread();
+        }
+    }
+}
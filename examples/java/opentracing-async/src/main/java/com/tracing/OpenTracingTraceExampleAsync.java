@@ -0,0 +1,352 @@
+package com.tracing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.tracing.load.LoadGenerator;
+import com.tracing.server.AsyncStages;
+import com.tracing.server.ExampleServers;
+import com.tracing.server.ServerExecutors;
+import com.tracing.tracer.ContextScopeManager;
+import com.tracing.tracer.InMemoryTracer;
+import io.opentracing.Scope;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format.Builtin;
+import io.opentracing.tag.Tags;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The OpenTracing version of the async template: the same three asynchronous request paths, with the request span
+ * carried across threads by a {@link ContextScopeManager}.
+ *
+ * Run with -Dexample.executor=virtual on Java 21+ to process the asyncWithExecutor path with one virtual thread per
+ * task instead of a cached platform thread pool.
+ */
+public class OpenTracingTraceExampleAsync {
+
+    // -Dexample.requestLog=false keeps the handlers from printing a line per request, e.g. under load
+    static final boolean LOG_REQUESTS = ExampleServers.logRequests();
+
+    // -Dexample.simulatedWork=false skips the sleeps that simulate server time, e.g. to compare the tracers under load
+    static final boolean SIMULATE_WORK = ExampleServers.simulateWork();
+
+    static final ContextScopeManager scopeManager = new ContextScopeManager();
+    static final InMemoryTracer tracer = new InMemoryTracer(scopeManager, TraceExample.IN_MEMORY_SPAN_CAPACITY);
+
+    public static void main(String[] args) {
+
+        try {
+            initServer();
+            initClient();
+        } catch (Exception ex) {
+            System.err.println("Error starting example");
+            ex.printStackTrace();
+        }
+
+    }
+
+
+    ///////////////////////////////////////////////////////////////////
+    // CLIENT-SIDE CODE
+    ///////////////////////////////////////////////////////////////////
+
+    private static void initClient() {
+
+        String[] pathList = {"asyncWithExecutor", "asyncWithCompletableFuture", "asyncWithCallback"};
+        if (LoadGenerator.isEnabled()) {
+            // -Dload.rate, see LoadGenerator
+            LoadGenerator.fromSystemProperties(pathList).runInBackground(path -> callServer(path, false));
+            return;
+        }
+
+        Thread thread = new Thread(() -> {
+
+            int pos = 0;
+            // call the server in a loop
+            for (;;) {
+                pos = (pos + 1) % pathList.length;
+                String pathToCall = pathList[pos];
+                System.out.println("\n=============");
+                System.out.println("Client is calling: /" + pathToCall);
+                try {
+                    callServer(pathToCall, true);
+                } catch (Exception e) {
+                    System.err.println("Failed to talk to server");
+                    e.printStackTrace();
+                }
+
+                sleepForMillis(1000);
+            }
+        });
+        thread.start();
+    }
+
+    static int callServer(String pathToCall, boolean logResponse) throws IOException {
+        Span span = tracer.buildSpan("clientCalling-GET_/" + pathToCall)
+            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+            .withTag(Tags.HTTP_METHOD.getKey(), "GET").start();
+        try (Scope ignore = scopeManager.activate(span, true)) {
+            // Errors are recorded before the scope closes, since closing it finishes the span.
+            try {
+                // Setup the HTTP client call
+                URL url = new URL("http://localhost:8000/" + pathToCall);
+                span.setTag(Tags.HTTP_URL.getKey(), url.toString());
+                HttpURLConnection con = (HttpURLConnection) url.openConnection();
+                con.setRequestMethod("GET");
+
+                // Inject span context into http headers.
+                tracer.inject(span.context(), Builtin.HTTP_HEADERS, new TraceExample.TextMapInjectAdapter(con));
+
+                // Execute the HTTP client call
+                BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
+                String inputLine;
+                StringBuilder content = new StringBuilder();
+                while ((inputLine = in.readLine()) != null) {
+                    content.append(inputLine);
+                }
+                if (logResponse) {
+                    System.out.println("Received result from server: " + content);
+                }
+                in.close();
+                int status = con.getResponseCode();
+                span.setTag(Tags.HTTP_STATUS.getKey(), status);
+                return status;
+            } catch (IOException | RuntimeException e) {
+                Tags.ERROR.set(span, Boolean.TRUE);
+                throw e;
+            }
+        }
+    }
+
+
+    ///////////////////////////////////////////////////////////////////
+    // SERVER-SIDE CODE
+    ///////////////////////////////////////////////////////////////////
+
+    private static void initServer() throws Exception {
+        // -Dexample.server.type=nio runs the handlers on an NIO event-loop server instead of the JDK's HttpServer
+        HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(8000));
+        server.createContext("/asyncWithExecutor", new AsyncWithExecutorPathHandler());
+        server.createContext("/asyncWithCompletableFuture", new AsyncWithCompletableFuturePathHandler());
+        server.createContext("/asyncWithCallback", new AsyncWithCallbackPathHandler());
+        // -Dexample.server.executor, see ServerExecutors
+        server.setExecutor(ServerExecutors.fromSystemProperties(() -> TraceExample.closeLeakedScopes(scopeManager)));
+        server.start();
+    }
+
+    /**
+     * Starts the span for the whole request - a child of the caller's span if the request carries trace headers.
+     * It is finished wherever the asynchronous processing of the request ends, not on the handler thread.
+     */
+    static Span startOverallRequestSpan(HttpExchange t) {
+        return tracer.buildSpan("serverHandling-" + t.getRequestMethod() + "_" + t.getRequestURI().getPath())
+            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+            .withTag(Tags.HTTP_METHOD.getKey(), t.getRequestMethod())
+            .withTag(Tags.HTTP_URL.getKey(), t.getRequestURI().toString())
+            // Note that .asChildOf() accepts (and ignores) null
+            .asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TraceExample.TextMapExtractAdapter(t)))
+            .start();
+    }
+
+    /**
+     * Sends the response and tags the request span with the status. The span is passed in rather than read from
+     * {@code tracer.activeSpan()}: the stage or thread that responds may not have it active.
+     */
+    static void respond(HttpExchange t, Span requestSpan, String response) {
+        try {
+            t.sendResponseHeaders(200, response.length());
+            OutputStream os = t.getResponseBody();
+            os.write(response.getBytes());
+            os.close();
+            requestSpan.setTag(Tags.HTTP_STATUS.getKey(), 200);
+        } catch (IOException e) {
+            System.err.println("An error occurred while processing the request.");
+            e.printStackTrace();
+            throw new RuntimeException(e);
+        }
+    }
+
+    // server side handlers
+
+    static class AsyncWithExecutorPathHandler implements HttpHandler {
+
+        // This is an Executor you control. You can wrap it or replace it with a different Executor.
+        // Wrapping it lets the span that is active when execute() is called hop to the thread running the task.
+        private static final Executor requestProcessingExecutorYouControl =
+            scopeManager.executorServiceWithActiveSpan(ServerExecutors.newRequestProcessingExecutor());
+
+        @Override
+        public void handle(HttpExchange t) {
+            Span requestSpan = startOverallRequestSpan(t);
+            // Activate without finishing on close - the span outlives this handler thread's scope.
+            try (Scope ignore = scopeManager.activate(requestSpan, false)) {
+                if (LOG_REQUESTS) {
+                    System.out.println("/asyncWithExecutor path was called.");
+                }
+
+                requestProcessingExecutorYouControl.execute(() -> {
+                    try {
+                        if (SIMULATE_WORK) {
+                            sleepForMillis(5);
+                        }
+
+                        if (LOG_REQUESTS) {
+                            System.out.println("In async thread - about to respond to caller.");
+                        }
+                        respond(t, requestSpan, "This is the asyncWithExecutor path");
+                    } finally {
+                        // For this simplistic example the request is done once the task is done.
+                        requestSpan.finish();
+                    }
+                });
+            }
+        }
+
+    }
+
+    static class AsyncWithCompletableFuturePathHandler implements HttpHandler {
+
+        // -Dexample.async.stages=dedicated runs the stages on a bounded pool of their own and waits for the data on a
+        //     timer; by default they sleep on the common ForkJoinPool. Either way every task is wrapped when it is
+        //     submitted, so each stage runs with the span that was active when it was created.
+        private static final AsyncStages stages = AsyncStages.fromSystemProperties(scopeManager::runnableWithActiveSpan);
+
+        @Override
+        public void handle(HttpExchange t) {
+            Span requestSpan = startOverallRequestSpan(t);
+            try (Scope ignore = scopeManager.activate(requestSpan, false)) {
+                if (LOG_REQUESTS) {
+                    System.out.println("/asyncWithCompletableFuture path was called.");
+                }
+
+                stages.supplyAfter(SIMULATE_WORK ? 5 : 0, TimeUnit.MILLISECONDS,
+                        () -> "cf-data_" + UUID.randomUUID().toString())
+                    .thenAcceptAsync(dataForResponse -> {
+                        if (LOG_REQUESTS) {
+                            System.out.println("In async CompletableFuture, about to respond with data: "
+                                    + dataForResponse);
+                        }
+                        respond(t, requestSpan, "This is the asyncWithCompletableFuture path - "
+                            + "data supplied by the CompletableFuture: " + dataForResponse);
+                    }, stages.executor())
+                    .whenComplete(scopeManager.biConsumerWithActiveSpan((result, error) -> {
+                        if (error != null) {
+                            if (error.getCause() instanceof RejectedExecutionException) {
+                                // the stage pool filled up while the data was loaded
+                                respondTooBusy(t, requestSpan);
+                            } else {
+                                respondServerError(t, requestSpan, error);
+                            }
+                            Tags.ERROR.set(requestSpan, Boolean.TRUE);
+                        }
+                        // Finish the overall request span now that the CompletableFuture is done.
+                        requestSpan.finish();
+                    }));
+            } catch (RejectedExecutionException e) {
+                respondTooBusy(t, requestSpan);
+                Tags.ERROR.set(requestSpan, Boolean.TRUE);
+                requestSpan.finish();
+            }
+        }
+
+        // The failed stage may have been respond() itself, after the headers went out - then all that is left is to
+        //     close the exchange.
+        private static void respondServerError(HttpExchange t, Span requestSpan, Throwable error) {
+            System.err.println("An error occurred while processing the request.");
+            error.printStackTrace();
+            try {
+                t.sendResponseHeaders(500, -1);
+                requestSpan.setTag(Tags.HTTP_STATUS.getKey(), 500);
+            } catch (IOException e) {
+                System.err.println("Could not send the error response: " + e);
+            } finally {
+                t.close();
+            }
+        }
+
+        private static void respondTooBusy(HttpExchange t, Span requestSpan) {
+            try {
+                t.sendResponseHeaders(503, -1);
+                t.close();
+                requestSpan.setTag(Tags.HTTP_STATUS.getKey(), 503);
+            } catch (IOException e) {
+                System.err.println("An error occurred while processing the request.");
+                e.printStackTrace();
+            }
+        }
+
+    }
+
+    static class AsyncWithCallbackPathHandler implements HttpHandler {
+
+        @Override
+        public void handle(HttpExchange t) {
+            Span requestSpan = startOverallRequestSpan(t);
+            try (Scope ignore = scopeManager.activate(requestSpan, false)) {
+                if (LOG_REQUESTS) {
+                    System.out.println("/asyncWithCallback path was called.");
+                }
+
+                SomeThirdPartyFramework.executeSomeAsyncFunctionWithNoThreadGuarantees(
+                    (data) -> {
+                        if (SIMULATE_WORK) {
+                            sleepForMillis(5);
+                        }
+
+                        // At this point we don't know what thread we'll be on, and the callback interface is not
+                        //     one the scope manager can wrap, so we activate the request span manually. Closing the
+                        //     scope restores whatever was active on this thread before.
+                        try (Scope callbackScope = scopeManager.activate(requestSpan, false)) {
+                            if (LOG_REQUESTS) {
+                                System.out.println("In async callback, about to respond with data: " + data);
+                            }
+                            respond(t, requestSpan, "This is the asyncWithCallback path - "
+                                + "data supplied by the third party framework: " + data);
+                        } finally {
+                            requestSpan.finish();
+                        }
+                    }
+                );
+            }
+        }
+
+        // NOTE: FOR THE PURPOSE OF THIS EXAMPLE YOU ARE NOT ALLOWED TO MODIFY THIS CLASS!
+        static class SomeThirdPartyFramework {
+
+            // Imagine this executor is buried somewhere deep in third party code - you cannot specify which Executor
+            //     is used, and you cannot wrap it.
+            private static final Executor executorYouCannotWrap = Executors.newCachedThreadPool();
+
+            static void executeSomeAsyncFunctionWithNoThreadGuarantees(SomeThirdPartyCallback callback) {
+                String dataFromThirdPartyFramework = "3rd-party-framework-data_" + UUID.randomUUID().toString();
+                // Do the callback in an async thread outside the control of the caller.
+                executorYouCannotWrap.execute(() -> callback.doTheCallback(dataFromThirdPartyFramework));
+            }
+        }
+
+        // NOTE: FOR THE PURPOSE OF THIS EXAMPLE YOU ARE NOT ALLOWED TO MODIFY THIS CLASS!
+        interface SomeThirdPartyCallback {
+            void doTheCallback(String data);
+        }
+    }
+
+    static void sleepForMillis(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
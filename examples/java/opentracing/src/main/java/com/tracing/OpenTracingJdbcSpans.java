@@ -0,0 +1,56 @@
+package com.tracing;
+
+import com.tracing.jdbc.DatabaseDescription;
+import com.tracing.jdbc.JdbcSpanHandler;
+import com.tracing.jdbc.TracedStatement;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.log.Fields;
+import io.opentracing.tag.Tags;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The OpenTracing spans of a {@link com.tracing.jdbc.TracingDataSource}: one client span per statement execution,
+ * named after the statement's fingerprint and a child of the active span.
+ *
+ * The span is not activated, it may be finished on another call than the one that started it.
+ */
+public final class OpenTracingJdbcSpans implements JdbcSpanHandler<String, Span> {
+
+    private final Tracer tracer;
+
+    public OpenTracingJdbcSpans(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public String database(DatabaseDescription database) {
+        return database.instanceName();
+    }
+
+    @Override
+    public Span start(TracedStatement<String> statement) {
+        return tracer.buildSpan(statement.fingerprint())
+            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+            .withTag(Tags.DB_TYPE.getKey(), "sql")
+            .withTag(Tags.DB_INSTANCE.getKey(), statement.database())
+            .withTag(Tags.DB_STATEMENT.getKey(), statement.sql())
+            .start();
+    }
+
+    @Override
+    public void finish(Span span, long rows, Throwable error) {
+        if (rows >= 0) {
+            span.setTag("db.rows_returned", rows);
+        }
+        if (error != null) {
+            Tags.ERROR.set(span, Boolean.TRUE);
+            Map<String, Object> errorLogs = new HashMap<>(2);
+            errorLogs.put(Fields.EVENT, Tags.ERROR.getKey());
+            errorLogs.put(Fields.ERROR_OBJECT, error);
+            span.log(errorLogs);
+        }
+        span.finish();
+    }
+}
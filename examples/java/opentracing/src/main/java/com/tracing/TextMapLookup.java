@@ -0,0 +1,24 @@
+package com.tracing;
+
+import io.opentracing.propagation.TextMap;
+import java.util.function.BiConsumer;
+
+/**
+ * A TextMap carrier that a tracer can ask for specific keys instead of iterating over all of them.
+ *
+ * Tracers that know this interface read the two or three keys they propagate directly; every other tracer keeps
+ * working through the plain {@link TextMap#iterator()}.
+ */
+public interface TextMapLookup extends TextMap {
+
+    /**
+     * Returns the first value stored under {@code key}, compared ignoring case, or null if there is none.
+     */
+    String get(String key);
+
+    /**
+     * Calls {@code action} with the lower-case key and the first value of every entry whose key starts with
+     * {@code prefix}, compared ignoring case. Used for baggage, whose keys are not known up front.
+     */
+    void forEachWithPrefix(String prefix, BiConsumer<String, String> action);
+}
@@ -1,31 +1,65 @@
 package com.tracing;
 
+import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import com.tracing.db.DatabaseConnection;
+import com.tracing.db.ExampleDataSource;
+import com.tracing.db.ExampleDatabase;
+import com.tracing.db.QueryResult;
+import com.tracing.jdbc.TracingDataSource;
+import com.tracing.load.LoadGenerator;
+import com.tracing.server.ExampleServers;
+import com.tracing.server.FanOut;
+import com.tracing.server.PrecomputedResponse;
+import com.tracing.server.ServerExecutors;
+import com.tracing.server.ServiceChain;
+import com.tracing.server.StreamingResponse;
+import com.tracing.tracer.InMemoryTracer;
+import com.tracing.tracer.LoggingSpanExporter;
+import com.tracing.tracer.NewRelicSpanExporter;
+import com.tracing.tracer.MultiplexingTracer;
+import com.tracing.tracer.SpanRing;
+import com.tracing.tracer.ZipkinJsonExporter;
 import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
 import io.opentracing.Span;
 import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.Tracer.SpanBuilder;
 import io.opentracing.contrib.tracerresolver.TracerResolver;
 import io.opentracing.log.Fields;
-import io.opentracing.mock.MockTracer;
 import io.opentracing.propagation.Format.Builtin;
 import io.opentracing.propagation.TextMap;
 import io.opentracing.tag.Tags;
-import java.io.BufferedReader;
+import io.opentracing.util.GlobalTracer;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.BiConsumer;
+import javax.sql.DataSource;
 
 /**
  * The OpenTracing TraceExample is designed to illustrate idiomatic use of OpenTracing
@@ -33,15 +67,52 @@ import java.util.Map.Entry;
  */
 public class TraceExample {
 
+    static final int IN_MEMORY_SPAN_CAPACITY = Integer.getInteger("tracing.inMemory.capacity", 4096);
+
+    // -Dexample.requestLog=false keeps the handlers from printing a line per request, e.g. under load
+    private static final boolean LOG_REQUESTS = ExampleServers.logRequests();
+
+    // In-process stand-in for the database PathBHandler queries, with a connection pool and per-statement
+    // latencies, e.g. -Dexample.db.poolSize=4 -Dexample.db.latency=lognormal:5ms:0.8, see ExampleDatabase.
+    private static final ExampleDatabase DATABASE = ExampleDatabase.fromSystemProperties();
+
+    // -Dexample.db.jdbc=true queries the database through a TracingDataSource, whose spans replace the
+    //     hand-written ones of fakeDBCall
+    private static final boolean USE_JDBC = Boolean.getBoolean("example.db.jdbc");
+
+    // -Dexample.chain.services=2 adds the chain gateway -> service-a -> service-b -> database, called as /chain
+    private static final ServiceChain CHAIN = ServiceChain.fromSystemProperties(8000);
+
+    // -Dexample.fanout.branches=4 adds /fanout, which queries the database and calls pathA in 4 concurrent branches,
+    //     each under a child span of the request's span. The tracer is registered globally before the server starts.
+    private static final FanOut FAN_OUT = FanOut.fromSystemProperties(task -> withActiveSpan(GlobalTracer.get(), task));
+
+    // -Dexample.stream.bytes=64m adds /stream, which sends that much in chunks of -Dexample.stream.chunk bytes and
+    //     logs an event to the server span at the first byte and every -Dexample.stream.eventEvery bytes
+    private static final StreamingResponse STREAM = StreamingResponse.fromSystemProperties();
+
     public static void main(String[] args) {
 
         // Dynamically load tracer. (Use of the TracerResolver utility is optional)
         Tracer tracer = TracerResolver.resolveTracer();
+        if (tracer == null && System.getProperty("tracing.exporters") != null) {
+            // Record every span once and send it to several backends, e.g. -Dtracing.exporters=log,zipkin,newrelic
+            MultiplexingTracer multiplexingTracer =
+                newMultiplexingTracer(System.getProperty("tracing.exporters").split(","));
+            // Make sure the spans still queued get exported on control-c
+            Runtime.getRuntime().addShutdownHook(new Thread(multiplexingTracer::close));
+            tracer = multiplexingTracer;
+        }
         if (tracer == null) {
-            // Instantiate a simple tracer; in this case, MockTracer.
-            tracer = new MockTracer();
+            // Instantiate a simple tracer; in this case, an in-memory tracer keeping the latest finished spans.
+            // Unlike MockTracer it has a fixed memory ceiling, so the example can run indefinitely.
+            tracer = new InMemoryTracer(IN_MEMORY_SPAN_CAPACITY);
         }
 
+        // Register the tracer globally, so integrations that are not handed the tracer (e.g. the optional
+        // context-agent) can find it.
+        GlobalTracer.register(tracer);
+
         try {
             initServer(tracer);
             initClient(tracer);
@@ -53,55 +124,91 @@ public class TraceExample {
     }
 
 
+    /**
+     * Builds a tracer that fans every finished span out to the given exporters: "memory" keeps the latest spans in
+     * memory, "log" prints them, "zipkin" posts them to -Dtracing.zipkin.url (a local Zipkin by default) and
+     * "newrelic" to the New Relic Trace API at -Dtracing.newrelic.url with the key -Dtracing.newrelic.apiKey.
+     */
+    static MultiplexingTracer newMultiplexingTracer(String... exporterNames) {
+        MultiplexingTracer.Builder builder = MultiplexingTracer.newBuilder();
+        for (String exporterName : exporterNames) {
+            String name = exporterName.trim().toLowerCase(Locale.ROOT);
+            switch (name) {
+                case "memory":
+                    builder.addExporter(name, new SpanRing(IN_MEMORY_SPAN_CAPACITY));
+                    break;
+                case "log":
+                    builder.addExporter(name, new LoggingSpanExporter(System.out));
+                    break;
+                case "zipkin":
+                    try {
+                        builder.addExporter(name, new ZipkinJsonExporter(
+                            new URL(System.getProperty("tracing.zipkin.url", "http://localhost:9411/api/v2/spans")),
+                            "rpc-testing"));
+                    } catch (MalformedURLException e) {
+                        throw new IllegalArgumentException("Invalid tracing.zipkin.url", e);
+                    }
+                    break;
+                case "newrelic":
+                    String apiKey = System.getProperty("tracing.newrelic.apiKey");
+                    if (apiKey == null) {
+                        throw new IllegalArgumentException("The newrelic exporter needs -Dtracing.newrelic.apiKey");
+                    }
+                    try {
+                        builder.addExporter(name, new NewRelicSpanExporter(
+                            new URL(System.getProperty("tracing.newrelic.url", NewRelicSpanExporter.DEFAULT_ENDPOINT)),
+                            apiKey, "rpc-testing"));
+                    } catch (MalformedURLException e) {
+                        throw new IllegalArgumentException("Invalid tracing.newrelic.url", e);
+                    }
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown exporter " + exporterName);
+            }
+        }
+        return builder.build();
+    }
+
+
     ///////////////////////////////////////////////////////////////////
     // CLIENT-SIDE CODE
     ///////////////////////////////////////////////////////////////////
 
     private static void initClient(Tracer tracer) {
 
+        List<String> paths = new ArrayList<>(Arrays.asList("pathA", "pathB"));
+        if (CHAIN.isEnabled()) {
+            paths.add("chain");
+        }
+        if (FAN_OUT.isEnabled()) {
+            paths.add("fanout");
+        }
+        if (STREAM.isEnabled()) {
+            paths.add("stream");
+        }
+        final String[] pathList = paths.toArray(new String[0]);
+        if (LoadGenerator.isEnabled()) {
+            // -Dload.rate, see LoadGenerator
+            LoadGenerator.fromSystemProperties(pathList).runInBackground(path -> callServer(tracer, path));
+            return;
+        }
+
         Thread thread = new Thread(new Runnable() {
 
             @Override
             public void run() {
 
                 int pos = 0;
-                String[] pathList = {"pathA", "pathB"};
 
                 // Call the server in a loop.
                 for (;;) {
-                    pos = (pos + 1) % 2;
-
-                    // Prepare a Span with appropriate tags for an HTTP client call.
-                    Span span = tracer.buildSpan("client." + pathList[pos])
-                        .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
-                        .withTag(Tags.HTTP_METHOD.getKey(), "GET").start();
-                    try (Scope ignore = tracer.scopeManager().activate(span, true)) {
+                    pos = (pos + 1) % pathList.length;
+                    try {
                         System.out.println("Client is calling");
-
-                        URL url = new URL("http://localhost:8000/" + pathList[pos]);
-
-                        // Record the HTTP_URL as a Span tag.
-                        span.setTag(Tags.HTTP_URL.getKey(), url.toString());
-
-                        HttpURLConnection con = (HttpURLConnection) url.openConnection();
-                        con.setRequestMethod("GET");
-
-                        // Inject span context into http headers.
-                        tracer.inject(span.context(), Builtin.HTTP_HEADERS, new TextMapInjectAdapter(con));
-
-                        BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-                        String inputLine;
-                        StringBuffer content = new StringBuffer();
-                        while ((inputLine = in.readLine()) != null) {
-                            content.append(inputLine);
-                        }
-                        in.close();
+                        callServer(tracer, pathList[pos]);
                     } catch (Exception e) {
                         System.err.println("Failed to talk to server");
                         System.err.println(e.toString());
-
-                        // log errors to the span.
-                        onError(e, span);
                     }
 
                     try {
@@ -116,6 +223,45 @@ public class TraceExample {
         thread.start();
     }
 
+    static int callServer(Tracer tracer, String path) throws IOException {
+        return call(tracer, "client." + path, new URL("http://localhost:8000/" + path));
+    }
+
+    static int call(Tracer tracer, String operationName, URL url) throws IOException {
+        // Prepare a Span with appropriate tags for an HTTP client call.
+        Span span = tracer.buildSpan(operationName)
+            .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+            .withTag(Tags.HTTP_METHOD.getKey(), "GET").start();
+        try (Scope ignore = tracer.scopeManager().activate(span, true)) {
+            // Errors are recorded before the scope closes, since closing it finishes the span.
+            try {
+                // Record the HTTP_URL as a Span tag.
+                span.setTag(Tags.HTTP_URL.getKey(), url.toString());
+
+                HttpURLConnection con = (HttpURLConnection) url.openConnection();
+                con.setRequestMethod("GET");
+
+                // Inject span context into http headers.
+                tracer.inject(span.context(), Builtin.HTTP_HEADERS, new TextMapInjectAdapter(con));
+
+                // the body is read and dropped, it can be megabytes long
+                try (InputStream in = con.getInputStream()) {
+                    byte[] buffer = new byte[8192];
+                    while (in.read(buffer) != -1) {
+                        // nothing to keep
+                    }
+                }
+                int status = con.getResponseCode();
+                span.setTag(Tags.HTTP_STATUS.getKey(), status);
+                return status;
+            } catch (IOException | RuntimeException e) {
+                // log errors to the span.
+                onError(e, span);
+                throw e;
+            }
+        }
+    }
+
     /**
      * A helper to record an arbitrary Throwable as an event log for the provided Span.
      */
@@ -136,13 +282,65 @@ public class TraceExample {
     ///////////////////////////////////////////////////////////////////
 
     private static void initServer(Tracer tracer) throws Exception {
-        HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
-        server.createContext("/pathA", new PathAHandler(tracer));
-        server.createContext("/pathB", new PathBHandler(tracer));
-        server.setExecutor(null); // creates a default executor
+        // -Dexample.server.type=nio runs the handlers on an NIO event-loop server instead of the JDK's HttpServer
+        HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(8000));
+        // -Dexample.precomputedResponses=true sends the bodies encoded once, see ExampleServers
+        boolean precomputed = ExampleServers.precomputedResponses();
+        server.createContext("/pathA", precomputed ? new PrecomputedPathAHandler(tracer) : new PathAHandler(tracer));
+        server.createContext("/pathB", precomputed ? new PrecomputedPathBHandler(tracer) : new PathBHandler(tracer));
+        if (CHAIN.isEnabled()) {
+            // the gateway is this server, the services behind it get servers of their own
+            server.createContext(ServiceChain.PATH, new ChainHandler(tracer, 0));
+            CHAIN.startServices(hop -> new ChainHandler(tracer, hop),
+                () -> ServerExecutors.fromSystemProperties(() -> closeLeakedScopes(tracer.scopeManager())));
+        }
+        if (FAN_OUT.isEnabled()) {
+            server.createContext(FanOut.PATH, new FanOutHandler(tracer));
+        }
+        if (STREAM.isEnabled()) {
+            server.createContext(StreamingResponse.PATH, new StreamHandler(tracer));
+        }
+        // -Dexample.server.executor, see ServerExecutors
+        server.setExecutor(ServerExecutors.fromSystemProperties(() -> closeLeakedScopes(tracer.scopeManager())));
         server.start();
     }
 
+    /**
+     * Runs on the server thread after every request and closes the scopes the request left active. They would
+     * otherwise become the parent of the next request handled by the same pooled thread.
+     */
+    static boolean closeLeakedScopes(ScopeManager scopeManager) {
+        Scope leaked = scopeManager.active();
+        if (leaked == null) {
+            return false;
+        }
+        for (Scope scope = leaked; scope != null; ) {
+            scope.close();
+            Scope next = scopeManager.active();
+            if (next == scope) {
+                // the scope manager refused to close it, don't loop forever
+                break;
+            }
+            scope = next;
+        }
+        return true;
+    }
+
+    /**
+     * Wraps a task so that it runs with the span that is active now, on whichever thread runs it.
+     */
+    static Runnable withActiveSpan(Tracer tracer, Runnable task) {
+        Span span = tracer.activeSpan();
+        if (span == null) {
+            return task;
+        }
+        return () -> {
+            try (Scope ignore = tracer.scopeManager().activate(span, false)) {
+                task.run();
+            }
+        };
+    }
+
     static class PathAHandler implements HttpHandler {
 
         private final Tracer tracer;
@@ -160,22 +358,30 @@ public class TraceExample {
                 .asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TextMapExtractAdapter(t)));
 
             try (Scope ignore = tracer.scopeManager().activate(spanBuilder.start(), true)) {
-                String response = "This is path A";
-                t.sendResponseHeaders(200, response.length());
-                OutputStream os = t.getResponseBody();
-                os.write(response.getBytes());
-                System.out.println("Path A was called.");
-                os.close();
+                if (LOG_REQUESTS) {
+                    System.out.println("Path A was called.");
+                }
+                respond(t);
             }
         }
+
+        void respond(HttpExchange t) throws IOException {
+            String response = "This is path A";
+            t.sendResponseHeaders(200, response.length());
+            OutputStream os = t.getResponseBody();
+            os.write(response.getBytes());
+            os.close();
+        }
     }
 
     static class PathBHandler implements HttpHandler {
 
         private final Tracer tracer;
+        private final DataSource dataSource;
 
         PathBHandler(Tracer tracer) {
             this.tracer = tracer;
+            this.dataSource = TracingDataSource.wrap(new ExampleDataSource(DATABASE), new OpenTracingJdbcSpans(tracer));
         }
 
 
@@ -188,24 +394,323 @@ public class TraceExample {
                 .asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TextMapExtractAdapter(t)));
 
             try (Scope ignore = tracer.scopeManager().activate(spanBuilder.start(), true)) {
-                String response = "This is path B";
-                t.sendResponseHeaders(200, response.length());
-                OutputStream os = t.getResponseBody();
-                os.write(response.getBytes());
-                System.out.println("Path B was called");
-                this.fakeDBCall("select * from table");
-                os.close();
+                if (LOG_REQUESTS) {
+                    System.out.println("Path B was called");
+                }
+                if (USE_JDBC) {
+                    this.jdbcCall("select * from table");
+                } else {
+                    this.fakeDBCall("select * from table");
+                }
+                respond(t);
             }
         }
 
+        void respond(HttpExchange t) throws IOException {
+            String response = "This is path B";
+            t.sendResponseHeaders(200, response.length());
+            OutputStream os = t.getResponseBody();
+            os.write(response.getBytes());
+            os.close();
+        }
+
         void fakeDBCall(String statement) {
-            try (Scope ignore = tracer.scopeManager().activate(
+            // Waiting for a pooled connection gets a span of its own, so an exhausted pool shows up as such
+            //     instead of as a slow query.
+            DatabaseConnection connection;
+            try (Scope poolWait = tracer.scopeManager().activate(
+                tracer.buildSpan("pool-wait")
+                    .withTag(Tags.DB_INSTANCE.getKey(), DATABASE.name())
+                    .withTag("db.pool.idle", DATABASE.idleConnections())
+                    .start(), true)) {
+                try {
+                    connection = DATABASE.getConnection();
+                } catch (SQLException e) {
+                    onError(e, poolWait.span());
+                    return;
+                }
+            }
+
+            try (Scope scope = tracer.scopeManager().activate(
                 tracer.buildSpan("database")
                     .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+                    .withTag(Tags.DB_TYPE.getKey(), "sql")
+                    .withTag(Tags.DB_INSTANCE.getKey(), DATABASE.name())
                     .withTag(Tags.DB_STATEMENT.getKey(), statement)
                     .start(), true)) {
                 // this is just to simulate a fake database call
-                System.out.println("Fake DB was called with statement " + statement);
+                try {
+                    QueryResult result = connection.query(statement);
+                    scope.span().setTag("db.rows_returned", result.rowCount());
+                    if (LOG_REQUESTS) {
+                        System.out.println("Fake DB was called with statement " + statement);
+                    }
+                } catch (SQLException e) {
+                    onError(e, scope.span());
+                } finally {
+                    connection.close();
+                }
+            }
+        }
+
+        void jdbcCall(String statement) {
+            // the data source starts and finishes the span, named after the statement, as a child of the server span
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement prepared = connection.prepareStatement(statement);
+                 ResultSet rows = prepared.executeQuery()) {
+                while (rows.next()) {
+                    // the rows are only counted, by the span
+                }
+            } catch (SQLException e) {
+                onError(e, tracer.activeSpan());
+            }
+        }
+    }
+
+    /**
+     * PathAHandler with the response encoded once, so sending it allocates nothing in the handler.
+     */
+    static class PrecomputedPathAHandler extends PathAHandler {
+
+        private static final PrecomputedResponse RESPONSE = PrecomputedResponse.of("This is path A");
+
+        PrecomputedPathAHandler(Tracer tracer) {
+            super(tracer);
+        }
+
+        @Override
+        void respond(HttpExchange t) throws IOException {
+            RESPONSE.send(t);
+        }
+    }
+
+    static class PrecomputedPathBHandler extends PathBHandler {
+
+        private static final PrecomputedResponse RESPONSE = PrecomputedResponse.of("This is path B");
+
+        PrecomputedPathBHandler(Tracer tracer) {
+            super(tracer);
+        }
+
+        @Override
+        void respond(HttpExchange t) throws IOException {
+            RESPONSE.send(t);
+        }
+    }
+
+    /**
+     * One hop of the service chain. Each hop continues the caller's trace with a server span of its own, named after
+     * the service, and calls the next hop with a client span whose context it injects - or queries the database if it
+     * is the last one.
+     */
+    static class ChainHandler implements HttpHandler {
+
+        private static final PrecomputedResponse FAILED = PrecomputedResponse.of("Downstream call failed");
+
+        private final Tracer tracer;
+        private final int hop;
+        private final String name;
+        private final PrecomputedResponse response;
+        private final URL downstream;
+        private final PathBHandler database;
+
+        ChainHandler(Tracer tracer, int hop) {
+            this.tracer = tracer;
+            this.hop = hop;
+            this.name = CHAIN.name(hop);
+            this.response = PrecomputedResponse.of("This is " + name);
+            this.database = new PathBHandler(tracer);
+            try {
+                this.downstream = CHAIN.isLast(hop) ? null : new URL(CHAIN.downstreamUrl(hop));
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            SpanBuilder spanBuilder = tracer.buildSpan(name)
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+                .withTag(Tags.HTTP_URL.getKey(), ServiceChain.PATH)
+                .withTag("chain.hop", hop)
+                // Note that .asChildOf() accepts (and ignores) null
+                .asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TextMapExtractAdapter(t)));
+
+            try (Scope scope = tracer.scopeManager().activate(spanBuilder.start(), true)) {
+                if (LOG_REQUESTS) {
+                    System.out.println(name + " was called");
+                }
+                if (downstream == null) {
+                    database.fakeDBCall("select * from table");
+                } else {
+                    try {
+                        call(tracer, name + " -> " + CHAIN.name(hop + 1), downstream);
+                    } catch (IOException e) {
+                        // the client span has the details
+                        Tags.ERROR.set(scope.span(), Boolean.TRUE);
+                        scope.span().setTag(Tags.HTTP_STATUS.getKey(), 502);
+                        FAILED.send(t, 502);
+                        return;
+                    }
+                }
+                scope.span().setTag(Tags.HTTP_STATUS.getKey(), 200);
+                response.send(t);
+            }
+        }
+    }
+
+    /**
+     * Queries the database and calls pathA in {@link FanOut#branches()} concurrent branches and answers with their
+     * merged results. Each branch runs on a pool thread under a child span of the request's span, which is finished
+     * once the last branch is done and the response is sent.
+     */
+    static class FanOutHandler implements HttpHandler {
+
+        private static final PrecomputedResponse FAILED = PrecomputedResponse.of("Downstream call failed");
+        private static final PrecomputedResponse BUSY = PrecomputedResponse.of("Too many concurrent branches");
+
+        private final Tracer tracer;
+        private final PathBHandler database;
+        private final URL pathA;
+
+        FanOutHandler(Tracer tracer) {
+            this.tracer = tracer;
+            this.database = new PathBHandler(tracer);
+            try {
+                this.pathA = new URL("http://localhost:8000/pathA");
+            } catch (MalformedURLException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            Span requestSpan = tracer.buildSpan("server")
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+                .withTag(Tags.HTTP_URL.getKey(), FanOut.PATH)
+                .withTag("fanout.branches", FAN_OUT.branches())
+                // Note that .asChildOf() accepts (and ignores) null
+                .asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TextMapExtractAdapter(t)))
+                .start();
+
+            // The branches are submitted while the request span is active, so each is wrapped with it. The response
+            //     is sent from the thread of the last branch, which leaves the server thread free to serve the
+            //     branches' calls to pathA even when it is the only one.
+            try (Scope ignore = tracer.scopeManager().activate(requestSpan, false)) {
+                if (LOG_REQUESTS) {
+                    System.out.println("Fan-out was called with " + FAN_OUT.branches() + " branches");
+                }
+                FAN_OUT.run(this::branch).whenComplete((results, error) -> respond(t, requestSpan, results, error));
+            } catch (RejectedExecutionException e) {
+                onError(e, requestSpan);
+                requestSpan.setTag(Tags.HTTP_STATUS.getKey(), 503);
+                requestSpan.finish();
+                BUSY.send(t, 503);
+            }
+        }
+
+        private String branch(int branch) {
+            FanOut.Kind kind = FAN_OUT.kind(branch);
+            try (Scope scope = tracer.scopeManager().activate(
+                tracer.buildSpan("fanout.branch")
+                    .withTag("fanout.branch", branch)
+                    .withTag("fanout.kind", kind.name())
+                    .start(), true)) {
+                if (kind == FanOut.Kind.DATABASE) {
+                    database.fakeDBCall("select * from table");
+                    return "branch " + branch + ": database";
+                }
+                try {
+                    return "branch " + branch + ": pathA " + call(tracer, "client.pathA", pathA);
+                } catch (IOException e) {
+                    onError(e, scope.span());
+                    throw new CompletionException(e);
+                }
+            }
+        }
+
+        private void respond(HttpExchange t, Span requestSpan, List<String> results, Throwable error) {
+            try {
+                if (error != null) {
+                    // the branch's span has the details
+                    Tags.ERROR.set(requestSpan, Boolean.TRUE);
+                    requestSpan.setTag(Tags.HTTP_STATUS.getKey(), 502);
+                    FAILED.send(t, 502);
+                    return;
+                }
+                byte[] response = String.join("\n", results).getBytes(StandardCharsets.UTF_8);
+                requestSpan.setTag(Tags.HTTP_STATUS.getKey(), 200);
+                t.sendResponseHeaders(200, response.length);
+                try (OutputStream os = t.getResponseBody()) {
+                    os.write(response);
+                }
+            } catch (IOException e) {
+                onError(e, requestSpan);
+            } finally {
+                requestSpan.finish();
+            }
+        }
+    }
+
+    /**
+     * Sends a long body in fixed-size chunks under one server span, which gets an event at the first byte and one
+     * every few megabytes. The events are logged as the body is sent, nothing is buffered for them.
+     */
+    static class StreamHandler implements HttpHandler {
+
+        private final Tracer tracer;
+
+        StreamHandler(Tracer tracer) {
+            this.tracer = tracer;
+        }
+
+        @Override
+        public void handle(HttpExchange t) throws IOException {
+            SpanBuilder spanBuilder = tracer.buildSpan("server")
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER)
+                .withTag(Tags.HTTP_URL.getKey(), StreamingResponse.PATH)
+                .withTag("stream.chunk_size", STREAM.chunkSize())
+                // Note that .asChildOf() accepts (and ignores) null
+                .asChildOf(tracer.extract(Builtin.HTTP_HEADERS, new TextMapExtractAdapter(t)));
+
+            try (Scope scope = tracer.scopeManager().activate(spanBuilder.start(), true)) {
+                if (LOG_REQUESTS) {
+                    System.out.println("Stream was called, sending " + STREAM);
+                }
+                scope.span().setTag(Tags.HTTP_STATUS.getKey(), 200);
+                try {
+                    scope.span().setTag("stream.bytes", STREAM.send(t, new SpanEvents(scope.span())));
+                } catch (IOException e) {
+                    // typically the client went away halfway through
+                    onError(e, scope.span());
+                    throw e;
+                }
+            }
+        }
+
+        /**
+         * Logs the progress of the body to the span: a string event for the first byte, and the bytes sent so far
+         * every few megabytes.
+         */
+        static final class SpanEvents implements StreamingResponse.Listener {
+
+            private final Span span;
+
+            SpanEvents(Span span) {
+                this.span = span;
+            }
+
+            @Override
+            public void firstByte() {
+                span.log("first-byte");
+            }
+
+            @Override
+            public void progress(long bytesSent) {
+                Map<String, Object> fields = new HashMap<>(4);
+                fields.put(Fields.EVENT, "progress");
+                fields.put("stream.bytes_sent", bytesSent);
+                span.log(fields);
             }
         }
     }
@@ -238,22 +743,63 @@ public class TraceExample {
     /**
      * Helper class to extract SpanContext from HTTP headers.
      *
+     * Instead of copying every header into a map, it is a view on the headers of the exchange: iterating walks the
+     * headers lazily, and tracers that know {@link TextMapLookup} ask for their keys directly, so only the headers a
+     * tracer actually reads are touched.
+     *
      * In "the real world", this TextMap implementation would be a detail of whatever web framework
      * one depends on (e.g., DropWizard or similar).
      */
-    static class TextMapExtractAdapter implements TextMap {
+    static class TextMapExtractAdapter implements TextMapLookup {
+
+        // HttpExchange headers are stored as "Traceid", but tracers compare against "traceid". The lower-case form
+        // of each name is cached, since the same few dozen names show up on every request. The cache is bounded so
+        // arbitrary header names sent by clients cannot grow it.
+        private static final int MAX_CACHED_NAMES = 512;
+        private static final ConcurrentMap<String, String> LOWER_CASE_NAMES = new ConcurrentHashMap<>();
 
-        private final Map<String, String> map = new HashMap<>();
+        private final Headers headers;
 
         TextMapExtractAdapter(HttpExchange exchange) {
-            for (Entry<String, List<String>> entry : exchange.getRequestHeaders().entrySet()) {
-                map.put(entry.getKey().toLowerCase(), entry.getValue().get(0));
+            this.headers = exchange.getRequestHeaders();
+        }
+
+        @Override
+        public String get(String key) {
+            // Headers normalizes the key itself, so this is a single hash lookup
+            return headers.getFirst(key);
+        }
+
+        @Override
+        public void forEachWithPrefix(String prefix, BiConsumer<String, String> action) {
+            for (Entry<String, List<String>> entry : headers.entrySet()) {
+                String name = entry.getKey();
+                if (name.regionMatches(true, 0, prefix, 0, prefix.length()) && !entry.getValue().isEmpty()) {
+                    action.accept(lowerCase(name), entry.getValue().get(0));
+                }
             }
         }
 
+        /**
+         * Walks the headers lazily. The returned entry is reused and only valid until the next call to next().
+         */
         @Override
         public Iterator<Map.Entry<String, String>> iterator() {
-            return map.entrySet().iterator();
+            Iterator<Entry<String, List<String>>> headerIterator = headers.entrySet().iterator();
+            return new Iterator<Map.Entry<String, String>>() {
+                private final HeaderEntry entry = new HeaderEntry();
+
+                @Override
+                public boolean hasNext() {
+                    return headerIterator.hasNext();
+                }
+
+                @Override
+                public Map.Entry<String, String> next() {
+                    entry.header = headerIterator.next();
+                    return entry;
+                }
+            };
         }
 
         @Override
@@ -261,5 +807,39 @@ public class TraceExample {
             throw new UnsupportedOperationException(
                 "TextMapExtractAdapter should only be used with Tracer.extract()");
         }
+
+        static String lowerCase(String name) {
+            String lowerCase = LOWER_CASE_NAMES.get(name);
+            if (lowerCase == null) {
+                lowerCase = name.toLowerCase(Locale.ROOT);
+                if (LOWER_CASE_NAMES.size() < MAX_CACHED_NAMES) {
+                    LOWER_CASE_NAMES.putIfAbsent(name, lowerCase);
+                }
+            }
+            return lowerCase;
+        }
+
+        /**
+         * Header name and first value, the name is only lower-cased when a tracer reads it.
+         */
+        private static final class HeaderEntry implements Map.Entry<String, String> {
+            private Entry<String, List<String>> header;
+
+            @Override
+            public String getKey() {
+                return lowerCase(header.getKey());
+            }
+
+            @Override
+            public String getValue() {
+                List<String> values = header.getValue();
+                return values.isEmpty() ? null : values.get(0);
+            }
+
+            @Override
+            public String setValue(String value) {
+                throw new UnsupportedOperationException("headers are read-only");
+            }
+        }
     }
 }
@@ -0,0 +1,268 @@
+package com.tracing.tracer;
+
+import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A thread-local ScopeManager that can also carry the active span to other threads, e.g. through
+ * {@code CompletableFuture} stages or executors.
+ *
+ * The *WithActiveSpan methods capture the span that is active when they are called and activate it around the
+ * wrapped task on whichever thread runs it, restoring that thread's previous scope afterwards. Wrap a stage when it
+ * is created, on the thread that has the span active:
+ *
+ * <pre>
+ * scopeManager.supplyAsync(() -> loadData(), executor)
+ *     .thenApply(scopeManager.functionWithActiveSpan(data -> render(data)))
+ *     .whenComplete(scopeManager.biConsumerWithActiveSpan((result, error) -> span.finish()));
+ * </pre>
+ *
+ * If no span is active when a task is wrapped, the task is returned as is, so untraced code pays nothing. Activating
+ * a span on another thread never finishes it; the code that started the span stays responsible for finishing it.
+ */
+public class ContextScopeManager implements ScopeManager {
+
+    private final ThreadLocal<ContextScope> current = new ThreadLocal<>();
+
+    @Override
+    public Scope activate(Span span, boolean finishSpanOnClose) {
+        ContextScope scope = new ContextScope(span, finishSpanOnClose, current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    @Override
+    public Scope active() {
+        return current.get();
+    }
+
+    /**
+     * @return the span of the active scope, or null
+     */
+    public Span activeSpan() {
+        ContextScope scope = current.get();
+        return scope == null ? null : scope.span;
+    }
+
+    public Runnable runnableWithActiveSpan(Runnable task) {
+        Span span = activeSpan();
+        if (span == null) {
+            return task;
+        }
+        return () -> {
+            ContextScope scope = continueWith(span);
+            try {
+                task.run();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public <V> Callable<V> callableWithActiveSpan(Callable<V> task) {
+        Span span = activeSpan();
+        if (span == null) {
+            return task;
+        }
+        return () -> {
+            ContextScope scope = continueWith(span);
+            try {
+                return task.call();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public <T> Supplier<T> supplierWithActiveSpan(Supplier<T> supplier) {
+        Span span = activeSpan();
+        if (span == null) {
+            return supplier;
+        }
+        return () -> {
+            ContextScope scope = continueWith(span);
+            try {
+                return supplier.get();
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public <T, R> Function<T, R> functionWithActiveSpan(Function<T, R> function) {
+        Span span = activeSpan();
+        if (span == null) {
+            return function;
+        }
+        return t -> {
+            ContextScope scope = continueWith(span);
+            try {
+                return function.apply(t);
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public <T, U, R> BiFunction<T, U, R> biFunctionWithActiveSpan(BiFunction<T, U, R> function) {
+        Span span = activeSpan();
+        if (span == null) {
+            return function;
+        }
+        return (t, u) -> {
+            ContextScope scope = continueWith(span);
+            try {
+                return function.apply(t, u);
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public <T> Consumer<T> consumerWithActiveSpan(Consumer<T> consumer) {
+        Span span = activeSpan();
+        if (span == null) {
+            return consumer;
+        }
+        return t -> {
+            ContextScope scope = continueWith(span);
+            try {
+                consumer.accept(t);
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    public <T, U> BiConsumer<T, U> biConsumerWithActiveSpan(BiConsumer<T, U> consumer) {
+        Span span = activeSpan();
+        if (span == null) {
+            return consumer;
+        }
+        return (t, u) -> {
+            ContextScope scope = continueWith(span);
+            try {
+                consumer.accept(t, u);
+            } finally {
+                scope.close();
+            }
+        };
+    }
+
+    /**
+     * Same as {@link CompletableFuture#supplyAsync(Supplier, Executor)}, with the active span carried to the supplier.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        return CompletableFuture.supplyAsync(supplierWithActiveSpan(supplier), executor);
+    }
+
+    /**
+     * Same as {@link CompletableFuture#supplyAsync(Supplier)}, with the active span carried to the supplier.
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+        return CompletableFuture.supplyAsync(supplierWithActiveSpan(supplier));
+    }
+
+    /**
+     * Same as {@link CompletableFuture#runAsync(Runnable, Executor)}, with the active span carried to the task.
+     */
+    public CompletableFuture<Void> runAsync(Runnable task, Executor executor) {
+        return CompletableFuture.runAsync(runnableWithActiveSpan(task), executor);
+    }
+
+    /**
+     * @return an Executor that runs every task with the span that was active when the task was submitted
+     */
+    public Executor executorWithActiveSpan(Executor executor) {
+        return task -> executor.execute(runnableWithActiveSpan(task));
+    }
+
+    /**
+     * @return an ExecutorService that runs every task with the span that was active when the task was submitted. The
+     *         lifecycle methods are passed through to {@code executorService}.
+     */
+    public ExecutorService executorServiceWithActiveSpan(ExecutorService executorService) {
+        return new AbstractExecutorService() {
+            // submit() and invokeAll() wrap their tasks and hand them to execute() on the submitting thread,
+            // so capturing the span in execute() covers them as well
+            @Override
+            public void execute(Runnable task) {
+                executorService.execute(runnableWithActiveSpan(task));
+            }
+
+            @Override
+            public void shutdown() {
+                executorService.shutdown();
+            }
+
+            @Override
+            public List<Runnable> shutdownNow() {
+                return executorService.shutdownNow();
+            }
+
+            @Override
+            public boolean isShutdown() {
+                return executorService.isShutdown();
+            }
+
+            @Override
+            public boolean isTerminated() {
+                return executorService.isTerminated();
+            }
+
+            @Override
+            public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+                return executorService.awaitTermination(timeout, unit);
+            }
+        };
+    }
+
+    private ContextScope continueWith(Span span) {
+        ContextScope scope = new ContextScope(span, false, current.get());
+        current.set(scope);
+        return scope;
+    }
+
+    private final class ContextScope implements Scope {
+
+        private final Span span;
+        private final boolean finishSpanOnClose;
+        private final ContextScope toRestore;
+
+        ContextScope(Span span, boolean finishSpanOnClose, ContextScope toRestore) {
+            this.span = span;
+            this.finishSpanOnClose = finishSpanOnClose;
+            this.toRestore = toRestore;
+        }
+
+        @Override
+        public void close() {
+            // like ThreadLocalScopeManager, closing a scope that is not the active one is ignored
+            if (current.get() != this) {
+                return;
+            }
+            current.set(toRestore);
+            if (finishSpanOnClose) {
+                span.finish();
+            }
+        }
+
+        @Override
+        public Span span() {
+            return span;
+        }
+    }
+}
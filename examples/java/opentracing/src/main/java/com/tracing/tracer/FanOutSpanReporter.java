@@ -0,0 +1,156 @@
+package com.tracing.tracer;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands every finished span to several exporters, each on its own thread.
+ *
+ * Reporting only puts the span into one bounded queue per exporter, so the request thread never waits for an
+ * exporter. A slow or failing backend only fills its own queue - once that is full, further spans are dropped for that
+ * exporter alone and counted in {@link #droppedSpans(String)}. Each exporter thread hands over up to 256 queued spans
+ * at once, see {@link SpanReporter#report(List)}.
+ */
+public final class FanOutSpanReporter implements SpanReporter, Closeable {
+
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final Dispatcher[] dispatchers;
+
+    /**
+     * @param exporters     exporters by name, the name is used for the thread and in the statistics
+     * @param queueCapacity number of spans that may wait for each exporter
+     */
+    public FanOutSpanReporter(Map<String, SpanReporter> exporters, int queueCapacity) {
+        this.dispatchers = new Dispatcher[exporters.size()];
+        int i = 0;
+        for (Map.Entry<String, SpanReporter> exporter : exporters.entrySet()) {
+            dispatchers[i++] = new Dispatcher(exporter.getKey(), exporter.getValue(), queueCapacity);
+        }
+    }
+
+    @Override
+    public void report(FinishedSpan span) {
+        for (Dispatcher dispatcher : dispatchers) {
+            dispatcher.offer(span);
+        }
+    }
+
+    public List<String> exporterNames() {
+        List<String> names = new ArrayList<>(dispatchers.length);
+        for (Dispatcher dispatcher : dispatchers) {
+            names.add(dispatcher.name);
+        }
+        return names;
+    }
+
+    /**
+     * @return number of spans the exporter did not receive because its queue was full
+     */
+    public long droppedSpans(String exporterName) {
+        return dispatcher(exporterName).dropped.get();
+    }
+
+    /**
+     * @return number of spans the exporter failed on with an exception - all spans of a batch if it failed on it
+     */
+    public long failedSpans(String exporterName) {
+        return dispatcher(exporterName).failed.get();
+    }
+
+    /**
+     * @return dropped and failed spans per exporter, e.g. for logging
+     */
+    public Map<String, String> statistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        for (Dispatcher dispatcher : dispatchers) {
+            statistics.put(dispatcher.name, "queued=" + dispatcher.queue.size() + ", dropped=" + dispatcher.dropped.get()
+                + ", failed=" + dispatcher.failed.get());
+        }
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * Stops the exporter threads after they exported what is already queued, waiting at most one second each.
+     */
+    @Override
+    public void close() {
+        for (Dispatcher dispatcher : dispatchers) {
+            dispatcher.running = false;
+        }
+        for (Dispatcher dispatcher : dispatchers) {
+            try {
+                dispatcher.thread.join(TimeUnit.SECONDS.toMillis(1));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private Dispatcher dispatcher(String exporterName) {
+        for (Dispatcher dispatcher : dispatchers) {
+            if (dispatcher.name.equals(exporterName)) {
+                return dispatcher;
+            }
+        }
+        throw new IllegalArgumentException("Unknown exporter " + exporterName);
+    }
+
+    private static final class Dispatcher implements Runnable {
+
+        private final String name;
+        private final SpanReporter exporter;
+        private final BlockingQueue<FinishedSpan> queue;
+        private final AtomicLong dropped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        Dispatcher(String name, SpanReporter exporter, int queueCapacity) {
+            this.name = name;
+            this.exporter = exporter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "span-exporter-" + name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void offer(FinishedSpan span) {
+            if (!queue.offer(span)) {
+                dropped.incrementAndGet();
+            }
+        }
+
+        @Override
+        public void run() {
+            List<FinishedSpan> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            while (running || !queue.isEmpty()) {
+                try {
+                    FinishedSpan first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                try {
+                    exporter.report(batch);
+                } catch (RuntimeException e) {
+                    failed.addAndGet(batch.size());
+                }
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.tracing.tracer;
+
+import com.tracing.propagation.HexCodec;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable record of a finished span, as handed to a {@link SpanReporter}.
+ */
+public final class FinishedSpan {
+
+    private final long traceIdHigh;
+    private final long traceId;
+    private final long spanId;
+    private final long parentId;
+    private final String operationName;
+    private final long startMicros;
+    private final long durationMicros;
+    private final Map<String, Object> tags;
+    private final List<LogEntry> logs;
+
+    FinishedSpan(long traceIdHigh, long traceId, long spanId, long parentId, String operationName,
+                 long startMicros, long durationMicros, Map<String, Object> tags, List<LogEntry> logs) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentId = parentId;
+        this.operationName = operationName;
+        this.startMicros = startMicros;
+        this.durationMicros = durationMicros;
+        this.tags = tags;
+        this.logs = logs;
+    }
+
+    public long traceIdHigh() {
+        return traceIdHigh;
+    }
+
+    public long traceId() {
+        return traceId;
+    }
+
+    public long spanId() {
+        return spanId;
+    }
+
+    /**
+     * @return the ID of the parent span, 0 for a root span
+     */
+    public long parentId() {
+        return parentId;
+    }
+
+    public String traceIdString() {
+        return traceIdHigh == 0 ? HexCodec.toHex(traceId) : HexCodec.toHex(traceIdHigh, traceId);
+    }
+
+    public String spanIdString() {
+        return HexCodec.toHex(spanId);
+    }
+
+    public String operationName() {
+        return operationName;
+    }
+
+    /**
+     * @return start time in microseconds since the epoch
+     */
+    public long startMicros() {
+        return startMicros;
+    }
+
+    public long durationMicros() {
+        return durationMicros;
+    }
+
+    public long duration(TimeUnit unit) {
+        return unit.convert(durationMicros, TimeUnit.MICROSECONDS);
+    }
+
+    /**
+     * @return unmodifiable tags, in the order they were first set
+     */
+    public Map<String, Object> tags() {
+        return tags;
+    }
+
+    public Object tag(String key) {
+        return tags.get(key);
+    }
+
+    /**
+     * @return unmodifiable log entries, in the order they were logged
+     */
+    public List<LogEntry> logs() {
+        return logs;
+    }
+
+    @Override
+    public String toString() {
+        return "FinishedSpan{traceId=" + traceIdString() + ", spanId=" + spanIdString()
+            + ", parentId=" + (parentId == 0 ? "none" : HexCodec.toHex(parentId))
+            + ", operationName=" + operationName + ", durationMicros=" + durationMicros + ", tags=" + tags + "}";
+    }
+
+    public static final class LogEntry {
+
+        private final long timestampMicros;
+        private final Map<String, ?> fields;
+
+        LogEntry(long timestampMicros, Map<String, ?> fields) {
+            this.timestampMicros = timestampMicros;
+            this.fields = fields;
+        }
+
+        public long timestampMicros() {
+            return timestampMicros;
+        }
+
+        public Map<String, ?> fields() {
+            return fields;
+        }
+
+        @Override
+        public String toString() {
+            return timestampMicros + "=" + fields;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.tracing.tracer;
+
+import io.opentracing.ScopeManager;
+import io.opentracing.util.ThreadLocalScopeManager;
+
+/**
+ * A {@link RecordingTracer} that keeps the most recent finished spans in memory, a drop-in for MockTracer in
+ * long-running processes. Memory use is capped by the ring capacity and the per-span limits of tags and log entries,
+ * and older spans are overwritten instead of piling up.
+ *
+ * Use {@link #spans()} to take snapshots or look spans up by operation name and duration.
+ */
+public class InMemoryTracer extends RecordingTracer {
+
+    private final SpanRing spans;
+
+    public InMemoryTracer(int capacity) {
+        this(new ThreadLocalScopeManager(), capacity);
+    }
+
+    public InMemoryTracer(ScopeManager scopeManager, int capacity) {
+        this(scopeManager, new SpanRing(capacity));
+    }
+
+    private InMemoryTracer(ScopeManager scopeManager, SpanRing spans) {
+        super(scopeManager, spans);
+        this.spans = spans;
+    }
+
+    public SpanRing spans() {
+        return spans;
+    }
+}
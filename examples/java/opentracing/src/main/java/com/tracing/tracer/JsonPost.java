@@ -0,0 +1,82 @@
+package com.tracing.tracer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * What the HTTP exporters share: posting a JSON body and writing JSON strings.
+ */
+final class JsonPost {
+
+    // a collector that stops answering must not hold the exporter thread forever
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+    private static final int READ_TIMEOUT_MILLIS = 10_000;
+
+    private JsonPost() {
+    }
+
+    /**
+     * @param headers additional request headers, e.g. an API key
+     * @throws IllegalStateException if the request failed, timed out or was not answered with a 2xx status
+     */
+    static void send(URL endpoint, CharSequence json, Map<String, String> headers) {
+        byte[] body = json.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            HttpURLConnection con = (HttpURLConnection) endpoint.openConnection();
+            con.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+            con.setReadTimeout(READ_TIMEOUT_MILLIS);
+            con.setRequestMethod("POST");
+            con.setDoOutput(true);
+            con.setRequestProperty("Content-Type", "application/json");
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                con.setRequestProperty(header.getKey(), header.getValue());
+            }
+            con.setFixedLengthStreamingMode(body.length);
+            try (OutputStream os = con.getOutputStream()) {
+                os.write(body);
+            }
+            int status = con.getResponseCode();
+            if (status >= 300) {
+                throw new IllegalStateException(endpoint + " answered " + status);
+            }
+            con.getInputStream().close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not send spans to " + endpoint, e);
+        }
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,20 @@
+package com.tracing.tracer;
+
+import java.io.PrintStream;
+
+/**
+ * Writes one line per finished span, similar to the span logging of Wingtips.
+ */
+public class LoggingSpanExporter implements SpanReporter {
+
+    private final PrintStream out;
+
+    public LoggingSpanExporter(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void report(FinishedSpan span) {
+        out.println("[SPAN] " + span);
+    }
+}
@@ -0,0 +1,102 @@
+package com.tracing.tracer;
+
+import com.tracing.propagation.TraceHeadersInjector;
+import io.opentracing.ScopeManager;
+import io.opentracing.util.ThreadLocalScopeManager;
+import java.io.Closeable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A tracer for running one service against several backends at once, e.g. during a vendor migration, without
+ * instrumenting it once per vendor.
+ *
+ * Each span is recorded once. Incoming context is extracted once, from B3, b3 or W3C traceparent headers, and
+ * outgoing requests get headers in every configured format. Finished spans go to every exporter through a
+ * {@link FanOutSpanReporter}, so a slow backend cannot stall the request thread.
+ *
+ * <pre>
+ * MultiplexingTracer tracer = MultiplexingTracer.newBuilder()
+ *     .propagationFormats(TraceHeadersInjector.Format.B3, TraceHeadersInjector.Format.W3C)
+ *     .addExporter("zipkin", new ZipkinJsonExporter(zipkinUrl, "rpc-testing"))
+ *     .addExporter("log", new LoggingSpanExporter(System.out))
+ *     .build();
+ * </pre>
+ */
+public class MultiplexingTracer extends RecordingTracer implements Closeable {
+
+    private final FanOutSpanReporter exporters;
+
+    private MultiplexingTracer(ScopeManager scopeManager, FanOutSpanReporter exporters,
+                               TraceHeadersInjector injector) {
+        super(scopeManager, exporters, injector);
+        this.exporters = exporters;
+    }
+
+    public static Builder newBuilder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the exporters, e.g. to check how many spans a backend dropped
+     */
+    public FanOutSpanReporter exporters() {
+        return exporters;
+    }
+
+    /**
+     * Exports the spans that are still queued and stops the exporter threads.
+     */
+    @Override
+    public void close() {
+        exporters.close();
+    }
+
+    public static final class Builder {
+
+        private ScopeManager scopeManager = new ThreadLocalScopeManager();
+        private TraceHeadersInjector.Format[] formats = {TraceHeadersInjector.Format.B3,
+            TraceHeadersInjector.Format.W3C};
+        private final Map<String, SpanReporter> exporters = new LinkedHashMap<>();
+        private int queueCapacity = 4096;
+
+        private Builder() {
+        }
+
+        public Builder scopeManager(ScopeManager scopeManager) {
+            this.scopeManager = scopeManager;
+            return this;
+        }
+
+        /**
+         * Header formats to inject into outgoing requests, B3 and W3C by default.
+         */
+        public Builder propagationFormats(TraceHeadersInjector.Format... formats) {
+            this.formats = formats.clone();
+            return this;
+        }
+
+        public Builder addExporter(String name, SpanReporter exporter) {
+            if (exporters.put(name, exporter) != null) {
+                throw new IllegalArgumentException("Duplicate exporter name " + name);
+            }
+            return this;
+        }
+
+        /**
+         * Number of spans that may wait for each exporter before spans are dropped for it, 4096 by default.
+         */
+        public Builder queueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public MultiplexingTracer build() {
+            if (exporters.isEmpty()) {
+                throw new IllegalStateException("At least one exporter is needed");
+            }
+            return new MultiplexingTracer(scopeManager, new FanOutSpanReporter(exporters, queueCapacity),
+                TraceHeadersInjector.create(formats));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.tracing.tracer;
+
+import com.tracing.propagation.HexCodec;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends finished spans to the New Relic Trace API in its own JSON format, one POST per batch, e.g. to
+ * https://trace-api.newrelic.com/trace/v1 with a license or insert key. Tags become span attributes; logs are not
+ * sent, the format has no place for them. Like {@link ZipkinJsonExporter} it is meant to run behind a
+ * {@link FanOutSpanReporter}.
+ */
+public class NewRelicSpanExporter implements SpanReporter {
+
+    public static final String DEFAULT_ENDPOINT = "https://trace-api.newrelic.com/trace/v1";
+
+    private final URL endpoint;
+    private final String serviceName;
+    private final Map<String, String> headers;
+
+    public NewRelicSpanExporter(URL endpoint, String apiKey, String serviceName) {
+        this.endpoint = endpoint;
+        this.serviceName = serviceName;
+        Map<String, String> headers = new LinkedHashMap<>();
+        headers.put("Api-Key", apiKey);
+        headers.put("Data-Format", "newrelic");
+        headers.put("Data-Format-Version", "1");
+        this.headers = Collections.unmodifiableMap(headers);
+    }
+
+    @Override
+    public void report(FinishedSpan span) {
+        report(Collections.singletonList(span));
+    }
+
+    /**
+     * Sends the whole batch in one POST, with the service name once for all spans.
+     */
+    @Override
+    public void report(List<FinishedSpan> spans) {
+        if (!spans.isEmpty()) {
+            JsonPost.send(endpoint, toJson(spans), headers);
+        }
+    }
+
+    String toJson(List<FinishedSpan> spans) {
+        StringBuilder json = new StringBuilder(64 + 256 * spans.size());
+        json.append("[{\"common\":{\"attributes\":{\"service.name\":");
+        JsonPost.appendString(json, serviceName);
+        json.append("}},\"spans\":[");
+        for (int i = 0; i < spans.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendSpan(json, spans.get(i));
+        }
+        return json.append("]}]").toString();
+    }
+
+    private static void appendSpan(StringBuilder json, FinishedSpan span) {
+        json.append("{\"trace.id\":\"").append(span.traceIdString()).append('"');
+        json.append(",\"id\":\"").append(span.spanIdString()).append('"');
+        json.append(",\"timestamp\":").append(span.startMicros() / 1000);
+        json.append(",\"attributes\":{\"name\":");
+        JsonPost.appendString(json, span.operationName());
+        json.append(",\"duration.ms\":").append(span.durationMicros() / 1000.0);
+        if (span.parentId() != 0) {
+            json.append(",\"parent.id\":\"").append(HexCodec.toHex(span.parentId())).append('"');
+        }
+        for (Map.Entry<String, Object> tag : span.tags().entrySet()) {
+            json.append(',');
+            JsonPost.appendString(json, tag.getKey());
+            json.append(':');
+            Object value = tag.getValue();
+            // JSON has no NaN or Infinity; such values are sent as strings, like any other non-number
+            if (value instanceof Boolean || value instanceof Number && isFinite((Number) value)) {
+                json.append(value);
+            } else {
+                JsonPost.appendString(json, String.valueOf(value));
+            }
+        }
+        json.append("}}");
+    }
+
+    private static boolean isFinite(Number number) {
+        double value = number.doubleValue();
+        return !Double.isNaN(value) && !Double.isInfinite(value);
+    }
+}
@@ -0,0 +1,161 @@
+package com.tracing.tracer;
+
+import io.opentracing.Span;
+import io.opentracing.log.Fields;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A span that is turned into a {@link FinishedSpan} and reported when it is finished.
+ *
+ * The number of tags and log entries per span is capped, so a span that is tagged in a loop cannot grow without
+ * bound - together with a bounded reporter such as {@link SpanRing} this keeps the memory used by recorded spans
+ * fixed. Tags and log entries beyond the cap are dropped.
+ */
+final class RecordingSpan implements Span {
+
+    static final int MAX_TAGS = 64;
+    static final int MAX_LOG_ENTRIES = 64;
+
+    private final RecordingTracer tracer;
+    private final long parentId;
+    private final long startMicros;
+    // without an explicit start timestamp the duration is measured with the monotonic clock
+    private final boolean explicitStartTimestamp;
+    private final long startNanos;
+
+    private RecordingSpanContext context;
+    private String operationName;
+    private Map<String, Object> tags;
+    private List<FinishedSpan.LogEntry> logs;
+    private boolean finished;
+
+    RecordingSpan(RecordingTracer tracer, RecordingSpanContext context, long parentId, String operationName,
+                  long startMicros, Map<String, Object> tags) {
+        this.tracer = tracer;
+        this.context = context;
+        this.parentId = parentId;
+        this.operationName = operationName;
+        this.tags = tags;
+        this.explicitStartTimestamp = startMicros != 0;
+        this.startMicros = explicitStartTimestamp ? startMicros : RecordingTracer.nowMicros();
+        this.startNanos = System.nanoTime();
+    }
+
+    @Override
+    public synchronized RecordingSpanContext context() {
+        return context;
+    }
+
+    @Override
+    public Span setTag(String key, String value) {
+        return putTag(key, value);
+    }
+
+    @Override
+    public Span setTag(String key, boolean value) {
+        return putTag(key, value);
+    }
+
+    @Override
+    public Span setTag(String key, Number value) {
+        return putTag(key, value);
+    }
+
+    private synchronized Span putTag(String key, Object value) {
+        if (finished) {
+            return this;
+        }
+        if (tags == null) {
+            tags = new LinkedHashMap<>();
+        }
+        if (tags.size() < MAX_TAGS || tags.containsKey(key)) {
+            tags.put(key, value);
+        }
+        return this;
+    }
+
+    @Override
+    public Span log(Map<String, ?> fields) {
+        return log(RecordingTracer.nowMicros(), fields);
+    }
+
+    @Override
+    public synchronized Span log(long timestampMicroseconds, Map<String, ?> fields) {
+        if (finished) {
+            return this;
+        }
+        if (logs == null) {
+            logs = new ArrayList<>();
+        }
+        if (logs.size() < MAX_LOG_ENTRIES) {
+            logs.add(new FinishedSpan.LogEntry(timestampMicroseconds,
+                Collections.unmodifiableMap(new LinkedHashMap<>(fields))));
+        }
+        return this;
+    }
+
+    @Override
+    public Span log(String event) {
+        return log(RecordingTracer.nowMicros(), event);
+    }
+
+    @Override
+    public Span log(long timestampMicroseconds, String event) {
+        return log(timestampMicroseconds, Collections.singletonMap(Fields.EVENT, event));
+    }
+
+    @Override
+    public synchronized Span setBaggageItem(String key, String value) {
+        context = context.withBaggageItem(key, value);
+        return this;
+    }
+
+    @Override
+    public synchronized String getBaggageItem(String key) {
+        return context.getBaggageItem(key);
+    }
+
+    @Override
+    public synchronized Span setOperationName(String operationName) {
+        this.operationName = operationName;
+        return this;
+    }
+
+    @Override
+    public void finish() {
+        long durationMicros = explicitStartTimestamp
+            ? RecordingTracer.nowMicros() - startMicros
+            : (System.nanoTime() - startNanos) / 1000;
+        finishWithDuration(durationMicros);
+    }
+
+    @Override
+    public void finish(long finishMicros) {
+        finishWithDuration(finishMicros - startMicros);
+    }
+
+    private void finishWithDuration(long durationMicros) {
+        FinishedSpan finishedSpan;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            finishedSpan = new FinishedSpan(context.traceIdHigh(), context.traceId(), context.spanId(), parentId,
+                operationName, startMicros, durationMicros,
+                tags == null ? Collections.<String, Object>emptyMap() : Collections.unmodifiableMap(tags),
+                logs == null ? Collections.<FinishedSpan.LogEntry>emptyList() : Collections.unmodifiableList(logs));
+        }
+        tracer.report(finishedSpan);
+    }
+
+    @Override
+    public String toString() {
+        return "RecordingSpan{operationName=" + operationName + ", context=" + context.traceId() + "/"
+            + context.spanId() + "}";
+    }
+}
@@ -0,0 +1,61 @@
+package com.tracing.tracer;
+
+import io.opentracing.SpanContext;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Trace and span IDs plus baggage. Immutable - adding baggage returns a new context.
+ */
+public final class RecordingSpanContext implements SpanContext {
+
+    private final long traceIdHigh;
+    private final long traceId;
+    private final long spanId;
+    private final boolean sampled;
+    private final Map<String, String> baggage;
+
+    RecordingSpanContext(long traceIdHigh, long traceId, long spanId, boolean sampled, Map<String, String> baggage) {
+        this.traceIdHigh = traceIdHigh;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.sampled = sampled;
+        this.baggage = baggage;
+    }
+
+    public long traceIdHigh() {
+        return traceIdHigh;
+    }
+
+    public long traceId() {
+        return traceId;
+    }
+
+    public long spanId() {
+        return spanId;
+    }
+
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    public String getBaggageItem(String key) {
+        return baggage.get(key);
+    }
+
+    @Override
+    public Iterable<Map.Entry<String, String>> baggageItems() {
+        return baggage.entrySet();
+    }
+
+    Map<String, String> baggage() {
+        return baggage;
+    }
+
+    RecordingSpanContext withBaggageItem(String key, String value) {
+        Map<String, String> newBaggage = new HashMap<>(baggage);
+        newBaggage.put(key, value);
+        return new RecordingSpanContext(traceIdHigh, traceId, spanId, sampled, Collections.unmodifiableMap(newBaggage));
+    }
+}
@@ -0,0 +1,236 @@
+package com.tracing.tracer;
+
+import com.tracing.TextMapLookup;
+import com.tracing.propagation.B3Context;
+import com.tracing.propagation.B3HeaderExtractor;
+import com.tracing.propagation.TraceHeadersInjector;
+import com.tracing.propagation.TraceIdGenerator;
+import io.opentracing.References;
+import io.opentracing.Scope;
+import io.opentracing.ScopeManager;
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+import io.opentracing.util.ThreadLocalScopeManager;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A self-contained OpenTracing Tracer that records spans and hands every finished span to a {@link SpanReporter}.
+ *
+ * Trace context is propagated in B3 headers, so spans join traces with the Brave and Wingtips examples; W3C
+ * traceparent is accepted on extraction and additional formats can be injected with
+ * -Dtracing.propagation=b3,b3_single,w3c. Baggage travels in "ot-baggage-" headers. Carriers implementing
+ * {@link TextMapLookup} are asked for the trace headers directly instead of being iterated.
+ */
+public class RecordingTracer implements Tracer {
+
+    static final String BAGGAGE_PREFIX = "ot-baggage-";
+
+    private static final TraceHeadersInjector.Setter<TextMap> TEXT_MAP_SETTER = TextMap::put;
+
+    private final ScopeManager scopeManager;
+    private final SpanReporter reporter;
+    private final TraceHeadersInjector injector;
+    private final TraceIdGenerator idGenerator = TraceIdGenerator.fromSystemProperty("tracing.traceIdMode");
+
+    public RecordingTracer(SpanReporter reporter) {
+        this(new ThreadLocalScopeManager(), reporter);
+    }
+
+    public RecordingTracer(ScopeManager scopeManager, SpanReporter reporter) {
+        this(scopeManager, reporter,
+            TraceHeadersInjector.fromSystemProperty("tracing.propagation", TraceHeadersInjector.Format.B3));
+    }
+
+    /**
+     * @param injector writes the trace context of outgoing requests, in as many header formats as it is set up for
+     */
+    public RecordingTracer(ScopeManager scopeManager, SpanReporter reporter, TraceHeadersInjector injector) {
+        this.scopeManager = scopeManager;
+        this.reporter = reporter;
+        this.injector = injector;
+    }
+
+    @Override
+    public ScopeManager scopeManager() {
+        return scopeManager;
+    }
+
+    @Override
+    public Span activeSpan() {
+        Scope scope = scopeManager.active();
+        return scope == null ? null : scope.span();
+    }
+
+    @Override
+    public SpanBuilder buildSpan(String operationName) {
+        return new RecordingSpanBuilder(operationName);
+    }
+
+    @Override
+    public <C> void inject(SpanContext spanContext, Format<C> format, C carrier) {
+        if (!(carrier instanceof TextMap)) {
+            throw new IllegalArgumentException("Unsupported carrier " + carrier);
+        }
+        if (!(spanContext instanceof RecordingSpanContext)) {
+            return;
+        }
+        RecordingSpanContext context = (RecordingSpanContext) spanContext;
+        TextMap textMap = (TextMap) carrier;
+        // the parent span ID is optional in B3 and not kept in the context
+        injector.inject(context.traceIdHigh(), context.traceId(), context.spanId(), 0, context.isSampled(), null,
+            textMap, TEXT_MAP_SETTER);
+        for (Map.Entry<String, String> item : context.baggage().entrySet()) {
+            textMap.put(BAGGAGE_PREFIX + item.getKey(), item.getValue());
+        }
+    }
+
+    @Override
+    public <C> SpanContext extract(Format<C> format, C carrier) {
+        if (!(carrier instanceof TextMap)) {
+            throw new IllegalArgumentException("Unsupported carrier " + carrier);
+        }
+        B3Context b3 = new B3Context();
+        Map<String, String> baggage = new HashMap<>(4);
+        if (carrier instanceof TextMapLookup) {
+            TextMapLookup lookup = (TextMapLookup) carrier;
+            if (!B3HeaderExtractor.extract(lookup::get, b3, true)) {
+                return null;
+            }
+            lookup.forEachWithPrefix(BAGGAGE_PREFIX,
+                (key, value) -> baggage.put(key.substring(BAGGAGE_PREFIX.length()), value));
+        } else {
+            // generic carriers can only be iterated, so collect the entries for case insensitive lookups
+            Map<String, String> entries = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            for (Map.Entry<String, String> entry : (TextMap) carrier) {
+                entries.putIfAbsent(entry.getKey(), entry.getValue());
+                if (entry.getKey().regionMatches(true, 0, BAGGAGE_PREFIX, 0, BAGGAGE_PREFIX.length())) {
+                    baggage.put(entry.getKey().substring(BAGGAGE_PREFIX.length()).toLowerCase(), entry.getValue());
+                }
+            }
+            if (!B3HeaderExtractor.extract(entries::get, b3, true)) {
+                return null;
+            }
+        }
+        return new RecordingSpanContext(b3.traceIdHigh(), b3.traceId(), b3.spanId(), b3.isSampled(),
+            baggage.isEmpty() ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(baggage));
+    }
+
+    void report(FinishedSpan span) {
+        reporter.report(span);
+    }
+
+    static long nowMicros() {
+        return System.currentTimeMillis() * 1000;
+    }
+
+    final class RecordingSpanBuilder implements SpanBuilder {
+
+        private final String operationName;
+        private RecordingSpanContext parent;
+        private boolean ignoreActiveSpan;
+        private long startMicros;
+        private Map<String, Object> tags;
+
+        RecordingSpanBuilder(String operationName) {
+            this.operationName = operationName;
+        }
+
+        @Override
+        public SpanBuilder asChildOf(SpanContext parent) {
+            return addReference(References.CHILD_OF, parent);
+        }
+
+        @Override
+        public SpanBuilder asChildOf(Span parent) {
+            return parent == null ? this : addReference(References.CHILD_OF, parent.context());
+        }
+
+        @Override
+        public SpanBuilder addReference(String referenceType, SpanContext referencedContext) {
+            // the first CHILD_OF or FOLLOWS_FROM reference becomes the parent, contexts of other tracers are ignored
+            if (parent == null && referencedContext instanceof RecordingSpanContext
+                && (References.CHILD_OF.equals(referenceType) || References.FOLLOWS_FROM.equals(referenceType))) {
+                parent = (RecordingSpanContext) referencedContext;
+            }
+            return this;
+        }
+
+        @Override
+        public SpanBuilder ignoreActiveSpan() {
+            ignoreActiveSpan = true;
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, String value) {
+            return putTag(key, value);
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, boolean value) {
+            return putTag(key, value);
+        }
+
+        @Override
+        public SpanBuilder withTag(String key, Number value) {
+            return putTag(key, value);
+        }
+
+        private SpanBuilder putTag(String key, Object value) {
+            if (tags == null) {
+                tags = new LinkedHashMap<>();
+            }
+            if (tags.size() < RecordingSpan.MAX_TAGS || tags.containsKey(key)) {
+                tags.put(key, value);
+            }
+            return this;
+        }
+
+        @Override
+        public SpanBuilder withStartTimestamp(long microseconds) {
+            startMicros = microseconds;
+            return this;
+        }
+
+        @Override
+        public Scope startActive(boolean finishSpanOnClose) {
+            return scopeManager.activate(start(), finishSpanOnClose);
+        }
+
+        @Override
+        @Deprecated
+        public Span startManual() {
+            return start();
+        }
+
+        @Override
+        public Span start() {
+            if (parent == null && !ignoreActiveSpan) {
+                Span activeSpan = activeSpan();
+                if (activeSpan != null && activeSpan.context() instanceof RecordingSpanContext) {
+                    parent = (RecordingSpanContext) activeSpan.context();
+                }
+            }
+            RecordingSpanContext context;
+            long parentId;
+            if (parent != null) {
+                context = new RecordingSpanContext(parent.traceIdHigh(), parent.traceId(), idGenerator.nextId(),
+                    parent.isSampled(), parent.baggage());
+                parentId = parent.spanId();
+            } else {
+                long traceId = idGenerator.nextId();
+                context = new RecordingSpanContext(idGenerator.nextTraceIdHigh(), traceId, traceId, true,
+                    Collections.<String, String>emptyMap());
+                parentId = 0;
+            }
+            return new RecordingSpan(RecordingTracer.this, context, parentId, operationName, startMicros, tags);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.tracing.tracer;
+
+import java.util.List;
+
+/**
+ * Receives every span a {@link RecordingTracer} finishes. Called on the thread that finished the span, so
+ * implementations must be thread safe and should return quickly.
+ */
+public interface SpanReporter {
+
+    void report(FinishedSpan span);
+
+    /**
+     * Receives several finished spans at once, as {@link FanOutSpanReporter} drains them from its queue. Exporters
+     * that send spans over the network override this to send the whole batch in one request; the default reports
+     * them one by one. The list is only valid during the call.
+     */
+    default void report(List<FinishedSpan> spans) {
+        for (FinishedSpan span : spans) {
+            report(span);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.tracing.tracer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the most recent finished spans in a fixed number of slots. Once all slots are used, every new span
+ * overwrites the oldest one, so memory stays bounded however long the process runs - unlike MockTracer, which keeps
+ * every span until it is reset.
+ *
+ * Reporting is lock-free: a writer claims the next sequence number with a single atomic increment and stores the span
+ * in that slot. Snapshots never block writers either; a snapshot taken while spans are being reported may already
+ * miss spans that were overwritten during the copy, or still contain a span whose slot was claimed but not yet written.
+ */
+public final class SpanRing implements SpanReporter {
+
+    private final AtomicReferenceArray<FinishedSpan> slots;
+    private final int mask;
+    private final AtomicLong written = new AtomicLong();
+
+    /**
+     * @param capacity maximum number of spans to keep, rounded up to the next power of two
+     */
+    public SpanRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(Math.max(size, 1));
+        this.mask = slots.length() - 1;
+    }
+
+    @Override
+    public void report(FinishedSpan span) {
+        long sequence = written.getAndIncrement();
+        slots.lazySet((int) (sequence & mask), span);
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+
+    /**
+     * @return number of spans currently kept, at most {@link #capacity()}
+     */
+    public int size() {
+        return (int) Math.min(written.get(), slots.length());
+    }
+
+    /**
+     * @return number of spans reported since the ring was created
+     */
+    public long reportedCount() {
+        return written.get();
+    }
+
+    /**
+     * @return number of spans that were overwritten by newer ones
+     */
+    public long overwrittenCount() {
+        return Math.max(0, written.get() - slots.length());
+    }
+
+    /**
+     * @return the spans currently kept, oldest first
+     */
+    public List<FinishedSpan> snapshot() {
+        return query(span -> true);
+    }
+
+    public List<FinishedSpan> byOperationName(String operationName) {
+        return query(span -> span.operationName().equals(operationName));
+    }
+
+    /**
+     * @return spans that took at least {@code minDuration}
+     */
+    public List<FinishedSpan> slowerThan(long minDuration, TimeUnit unit) {
+        long minDurationMicros = unit.toMicros(minDuration);
+        return query(span -> span.durationMicros() >= minDurationMicros);
+    }
+
+    public List<FinishedSpan> byOperationNameSlowerThan(String operationName, long minDuration, TimeUnit unit) {
+        long minDurationMicros = unit.toMicros(minDuration);
+        return query(span -> span.durationMicros() >= minDurationMicros
+            && span.operationName().equals(operationName));
+    }
+
+    /**
+     * @return the spans currently kept that match {@code filter}, oldest first
+     */
+    public List<FinishedSpan> query(Predicate<? super FinishedSpan> filter) {
+        long end = written.get();
+        long start = Math.max(0, end - slots.length());
+        List<FinishedSpan> result = new ArrayList<>();
+        for (long sequence = start; sequence < end; sequence++) {
+            FinishedSpan span = slots.get((int) (sequence & mask));
+            if (span != null && filter.test(span)) {
+                result.add(span);
+            }
+        }
+        return result;
+    }
+}
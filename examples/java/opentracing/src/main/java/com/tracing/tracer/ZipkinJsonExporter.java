@@ -0,0 +1,94 @@
+package com.tracing.tracer;
+
+import com.tracing.propagation.HexCodec;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sends finished spans to a Zipkin compatible collector in the Zipkin v2 JSON format, one POST per batch, e.g. to
+ * http://localhost:9411/api/v2/spans like the Brave example. Meant to run behind a {@link FanOutSpanReporter}, which
+ * keeps the HTTP call off the request thread.
+ */
+public class ZipkinJsonExporter implements SpanReporter {
+
+    private final URL endpoint;
+    private final String serviceName;
+
+    public ZipkinJsonExporter(URL endpoint, String serviceName) {
+        this.endpoint = endpoint;
+        this.serviceName = serviceName;
+    }
+
+    @Override
+    public void report(FinishedSpan span) {
+        report(Collections.singletonList(span));
+    }
+
+    /**
+     * Sends the whole batch in one POST.
+     */
+    @Override
+    public void report(List<FinishedSpan> spans) {
+        if (!spans.isEmpty()) {
+            JsonPost.send(endpoint, toJson(spans), Collections.emptyMap());
+        }
+    }
+
+    String toJson(List<FinishedSpan> spans) {
+        StringBuilder json = new StringBuilder(256 * spans.size()).append('[');
+        for (int i = 0; i < spans.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendSpan(json, spans.get(i));
+        }
+        return json.append(']').toString();
+    }
+
+    private void appendSpan(StringBuilder json, FinishedSpan span) {
+        json.append('{');
+        json.append("\"traceId\":\"").append(span.traceIdString()).append('"');
+        json.append(",\"id\":\"").append(span.spanIdString()).append('"');
+        if (span.parentId() != 0) {
+            json.append(",\"parentId\":\"").append(HexCodec.toHex(span.parentId())).append('"');
+        }
+        json.append(",\"name\":");
+        JsonPost.appendString(json, span.operationName());
+        Object kind = span.tag("span.kind");
+        if ("server".equals(kind) || "client".equals(kind) || "producer".equals(kind) || "consumer".equals(kind)) {
+            json.append(",\"kind\":\"").append(kind.toString().toUpperCase(Locale.ROOT)).append('"');
+        }
+        json.append(",\"timestamp\":").append(span.startMicros());
+        json.append(",\"duration\":").append(Math.max(1, span.durationMicros()));
+        json.append(",\"localEndpoint\":{\"serviceName\":");
+        JsonPost.appendString(json, serviceName);
+        json.append('}');
+        if (!span.logs().isEmpty()) {
+            json.append(",\"annotations\":[");
+            for (int i = 0; i < span.logs().size(); i++) {
+                FinishedSpan.LogEntry log = span.logs().get(i);
+                json.append(i == 0 ? "" : ",").append("{\"timestamp\":").append(log.timestampMicros());
+                json.append(",\"value\":");
+                JsonPost.appendString(json, String.valueOf(log.fields()));
+                json.append('}');
+            }
+            json.append(']');
+        }
+        if (!span.tags().isEmpty()) {
+            json.append(",\"tags\":{");
+            boolean first = true;
+            for (Map.Entry<String, Object> tag : span.tags().entrySet()) {
+                json.append(first ? "" : ",");
+                JsonPost.appendString(json, tag.getKey());
+                json.append(':');
+                JsonPost.appendString(json, String.valueOf(tag.getValue()));
+                first = false;
+            }
+            json.append('}');
+        }
+        json.append('}');
+    }
+}
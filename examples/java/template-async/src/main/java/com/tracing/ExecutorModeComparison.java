@@ -0,0 +1,110 @@
+package com.tracing;
+
+import com.tracing.server.ServerExecutors;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the "platform" and "virtual" request processing executors of {@link TraceExampleAsync}, see
+ * {@link ServerExecutors#newRequestProcessingExecutor(String)}, by submitting
+ * 10,000 concurrent requests that each do the same blocking 5 ms of work as the asyncWithExecutor path. All
+ * requests are held until the last one is submitted, so they are really in flight at the same time.
+ *
+ * <p>For every mode it reports the peak number of live threads (concurrency), the heap in use while all requests
+ * are in flight (memory - platform thread stacks live outside the heap and are not included) and the latency
+ * percentiles measured from the moment all requests are released. Virtual threads need Java 21+; on older JVMs only
+ * the platform mode is measured.
+ *
+ * <p>Usage: {@code java com.tracing.ExecutorModeComparison [concurrentRequests]}
+ */
+public class ExecutorModeComparison {
+
+	public static void main(String[] args) throws Exception {
+		int concurrentRequests = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+
+		System.out.println("Comparing executor modes with " + concurrentRequests + " concurrent requests");
+		System.out.println(String.format("%-10s %12s %14s %10s %10s %10s %10s",
+				"mode", "peakThreads", "heapInUse(MB)", "p50(ms)", "p99(ms)", "max(ms)", "total(ms)"));
+
+		for (String mode : new String[] { "platform", "virtual" }) {
+			// warm up once so class loading and JIT don't end up in the measured run
+			run(mode, Math.min(concurrentRequests, 1_000), false);
+			run(mode, concurrentRequests, true);
+		}
+	}
+
+	private static void run(String mode, int concurrentRequests, boolean report) throws InterruptedException {
+		ExecutorService executor = newExecutor(mode);
+		if (executor == null) {
+			if (report) {
+				System.out.println(String.format("%-10s %s", mode, "not available on this JVM"));
+			}
+			return;
+		}
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		System.gc();
+		threads.resetPeakThreadCount();
+		long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+		long[] latencies = new long[concurrentRequests];
+		CountDownLatch allSubmitted = new CountDownLatch(1);
+		CountDownLatch allDone = new CountDownLatch(concurrentRequests);
+		long[] releasedAt = new long[1];
+
+		// Every request blocks until all of them are submitted, so they really are in flight at the same time.
+		for (int i = 0; i < concurrentRequests; i++) {
+			final int requestIndex = i;
+			executor.execute(() -> {
+				try {
+					allSubmitted.await();
+				}
+				catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				TraceExampleAsync.sleepForMillis(5);
+				latencies[requestIndex] = System.nanoTime() - releasedAt[0];
+				allDone.countDown();
+			});
+		}
+		long heapWhileInFlight = memory.getHeapMemoryUsage().getUsed();
+		releasedAt[0] = System.nanoTime();
+		allSubmitted.countDown();
+		allDone.await();
+		long total = System.nanoTime() - releasedAt[0];
+
+		executor.shutdown();
+		executor.awaitTermination(1, TimeUnit.MINUTES);
+
+		if (report) {
+			// ThreadMXBean only counts platform threads, which for the virtual mode are the carrier threads
+			Arrays.sort(latencies);
+			System.out.println(String.format("%-10s %12d %14.1f %10.2f %10.2f %10.2f %10.1f",
+					mode,
+					threads.getPeakThreadCount(),
+					(heapWhileInFlight - heapBefore) / (1024.0 * 1024.0),
+					millis(latencies[latencies.length / 2]),
+					millis(latencies[(int) (latencies.length * 0.99)]),
+					millis(latencies[latencies.length - 1]),
+					millis(total)));
+		}
+	}
+
+	private static ExecutorService newExecutor(String mode) {
+		if ("virtual".equals(mode) && !ServerExecutors.virtualThreadsAvailable()) {
+			return null;
+		}
+		return ServerExecutors.newRequestProcessingExecutor(mode);
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000.0;
+	}
+}
@@ -3,6 +3,10 @@ package com.tracing;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import com.tracing.load.LoadGenerator;
+import com.tracing.server.AsyncStages;
+import com.tracing.server.ExampleServers;
+import com.tracing.server.ServerExecutors;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -12,9 +16,10 @@ import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URL;
 import java.util.UUID;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Single self contained example for a distributed micro application to
@@ -22,12 +27,23 @@ import java.util.concurrent.Executors;
  *
  * <p>This particular class demonstrates instrumenting asynchronous scenarios.
  *
+ * <p>Run with {@code -Dexample.executor=virtual} on Java 21+ to process the asyncWithExecutor path with one virtual
+ * thread per task instead of a cached platform thread pool, and with {@code -Dexample.async.stages=dedicated} to run
+ * the asyncWithCompletableFuture stages on a bounded pool of their own instead of the common ForkJoinPool, see
+ * {@link AsyncStages}.
+ *
  * @author alois.reitbauer
  * @author Nic Munroe
  *
  */
 public class TraceExampleAsync {
 
+	// -Dexample.requestLog=false keeps the handlers from printing a line per request, e.g. under load
+	static final boolean LOG_REQUESTS = ExampleServers.logRequests();
+
+	// -Dexample.simulatedWork=false skips the sleeps that simulate server time, e.g. to compare the tracers under load
+	static final boolean SIMULATE_WORK = ExampleServers.simulateWork();
+
 	public static void main(String[] args) {
 
 		try {
@@ -42,10 +58,16 @@ public class TraceExampleAsync {
 
 	private static void initClient() {
 
+		String[] pathList = { "asyncWithExecutor", "asyncWithCompletableFuture", "asyncWithCallback" };
+		if (LoadGenerator.isEnabled()) {
+			// -Dload.rate, see LoadGenerator
+			LoadGenerator.fromSystemProperties(pathList).runInBackground(path -> callServer(path, false));
+			return;
+		}
+
 		Thread thread = new Thread(() -> {
 
 			int pos = 0;
-			String[] pathList = { "asyncWithExecutor", "asyncWithCompletableFuture", "asyncWithCallback" };
 			// call the server in a loop
 			for (;;) {
 				try {
@@ -53,21 +75,8 @@ public class TraceExampleAsync {
 					String pathToCall = pathList[pos];
 					System.out.println("\n=============");
 
-					// Setup the HTTP client call
 					System.out.println("Client is calling: /" + pathToCall);
-					URL url = new URL("http://localhost:8000/" + pathToCall);
-					HttpURLConnection con = (HttpURLConnection) url.openConnection();
-					con.setRequestMethod("GET");
-
-					// Execute the HTTP client call
-					BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-					String inputLine;
-					StringBuilder content = new StringBuilder();
-					while ((inputLine = in.readLine()) != null) {
-						content.append(inputLine);
-					}
-					System.out.println("Received result from server: " + content);
-					in.close();
+					callServer(pathToCall, true);
 				} catch (Exception e) {
 					System.err.println("Failed to talk to server");
 					e.printStackTrace();
@@ -79,12 +88,34 @@ public class TraceExampleAsync {
 		thread.start();
 	}
 
+	static int callServer(String pathToCall, boolean logResponse) throws IOException {
+		// Setup the HTTP client call
+		URL url = new URL("http://localhost:8000/" + pathToCall);
+		HttpURLConnection con = (HttpURLConnection) url.openConnection();
+		con.setRequestMethod("GET");
+
+		// Execute the HTTP client call
+		BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
+		String inputLine;
+		StringBuilder content = new StringBuilder();
+		while ((inputLine = in.readLine()) != null) {
+			content.append(inputLine);
+		}
+		if (logResponse) {
+			System.out.println("Received result from server: " + content);
+		}
+		in.close();
+		return con.getResponseCode();
+	}
+
 	private static void initServer() throws Exception {
-		HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
+		// -Dexample.server.type=nio runs the handlers on an NIO event-loop server instead of the JDK's HttpServer
+		HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(8000));
 		server.createContext("/asyncWithExecutor", new AsyncWithExecutorPathHandler());
 		server.createContext("/asyncWithCompletableFuture", new AsyncWithCompletableFuturePathHandler());
 		server.createContext("/asyncWithCallback", new AsyncWithCallbackPathHandler());
-		server.setExecutor(null); // creates a default executor
+		// -Dexample.server.executor, see ServerExecutors
+		server.setExecutor(ServerExecutors.fromSystemProperties());
 		server.start();
 	}
 
@@ -93,17 +124,24 @@ public class TraceExampleAsync {
 	static class AsyncWithExecutorPathHandler implements HttpHandler {
 
 		// This is an Executor you control. You can wrap it or replace it with a different Executor.
-		private static final Executor requestProcessingExecutorYouControl = Executors.newCachedThreadPool();
+		private static final Executor requestProcessingExecutorYouControl =
+			ServerExecutors.newRequestProcessingExecutor();
 
 		@Override
 		public void handle(HttpExchange t) {
-			System.out.println("/asyncWithExecutor path was called.");
+			if (LOG_REQUESTS) {
+				System.out.println("/asyncWithExecutor path was called.");
+			}
 
 			requestProcessingExecutorYouControl.execute(() -> {
 				try {
-					sleepForMillis(5);
+					if (SIMULATE_WORK) {
+						sleepForMillis(5);
+					}
 
-					System.out.println("In async thread - about to respond to caller.");
+					if (LOG_REQUESTS) {
+						System.out.println("In async thread - about to respond to caller.");
+					}
 
 					String response = "This is the asyncWithExecutor path";
 					t.sendResponseHeaders(200, response.length());
@@ -122,34 +160,75 @@ public class TraceExampleAsync {
 	}
 
 	static class AsyncWithCompletableFuturePathHandler implements HttpHandler {
+
+		// The stages of this path. Trace context is carried from stage to stage by wrapping every task when it is
+		// 		submitted - this is where a tracer's runnable wrapper goes, the template has no context to carry.
+		private static final AsyncStages stages = AsyncStages.fromSystemProperties(task -> task);
+
 		@Override
 		public void handle(HttpExchange t) {
-			System.out.println("/asyncWithCompletableFuture path was called.");
-
-			CompletableFuture.supplyAsync(
-				() -> {
-					sleepForMillis(5);
+			if (LOG_REQUESTS) {
+				System.out.println("/asyncWithCompletableFuture path was called.");
+			}
 
-					String dataForResponse = "cf-data_" + UUID.randomUUID().toString();
-					System.out.println("In async CompletableFuture, about to respond with data: " + dataForResponse);
+			try {
+				// waits for the 5 ms on a timer rather than in a sleeping pool thread, unless the stages run on the
+				// 		common pool, as they do by default
+				stages.supplyAfter(SIMULATE_WORK ? 5 : 0, TimeUnit.MILLISECONDS,
+						() -> "cf-data_" + UUID.randomUUID().toString())
+					.thenAcceptAsync(dataForResponse -> {
+						if (LOG_REQUESTS) {
+							System.out.println("In async CompletableFuture, about to respond with data: "
+									+ dataForResponse);
+						}
+
+						respond(t, 200, "This is the asyncWithCompletableFuture path - "
+									  + "data supplied by the CompletableFuture: " + dataForResponse);
+					}, stages.executor())
+					.exceptionally(error -> {
+						if (error.getCause() instanceof RejectedExecutionException) {
+							// the stage pool filled up while the data was loaded
+							respond(t, 503, "Too busy");
+						}
+						else {
+							respondServerError(t, error);
+						}
+						return null;
+					});
+			}
+			catch (RejectedExecutionException e) {
+				respond(t, 503, "Too busy");
+			}
+		}
 
-					try {
-						String response = "This is the asyncWithCompletableFuture path - "
-										  + "data supplied by the CompletableFuture: " + dataForResponse;
-						t.sendResponseHeaders(200, response.length());
-						OutputStream os = t.getResponseBody();
-						os.write(response.getBytes());
-						os.close();
-					}
-					catch (IOException e) {
-						System.err.println("An error occurred while processing the request.");
-						e.printStackTrace();
-						throw new RuntimeException(e);
-					}
+		// The failed stage may have been respond() itself, after the headers went out - then all that is left is to
+		//		close the exchange.
+		private static void respondServerError(HttpExchange t, Throwable error) {
+			System.err.println("An error occurred while processing the request.");
+			error.printStackTrace();
+			try {
+				t.sendResponseHeaders(500, -1);
+			}
+			catch (IOException e) {
+				System.err.println("Could not send the error response: " + e);
+			}
+			finally {
+				t.close();
+			}
+		}
 
-					return null;
-				}
-			);
+		private static void respond(HttpExchange t, int code, String response) {
+			try {
+				t.sendResponseHeaders(code, response.length());
+				OutputStream os = t.getResponseBody();
+				os.write(response.getBytes());
+				os.close();
+			}
+			catch (IOException e) {
+				System.err.println("An error occurred while processing the request.");
+				e.printStackTrace();
+				throw new RuntimeException(e);
+			}
 		}
 
 	}
@@ -158,14 +237,20 @@ public class TraceExampleAsync {
 
 		@Override
 		public void handle(HttpExchange t) {
-			System.out.println("/asyncWithCallback path was called.");
+			if (LOG_REQUESTS) {
+				System.out.println("/asyncWithCallback path was called.");
+			}
 
 			SomeThirdPartyFramework.executeSomeAsyncFunctionWithNoThreadGuarantees(
 				(data) -> {
-					sleepForMillis(5);
+					if (SIMULATE_WORK) {
+						sleepForMillis(5);
+					}
 
 					try {
-						System.out.println("In async callback, about to respond with data: " + data);
+						if (LOG_REQUESTS) {
+							System.out.println("In async callback, about to respond with data: " + data);
+						}
 						String response = "This is the asyncWithCallback path - "
 										  + "data supplied by the third party framework: " + data;
 						t.sendResponseHeaders(200, response.length());
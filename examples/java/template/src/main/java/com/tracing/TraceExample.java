@@ -1,28 +1,88 @@
 package com.tracing;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
+import com.tracing.core.HeaderReader;
+import com.tracing.core.HeaderWriter;
+import com.tracing.core.Span;
+import com.tracing.core.Tracing;
+import com.tracing.db.DatabaseConnection;
+import com.tracing.db.ExampleDatabase;
+import com.tracing.db.QueryResult;
+import com.tracing.load.LoadGenerator;
+import com.tracing.server.ExampleServers;
+import com.tracing.server.FanOut;
+import com.tracing.server.PrecomputedResponse;
+import com.tracing.server.ServerExecutors;
+import com.tracing.server.ServiceChain;
+import com.tracing.server.StreamingResponse;
 
 /**
  * Single self contained example for a distributed micro application to
  * demonstrate how different tracing APIs instrument code
  * 
+ * This one is instrumented once, with the vendor-neutral {@link Tracing}
+ * facade: the backend on the class path records the spans, e.g.
+ * {@code gradle :template:run -PtracingBackend=brave}. Without one
+ * tracing is off and costs nothing.
+ * 
  * @author alois.reitbauer
  *
  */
 public class TraceExample {
 
+	// -Dexample.requestLog=false keeps the handlers from printing a line per request, e.g. under load
+	private static final boolean LOG_REQUESTS = ExampleServers.logRequests();
+
+	// in-process stand-in for the database PathBHandler queries, with a connection pool and per-statement latencies,
+	//		e.g. -Dexample.db.poolSize=4 -Dexample.db.latency=lognormal:5ms:0.8, see ExampleDatabase
+	private static final ExampleDatabase DATABASE = ExampleDatabase.fromSystemProperties();
+
+	// -Dexample.chain.services=2 adds the chain gateway -> service-a -> service-b -> database, called as /chain
+	private static final ServiceChain CHAIN = ServiceChain.fromSystemProperties(8000);
+
+	// -Dexample.fanout.branches=4 adds /fanout, which queries the database and calls pathA in 4 concurrent branches;
+	//		every branch runs with the request's span current, so its spans are children of it
+	private static final FanOut FAN_OUT = FanOut.fromSystemProperties(Tracing::wrap);
+
+	// -Dexample.stream.bytes=64m adds /stream, which sends that much in chunks of -Dexample.stream.chunk bytes
+	private static final StreamingResponse STREAM = StreamingResponse.fromSystemProperties();
+
+	// how the tracing backend reads the context of an incoming request and writes that of an outgoing one
+	private static final HeaderReader<HttpExchange> REQUEST_HEADERS = new HeaderReader<HttpExchange>() {
+		@Override
+		public String get(HttpExchange request, String name) {
+			return request.getRequestHeaders().getFirst(name);
+		}
+
+		@Override
+		public Iterable<String> names(HttpExchange request) {
+			return request.getRequestHeaders().keySet();
+		}
+	};
+	private static final HeaderWriter<HttpURLConnection> CONNECTION_HEADERS = HttpURLConnection::setRequestProperty;
+
 	public static void main(String[] args) {
 
+		System.out.println("Tracing backend: " + Tracing.backend());
+
 		try {
 			initServer();
 			initClient();
@@ -35,28 +95,35 @@ public class TraceExample {
 
 	private static void initClient() {
 
+		List<String> paths = new ArrayList<>(Arrays.asList("pathA", "pathB"));
+		if (CHAIN.isEnabled()) {
+			paths.add("chain");
+		}
+		if (FAN_OUT.isEnabled()) {
+			paths.add("fanout");
+		}
+		if (STREAM.isEnabled()) {
+			paths.add("stream");
+		}
+		final String[] pathList = paths.toArray(new String[0]);
+		if (LoadGenerator.isEnabled()) {
+			// -Dload.rate, see LoadGenerator
+			LoadGenerator.fromSystemProperties(pathList).runInBackground(TraceExample::callServer);
+			return;
+		}
+
 		Thread thread = new Thread(new Runnable() {
 
 			@Override
 			public void run() {
 
 				int pos = 0;
-				String[] pathList = { "pathA", "pathB" };
 				for (;;) {
 					try {
 						// call the server in a loop
 						System.out.println("Client is calling");
-						pos = (pos + 1) % 2;
-						URL url = new URL("http://localhost:8000/" + pathList[pos]);
-						HttpURLConnection con = (HttpURLConnection) url.openConnection();
-						con.setRequestMethod("GET");
-						BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-						String inputLine;
-						StringBuffer content = new StringBuffer();
-						while ((inputLine = in.readLine()) != null) {
-							content.append(inputLine);
-						}
-						in.close();
+						pos = (pos + 1) % pathList.length;
+						callServer(pathList[pos]);
 					} catch (Exception e) {
 						System.err.println("Failed to talk to server");
 						System.err.println(e.toString());
@@ -73,11 +140,48 @@ public class TraceExample {
 		thread.start();
 	}
 
+	static int callServer(String path) throws IOException {
+		return call(new URL("http://localhost:8000/" + path));
+	}
+
+	static int call(URL url) throws IOException {
+		HttpURLConnection con = (HttpURLConnection) url.openConnection();
+		con.setRequestMethod("GET");
+		try (Span span = Tracing.startClient(url.getPath(), con, CONNECTION_HEADERS)) {
+			// the body is read and dropped, it can be megabytes long
+			try (InputStream in = con.getInputStream()) {
+				byte[] buffer = new byte[8192];
+				while (in.read(buffer) != -1) {
+					// nothing to keep
+				}
+			} catch (IOException e) {
+				span.error(e);
+				throw e;
+			}
+			return con.getResponseCode();
+		}
+	}
+
 	private static void initServer() throws Exception {
-		HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
-		server.createContext("/pathA", new PathAHandler());
-		server.createContext("/pathB", new PathBHandler());
-		server.setExecutor(null); // creates a default executor
+		// -Dexample.server.type=nio runs the handlers on an NIO event-loop server instead of the JDK's HttpServer
+		HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(8000));
+		// -Dexample.precomputedResponses=true sends the bodies encoded once, see ExampleServers
+		boolean precomputed = ExampleServers.precomputedResponses();
+		server.createContext("/pathA", precomputed ? new PrecomputedPathAHandler() : new PathAHandler());
+		server.createContext("/pathB", precomputed ? new PrecomputedPathBHandler() : new PathBHandler());
+		if (CHAIN.isEnabled()) {
+			// the gateway is this server, the services behind it get servers of their own
+			server.createContext(ServiceChain.PATH, new ChainHandler(0));
+			CHAIN.startServices(ChainHandler::new, ServerExecutors::fromSystemProperties);
+		}
+		if (FAN_OUT.isEnabled()) {
+			server.createContext(FanOut.PATH, new FanOutHandler());
+		}
+		if (STREAM.isEnabled()) {
+			server.createContext(StreamingResponse.PATH, new StreamHandler());
+		}
+		// -Dexample.server.executor, see ServerExecutors
+		server.setExecutor(ServerExecutors.fromSystemProperties());
 		server.start();
 	}
 
@@ -86,11 +190,20 @@ public class TraceExample {
 	static class PathAHandler implements HttpHandler {
 		@Override
 		public void handle(HttpExchange t) throws IOException {
+			try (Span span = Tracing.startServer("PathAHandler", t, REQUEST_HEADERS)) {
+				span.tag("http.method", t.getRequestMethod());
+				if (LOG_REQUESTS) {
+					System.out.println("Path A was called.");
+				}
+				respond(t);
+			}
+		}
+
+		void respond(HttpExchange t) throws IOException {
 			String response = "This is path A";
 			t.sendResponseHeaders(200, response.length());
 			OutputStream os = t.getResponseBody();
 			os.write(response.getBytes());
-			System.out.println("Path A was called.");
 			os.close();
 		}
 	}
@@ -98,20 +211,228 @@ public class TraceExample {
 	static class PathBHandler implements HttpHandler {
 		@Override
 		public void handle(HttpExchange t) throws IOException {
+			try (Span span = Tracing.startServer("PathBHandler", t, REQUEST_HEADERS)) {
+				span.tag("http.method", t.getRequestMethod());
+				if (LOG_REQUESTS) {
+					System.out.println("Path B was called");
+				}
+				this.fakeDBCall("select * from table");
+				respond(t);
+			}
+		}
+
+		void respond(HttpExchange t) throws IOException {
 			String response = "This is path B";
 			t.sendResponseHeaders(200, response.length());
 			OutputStream os = t.getResponseBody();
 			os.write(response.getBytes());
-			System.out.println("Path B was called");
-			this.fakeDBCall("select * from table");
 			os.close();
 		}
 
 		public void fakeDBCall(String statement) {
 
 			// this is just to simulate a fake database call
-			System.out.println("Fake DB was called with statement " + statement);
+			try (Span span = Tracing.start("database")) {
+				span.tag("db.statement", statement);
+				try (DatabaseConnection connection = DATABASE.getConnection()) {
+					QueryResult result = connection.query(statement);
+					if (LOG_REQUESTS) {
+						System.out.println("Fake DB was called with statement " + statement + ", "
+								+ result.rowCount() + " rows returned");
+					}
+				} catch (SQLException e) {
+					span.error(e);
+					System.err.println("Fake DB call failed");
+					System.err.println(e.toString());
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * PathAHandler with the response encoded once, so sending it allocates nothing in the handler.
+	 */
+	static class PrecomputedPathAHandler extends PathAHandler {
+		private static final PrecomputedResponse RESPONSE = PrecomputedResponse.of("This is path A");
+
+		@Override
+		void respond(HttpExchange t) throws IOException {
+			RESPONSE.send(t);
 		}
+	}
+
+	static class PrecomputedPathBHandler extends PathBHandler {
+		private static final PrecomputedResponse RESPONSE = PrecomputedResponse.of("This is path B");
+
+		@Override
+		void respond(HttpExchange t) throws IOException {
+			RESPONSE.send(t);
+		}
+	}
+
+	/**
+	 * One hop of the service chain: calls the next hop, or the database if it is the last one. With a tracer every
+	 * hop extracts the caller's context, starts a server span, and injects a client span's context into the
+	 * downstream call.
+	 */
+	static class ChainHandler implements HttpHandler {
+		private static final PrecomputedResponse FAILED = PrecomputedResponse.of("Downstream call failed");
+
+		private final int hop;
+		private final PrecomputedResponse response;
+		private final URL downstream;
+		private final PathBHandler database = new PathBHandler();
 
+		ChainHandler(int hop) {
+			this.hop = hop;
+			this.response = PrecomputedResponse.of("This is " + CHAIN.name(hop));
+			try {
+				this.downstream = CHAIN.isLast(hop) ? null : new URL(CHAIN.downstreamUrl(hop));
+			} catch (MalformedURLException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		public void handle(HttpExchange t) throws IOException {
+			try (Span span = Tracing.startServer(CHAIN.name(hop), t, REQUEST_HEADERS)) {
+				if (LOG_REQUESTS) {
+					System.out.println(CHAIN.name(hop) + " was called");
+				}
+				if (downstream == null) {
+					database.fakeDBCall("select * from table");
+				} else {
+					try {
+						call(downstream);
+					} catch (IOException e) {
+						System.err.println(CHAIN.name(hop) + " failed to call " + downstream);
+						System.err.println(e.toString());
+						span.error(e);
+						FAILED.send(t, 502);
+						return;
+					}
+				}
+				response.send(t);
+			}
+		}
+	}
+
+	/**
+	 * Calls the database and pathA in {@link FanOut#branches()} concurrent branches and answers with their merged
+	 * results. Every branch starts a child span of the server span, on the pool thread it runs on. The server span is
+	 * detached from the server thread once the branches are submitted and finished when the response is sent.
+	 */
+	static class FanOutHandler implements HttpHandler {
+		private static final PrecomputedResponse FAILED = PrecomputedResponse.of("Downstream call failed");
+		private static final PrecomputedResponse BUSY = PrecomputedResponse.of("Too many concurrent branches");
+
+		private final PathBHandler database = new PathBHandler();
+		private final URL pathA;
+
+		FanOutHandler() {
+			try {
+				this.pathA = new URL("http://localhost:8000/pathA");
+			} catch (MalformedURLException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@Override
+		public void handle(HttpExchange t) throws IOException {
+			Span span = Tracing.startServer("FanOutHandler", t, REQUEST_HEADERS);
+			CompletableFuture<List<String>> results;
+			try {
+				if (LOG_REQUESTS) {
+					System.out.println("Fan-out was called with " + FAN_OUT.branches() + " branches");
+				}
+				// the branches are submitted while the server span is current, so theirs are its children
+				results = FAN_OUT.run(this::branch);
+			} catch (RejectedExecutionException e) {
+				span.error(e).close();
+				BUSY.send(t, 503);
+				return;
+			} catch (RuntimeException e) {
+				span.error(e).close();
+				throw e;
+			}
+			// answered from the thread of the last branch, so the server thread is free to serve the branches' calls
+			//		to pathA even when it is the only one; the span stays open until then
+			span.detach();
+			results.whenComplete((merged, error) -> respond(t, span, merged, error));
+		}
+
+		private void respond(HttpExchange t, Span span, List<String> results, Throwable error) {
+			try {
+				if (error != null) {
+					System.err.println("Fan-out branch failed");
+					System.err.println(error.toString());
+					span.error(error);
+					FAILED.send(t, 502);
+					return;
+				}
+				byte[] response = String.join("\n", results).getBytes(StandardCharsets.UTF_8);
+				t.sendResponseHeaders(200, response.length);
+				try (OutputStream os = t.getResponseBody()) {
+					os.write(response);
+				}
+			} catch (IOException e) {
+				System.err.println("Failed to send the fan-out response");
+				System.err.println(e.toString());
+				span.error(e);
+			} finally {
+				span.close();
+			}
+		}
+
+		private String branch(int branch) {
+			try (Span span = Tracing.start("fanout.branch")) {
+				if (FAN_OUT.kind(branch) == FanOut.Kind.DATABASE) {
+					database.fakeDBCall("select * from table");
+					return "branch " + branch + ": database";
+				}
+				try {
+					return "branch " + branch + ": pathA " + call(pathA);
+				} catch (IOException e) {
+					span.error(e);
+					throw new CompletionException(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends a long body in fixed-size chunks. With a tracer the server span gets an event at the first byte and every
+	 * few megabytes, from a {@link StreamingResponse.Listener}.
+	 */
+	static class StreamHandler implements HttpHandler {
+
+		@Override
+		public void handle(HttpExchange t) throws IOException {
+			try (Span span = Tracing.startServer("StreamHandler", t, REQUEST_HEADERS)) {
+				if (LOG_REQUESTS) {
+					System.out.println("Stream was called, sending " + STREAM);
+				}
+				STREAM.send(t, Tracing.isEnabled() ? new SpanEvents(span) : StreamingResponse.Listener.NONE);
+			}
+		}
+	}
+
+	static class SpanEvents implements StreamingResponse.Listener {
+		private final Span span;
+
+		SpanEvents(Span span) {
+			this.span = span;
+		}
+
+		@Override
+		public void firstByte() {
+			span.event("first-byte");
+		}
+
+		@Override
+		public void progress(long bytesSent) {
+			span.event("progress");
+		}
 	}
 }
@@ -0,0 +1,44 @@
+package com.tracing.annotations;
+
+/**
+ * The spans of the benchmark's {@link Traced} methods: a start time and a name, recorded in a counter when finished -
+ * about what a tracer does before it hands a span to its reporter. Configured with
+ * {@code -Atraced.spans=com.tracing.annotations.BenchmarkSpans}.
+ */
+public final class BenchmarkSpans {
+
+	public static final class Span {
+
+		final String name;
+		final long startNanos;
+		boolean error;
+
+		Span(String name, long startNanos) {
+			this.name = name;
+			this.startNanos = startNanos;
+		}
+	}
+
+	static long finished;
+	static long failed;
+	static long totalNanos;
+
+	private BenchmarkSpans() {
+	}
+
+	public static Span start(String name) {
+		return new Span(name, System.nanoTime());
+	}
+
+	public static void error(Span span, Throwable error) {
+		span.error = true;
+	}
+
+	public static void finish(Span span) {
+		totalNanos += System.nanoTime() - span.startNanos;
+		finished++;
+		if (span.error) {
+			failed++;
+		}
+	}
+}
@@ -0,0 +1,35 @@
+package com.tracing.annotations;
+
+import java.util.Map;
+
+/**
+ * The benchmark's traced class. {@link Inventory_Traced}, generated from it, runs {@link #lookup(Map, String)} in a
+ * span; {@link HandWritten} does the same with the span handling written out.
+ */
+public class Inventory {
+
+	@Traced("inventory.lookup")
+	public int lookup(Map<String, Integer> stock, String item) {
+		Integer count = stock.get(item);
+		return count == null ? 0 : count;
+	}
+
+	/**
+	 * What a developer would write without {@link Traced}.
+	 */
+	public static class HandWritten extends Inventory {
+
+		@Override
+		public int lookup(Map<String, Integer> stock, String item) {
+			BenchmarkSpans.Span span = BenchmarkSpans.start("inventory.lookup");
+			try {
+				return super.lookup(stock, item);
+			} catch (Throwable error) {
+				BenchmarkSpans.error(span, error);
+				throw error;
+			} finally {
+				BenchmarkSpans.finish(span);
+			}
+		}
+	}
+}
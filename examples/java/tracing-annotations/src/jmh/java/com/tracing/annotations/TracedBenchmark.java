@@ -0,0 +1,49 @@
+package com.tracing.annotations;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares a method traced by the code {@link TracedProcessor} generates with the same method traced by hand and not
+ * traced at all. Generated and hand-written should be the same within the error - the processor writes what one would
+ * write - while the difference to untraced is what a span costs with {@link BenchmarkSpans}, e.g.
+ * {@code gradle :tracing-annotations:jmh}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TracedBenchmark {
+
+	private final Map<String, Integer> stock = new HashMap<>();
+	private final Inventory untraced = new Inventory();
+	private final Inventory handWritten = new Inventory.HandWritten();
+	private final Inventory generated = new Inventory_Traced();
+
+	{
+		stock.put("apples", 12);
+		stock.put("pears", 7);
+	}
+
+	@Benchmark
+	public int untraced() {
+		return untraced.lookup(stock, "apples");
+	}
+
+	@Benchmark
+	public int handWritten() {
+		return handWritten.lookup(stock, "apples");
+	}
+
+	@Benchmark
+	public int generated() {
+		return generated.lookup(stock, "apples");
+	}
+}
@@ -0,0 +1,35 @@
+package com.tracing.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs a method in a span of its own, without hand-written start and finish blocks and without the runtime weaving of
+ * New Relic's {@code @Trace}. {@link TracedProcessor} generates a subclass at compile time that overrides every
+ * annotated method with the span handling around a {@code super} call:
+ *
+ * <pre>
+ * class Inventory {
+ *     &#64;Traced("inventory.lookup")
+ *     int lookup(String item) { ... }
+ * }
+ *
+ * Inventory inventory = new Inventory_Traced();
+ * </pre>
+ *
+ * The spans are started and finished by static calls to the class configured with {@code -Atraced.spans}, so the
+ * generated code is what one would write by hand: no reflection, no proxies, nothing to do at startup.
+ *
+ * <p>Annotated methods can't be private, static or final, and their class must be neither private nor final.
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Traced {
+
+	/**
+	 * @return the span name, by default {@code Class.method}
+	 */
+	String value() default "";
+}
@@ -0,0 +1,392 @@
+package com.tracing.annotations;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.annotation.processing.SupportedOptions;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.TypeParameterElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+/**
+ * Generates the subclass of every class with {@link Traced} methods. For {@code com.example.Outer.Inner} that is
+ * {@code com.example.Outer_Inner_Traced}, with the same constructors and every annotated method overridden as
+ *
+ * <pre>
+ * Span span = Spans.start("Inner.method");
+ * try {
+ *     return super.method(arguments);
+ * } catch (Throwable error) {
+ *     Spans.error(span, error);
+ *     throw error;
+ * } finally {
+ *     Spans.finish(span);
+ * }
+ * </pre>
+ *
+ * {@code Spans} is the class given with {@code -Atraced.spans=...}. It needs three static methods, for any span type
+ * {@code S}: {@code S start(String name)}, {@code void error(S span, Throwable error)} and {@code void finish(S span)}.
+ * Because they are static, the generated code binds to the tracer at compile time and the JIT inlines it like
+ * hand-written instrumentation.
+ */
+@SupportedAnnotationTypes("com.tracing.annotations.Traced")
+@SupportedOptions(TracedProcessor.SPANS_OPTION)
+public final class TracedProcessor extends AbstractProcessor {
+
+	public static final String SPANS_OPTION = "traced.spans";
+	public static final String SUFFIX = "_Traced";
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment round) {
+		Map<TypeElement, List<ExecutableElement>> methodsByClass = new LinkedHashMap<>();
+		for (ExecutableElement method : ElementFilter.methodsIn(round.getElementsAnnotatedWith(Traced.class))) {
+			methodsByClass.computeIfAbsent((TypeElement) method.getEnclosingElement(), type -> new ArrayList<>())
+					.add(method);
+		}
+		if (methodsByClass.isEmpty()) {
+			return false;
+		}
+		Spans spans = spans(methodsByClass.values().iterator().next().get(0));
+		if (spans == null) {
+			return true;
+		}
+		for (Map.Entry<TypeElement, List<ExecutableElement>> entry : methodsByClass.entrySet()) {
+			if (canSubclass(entry.getKey()) & canOverride(entry.getValue())) {
+				generate(entry.getKey(), entry.getValue(), spans);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The class of {@code -Atraced.spans} and the span type its start method returns.
+	 */
+	private static final class Spans {
+
+		final String className;
+		final String spanType;
+
+		Spans(String className, String spanType) {
+			this.className = className;
+			this.spanType = spanType;
+		}
+	}
+
+	private Spans spans(Element reportOn) {
+		String name = processingEnv.getOptions().get(SPANS_OPTION);
+		if (name == null || name.trim().isEmpty()) {
+			error(reportOn, "Set -A" + SPANS_OPTION + "=<class> to the class that starts and finishes the spans of "
+					+ "@Traced methods");
+			return null;
+		}
+		TypeElement spans = processingEnv.getElementUtils().getTypeElement(name.trim());
+		if (spans == null) {
+			error(reportOn, SPANS_OPTION + " class " + name + " not found");
+			return null;
+		}
+		Types types = processingEnv.getTypeUtils();
+		TypeMirror string = processingEnv.getElementUtils().getTypeElement(String.class.getName()).asType();
+		TypeMirror throwable = processingEnv.getElementUtils().getTypeElement(Throwable.class.getName()).asType();
+		TypeMirror spanType = null;
+		boolean error = false;
+		boolean finish = false;
+		for (ExecutableElement method : ElementFilter.methodsIn(spans.getEnclosedElements())) {
+			if (!method.getModifiers().contains(Modifier.STATIC) || method.getModifiers().contains(Modifier.PRIVATE)) {
+				continue;
+			}
+			List<? extends VariableElement> parameters = method.getParameters();
+			String methodName = method.getSimpleName().toString();
+			if (methodName.equals("start") && parameters.size() == 1
+					&& types.isSameType(parameters.get(0).asType(), string)
+					&& method.getReturnType().getKind() != TypeKind.VOID) {
+				spanType = method.getReturnType();
+			}
+		}
+		for (ExecutableElement method : ElementFilter.methodsIn(spans.getEnclosedElements())) {
+			if (spanType == null || !method.getModifiers().contains(Modifier.STATIC)
+					|| method.getModifiers().contains(Modifier.PRIVATE)) {
+				continue;
+			}
+			List<? extends VariableElement> parameters = method.getParameters();
+			String methodName = method.getSimpleName().toString();
+			if (methodName.equals("error") && parameters.size() == 2
+					&& types.isAssignable(spanType, parameters.get(0).asType())
+					&& types.isAssignable(throwable, parameters.get(1).asType())) {
+				error = true;
+			} else if (methodName.equals("finish") && parameters.size() == 1
+					&& types.isAssignable(spanType, parameters.get(0).asType())) {
+				finish = true;
+			}
+		}
+		if (spanType == null || !error || !finish) {
+			error(reportOn, SPANS_OPTION + " class " + name + " needs the static methods S start(String), "
+					+ "void error(S, Throwable) and void finish(S)");
+			return null;
+		}
+		return new Spans(spans.getQualifiedName().toString(), spanType.toString());
+	}
+
+	private boolean canSubclass(TypeElement type) {
+		Set<Modifier> modifiers = type.getModifiers();
+		if (type.getKind() != ElementKind.CLASS || modifiers.contains(Modifier.FINAL)
+				|| modifiers.contains(Modifier.PRIVATE)) {
+			error(type, "@Traced methods must be in a class that is neither final nor private");
+			return false;
+		}
+		if (type.getNestingKind() == NestingKind.LOCAL || type.getNestingKind() == NestingKind.ANONYMOUS
+				|| type.getNestingKind() == NestingKind.MEMBER && !modifiers.contains(Modifier.STATIC)) {
+			error(type, "@Traced methods must be in a top-level or static nested class");
+			return false;
+		}
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (!constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				return true;
+			}
+		}
+		error(type, "A class with @Traced methods needs a constructor that is not private");
+		return false;
+	}
+
+	private boolean canOverride(List<ExecutableElement> methods) {
+		boolean valid = true;
+		for (ExecutableElement method : methods) {
+			Set<Modifier> modifiers = method.getModifiers();
+			if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+					|| modifiers.contains(Modifier.FINAL) || modifiers.contains(Modifier.ABSTRACT)) {
+				error(method, "@Traced methods can't be private, static, final or abstract");
+				valid = false;
+			}
+		}
+		return valid;
+	}
+
+	private void generate(TypeElement type, List<ExecutableElement> methods, Spans spans) {
+		String packageName = packageOf(type).getQualifiedName().toString();
+		String nestedName = type.getQualifiedName().toString().substring(
+				packageName.isEmpty() ? 0 : packageName.length() + 1);
+		String generatedName = nestedName.replace('.', '_') + SUFFIX;
+		String typeParameters = typeParameters(type.getTypeParameters());
+
+		StringBuilder source = new StringBuilder();
+		if (!packageName.isEmpty()) {
+			source.append("package ").append(packageName).append(";\n\n");
+		}
+		source.append("/**\n * Generated by ").append(TracedProcessor.class.getName()).append(": {@link ")
+				.append(nestedName).append("} with its @Traced methods in spans of {@link ").append(spans.className)
+				.append("}.\n */\n");
+		appendAccess(source, type.getModifiers());
+		if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+			source.append("abstract ");
+		}
+		source.append("class ").append(generatedName).append(typeParameters).append(" extends ").append(nestedName)
+				.append(typeArguments(type.getTypeParameters())).append(" {\n");
+
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getModifiers().contains(Modifier.PRIVATE)) {
+				continue;
+			}
+			source.append("\n\t");
+			appendAccess(source, constructor.getModifiers());
+			source.append(typeParameters(constructor.getTypeParameters()));
+			source.append(typeParameters(constructor.getTypeParameters()).isEmpty() ? "" : " ");
+			source.append(generatedName);
+			appendParameters(source, constructor);
+			appendThrows(source, constructor);
+			source.append(" {\n\t\tsuper(").append(arguments(constructor)).append(");\n\t}\n");
+		}
+
+		for (ExecutableElement method : methods) {
+			appendTracedMethod(source, type, method, spans);
+		}
+		source.append("}\n");
+
+		try (Writer writer = processingEnv.getFiler().createSourceFile(
+				packageName.isEmpty() ? generatedName : packageName + "." + generatedName, type).openWriter()) {
+			writer.write(source.toString());
+		} catch (IOException e) {
+			error(type, "Could not write " + generatedName + ": " + e);
+		}
+	}
+
+	private static void appendTracedMethod(StringBuilder source, TypeElement type, ExecutableElement method,
+			Spans spans) {
+		Set<String> names = new HashSet<>();
+		for (VariableElement parameter : method.getParameters()) {
+			names.add(parameter.getSimpleName().toString());
+		}
+		String span = unique("span", names);
+		String error = unique("error", names);
+		String spanName = method.getAnnotation(Traced.class).value();
+		if (spanName.isEmpty()) {
+			spanName = type.getSimpleName() + "." + method.getSimpleName();
+		}
+		boolean returnsValue = method.getReturnType().getKind() != TypeKind.VOID;
+
+		source.append("\n\t@Override\n\t");
+		appendAccess(source, method.getModifiers());
+		String typeParameters = typeParameters(method.getTypeParameters());
+		if (!typeParameters.isEmpty()) {
+			source.append(typeParameters).append(' ');
+		}
+		source.append(method.getReturnType()).append(' ').append(method.getSimpleName());
+		appendParameters(source, method);
+		appendThrows(source, method);
+		source.append(" {\n");
+		source.append("\t\t").append(spans.spanType).append(' ').append(span).append(" = ").append(spans.className)
+				.append(".start(").append(stringLiteral(spanName)).append(");\n");
+		source.append("\t\ttry {\n\t\t\t").append(returnsValue ? "return " : "").append("super.")
+				.append(method.getSimpleName()).append('(').append(arguments(method)).append(");\n");
+		source.append("\t\t} catch (Throwable ").append(error).append(") {\n");
+		source.append("\t\t\t").append(spans.className).append(".error(").append(span).append(", ").append(error)
+				.append(");\n");
+		source.append("\t\t\tthrow ").append(error).append(";\n");
+		source.append("\t\t} finally {\n");
+		source.append("\t\t\t").append(spans.className).append(".finish(").append(span).append(");\n");
+		source.append("\t\t}\n\t}\n");
+	}
+
+	private static void appendAccess(StringBuilder source, Set<Modifier> modifiers) {
+		if (modifiers.contains(Modifier.PUBLIC)) {
+			source.append("public ");
+		} else if (modifiers.contains(Modifier.PROTECTED)) {
+			source.append("protected ");
+		}
+	}
+
+	private static void appendParameters(StringBuilder source, ExecutableElement executable) {
+		source.append('(');
+		List<? extends VariableElement> parameters = executable.getParameters();
+		for (int i = 0; i < parameters.size(); i++) {
+			VariableElement parameter = parameters.get(i);
+			String type = parameter.asType().toString();
+			if (executable.isVarArgs() && i == parameters.size() - 1 && type.endsWith("[]")) {
+				type = type.substring(0, type.length() - 2) + "...";
+			}
+			source.append(i == 0 ? "" : ", ").append(type).append(' ').append(parameter.getSimpleName());
+		}
+		source.append(')');
+	}
+
+	private static void appendThrows(StringBuilder source, ExecutableElement executable) {
+		List<? extends TypeMirror> thrown = executable.getThrownTypes();
+		for (int i = 0; i < thrown.size(); i++) {
+			source.append(i == 0 ? " throws " : ", ").append(thrown.get(i));
+		}
+	}
+
+	private static String arguments(ExecutableElement executable) {
+		StringBuilder arguments = new StringBuilder();
+		for (VariableElement parameter : executable.getParameters()) {
+			arguments.append(arguments.length() == 0 ? "" : ", ").append(parameter.getSimpleName());
+		}
+		return arguments.toString();
+	}
+
+	private static String typeParameters(List<? extends TypeParameterElement> parameters) {
+		if (parameters.isEmpty()) {
+			return "";
+		}
+		StringBuilder declaration = new StringBuilder("<");
+		for (TypeParameterElement parameter : parameters) {
+			declaration.append(declaration.length() == 1 ? "" : ", ").append(parameter.getSimpleName());
+			List<? extends TypeMirror> bounds = parameter.getBounds();
+			if (!bounds.isEmpty() && !(bounds.size() == 1 && bounds.get(0).toString().equals("java.lang.Object"))) {
+				for (int i = 0; i < bounds.size(); i++) {
+					declaration.append(i == 0 ? " extends " : " & ").append(bounds.get(i));
+				}
+			}
+		}
+		return declaration.append('>').toString();
+	}
+
+	private static String typeArguments(List<? extends TypeParameterElement> parameters) {
+		if (parameters.isEmpty()) {
+			return "";
+		}
+		StringBuilder arguments = new StringBuilder("<");
+		for (TypeParameterElement parameter : parameters) {
+			arguments.append(arguments.length() == 1 ? "" : ", ").append(parameter.getSimpleName());
+		}
+		return arguments.append('>').toString();
+	}
+
+	private static String unique(String name, Set<String> taken) {
+		String unique = name;
+		while (taken.contains(unique)) {
+			unique = unique + "_";
+		}
+		return unique;
+	}
+
+	// Control characters get escape sequences, not unicode escapes: javac translates those before it reads the string,
+	//		so the unicode escape of a line break would end the line in the middle of the literal
+	private static String stringLiteral(String value) {
+		StringBuilder literal = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+				case '"':
+				case '\\':
+					literal.append('\\').append(c);
+					break;
+				case '\n':
+					literal.append("\\n");
+					break;
+				case '\r':
+					literal.append("\\r");
+					break;
+				case '\t':
+					literal.append("\\t");
+					break;
+				case '\b':
+					literal.append("\\b");
+					break;
+				case '\f':
+					literal.append("\\f");
+					break;
+				default:
+					if (c < ' ') {
+						literal.append(String.format("\\%03o", (int) c));
+					} else {
+						literal.append(c);
+					}
+			}
+		}
+		return literal.append('"').toString();
+	}
+
+	private static PackageElement packageOf(Element element) {
+		while (element.getKind() != ElementKind.PACKAGE) {
+			element = element.getEnclosingElement();
+		}
+		return (PackageElement) element;
+	}
+
+	private void error(Element element, String message) {
+		processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+	}
+}
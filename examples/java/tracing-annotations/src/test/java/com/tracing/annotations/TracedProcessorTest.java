@@ -0,0 +1,90 @@
+package com.tracing.annotations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Runs {@link TracedProcessor} in javac on a small traced class and calls the generated subclass.
+ */
+public class TracedProcessorTest {
+
+	private static final String SPANS = ""
+			+ "package example;\n"
+			+ "public final class Spans {\n"
+			+ "    public static String last;\n"
+			+ "    public static String start(String name) { last = name; return name; }\n"
+			+ "    public static void error(String span, Throwable error) { }\n"
+			+ "    public static void finish(String span) { }\n"
+			+ "}\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void spanNameWithLineBreak() throws Exception {
+		assertEquals("line\nbreak", spanNameOf("\"line\\nbreak\""));
+	}
+
+	@Test
+	public void spanNameWithControlCharactersQuotesAndBackslashes() throws Exception {
+		assertEquals("a\r\t\b\f\u0001\u001f\"q\"\\u0041",
+				spanNameOf("\"a\\r\\t\\b\\f\\u0001\\u001f\\\"q\\\"\\\\u0041\""));
+	}
+
+	// Compiles a class whose method is @Traced(<annotationValue>), calls it through the generated subclass and returns
+	//		the name its span was started with
+	private String spanNameOf(String annotationValue) throws Exception {
+		File sources = folder.newFolder("src");
+		File classes = folder.newFolder("classes");
+		File spans = write(sources, "Spans.java", SPANS);
+		File names = write(sources, "Names.java", ""
+				+ "package example;\n"
+				+ "import com.tracing.annotations.Traced;\n"
+				+ "public class Names {\n"
+				+ "    @Traced(" + annotationValue + ")\n"
+				+ "    public void run() { }\n"
+				+ "}\n");
+
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		StringWriter diagnostics = new StringWriter();
+		try (StandardJavaFileManager files = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8)) {
+			List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+					"-d", classes.getPath(), "-s", classes.getPath(), "-encoding", "UTF-8",
+					"-processor", TracedProcessor.class.getName(),
+					"-A" + TracedProcessor.SPANS_OPTION + "=example.Spans");
+			boolean compiled = compiler.getTask(diagnostics, files, null, options, null,
+					files.getJavaFileObjects(spans, names)).call();
+			assertTrue(diagnostics.toString(), compiled);
+		}
+
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { classes.toURI().toURL() },
+				getClass().getClassLoader())) {
+			Object traced = loader.loadClass("example.Names" + TracedProcessor.SUFFIX).getConstructor().newInstance();
+			traced.getClass().getMethod("run").invoke(traced);
+			return (String) loader.loadClass("example.Spans").getField("last").get(null);
+		}
+	}
+
+	private static File write(File directory, String name, String content) throws IOException {
+		Path file = directory.toPath().resolve(name);
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return file.toFile();
+	}
+}
@@ -0,0 +1,144 @@
+package com.tracing.core.brave;
+
+import brave.Span.Kind;
+import brave.Tracer;
+import brave.Tracing;
+import brave.propagation.TraceContext.Extractor;
+import brave.propagation.TraceContext.Injector;
+import brave.propagation.TraceContextOrSamplingFlags;
+import com.tracing.core.HeaderReader;
+import com.tracing.core.HeaderWriter;
+import com.tracing.core.Span;
+import com.tracing.core.TracingBackend;
+
+/**
+ * The "brave" backend of {@link com.tracing.core.Tracing}: spans of the {@link Tracing} the application built, or, if
+ * it built none, of one reporting to the log under {@code -Dtracing.brave.serviceName} (default "tracing-example").
+ * The context is propagated in B3 headers.
+ */
+public final class BraveBackend implements TracingBackend {
+
+	public static final String SERVICE_NAME_PROPERTY = "tracing.brave.serviceName";
+
+	private final Tracing tracing;
+	private final Tracer tracer;
+	// built once; the request travels with its HeaderReader or HeaderWriter, so they work for any type of request
+	private final Extractor<Incoming<?>> extractor;
+	private final Injector<Outgoing<?>> injector;
+
+	public BraveBackend() {
+		this(Tracing.current() != null ? Tracing.current()
+				: Tracing.newBuilder().localServiceName(System.getProperty(SERVICE_NAME_PROPERTY, "tracing-example"))
+						.build());
+	}
+
+	public BraveBackend(Tracing tracing) {
+		this.tracing = tracing;
+		this.tracer = tracing.tracer();
+		this.extractor = tracing.propagation().extractor(Incoming::get);
+		this.injector = tracing.propagation().injector(Outgoing::set);
+	}
+
+	@Override
+	public String name() {
+		return "brave";
+	}
+
+	@Override
+	public <C> Span startServer(String name, C request, HeaderReader<C> headers) {
+		TraceContextOrSamplingFlags extracted = extractor.extract(new Incoming<>(request, headers));
+		return new BraveSpan(tracer, tracer.nextSpan(extracted).kind(Kind.SERVER).name(name).start());
+	}
+
+	@Override
+	public Span start(String name) {
+		return new BraveSpan(tracer, tracer.nextSpan().name(name).start());
+	}
+
+	@Override
+	public <C> Span startClient(String name, C request, HeaderWriter<C> headers) {
+		brave.Span span = tracer.nextSpan().kind(Kind.CLIENT).name(name).start();
+		injector.inject(span.context(), new Outgoing<>(request, headers));
+		return new BraveSpan(tracer, span);
+	}
+
+	@Override
+	public Runnable wrap(Runnable task) {
+		return tracing.currentTraceContext().wrap(task);
+	}
+
+	private static final class Incoming<C> {
+
+		private final C request;
+		private final HeaderReader<C> headers;
+
+		Incoming(C request, HeaderReader<C> headers) {
+			this.request = request;
+			this.headers = headers;
+		}
+
+		String get(String name) {
+			return headers.get(request, name);
+		}
+	}
+
+	private static final class Outgoing<C> {
+
+		private final C request;
+		private final HeaderWriter<C> headers;
+
+		Outgoing(C request, HeaderWriter<C> headers) {
+			this.request = request;
+			this.headers = headers;
+		}
+
+		void set(String name, String value) {
+			headers.set(request, name, value);
+		}
+	}
+
+	private static final class BraveSpan implements Span {
+
+		private final brave.Span span;
+		private final Tracer.SpanInScope scope;
+		private boolean detached;
+
+		BraveSpan(Tracer tracer, brave.Span span) {
+			this.span = span;
+			this.scope = tracer.withSpanInScope(span);
+		}
+
+		@Override
+		public Span tag(String key, String value) {
+			span.tag(key, value);
+			return this;
+		}
+
+		@Override
+		public Span event(String name) {
+			span.annotate(name);
+			return this;
+		}
+
+		@Override
+		public Span error(Throwable error) {
+			span.tag("error", error.toString());
+			return this;
+		}
+
+		@Override
+		public Span detach() {
+			if (!detached) {
+				detached = true;
+				scope.close();
+			}
+			return this;
+		}
+
+		@Override
+		public void close() {
+			detach();
+			span.finish();
+		}
+	}
+}
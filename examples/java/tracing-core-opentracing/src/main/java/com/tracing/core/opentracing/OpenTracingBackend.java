@@ -0,0 +1,173 @@
+package com.tracing.core.opentracing;
+
+import com.tracing.core.HeaderReader;
+import com.tracing.core.HeaderWriter;
+import com.tracing.core.Span;
+import com.tracing.core.TracingBackend;
+import io.opentracing.Scope;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.tracerresolver.TracerResolver;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+import io.opentracing.tag.Tags;
+import io.opentracing.util.GlobalTracer;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * The "opentracing" backend of {@link com.tracing.core.Tracing}: spans of the {@link GlobalTracer}. If no tracer is
+ * registered yet, the one {@link TracerResolver} finds is, so any OpenTracing tracer on the class path - Jaeger,
+ * LightStep, ... - records the spans; without one they go to the no-op tracer. The context is propagated in the
+ * tracer's HTTP_HEADERS format.
+ */
+public final class OpenTracingBackend implements TracingBackend {
+
+	private final Tracer tracer;
+
+	public OpenTracingBackend() {
+		this(globalTracer());
+	}
+
+	public OpenTracingBackend(Tracer tracer) {
+		this.tracer = tracer;
+	}
+
+	private static Tracer globalTracer() {
+		if (!GlobalTracer.isRegistered()) {
+			Tracer resolved = TracerResolver.resolveTracer();
+			if (resolved != null) {
+				GlobalTracer.register(resolved);
+			}
+		}
+		// delegates to the tracer registered at the time of each call, also to one registered after this
+		return GlobalTracer.get();
+	}
+
+	@Override
+	public String name() {
+		return "opentracing";
+	}
+
+	@Override
+	public <C> Span startServer(String name, C request, HeaderReader<C> headers) {
+		SpanContext parent = tracer.extract(Format.Builtin.HTTP_HEADERS, new TextMap() {
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				Iterator<String> names = headers.names(request).iterator();
+				return new Iterator<Map.Entry<String, String>>() {
+					@Override
+					public boolean hasNext() {
+						return names.hasNext();
+					}
+
+					@Override
+					public Map.Entry<String, String> next() {
+						String name = names.next();
+						return new SimpleImmutableEntry<>(name, headers.get(request, name));
+					}
+				};
+			}
+
+			@Override
+			public void put(String key, String value) {
+				throw new UnsupportedOperationException("The headers of an incoming request are read only");
+			}
+		});
+		Tracer.SpanBuilder span = tracer.buildSpan(name).withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_SERVER);
+		if (parent != null) {
+			span.asChildOf(parent);
+		}
+		return new OpenTracingSpan(span.startActive(false));
+	}
+
+	@Override
+	public Span start(String name) {
+		return new OpenTracingSpan(tracer.buildSpan(name).startActive(false));
+	}
+
+	@Override
+	public <C> Span startClient(String name, C request, HeaderWriter<C> headers) {
+		Scope scope = tracer.buildSpan(name).withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+				.startActive(false);
+		tracer.inject(scope.span().context(), Format.Builtin.HTTP_HEADERS, new TextMap() {
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				throw new UnsupportedOperationException("The headers of an outgoing request are write only");
+			}
+
+			@Override
+			public void put(String key, String value) {
+				headers.set(request, key, value);
+			}
+		});
+		return new OpenTracingSpan(scope);
+	}
+
+	@Override
+	public Runnable wrap(Runnable task) {
+		io.opentracing.Span span = tracer.activeSpan();
+		if (span == null) {
+			return task;
+		}
+		return () -> {
+			Scope scope = tracer.scopeManager().activate(span, false);
+			try {
+				task.run();
+			} finally {
+				scope.close();
+			}
+		};
+	}
+
+	private static final class OpenTracingSpan implements Span {
+
+		private final Scope scope;
+		private final io.opentracing.Span span;
+		private boolean detached;
+
+		OpenTracingSpan(Scope scope) {
+			this.scope = scope;
+			this.span = scope.span();
+		}
+
+		@Override
+		public Span tag(String key, String value) {
+			span.setTag(key, value);
+			return this;
+		}
+
+		@Override
+		public Span event(String name) {
+			span.log(name);
+			return this;
+		}
+
+		@Override
+		public Span error(Throwable error) {
+			Tags.ERROR.set(span, true);
+			Map<String, Object> fields = new HashMap<>();
+			fields.put("event", Tags.ERROR.getKey());
+			fields.put("error.object", error);
+			span.log(fields);
+			return this;
+		}
+
+		@Override
+		public Span detach() {
+			if (!detached) {
+				detached = true;
+				scope.close();
+			}
+			return this;
+		}
+
+		@Override
+		public void close() {
+			detach();
+			span.finish();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.tracing.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * What the {@link Tracing} facade costs. With {@code backend=none} the traced method should be as fast as the
+ * untraced one - the disabled facade is removed by the JIT - and with {@code backend=counting} it adds what a span of
+ * {@link CountingBackend} costs, e.g. {@code gradle :tracing-core:jmh}.
+ *
+ * <p>JMH runs every backend in a JVM of its own, so each one initializes {@link Tracing} with its own
+ * {@code -Dtracing.backend}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FacadeBenchmark {
+
+	@Param({ "none", "counting" })
+	public String backend;
+
+	private String statement;
+
+	@Setup
+	public void setUp() {
+		System.setProperty(Tracing.BACKEND_PROPERTY, backend);
+		if (!Tracing.backend().equals(backend)) {
+			throw new IllegalStateException("Tracing was initialized with " + Tracing.backend() + ", not " + backend);
+		}
+		statement = "select * from table where id = " + backend.length();
+	}
+
+	@Benchmark
+	public int untraced() {
+		return query(statement);
+	}
+
+	@Benchmark
+	public int traced() {
+		try (Span span = Tracing.start("database")) {
+			span.tag("db.statement", statement);
+			return query(statement);
+		}
+	}
+
+	// the work of the traced method: a few nanoseconds, so the cost of the span stands out
+	private static int query(String statement) {
+		int hash = 0;
+		for (int i = 0; i < statement.length(); i++) {
+			hash = 31 * hash + statement.charAt(i);
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,19 @@
+package com.tracing.core;
+
+/**
+ * Reads the headers of an incoming request, e.g. an HttpExchange, for {@link Tracing#startServer}.
+ *
+ * @param <C> the request
+ */
+public interface HeaderReader<C> {
+
+	/**
+	 * @return the first value of the header, compared ignoring case, or null if there is none
+	 */
+	String get(C request, String name);
+
+	/**
+	 * @return the names of all headers, for backends that can't look their headers up by name
+	 */
+	Iterable<String> names(C request);
+}
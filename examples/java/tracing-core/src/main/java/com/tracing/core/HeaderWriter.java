@@ -0,0 +1,13 @@
+package com.tracing.core;
+
+/**
+ * Sets the headers of an outgoing request, e.g. {@code HttpURLConnection::setRequestProperty}, for
+ * {@link Tracing#startClient}.
+ *
+ * @param <C> the request
+ */
+@FunctionalInterface
+public interface HeaderWriter<C> {
+
+	void set(C request, String name, String value);
+}
@@ -0,0 +1,56 @@
+package com.tracing.core;
+
+/**
+ * A span of the configured {@link TracingBackend}, current on the thread that started it until it is closed:
+ *
+ * <pre>
+ * try (Span span = Tracing.start("database")) {
+ *     span.tag("db.statement", statement);
+ *     ...
+ * }
+ * </pre>
+ *
+ * A span that ends on another thread, e.g. once an asynchronous response is sent, is detached from the starting
+ * thread first and closed where it ends:
+ *
+ * <pre>
+ * Span span = Tracing.startServer("FanOutHandler", exchange, REQUEST_HEADERS);
+ * CompletableFuture&lt;String&gt; response = submitWork();
+ * span.detach();
+ * response.whenComplete((body, error) -&gt; { send(body); span.close(); });
+ * </pre>
+ */
+public interface Span extends AutoCloseable {
+
+	/**
+	 * The span of a disabled backend. Every method does nothing, so once the JIT has inlined them a traced call site
+	 * costs what an untraced one does.
+	 */
+	Span NOOP = NoopSpan.INSTANCE;
+
+	Span tag(String key, String value);
+
+	/**
+	 * Records a timestamped event on the span, e.g. "first-byte".
+	 */
+	Span event(String name);
+
+	/**
+	 * Marks the span as failed by {@code error}.
+	 */
+	Span error(Throwable error);
+
+	/**
+	 * Makes the span that was current when this one started current again, on the thread that started it, without
+	 * finishing it. {@link #close()} then only finishes the span and can be called on any thread.
+	 *
+	 * @return this span
+	 */
+	Span detach();
+
+	/**
+	 * Finishes the span and, unless it was detached, makes the span that was current when it started current again.
+	 */
+	@Override
+	void close();
+}
@@ -0,0 +1,115 @@
+package com.tracing.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+/**
+ * The tracing calls of an instrumented application, whichever vendor records its spans. The application calls these
+ * static methods; the {@link TracingBackend} that implements them is found on the class path at startup, so switching
+ * from Brave to OpenTracing means replacing a jar, not the instrumentation:
+ *
+ * <pre>
+ * java -cp app.jar:tracing-core.jar:tracing-core-brave.jar:brave.jar ...
+ * </pre>
+ *
+ * With {@code -Dtracing.backend=brave} the backend of that name is used, with {@code -Dtracing.backend=none} or
+ * without any backend on the class path tracing is off. Without the property the first backend found is used. A
+ * backend that can't be loaded, or a name no backend on the class path has, turns tracing off as well, with a message
+ * on stderr, rather than failing the first class that traces.
+ *
+ * <p>The backend is kept in a static final field. When tracing is off every method returns {@link Span#NOOP} or its
+ * argument right away, behind a static final flag the JIT treats as a constant: it removes the check and, once the
+ * no-op span methods are inlined, the tracing calls with it. When tracing is on, the backend's class is known at
+ * every call site as well, so the facade adds no megamorphic dispatch to the vendor's own cost.
+ */
+public final class Tracing {
+
+	public static final String BACKEND_PROPERTY = "tracing.backend";
+	public static final String NONE = "none";
+
+	private static final TracingBackend BACKEND = load(System.getProperty(BACKEND_PROPERTY));
+	private static final boolean ENABLED = BACKEND != null;
+
+	private Tracing() {
+	}
+
+	/**
+	 * Continues the trace of an incoming request with a server span, current until it is closed.
+	 */
+	public static <C> Span startServer(String name, C request, HeaderReader<C> headers) {
+		if (!ENABLED) {
+			return Span.NOOP;
+		}
+		return BACKEND.startServer(name, request, headers);
+	}
+
+	/**
+	 * Starts a child span of the current span, or a new trace if there is none, current until it is closed.
+	 */
+	public static Span start(String name) {
+		if (!ENABLED) {
+			return Span.NOOP;
+		}
+		return BACKEND.start(name);
+	}
+
+	/**
+	 * Starts a client span, a child of the current span, and writes its context into the headers of the outgoing
+	 * request so the server can continue the trace. It is current until it is closed.
+	 */
+	public static <C> Span startClient(String name, C request, HeaderWriter<C> headers) {
+		if (!ENABLED) {
+			return Span.NOOP;
+		}
+		return BACKEND.startClient(name, request, headers);
+	}
+
+	/**
+	 * @return a task that runs {@code task} with the span current now, for handing work to another thread; the task
+	 * 		itself if tracing is off
+	 */
+	public static Runnable wrap(Runnable task) {
+		if (!ENABLED) {
+			return task;
+		}
+		return BACKEND.wrap(task);
+	}
+
+	public static boolean isEnabled() {
+		return ENABLED;
+	}
+
+	/**
+	 * @return the name of the backend, "none" if tracing is off
+	 */
+	public static String backend() {
+		return ENABLED ? BACKEND.name() : NONE;
+	}
+
+	static TracingBackend load(String name) {
+		if (NONE.equals(name)) {
+			return null;
+		}
+		List<String> found = new ArrayList<>();
+		try {
+			for (TracingBackend backend : ServiceLoader.load(TracingBackend.class)) {
+				if (name == null || backend.name().equals(name)) {
+					return backend;
+				}
+				found.add(backend.name());
+			}
+		} catch (ServiceConfigurationError e) {
+			// thrown from this class's static initializer it would make every traced class fail to load
+			System.err.println("Could not load the tracing backend, tracing is off");
+			System.err.println(e.toString());
+			return null;
+		}
+		if (name != null) {
+			System.err.println("No tracing backend " + name + " on the class path, found " + found
+					+ ", tracing is off");
+		}
+		return null;
+	}
+}
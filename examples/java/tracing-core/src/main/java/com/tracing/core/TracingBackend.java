@@ -0,0 +1,26 @@
+package com.tracing.core;
+
+import java.util.ServiceLoader;
+
+/**
+ * A vendor's implementation of {@link Tracing}, found with {@link ServiceLoader}: a backend module lists its class in
+ * {@code META-INF/services/com.tracing.core.TracingBackend} and needs a public no-argument constructor. It is created
+ * once, when {@link Tracing} is first used; if it can't be, tracing is off.
+ *
+ * <p>Every method has the contract of the {@link Tracing} method of the same name.
+ */
+public interface TracingBackend {
+
+	/**
+	 * @return the name {@code -Dtracing.backend} selects the backend by, e.g. "brave"
+	 */
+	String name();
+
+	<C> Span startServer(String name, C request, HeaderReader<C> headers);
+
+	Span start(String name);
+
+	<C> Span startClient(String name, C request, HeaderWriter<C> headers);
+
+	Runnable wrap(Runnable task);
+}
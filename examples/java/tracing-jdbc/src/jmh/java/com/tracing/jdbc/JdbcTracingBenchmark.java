@@ -0,0 +1,141 @@
+package com.tracing.jdbc;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.tracing.db.ExampleDataSource;
+import com.tracing.db.ExampleDatabase;
+import com.tracing.db.LatencyDistribution;
+
+/**
+ * What tracing adds to one execution of a PreparedStatement, against the {@link ExampleDataSource} without latency so
+ * that the JDBC calls themselves are measured:
+ *
+ * <ul>
+ * <li>{@code direct}: the stand-in's statement, no tracing.</li>
+ * <li>{@code wrapped}: the statement of a {@link TracingDataSource}, whose span handler only takes the two
+ * timestamps.</li>
+ * <li>{@code perExecution}: the same timestamps with the statement fingerprinted and the database described on
+ * every execution, as hand-written instrumentation around each call does.</li>
+ * </ul>
+ *
+ * E.g. {@code gradle :tracing-jdbc:jmh}, or {@code java -cp tracing-jdbc/build/libs/tracing-jdbc-jmh.jar
+ * com.tracing.jdbc.JdbcTracingBenchmark}; the gc profiler shows the allocation per execution.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JdbcTracingBenchmark {
+
+	private static final String SQL = "select * from table where id = ?";
+	private static final int ROWS = 25;
+
+	@Param({ "direct", "wrapped", "perExecution" })
+	public String mode;
+
+	private final TimestampHandler spanHandler = new TimestampHandler();
+	private Connection connection;
+	private PreparedStatement statement;
+	private long id;
+
+	@Setup(Level.Trial)
+	public void setUp() throws SQLException {
+		DataSource dataSource = new ExampleDataSource(ExampleDatabase.newBuilder()
+				.defaultLatency(LatencyDistribution.none())
+				.sampleTable(ExampleDatabase.SAMPLE_TABLE, ROWS)
+				.build());
+		if (mode.equals("wrapped")) {
+			dataSource = TracingDataSource.wrap(dataSource, spanHandler);
+		}
+		connection = dataSource.getConnection();
+		statement = connection.prepareStatement(SQL);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws SQLException {
+		statement.close();
+		connection.close();
+	}
+
+	@Benchmark
+	public long execute() throws SQLException {
+		if (mode.equals("perExecution")) {
+			return executePerExecution();
+		}
+		return query();
+	}
+
+	private long executePerExecution() throws SQLException {
+		DatabaseMetaData metaData = connection.getMetaData();
+		DatabaseDescription description = new DatabaseDescription(metaData.getURL(),
+				metaData.getDatabaseProductName(), metaData.getUserName());
+		spanHandler.start(new TracedStatement<>(SQL, spanHandler.database(description)));
+		long sum = query();
+		spanHandler.finish(spanHandler, 1, null);
+		return sum;
+	}
+
+	private long query() throws SQLException {
+		id = id % ROWS + 1;
+		statement.setLong(1, id);
+		long sum = 0;
+		try (ResultSet rows = statement.executeQuery()) {
+			while (rows.next()) {
+				sum += rows.getLong(1);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Takes the timestamps of a span and nothing else. One instance per thread, so the span is the handler itself.
+	 */
+	static final class TimestampHandler implements JdbcSpanHandler<String, TimestampHandler> {
+
+		private long start;
+		long total;
+
+		@Override
+		public String database(DatabaseDescription database) {
+			return database.instanceName();
+		}
+
+		@Override
+		public TimestampHandler start(TracedStatement<String> statement) {
+			start = System.nanoTime();
+			return this;
+		}
+
+		@Override
+		public void finish(TimestampHandler span, long rows, Throwable error) {
+			total += System.nanoTime() - start;
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(JdbcTracingBenchmark.class.getSimpleName())
+				.build()).run();
+	}
+}
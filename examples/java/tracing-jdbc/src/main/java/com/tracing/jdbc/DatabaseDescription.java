@@ -0,0 +1,75 @@
+package com.tracing.jdbc;
+
+/**
+ * What JDBC tells about the database behind a data source, read once from its DatabaseMetaData.
+ */
+public final class DatabaseDescription {
+
+	static final String UNKNOWN = "unknown";
+
+	private final String url;
+	private final String productName;
+	private final String userName;
+
+	DatabaseDescription(String url, String productName, String userName) {
+		this.url = url == null ? UNKNOWN : url;
+		this.productName = productName == null ? UNKNOWN : productName;
+		this.userName = userName == null ? UNKNOWN : userName;
+	}
+
+	/**
+	 * @return the JDBC URL, e.g. {@code jdbc:postgresql://localhost:5432/mySampleDb}
+	 */
+	public String url() {
+		return url;
+	}
+
+	/**
+	 * @return the database product, e.g. {@code PostgreSQL}
+	 */
+	public String productName() {
+		return productName;
+	}
+
+	public String userName() {
+		return userName;
+	}
+
+	/**
+	 * @return the last path segment of the URL, which is the database name for most drivers
+	 */
+	public String instanceName() {
+		String path = url;
+		int parameters = indexOfAny(path, "?;");
+		if (parameters >= 0) {
+			path = path.substring(0, parameters);
+		}
+		return path.substring(Math.max(path.lastIndexOf('/'), path.lastIndexOf(':')) + 1);
+	}
+
+	/**
+	 * @return host and port of the URL, or the whole URL if it has none (e.g. for an in-memory database)
+	 */
+	public String endpoint() {
+		int start = url.indexOf("//");
+		if (start < 0) {
+			return url;
+		}
+		int end = indexOfAny(url.substring(start + 2), "/?;");
+		return end < 0 ? url.substring(start + 2) : url.substring(start + 2, start + 2 + end);
+	}
+
+	private static int indexOfAny(String text, String characters) {
+		for (int i = 0; i < text.length(); i++) {
+			if (characters.indexOf(text.charAt(i)) >= 0) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString() {
+		return productName + " " + url + " as " + userName;
+	}
+}
@@ -0,0 +1,30 @@
+package com.tracing.jdbc;
+
+/**
+ * The tracer-specific part of a {@link TracingDataSource}: describes the database once, then starts and finishes a
+ * span for every statement execution. {@code D} is whatever the tracer wants to keep per database - e.g. Dynatrace's
+ * DatabaseInfo or just the instance name -, {@code S} whatever it needs to finish the span later.
+ *
+ * <p>A span may be finished on another call than the one that started it: a query's span ends when its ResultSet is
+ * read to the end or closed, so it covers fetching the rows and can report how many there were. Nothing here may
+ * rely on a thread-local scope being active in between.
+ */
+public interface JdbcSpanHandler<D, S> {
+
+	/**
+	 * Called once per data source, with the metadata of its first connection.
+	 */
+	D database(DatabaseDescription database);
+
+	/**
+	 * Starts the span of one execution. {@code statement} is the same instance for every execution of a
+	 * PreparedStatement, so anything derived from it can be cached.
+	 */
+	S start(TracedStatement<D> statement);
+
+	/**
+	 * @param rows the number of rows a query returned or an update changed, -1 if unknown
+	 * @param error why the execution failed, null if it did not
+	 */
+	void finish(S span, long rows, Throwable error);
+}
@@ -0,0 +1,151 @@
+package com.tracing.jdbc;
+
+import java.util.Locale;
+
+/**
+ * Normalizes a statement so that executions of the same query look the same: string and number literals become
+ * {@code ?}, lists of them collapse to one, whitespace and comments are reduced to a single space, and everything is
+ * lower case.
+ *
+ * <pre>
+ * SELECT * FROM orders WHERE id IN (1, 2, 3) AND state = 'open'  -&gt;  select * from orders where id in (?) and state = ?
+ * </pre>
+ */
+public final class SqlFingerprint {
+
+	private SqlFingerprint() {
+	}
+
+	public static String of(String sql) {
+		StringBuilder fingerprint = new StringBuilder(sql.length());
+		int i = 0;
+		while (i < sql.length()) {
+			char c = sql.charAt(i);
+			if (c == '\'') {
+				i = skipQuoted(sql, i, c);
+				appendLiteral(fingerprint);
+			} else if (c == '-' && i + 1 < sql.length() && sql.charAt(i + 1) == '-') {
+				i = skipLineComment(sql, i);
+				appendSpace(fingerprint);
+			} else if (c == '/' && i + 1 < sql.length() && sql.charAt(i + 1) == '*') {
+				i = skipBlockComment(sql, i);
+				appendSpace(fingerprint);
+			} else if (Character.isWhitespace(c)) {
+				i++;
+				appendSpace(fingerprint);
+			} else if (isNumberStart(sql, i)) {
+				i = skipNumber(sql, i);
+				appendLiteral(fingerprint);
+			} else if (isIdentifierPart(c)) {
+				// an identifier or keyword, which may contain digits that are not literals (e.g. table2)
+				int start = i;
+				while (i < sql.length() && isIdentifierPart(sql.charAt(i))) {
+					i++;
+				}
+				fingerprint.append(sql.substring(start, i).toLowerCase(Locale.ROOT));
+			} else if (c == ',' && endsWithLiteral(fingerprint) && nextLiteral(sql, i + 1)) {
+				// "?, ?, ?" becomes "?"
+				i++;
+				while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+					i++;
+				}
+				if (sql.charAt(i) == '\'') {
+					i = skipQuoted(sql, i, '\'');
+				} else if (sql.charAt(i) == '?') {
+					i++;
+				} else {
+					i = skipNumber(sql, i);
+				}
+			} else {
+				fingerprint.append(c);
+				i++;
+			}
+		}
+		int end = fingerprint.length();
+		while (end > 0 && (fingerprint.charAt(end - 1) == ' ' || fingerprint.charAt(end - 1) == ';')) {
+			end--;
+		}
+		fingerprint.setLength(end);
+		return fingerprint.toString();
+	}
+
+	private static void appendLiteral(StringBuilder fingerprint) {
+		fingerprint.append('?');
+	}
+
+	private static void appendSpace(StringBuilder fingerprint) {
+		if (fingerprint.length() > 0 && fingerprint.charAt(fingerprint.length() - 1) != ' ') {
+			fingerprint.append(' ');
+		}
+	}
+
+	private static boolean endsWithLiteral(StringBuilder fingerprint) {
+		int end = fingerprint.length();
+		while (end > 0 && fingerprint.charAt(end - 1) == ' ') {
+			end--;
+		}
+		return end > 0 && fingerprint.charAt(end - 1) == '?';
+	}
+
+	private static boolean nextLiteral(String sql, int i) {
+		while (i < sql.length() && Character.isWhitespace(sql.charAt(i))) {
+			i++;
+		}
+		return i < sql.length() && (sql.charAt(i) == '\'' || sql.charAt(i) == '?' || isNumberStart(sql, i));
+	}
+
+	// A number that is not part of an identifier; a leading minus is part of the literal only after an operator
+	private static boolean isNumberStart(String sql, int i) {
+		char c = sql.charAt(i);
+		if (c == '-' && i + 1 < sql.length() && Character.isDigit(sql.charAt(i + 1))) {
+			int previous = i - 1;
+			while (previous >= 0 && Character.isWhitespace(sql.charAt(previous))) {
+				previous--;
+			}
+			return previous < 0 || "=<>(,".indexOf(sql.charAt(previous)) >= 0;
+		}
+		return Character.isDigit(c) || c == '.' && i + 1 < sql.length() && Character.isDigit(sql.charAt(i + 1));
+	}
+
+	private static int skipNumber(String sql, int i) {
+		if (sql.charAt(i) == '-') {
+			i++;
+		}
+		while (i < sql.length() && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+			i++;
+		}
+		return i;
+	}
+
+	// Skips a quoted literal, where a doubled quote stands for the quote itself
+	private static int skipQuoted(String sql, int i, char quote) {
+		i++;
+		while (i < sql.length()) {
+			if (sql.charAt(i) == quote) {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	private static int skipLineComment(String sql, int i) {
+		while (i < sql.length() && sql.charAt(i) != '\n') {
+			i++;
+		}
+		return i;
+	}
+
+	private static int skipBlockComment(String sql, int i) {
+		int end = sql.indexOf("*/", i + 2);
+		return end < 0 ? sql.length() : end + 2;
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+	}
+}
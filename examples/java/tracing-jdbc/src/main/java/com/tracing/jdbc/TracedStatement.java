@@ -0,0 +1,46 @@
+package com.tracing.jdbc;
+
+/**
+ * A statement as its spans describe it. A PreparedStatement gets one when it is prepared, so the text is fingerprinted
+ * once however often the statement runs.
+ */
+public final class TracedStatement<D> {
+
+	private final String sql;
+	private final String fingerprint;
+	private final D database;
+
+	TracedStatement(String sql, D database) {
+		this.sql = sql;
+		this.fingerprint = SqlFingerprint.of(sql);
+		this.database = database;
+	}
+
+	/**
+	 * @return the statement text as the application wrote it, with {@code ?} for the parameters of a prepared
+	 * 		statement - parameter values are never recorded
+	 */
+	public String sql() {
+		return sql;
+	}
+
+	/**
+	 * @return {@link #sql()} with all literals replaced by {@code ?}, so every execution of the same query has the
+	 * 		same fingerprint - suitable as a span name or for grouping
+	 */
+	public String fingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * @return what {@link JdbcSpanHandler#database} returned for the data source
+	 */
+	public D database() {
+		return database;
+	}
+
+	@Override
+	public String toString() {
+		return fingerprint;
+	}
+}
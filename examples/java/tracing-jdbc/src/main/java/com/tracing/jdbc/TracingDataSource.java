@@ -0,0 +1,148 @@
+package com.tracing.jdbc;
+
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+import javax.sql.DataSource;
+
+/**
+ * Wraps a DataSource so that every statement its connections execute gets a span, without tracing code around each
+ * database call:
+ *
+ * <pre>
+ * DataSource dataSource = TracingDataSource.wrap(pooledDataSource, spanHandler);
+ * try (Connection connection = dataSource.getConnection();
+ *         PreparedStatement statement = connection.prepareStatement("select * from table where id = ?")) {
+ *     ...  // every executeQuery() is a span named after the statement, ending when its ResultSet is read
+ * }
+ * </pre>
+ *
+ * <p>The work that does not change between executions is done once: the database is described when the first
+ * connection is taken, and a statement text is fingerprinted the first time it is prepared and kept as a
+ * {@link TracedStatement} - by the PreparedStatement, and in a bounded cache for the next connection that prepares
+ * it. Executing a prepared statement costs the span handler's start and finish and little else.
+ *
+ * <p>The connections, statements and result sets handed out are plain delegating wrappers around the real ones - no
+ * reflection between the application and the driver -; {@code unwrap} reaches the real objects. {@code executeBatch}
+ * is a span as well, described by the first statement added to the batch.
+ */
+public final class TracingDataSource<D, S> implements DataSource {
+
+	// texts with literals in them can be endless; the cache of TracedStatements stops growing at this size
+	private static final int MAX_CACHED_STATEMENTS = 512;
+
+	private final DataSource delegate;
+	private final JdbcSpanHandler<D, S> spanHandler;
+	private final ConcurrentMap<String, TracedStatement<D>> statements = new ConcurrentHashMap<>();
+	private volatile DatabaseDescription description;
+	private volatile D database;
+
+	private TracingDataSource(DataSource delegate, JdbcSpanHandler<D, S> spanHandler) {
+		this.delegate = delegate;
+		this.spanHandler = spanHandler;
+	}
+
+	public static <D, S> TracingDataSource<D, S> wrap(DataSource delegate, JdbcSpanHandler<D, S> spanHandler) {
+		return new TracingDataSource<>(delegate, spanHandler);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return traced(delegate.getConnection());
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return traced(delegate.getConnection(username, password));
+	}
+
+	/**
+	 * @return the description of the database, null until the first connection was taken
+	 */
+	public DatabaseDescription description() {
+		return description;
+	}
+
+	JdbcSpanHandler<D, S> spanHandler() {
+		return spanHandler;
+	}
+
+	/**
+	 * @return the TracedStatement of a text, shared by all statements that run it
+	 */
+	TracedStatement<D> statement(String sql) {
+		TracedStatement<D> statement = statements.get(sql);
+		if (statement == null) {
+			statement = new TracedStatement<>(sql, database);
+			if (statements.size() < MAX_CACHED_STATEMENTS) {
+				statements.putIfAbsent(sql, statement);
+			}
+		}
+		return statement;
+	}
+
+	private Connection traced(Connection connection) throws SQLException {
+		if (description == null) {
+			describe(connection);
+		}
+		return new TracingConnection<>(this, connection);
+	}
+
+	// Several threads may describe the database at once; they all come to the same result
+	private void describe(Connection connection) {
+		String url = null;
+		String productName = null;
+		String userName = null;
+		try {
+			DatabaseMetaData metaData = connection.getMetaData();
+			url = metaData.getURL();
+			productName = metaData.getDatabaseProductName();
+			userName = metaData.getUserName();
+		} catch (SQLException | RuntimeException e) {
+			// a driver without metadata is still traced, the database is described as unknown
+		}
+		DatabaseDescription description = new DatabaseDescription(url, productName, userName);
+		this.database = spanHandler.database(description);
+		this.description = description;
+	}
+
+	@Override
+	public PrintWriter getLogWriter() throws SQLException {
+		return delegate.getLogWriter();
+	}
+
+	@Override
+	public void setLogWriter(PrintWriter out) throws SQLException {
+		delegate.setLogWriter(out);
+	}
+
+	@Override
+	public void setLoginTimeout(int seconds) throws SQLException {
+		delegate.setLoginTimeout(seconds);
+	}
+
+	@Override
+	public int getLoginTimeout() throws SQLException {
+		return delegate.getLoginTimeout();
+	}
+
+	@Override
+	public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+		return delegate.getParentLogger();
+	}
+
+	@Override
+	public <T> T unwrap(Class<T> type) throws SQLException {
+		return type.isInstance(this) ? type.cast(this) : delegate.unwrap(type);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> type) throws SQLException {
+		return type.isInstance(this) || delegate.isWrapperFor(type);
+	}
+}
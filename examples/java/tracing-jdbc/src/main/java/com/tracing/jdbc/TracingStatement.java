@@ -0,0 +1,492 @@
+package com.tracing.jdbc;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+
+/**
+ * A statement of a {@link TracingConnection}: every execution is a span, and a query's ends when its result set is read
+ * or closed. A statement that was prepared with a text keeps it as {@code prepared}, see
+ * {@link TracingPreparedStatement}; executions with a text of their own are described by that one.
+ */
+class TracingStatement<D, S, T extends Statement> implements Statement {
+
+	final TracingConnection<D, S> connection;
+	final JdbcSpanHandler<D, S> spanHandler;
+	final TracedStatement<D> prepared;
+	final T delegate;
+	// the batch of the next executeBatch, described by the first statement added to it
+	TracedStatement<D> batch;
+	// the result set of the last query, whose span ends when it is read or closed
+	private TracingResultSet<S> resultSet;
+
+	TracingStatement(TracingConnection<D, S> connection, TracedStatement<D> prepared, T delegate) {
+		this.connection = connection;
+		this.spanHandler = connection.dataSource.spanHandler();
+		this.prepared = prepared;
+		this.delegate = delegate;
+	}
+
+	@Override
+	public ResultSet executeQuery(String sql) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		ResultSet resultSet;
+		try {
+			resultSet = delegate.executeQuery(sql);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		return queried(span, resultSet);
+	}
+
+	@Override
+	public int executeUpdate(String sql) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		int rows;
+		try {
+			rows = delegate.executeUpdate(sql);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		spanHandler.finish(span, rows, null);
+		return rows;
+	}
+
+	@Override
+	public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		int rows;
+		try {
+			rows = delegate.executeUpdate(sql, autoGeneratedKeys);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		spanHandler.finish(span, rows, null);
+		return rows;
+	}
+
+	@Override
+	public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		int rows;
+		try {
+			rows = delegate.executeUpdate(sql, columnIndexes);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		spanHandler.finish(span, rows, null);
+		return rows;
+	}
+
+	@Override
+	public int executeUpdate(String sql, String[] columnNames) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		int rows;
+		try {
+			rows = delegate.executeUpdate(sql, columnNames);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		spanHandler.finish(span, rows, null);
+		return rows;
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		long rows;
+		try {
+			rows = delegate.executeLargeUpdate(sql);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		spanHandler.finish(span, rows, null);
+		return rows;
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		long rows;
+		try {
+			rows = delegate.executeLargeUpdate(sql, autoGeneratedKeys);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		spanHandler.finish(span, rows, null);
+		return rows;
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, int[] columnIndexes) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		long rows;
+		try {
+			rows = delegate.executeLargeUpdate(sql, columnIndexes);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		spanHandler.finish(span, rows, null);
+		return rows;
+	}
+
+	@Override
+	public long executeLargeUpdate(String sql, String[] columnNames) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		long rows;
+		try {
+			rows = delegate.executeLargeUpdate(sql, columnNames);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		spanHandler.finish(span, rows, null);
+		return rows;
+	}
+
+	@Override
+	public boolean execute(String sql) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		boolean hasResultSet;
+		try {
+			hasResultSet = delegate.execute(sql);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		return executed(span, hasResultSet);
+	}
+
+	@Override
+	public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		boolean hasResultSet;
+		try {
+			hasResultSet = delegate.execute(sql, autoGeneratedKeys);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		return executed(span, hasResultSet);
+	}
+
+	@Override
+	public boolean execute(String sql, int[] columnIndexes) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		boolean hasResultSet;
+		try {
+			hasResultSet = delegate.execute(sql, columnIndexes);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		return executed(span, hasResultSet);
+	}
+
+	@Override
+	public boolean execute(String sql, String[] columnNames) throws SQLException {
+		S span = start(connection.dataSource.statement(sql));
+		boolean hasResultSet;
+		try {
+			hasResultSet = delegate.execute(sql, columnNames);
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		return executed(span, hasResultSet);
+	}
+
+	@Override
+	public void addBatch(String sql) throws SQLException {
+		delegate.addBatch(sql);
+		if (batch == null) {
+			batch = connection.dataSource.statement(sql);
+		}
+	}
+
+	@Override
+	public void clearBatch() throws SQLException {
+		delegate.clearBatch();
+		batch = null;
+	}
+
+	@Override
+	public int[] executeBatch() throws SQLException {
+		TracedStatement<D> statement = batch;
+		batch = null;
+		if (statement == null) {
+			// nothing was added, there is nothing to trace
+			return delegate.executeBatch();
+		}
+		S span = start(statement);
+		int[] counts;
+		try {
+			counts = delegate.executeBatch();
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		long rows = 0;
+		for (int count : counts) {
+			if (count < 0) {
+				// the driver does not know the update counts
+				rows = -1;
+				break;
+			}
+			rows += count;
+		}
+		spanHandler.finish(span, rows, null);
+		return counts;
+	}
+
+	@Override
+	public long[] executeLargeBatch() throws SQLException {
+		TracedStatement<D> statement = batch;
+		batch = null;
+		if (statement == null) {
+			return delegate.executeLargeBatch();
+		}
+		S span = start(statement);
+		long[] counts;
+		try {
+			counts = delegate.executeLargeBatch();
+		} catch (Throwable e) {
+			failed(span, e);
+			throw e;
+		}
+		long rows = 0;
+		for (long count : counts) {
+			if (count < 0) {
+				rows = -1;
+				break;
+			}
+			rows += count;
+		}
+		spanHandler.finish(span, rows, null);
+		return counts;
+	}
+
+	@Override
+	public ResultSet getResultSet() throws SQLException {
+		return resultSet != null && !resultSet.finished ? resultSet : delegate.getResultSet();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return connection;
+	}
+
+	@Override
+	public void close() throws SQLException {
+		finishResultSet();
+		delegate.close();
+	}
+
+	@Override
+	public <U> U unwrap(Class<U> type) throws SQLException {
+		return type.isInstance(this) ? type.cast(this) : delegate.unwrap(type);
+	}
+
+	@Override
+	public boolean isWrapperFor(Class<?> type) throws SQLException {
+		return type.isInstance(this) || delegate.isWrapperFor(type);
+	}
+
+	@Override
+	public String toString() {
+		return "Traced " + delegate;
+	}
+
+	final S start(TracedStatement<D> statement) {
+		// executing again closes the previous result set
+		finishResultSet();
+		return spanHandler.start(statement);
+	}
+
+	final void failed(S span, Throwable error) {
+		spanHandler.finish(span, -1, error);
+	}
+
+	final ResultSet queried(S span, ResultSet resultSet) {
+		if (resultSet == null) {
+			spanHandler.finish(span, -1, null);
+			return null;
+		}
+		this.resultSet = new TracingResultSet<>(spanHandler, span, resultSet, this);
+		return this.resultSet;
+	}
+
+	final boolean executed(S span, boolean hasResultSet) throws SQLException {
+		if (hasResultSet) {
+			ResultSet resultSet;
+			try {
+				resultSet = delegate.getResultSet();
+			} catch (Throwable e) {
+				failed(span, e);
+				throw e;
+			}
+			queried(span, resultSet);
+			return true;
+		}
+		// the statement ran, so its span is finished even if the driver can't tell how many rows it changed
+		int rows = -1;
+		try {
+			rows = delegate.getUpdateCount();
+		} finally {
+			spanHandler.finish(span, rows, null);
+		}
+		return false;
+	}
+
+	private void finishResultSet() {
+		if (resultSet != null) {
+			resultSet.finish(null);
+			resultSet = null;
+		}
+	}
+
+	@Override
+	public int getMaxFieldSize() throws SQLException {
+		return delegate.getMaxFieldSize();
+	}
+
+	@Override
+	public void setMaxFieldSize(int max) throws SQLException {
+		delegate.setMaxFieldSize(max);
+	}
+
+	@Override
+	public int getMaxRows() throws SQLException {
+		return delegate.getMaxRows();
+	}
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		delegate.setMaxRows(max);
+	}
+
+	@Override
+	public void setEscapeProcessing(boolean enable) throws SQLException {
+		delegate.setEscapeProcessing(enable);
+	}
+
+	@Override
+	public int getQueryTimeout() throws SQLException {
+		return delegate.getQueryTimeout();
+	}
+
+	@Override
+	public void setQueryTimeout(int seconds) throws SQLException {
+		delegate.setQueryTimeout(seconds);
+	}
+
+	@Override
+	public void cancel() throws SQLException {
+		delegate.cancel();
+	}
+
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return delegate.getWarnings();
+	}
+
+	@Override
+	public void clearWarnings() throws SQLException {
+		delegate.clearWarnings();
+	}
+
+	@Override
+	public void setCursorName(String name) throws SQLException {
+		delegate.setCursorName(name);
+	}
+
+	@Override
+	public int getUpdateCount() throws SQLException {
+		return delegate.getUpdateCount();
+	}
+
+	@Override
+	public boolean getMoreResults() throws SQLException {
+		return delegate.getMoreResults();
+	}
+
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		delegate.setFetchDirection(direction);
+	}
+
+	@Override
+	public int getFetchDirection() throws SQLException {
+		return delegate.getFetchDirection();
+	}
+
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		delegate.setFetchSize(rows);
+	}
+
+	@Override
+	public int getFetchSize() throws SQLException {
+		return delegate.getFetchSize();
+	}
+
+	@Override
+	public int getResultSetConcurrency() throws SQLException {
+		return delegate.getResultSetConcurrency();
+	}
+
+	@Override
+	public int getResultSetType() throws SQLException {
+		return delegate.getResultSetType();
+	}
+
+	@Override
+	public boolean getMoreResults(int current) throws SQLException {
+		return delegate.getMoreResults(current);
+	}
+
+	@Override
+	public ResultSet getGeneratedKeys() throws SQLException {
+		return delegate.getGeneratedKeys();
+	}
+
+	@Override
+	public int getResultSetHoldability() throws SQLException {
+		return delegate.getResultSetHoldability();
+	}
+
+	@Override
+	public boolean isClosed() throws SQLException {
+		return delegate.isClosed();
+	}
+
+	@Override
+	public void setPoolable(boolean poolable) throws SQLException {
+		delegate.setPoolable(poolable);
+	}
+
+	@Override
+	public boolean isPoolable() throws SQLException {
+		return delegate.isPoolable();
+	}
+
+	@Override
+	public void closeOnCompletion() throws SQLException {
+		delegate.closeOnCompletion();
+	}
+
+	@Override
+	public boolean isCloseOnCompletion() throws SQLException {
+		return delegate.isCloseOnCompletion();
+	}
+}
@@ -0,0 +1,98 @@
+package com.tracing.propagation;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.nike.wingtips.TraceAndSpanIdGenerator;
+
+import brave.internal.Platform;
+
+/**
+ * Compares {@link TraceIdGenerator} with the ID generation Brave and Wingtips use by default: Brave draws from
+ * {@code ThreadLocalRandom}, Wingtips from a single {@code SecureRandom} shared by all threads.
+ * {@code spanIdString_sharedSecureRandom} does what Wingtips does without Wingtips, for a build where its jar does not
+ * resolve: eight bytes from one SHA1PRNG {@code SecureRandom}, written as 16 hex chars.
+ *
+ * <p>The generators only differ under contention, so {@link #main(String[])} runs every benchmark with 1, 4, 16 and
+ * 64 threads, e.g. {@code gradle :tracing-propagation:jmhJar} and
+ * {@code java -cp tracing-propagation/build/libs/tracing-propagation-jmh.jar com.tracing.propagation.TraceIdGeneratorBenchmark}.
+ * Any other JMH arguments are passed on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TraceIdGeneratorBenchmark {
+
+	private static final int[] THREAD_COUNTS = { 1, 4, 16, 64 };
+
+	private final TraceIdGenerator generator64 = TraceIdGenerator.create(TraceIdGenerator.Mode.BITS_64);
+	private final TraceIdGenerator generator128 = TraceIdGenerator.create(TraceIdGenerator.Mode.BITS_128_TIME_PREFIXED);
+	private final Platform bravePlatform = Platform.get();
+	private final SecureRandom sharedSecureRandom = newSha1Prng();
+
+	@Benchmark
+	public long spanId_generator() {
+		return generator64.nextId();
+	}
+
+	@Benchmark
+	public long spanId_braveDefault() {
+		return bravePlatform.randomLong();
+	}
+
+	@Benchmark
+	public String spanIdString_generator() {
+		return generator64.nextSpanIdString();
+	}
+
+	@Benchmark
+	public String spanIdString_wingtipsDefault() {
+		return TraceAndSpanIdGenerator.generateId();
+	}
+
+	@Benchmark
+	public String spanIdString_sharedSecureRandom() {
+		byte[] bytes = new byte[8];
+		sharedSecureRandom.nextBytes(bytes);
+		long id = 0;
+		for (byte b : bytes) {
+			id = (id << 8) | (b & 0xff);
+		}
+		return HexCodec.toHex(id);
+	}
+
+	@Benchmark
+	public String traceIdString128TimePrefixed_generator() {
+		return generator128.nextTraceIdString();
+	}
+
+	private static SecureRandom newSha1Prng() {
+		try {
+			return SecureRandom.getInstance("SHA1PRNG");
+		} catch (NoSuchAlgorithmException e) {
+			return new SecureRandom();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		for (int threads : THREAD_COUNTS) {
+			new Runner(new OptionsBuilder()
+					.parent(commandLine)
+					.include(TraceIdGeneratorBenchmark.class.getSimpleName())
+					.threads(threads)
+					.build()).run();
+		}
+	}
+}
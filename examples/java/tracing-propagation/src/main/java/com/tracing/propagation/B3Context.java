@@ -0,0 +1,94 @@
+package com.tracing.propagation;
+
+/**
+ * Trace context read from B3 headers, kept as primitive fields. IDs are 0 when absent.
+ */
+public final class B3Context {
+
+	long traceIdHigh;
+	long traceId;
+	long spanId;
+	long parentId;
+	// null if the caller did not make a sampling decision
+	Boolean sampled;
+	boolean debug;
+	// the W3C tracestate, if the context was read from a traceparent header
+	String tracestate;
+
+	public long traceIdHigh() {
+		return traceIdHigh;
+	}
+
+	public long traceId() {
+		return traceId;
+	}
+
+	public long spanId() {
+		return spanId;
+	}
+
+	public long parentId() {
+		return parentId;
+	}
+
+	/**
+	 * @return true if the trace and span ID are both present
+	 */
+	public boolean isValid() {
+		return traceId != 0 && spanId != 0;
+	}
+
+	public boolean hasSamplingDecision() {
+		return sampled != null || debug;
+	}
+
+	/**
+	 * @return the caller's sampling decision, or true if it did not make one
+	 */
+	public boolean isSampled() {
+		return debug || sampled == null || sampled;
+	}
+
+	public boolean isDebug() {
+		return debug;
+	}
+
+	/**
+	 * @return the raw tracestate header that came with a traceparent the context was read from, null for B3 headers
+	 * 			or if there was none - to be passed on with the outgoing calls of the request
+	 */
+	public String tracestate() {
+		return tracestate;
+	}
+
+	public String traceIdString() {
+		return HexCodec.toHex(traceIdHigh, traceId);
+	}
+
+	public String spanIdString() {
+		return HexCodec.toHex(spanId);
+	}
+
+	/**
+	 * @return the parent span ID, or null for a root span
+	 */
+	public String parentIdString() {
+		return parentId == 0 ? null : HexCodec.toHex(parentId);
+	}
+
+	public void clear() {
+		traceIdHigh = 0;
+		traceId = 0;
+		spanId = 0;
+		parentId = 0;
+		sampled = null;
+		debug = false;
+		tracestate = null;
+	}
+
+	@Override
+	public String toString() {
+		return "B3Context{traceId=" + traceIdString() + ", spanId=" + spanIdString() + ", parentId="
+			   + parentIdString() + ", sampled=" + sampled + ", debug=" + debug + "}";
+	}
+}
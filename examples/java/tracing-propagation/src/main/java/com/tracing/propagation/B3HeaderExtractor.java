@@ -0,0 +1,230 @@
+package com.tracing.propagation;
+
+import java.util.List;
+import java.util.Map;
+
+import com.sun.net.httpserver.Headers;
+
+/**
+ * Reads B3 trace context from the request headers of an {@code HttpExchange} in a single pass.
+ *
+ * <p>Looking each B3 header up with {@code Headers.getFirst} normalizes the header name once per lookup. This
+ * extractor walks the headers once instead, compares names case-insensitively in place and parses the hex IDs
+ * directly into longs. Both the multi-header format ({@code X-B3-TraceId}, {@code X-B3-SpanId},
+ * {@code X-B3-ParentSpanId}, {@code X-B3-Sampled}, {@code X-B3-Flags}) and the single {@code b3} header are
+ * supported; if both are present the {@code b3} header wins.
+ */
+public final class B3HeaderExtractor {
+
+	private B3HeaderExtractor() { }
+
+	/**
+	 * @param headers	request headers
+	 * @param context	receives the parsed values, it is cleared first
+	 * @return			true if a valid trace and span ID were found
+	 */
+	public static boolean extract(Headers headers, B3Context context) {
+		return extract(headers, context, false);
+	}
+
+	/**
+	 * Same as {@link #extract(Headers, B3Context)}, but falls back to a W3C {@code traceparent} header (read in the
+	 * same pass) if there is no valid B3 context. This lets a service accept both formats while callers migrate. The
+	 * {@code tracestate} that came with the traceparent ends up in {@link B3Context#tracestate()}.
+	 */
+	public static boolean extractB3OrTraceparent(Headers headers, B3Context context) {
+		return extract(headers, context, true);
+	}
+
+	/**
+	 * Looks up a request header by name, ignoring case. Returns null if it is absent.
+	 */
+	public interface HeaderLookup {
+		String get(String name);
+	}
+
+	/**
+	 * Same as {@link #extractB3OrTraceparent(Headers, B3Context)} for carriers that are not an {@code HttpExchange} but
+	 * can look a header up by name, e.g. an OpenTracing {@code TextMap}. Every header is looked up at most once.
+	 *
+	 * @param acceptTraceparent	whether to fall back to a W3C {@code traceparent} header
+	 */
+	public static boolean extract(HeaderLookup headers, B3Context context, boolean acceptTraceparent) {
+		context.clear();
+		String singleHeader = headers.get(TraceHeadersInjector.B3_SINGLE);
+		boolean valid = singleHeader != null
+			? parseSingleHeader(singleHeader, context)
+			: parseMultipleHeaders(headers.get(TraceHeadersInjector.B3_TRACE_ID),
+								   headers.get(TraceHeadersInjector.B3_SPAN_ID),
+								   headers.get(TraceHeadersInjector.B3_PARENT_SPAN_ID),
+								   headers.get(TraceHeadersInjector.B3_SAMPLED),
+								   headers.get(TraceHeadersInjector.B3_FLAGS), context);
+		if (!valid && acceptTraceparent) {
+			String traceparent = headers.get(W3CTraceContextCodec.TRACEPARENT);
+			W3CTraceContext w3cContext = new W3CTraceContext();
+			if (traceparent != null && W3CTraceContextCodec.parseTraceparent(traceparent, w3cContext)) {
+				w3cContext.tracestate = headers.get(W3CTraceContextCodec.TRACESTATE);
+				w3cContext.copyTo(context);
+				return true;
+			}
+		}
+		return valid;
+	}
+
+	private static boolean extract(Headers headers, B3Context context, boolean acceptTraceparent) {
+		context.clear();
+		String singleHeader = null;
+		String traceId = null;
+		String spanId = null;
+		String parentSpanId = null;
+		String sampled = null;
+		String flags = null;
+		String traceparent = null;
+		List<String> tracestate = null;
+
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			String name = header.getKey();
+			int length = name.length();
+			if (length == 2) {
+				if (name.equalsIgnoreCase("b3")) {
+					singleHeader = first(header.getValue());
+				}
+			}
+			else if (length >= 10 && name.regionMatches(true, 0, "x-b3-", 0, 5)) {
+				switch (length) {
+				case 10:
+					if (name.regionMatches(true, 5, "flags", 0, 5)) {
+						flags = first(header.getValue());
+					}
+					break;
+				case 11:
+					if (name.regionMatches(true, 5, "spanid", 0, 6)) {
+						spanId = first(header.getValue());
+					}
+					break;
+				case 12:
+					if (name.regionMatches(true, 5, "traceid", 0, 7)) {
+						traceId = first(header.getValue());
+					}
+					else if (name.regionMatches(true, 5, "sampled", 0, 7)) {
+						sampled = first(header.getValue());
+					}
+					break;
+				case 17:
+					if (name.regionMatches(true, 5, "parentspanid", 0, 12)) {
+						parentSpanId = first(header.getValue());
+					}
+					break;
+				default:
+					break;
+				}
+			}
+			else if (acceptTraceparent && length == 11 && name.equalsIgnoreCase(W3CTraceContextCodec.TRACEPARENT)) {
+				traceparent = first(header.getValue());
+			}
+			else if (acceptTraceparent && length == 10 && name.equalsIgnoreCase(W3CTraceContextCodec.TRACESTATE)) {
+				tracestate = header.getValue();
+			}
+		}
+
+		boolean valid = singleHeader != null
+			? parseSingleHeader(singleHeader, context)
+			: parseMultipleHeaders(traceId, spanId, parentSpanId, sampled, flags, context);
+		if (!valid && traceparent != null) {
+			W3CTraceContext w3cContext = new W3CTraceContext();
+			if (W3CTraceContextCodec.parseTraceparent(traceparent, w3cContext)) {
+				w3cContext.tracestate = W3CTraceContextCodec.joinTracestate(tracestate);
+				w3cContext.copyTo(context);
+				return true;
+			}
+		}
+		return valid;
+	}
+
+	private static boolean parseMultipleHeaders(String traceId, String spanId, String parentSpanId, String sampled,
+												String flags, B3Context context) {
+		if (sampled != null) {
+			context.sampled = sampled.equals("1") || sampled.equalsIgnoreCase("true");
+		}
+		context.debug = "1".equals(flags);
+		if (traceId == null || spanId == null || !parseTraceId(traceId, 0, traceId.length(), context)) {
+			return false;
+		}
+		context.spanId = HexCodec.parseHex(spanId, 0, spanId.length());
+		if (parentSpanId != null) {
+			context.parentId = HexCodec.parseHex(parentSpanId, 0, parentSpanId.length());
+			// a parent ID that is there but can't be parsed makes the context as invalid as a bad span ID would
+			if (context.parentId == 0) {
+				return false;
+			}
+		}
+		return context.isValid();
+	}
+
+	/**
+	 * Parses {@code {TraceId}-{SpanId}[-{SamplingState}[-{ParentSpanId}]]} or just {@code {SamplingState}}.
+	 */
+	static boolean parseSingleHeader(String value, B3Context context) {
+		int length = value.length();
+		if (length == 1) {
+			parseSamplingState(value.charAt(0), context);
+			return false;
+		}
+
+		int traceIdEnd = value.indexOf('-');
+		if (traceIdEnd < 0 || !parseTraceId(value, 0, traceIdEnd, context)) {
+			return false;
+		}
+		int spanIdEnd = value.indexOf('-', traceIdEnd + 1);
+		if (spanIdEnd < 0) {
+			spanIdEnd = length;
+		}
+		context.spanId = HexCodec.parseHex(value, traceIdEnd + 1, spanIdEnd);
+
+		if (spanIdEnd + 1 < length) {
+			parseSamplingState(value.charAt(spanIdEnd + 1), context);
+			int parentStart = spanIdEnd + 3;
+			if (parentStart <= length && value.charAt(parentStart - 1) == '-') {
+				context.parentId = HexCodec.parseHex(value, parentStart, length);
+				if (context.parentId == 0) {
+					return false;
+				}
+			}
+		}
+		return context.isValid();
+	}
+
+	private static boolean parseTraceId(CharSequence value, int start, int end, B3Context context) {
+		int length = end - start;
+		if (length > 32) {
+			return false;
+		}
+		if (length > 16) {
+			int lowStart = end - 16;
+			context.traceIdHigh = HexCodec.parseHex(value, start, lowStart);
+			// 0 is a valid upper half, so only then does it need a separate check
+			if (context.traceIdHigh == 0 && !HexCodec.isHex(value, start, lowStart)) {
+				return false;
+			}
+			start = lowStart;
+		}
+		context.traceId = HexCodec.parseHex(value, start, end);
+		return context.traceId != 0;
+	}
+
+	private static void parseSamplingState(char state, B3Context context) {
+		if (state == 'd') {
+			context.debug = true;
+		}
+		else if (state == '1') {
+			context.sampled = Boolean.TRUE;
+		}
+		else if (state == '0') {
+			context.sampled = Boolean.FALSE;
+		}
+	}
+
+	private static String first(List<String> values) {
+		return values == null || values.isEmpty() ? null : values.get(0);
+	}
+}
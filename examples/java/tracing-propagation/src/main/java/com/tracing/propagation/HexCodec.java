@@ -0,0 +1,101 @@
+package com.tracing.propagation;
+
+/**
+ * Converts between lower-hex trace/span IDs and longs without creating intermediate strings.
+ */
+public final class HexCodec {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private HexCodec() { }
+
+	/**
+	 * Parses {@code value[start, end)} as an unsigned hex number of up to 16 lowercase digits - traceparent and B3
+	 * both forbid uppercase ones.
+	 *
+	 * @return	the parsed value, or 0 if the range is empty, longer than 16 digits or contains a non-hex character.
+	 * 			Trace and span IDs must not be 0, so callers can treat 0 as "invalid".
+	 */
+	public static long parseHex(CharSequence value, int start, int end) {
+		int length = end - start;
+		if (length <= 0 || length > 16) {
+			return 0;
+		}
+		long result = 0;
+		for (int i = start; i < end; i++) {
+			int digit = digit(value.charAt(i));
+			if (digit < 0) {
+				return 0;
+			}
+			result = (result << 4) | digit;
+		}
+		return result;
+	}
+
+	/**
+	 * @return true if {@code value[start, end)} is non-empty and consists of lowercase hex digits only
+	 */
+	public static boolean isHex(CharSequence value, int start, int end) {
+		if (end <= start) {
+			return false;
+		}
+		for (int i = start; i < end; i++) {
+			if (digit(value.charAt(i)) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Writes {@code value} as 16 lower-hex characters into {@code buffer} starting at {@code offset}.
+	 */
+	public static void writeHex(long value, char[] buffer, int offset) {
+		for (int i = offset + 15; i >= offset; i--) {
+			buffer[i] = HEX_DIGITS[(int) (value & 0xf)];
+			value >>>= 4;
+		}
+	}
+
+	/**
+	 * Writes {@code value} as 16 lower-hex ASCII bytes into {@code buffer} starting at {@code offset}.
+	 */
+	public static void writeHex(long value, byte[] buffer, int offset) {
+		for (int i = offset + 15; i >= offset; i--) {
+			buffer[i] = (byte) HEX_DIGITS[(int) (value & 0xf)];
+			value >>>= 4;
+		}
+	}
+
+	/**
+	 * @return {@code value} as 16 lower-hex characters
+	 */
+	public static String toHex(long value) {
+		char[] buffer = new char[16];
+		writeHex(value, buffer, 0);
+		return new String(buffer);
+	}
+
+	/**
+	 * @return a 128-bit ID as 32 lower-hex characters, or as 16 if {@code high} is 0
+	 */
+	public static String toHex(long high, long low) {
+		if (high == 0) {
+			return toHex(low);
+		}
+		char[] buffer = new char[32];
+		writeHex(high, buffer, 0);
+		writeHex(low, buffer, 16);
+		return new String(buffer);
+	}
+
+	static int digit(char c) {
+		if (c >= '0' && c <= '9') {
+			return c - '0';
+		}
+		if (c >= 'a' && c <= 'f') {
+			return c - 'a' + 10;
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,180 @@
+package com.tracing.propagation;
+
+import java.util.Locale;
+
+/**
+ * Writes the trace context of an outgoing request in one or more header formats. Emitting B3 and W3C side by side
+ * lets callers migrate to W3C Trace Context while downstream services still read B3.
+ *
+ * <p>Header values are formatted into a per-thread {@code char[]}, so the only allocation per header is the
+ * {@code String} handed to the HTTP client.
+ */
+public final class TraceHeadersInjector {
+
+	public enum Format {
+		/** {@code X-B3-TraceId}, {@code X-B3-SpanId}, {@code X-B3-ParentSpanId}, {@code X-B3-Sampled} */
+		B3,
+		/** {@code b3: {TraceId}-{SpanId}-{SamplingState}-{ParentSpanId}} */
+		B3_SINGLE,
+		/** {@code traceparent} and {@code tracestate} */
+		W3C
+	}
+
+	/**
+	 * Sets a header on the carrier of an outgoing request, e.g. {@code HttpURLConnection::setRequestProperty}.
+	 */
+	public interface Setter<C> {
+		void put(C carrier, String name, String value);
+	}
+
+	public static final String B3_TRACE_ID = "X-B3-TraceId";
+	public static final String B3_SPAN_ID = "X-B3-SpanId";
+	public static final String B3_PARENT_SPAN_ID = "X-B3-ParentSpanId";
+	public static final String B3_SAMPLED = "X-B3-Sampled";
+	public static final String B3_FLAGS = "X-B3-Flags";
+	public static final String B3_SINGLE = "b3";
+
+	// 32 hex trace ID, 16 hex span ID, sampling state and 16 hex parent ID plus separators
+	private static final int B3_SINGLE_MAX_LENGTH = 32 + 1 + 16 + 1 + 1 + 1 + 16;
+
+	private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[B3_SINGLE_MAX_LENGTH]);
+
+	private final boolean b3;
+	private final boolean b3Single;
+	private final boolean w3c;
+
+	private TraceHeadersInjector(boolean b3, boolean b3Single, boolean w3c) {
+		this.b3 = b3;
+		this.b3Single = b3Single;
+		this.w3c = w3c;
+	}
+
+	public static TraceHeadersInjector create(Format... formats) {
+		boolean b3 = false, b3Single = false, w3c = false;
+		for (Format format : formats) {
+			b3 |= format == Format.B3;
+			b3Single |= format == Format.B3_SINGLE;
+			w3c |= format == Format.W3C;
+		}
+		return new TraceHeadersInjector(b3, b3Single, w3c);
+	}
+
+	/**
+	 * Reads the formats to emit from a comma separated system property, e.g. {@code -Dtracing.propagation=b3,w3c}.
+	 */
+	public static TraceHeadersInjector fromSystemProperty(String property, Format... defaultFormats) {
+		String value = System.getProperty(property);
+		if (value == null || value.trim().isEmpty()) {
+			return create(defaultFormats);
+		}
+		String[] names = value.split(",");
+		Format[] formats = new Format[names.length];
+		for (int i = 0; i < names.length; i++) {
+			formats[i] = Format.valueOf(names[i].trim().toUpperCase(Locale.ROOT));
+		}
+		return create(formats);
+	}
+
+	public boolean emits(Format format) {
+		switch (format) {
+		case B3:
+			return b3;
+		case B3_SINGLE:
+			return b3Single;
+		default:
+			return w3c;
+		}
+	}
+
+	/**
+	 * @param traceIdHigh	upper 64 bits of the trace ID, 0 for 64-bit trace IDs
+	 * @param traceId		lower 64 bits of the trace ID
+	 * @param spanId		ID of the client span, the parent of the span handling the request
+	 * @param parentId		parent of the client span, 0 if it is a root span
+	 * @param sampled		sampling decision
+	 * @param tracestate	W3C tracestate to pass on, may be null
+	 */
+	public <C> void inject(long traceIdHigh, long traceId, long spanId, long parentId, boolean sampled,
+						   String tracestate, C carrier, Setter<C> setter) {
+		if (!b3 && !b3Single && !w3c) {
+			return;
+		}
+		char[] buffer = BUFFER.get();
+		if (b3) {
+			setter.put(carrier, B3_TRACE_ID, traceIdHigh == 0
+				? hex(traceId, buffer)
+				: new String(buffer, 0, writeTraceId(traceIdHigh, traceId, buffer, 0)));
+			setter.put(carrier, B3_SPAN_ID, hex(spanId, buffer));
+			if (parentId != 0) {
+				setter.put(carrier, B3_PARENT_SPAN_ID, hex(parentId, buffer));
+			}
+			setter.put(carrier, B3_SAMPLED, sampled ? "1" : "0");
+		}
+		if (b3Single) {
+			int length = writeB3Single(traceIdHigh, traceId, spanId, parentId, sampled, buffer, 0);
+			setter.put(carrier, B3_SINGLE, new String(buffer, 0, length));
+		}
+		if (w3c) {
+			int length = W3CTraceContextCodec.writeTraceparent(traceIdHigh, traceId, spanId, sampled, buffer, 0);
+			setter.put(carrier, W3CTraceContextCodec.TRACEPARENT, new String(buffer, 0, length));
+			if (tracestate != null) {
+				setter.put(carrier, W3CTraceContextCodec.TRACESTATE, tracestate);
+			}
+		}
+	}
+
+	/**
+	 * Same as {@link #inject(long, long, long, long, boolean, String, Object, Setter)} for tracers that keep their
+	 * IDs as lower-hex strings, like Wingtips.
+	 *
+	 * @param parentId	may be null for a root span
+	 */
+	public <C> void inject(String traceId, String spanId, String parentId, boolean sampled, String tracestate,
+						   C carrier, Setter<C> setter) {
+		if (!b3 && !b3Single && !w3c) {
+			// nothing to emit, so nothing to parse either
+			return;
+		}
+		int traceIdLowStart = Math.max(0, traceId.length() - 16);
+		inject(HexCodec.parseHex(traceId, 0, traceIdLowStart),
+			   HexCodec.parseHex(traceId, traceIdLowStart, traceId.length()),
+			   HexCodec.parseHex(spanId, 0, spanId.length()),
+			   parentId == null ? 0 : HexCodec.parseHex(parentId, 0, parentId.length()),
+			   sampled, tracestate, carrier, setter);
+	}
+
+	/**
+	 * Writes a single {@code b3} header value into {@code buffer}, which needs up to 68 chars from {@code offset} on.
+	 *
+	 * @return the offset after the last char written
+	 */
+	public static int writeB3Single(long traceIdHigh, long traceId, long spanId, long parentId, boolean sampled,
+									char[] buffer, int offset) {
+		int position = writeTraceId(traceIdHigh, traceId, buffer, offset);
+		buffer[position++] = '-';
+		HexCodec.writeHex(spanId, buffer, position);
+		position += 16;
+		buffer[position++] = '-';
+		buffer[position++] = sampled ? '1' : '0';
+		if (parentId != 0) {
+			buffer[position++] = '-';
+			HexCodec.writeHex(parentId, buffer, position);
+			position += 16;
+		}
+		return position;
+	}
+
+	private static int writeTraceId(long traceIdHigh, long traceId, char[] buffer, int offset) {
+		if (traceIdHigh != 0) {
+			HexCodec.writeHex(traceIdHigh, buffer, offset);
+			offset += 16;
+		}
+		HexCodec.writeHex(traceId, buffer, offset);
+		return offset + 16;
+	}
+
+	private static String hex(long id, char[] buffer) {
+		HexCodec.writeHex(id, buffer, 0);
+		return new String(buffer, 0, 16);
+	}
+}
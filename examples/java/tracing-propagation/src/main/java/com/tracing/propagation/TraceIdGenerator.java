@@ -0,0 +1,117 @@
+package com.tracing.propagation;
+
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates trace and span IDs without any shared state on the hot path. Every thread draws from its own
+ * {@link SplittableRandom}, so concurrent requests never contend on a lock or a CAS loop the way they do on a shared
+ * {@code Random} or {@code SecureRandom}.
+ *
+ * <p>Span IDs and the lower 64 bits of a trace ID are always random and never 0 (0 means "absent" in B3 and W3C).
+ * The upper 64 bits of the trace ID depend on the {@link Mode}.
+ */
+public final class TraceIdGenerator {
+
+	public enum Mode {
+		/** 64-bit trace IDs, {@link #nextTraceIdHigh()} is always 0 */
+		BITS_64,
+		/** 128-bit trace IDs with random upper bits */
+		BITS_128,
+		/**
+		 * 128-bit trace IDs whose first 32 bits are the epoch seconds at creation, followed by 96 random bits. Trace
+		 * IDs then sort by start time and stay compatible with backends that expect a timestamp prefix (e.g. AWS X-Ray).
+		 */
+		BITS_128_TIME_PREFIXED
+	}
+
+	// Each thread gets its own generator, seeded from the thread's ThreadLocalRandom so creating one does not
+	//		synchronize either - this matters with a virtual thread per request, where every request is a new thread.
+	private static final ThreadLocal<SplittableRandom> RANDOM =
+			ThreadLocal.withInitial(() -> new SplittableRandom(ThreadLocalRandom.current().nextLong()));
+
+	private final Mode mode;
+
+	private TraceIdGenerator(Mode mode) {
+		this.mode = mode;
+	}
+
+	public static TraceIdGenerator create(Mode mode) {
+		return new TraceIdGenerator(mode);
+	}
+
+	/**
+	 * Reads the mode from a system property such as {@code -Dtracing.traceIdMode=BITS_128}, falling back to
+	 * {@link Mode#BITS_64} when it is not set.
+	 */
+	public static TraceIdGenerator fromSystemProperty(String property) {
+		String value = System.getProperty(property);
+		return create(value == null || value.isEmpty() ? Mode.BITS_64
+				: Mode.valueOf(value.trim().toUpperCase(Locale.ROOT)));
+	}
+
+	public Mode mode() {
+		return mode;
+	}
+
+	public boolean traceId128Bit() {
+		return mode != Mode.BITS_64;
+	}
+
+	/**
+	 * Returns a random, non-zero ID usable as span ID or as the lower 64 bits of a trace ID.
+	 */
+	public long nextId() {
+		SplittableRandom random = RANDOM.get();
+		long id;
+		do {
+			id = random.nextLong();
+		} while (id == 0L);
+		return id;
+	}
+
+	/**
+	 * Returns the upper 64 bits of a new trace ID, 0 for {@link Mode#BITS_64}.
+	 */
+	public long nextTraceIdHigh() {
+		switch (mode) {
+			case BITS_128:
+				return RANDOM.get().nextLong();
+			case BITS_128_TIME_PREFIXED:
+				long epochSeconds = System.currentTimeMillis() / 1000;
+				return (epochSeconds << 32) | (RANDOM.get().nextInt() & 0xFFFFFFFFL);
+			default:
+				return 0L;
+		}
+	}
+
+	/**
+	 * Returns a new span ID as 16 lower-hex characters, the format Wingtips and B3 use.
+	 */
+	public String nextSpanIdString() {
+		return HexCodec.toHex(nextId());
+	}
+
+	/**
+	 * Returns a new trace ID as 16 or 32 lower-hex characters depending on the mode.
+	 */
+	public String nextTraceIdString() {
+		long high = nextTraceIdHigh();
+		long low = nextId();
+		return traceId128Bit() ? HexCodec.toHex(high, low) : HexCodec.toHex(low);
+	}
+
+	/**
+	 * Fills {@code context} with the IDs of a new root span: a new trace ID, span ID equal to the lower 64 bits of the
+	 * trace ID (like Brave does for root spans) and no parent. The sampling decision is left untouched.
+	 */
+	public B3Context newRootContext(B3Context context) {
+		long traceId = nextId();
+		context.traceIdHigh = nextTraceIdHigh();
+		context.traceId = traceId;
+		context.spanId = traceId;
+		context.parentId = 0L;
+		return context;
+	}
+}
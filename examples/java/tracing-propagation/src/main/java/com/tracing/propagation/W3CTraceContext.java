@@ -0,0 +1,87 @@
+package com.tracing.propagation;
+
+/**
+ * Trace context read from W3C {@code traceparent}/{@code tracestate} headers, kept as primitive fields.
+ */
+public final class W3CTraceContext {
+
+	static final byte FLAG_SAMPLED = 0x01;
+
+	int version;
+	long traceIdHigh;
+	long traceId;
+	long parentId;
+	byte flags;
+	// opaque vendor data, propagated as is
+	String tracestate;
+
+	public int version() {
+		return version;
+	}
+
+	public long traceIdHigh() {
+		return traceIdHigh;
+	}
+
+	public long traceId() {
+		return traceId;
+	}
+
+	/**
+	 * @return the span ID of the caller, which becomes the parent of the span handling the request
+	 */
+	public long parentId() {
+		return parentId;
+	}
+
+	public byte flags() {
+		return flags;
+	}
+
+	public boolean isSampled() {
+		return (flags & FLAG_SAMPLED) != 0;
+	}
+
+	/**
+	 * @return the raw tracestate header, or null if there was none
+	 */
+	public String tracestate() {
+		return tracestate;
+	}
+
+	/**
+	 * @return true if the trace ID and parent ID are both present
+	 */
+	public boolean isValid() {
+		return (traceIdHigh != 0 || traceId != 0) && parentId != 0;
+	}
+
+	/**
+	 * Copies this context into a {@link B3Context}, so code that only understands B3 can continue the trace. The
+	 * tracestate goes along, so it can still be passed on.
+	 */
+	public void copyTo(B3Context b3) {
+		b3.clear();
+		b3.traceIdHigh = traceIdHigh;
+		b3.traceId = traceId;
+		b3.spanId = parentId;
+		b3.sampled = isSampled();
+		b3.tracestate = tracestate;
+	}
+
+	public void clear() {
+		version = 0;
+		traceIdHigh = 0;
+		traceId = 0;
+		parentId = 0;
+		flags = 0;
+		tracestate = null;
+	}
+
+	@Override
+	public String toString() {
+		char[] buffer = new char[W3CTraceContextCodec.TRACEPARENT_LENGTH];
+		W3CTraceContextCodec.writeTraceparent(traceIdHigh, traceId, parentId, isSampled(), buffer, 0);
+		return "W3CTraceContext{traceparent=" + new String(buffer) + ", tracestate=" + tracestate + "}";
+	}
+}
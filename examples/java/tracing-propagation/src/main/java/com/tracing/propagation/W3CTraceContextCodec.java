@@ -0,0 +1,134 @@
+package com.tracing.propagation;
+
+import java.util.List;
+import java.util.Map;
+
+import com.sun.net.httpserver.Headers;
+
+/**
+ * Reads and writes W3C Trace Context headers ({@code traceparent: 00-<trace-id>-<parent-id>-<flags>} and
+ * {@code tracestate}).
+ *
+ * <p>Parsing fills a reusable {@link W3CTraceContext} with primitive fields, and writing goes into a caller supplied
+ * {@code char[]} or {@code byte[]}, so neither direction allocates.
+ */
+public final class W3CTraceContextCodec {
+
+	public static final String TRACEPARENT = "traceparent";
+	public static final String TRACESTATE = "tracestate";
+
+	/** Length of a version 00 traceparent value */
+	public static final int TRACEPARENT_LENGTH = 55;
+
+	private static final int TRACE_ID_OFFSET = 3;
+	private static final int PARENT_ID_OFFSET = 36;
+	private static final int FLAGS_OFFSET = 53;
+
+	private W3CTraceContextCodec() { }
+
+	/**
+	 * Reads {@code traceparent} and {@code tracestate} in a single pass over the request headers.
+	 *
+	 * @param headers	request headers
+	 * @param context	receives the parsed values, it is cleared first
+	 * @return			true if a valid traceparent was found
+	 */
+	public static boolean extract(Headers headers, W3CTraceContext context) {
+		context.clear();
+		String traceparent = null;
+		List<String> tracestate = null;
+		for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+			String name = header.getKey();
+			if (name.length() == 11 && name.equalsIgnoreCase(TRACEPARENT)) {
+				List<String> values = header.getValue();
+				traceparent = values == null || values.isEmpty() ? null : values.get(0);
+			}
+			else if (name.length() == 10 && name.equalsIgnoreCase(TRACESTATE)) {
+				tracestate = header.getValue();
+			}
+		}
+		if (traceparent == null || !parseTraceparent(traceparent, context)) {
+			return false;
+		}
+		context.tracestate = joinTracestate(tracestate);
+		return true;
+	}
+
+	/**
+	 * @return the values of all tracestate headers as one, or null if there were none
+	 */
+	static String joinTracestate(List<String> values) {
+		if (values == null || values.isEmpty()) {
+			return null;
+		}
+		// multiple tracestate headers are one list, split over several lines
+		return values.size() == 1 ? values.get(0) : String.join(",", values);
+	}
+
+	/**
+	 * @return true if {@code value} is a valid traceparent. Versions newer than 00 are accepted as long as they start
+	 * 			with the version 00 fields.
+	 */
+	public static boolean parseTraceparent(CharSequence value, W3CTraceContext context) {
+		int length = value.length();
+		if (length < TRACEPARENT_LENGTH || value.charAt(2) != '-'
+			|| value.charAt(PARENT_ID_OFFSET - 1) != '-' || value.charAt(FLAGS_OFFSET - 1) != '-') {
+			return false;
+		}
+		int version = (int) HexCodec.parseHex(value, 0, 2);
+		if (!HexCodec.isHex(value, 0, 2) || version == 0xff
+			|| (version == 0 && length != TRACEPARENT_LENGTH)
+			|| (length > TRACEPARENT_LENGTH && value.charAt(TRACEPARENT_LENGTH) != '-')) {
+			return false;
+		}
+		if (!HexCodec.isHex(value, TRACE_ID_OFFSET, PARENT_ID_OFFSET - 1)
+			|| !HexCodec.isHex(value, FLAGS_OFFSET, TRACEPARENT_LENGTH)) {
+			return false;
+		}
+		context.version = version;
+		context.traceIdHigh = HexCodec.parseHex(value, TRACE_ID_OFFSET, TRACE_ID_OFFSET + 16);
+		context.traceId = HexCodec.parseHex(value, TRACE_ID_OFFSET + 16, PARENT_ID_OFFSET - 1);
+		context.parentId = HexCodec.parseHex(value, PARENT_ID_OFFSET, FLAGS_OFFSET - 1);
+		context.flags = (byte) HexCodec.parseHex(value, FLAGS_OFFSET, TRACEPARENT_LENGTH);
+		return context.isValid();
+	}
+
+	/**
+	 * Writes a version 00 traceparent into {@code buffer}, which needs {@link #TRACEPARENT_LENGTH} chars from
+	 * {@code offset} on. A 64-bit trace ID is left-padded with zeros.
+	 *
+	 * @return the offset after the last char written
+	 */
+	public static int writeTraceparent(long traceIdHigh, long traceId, long spanId, boolean sampled,
+									   char[] buffer, int offset) {
+		buffer[offset] = '0';
+		buffer[offset + 1] = '0';
+		buffer[offset + 2] = '-';
+		HexCodec.writeHex(traceIdHigh, buffer, offset + TRACE_ID_OFFSET);
+		HexCodec.writeHex(traceId, buffer, offset + TRACE_ID_OFFSET + 16);
+		buffer[offset + PARENT_ID_OFFSET - 1] = '-';
+		HexCodec.writeHex(spanId, buffer, offset + PARENT_ID_OFFSET);
+		buffer[offset + FLAGS_OFFSET - 1] = '-';
+		buffer[offset + FLAGS_OFFSET] = '0';
+		buffer[offset + FLAGS_OFFSET + 1] = sampled ? '1' : '0';
+		return offset + TRACEPARENT_LENGTH;
+	}
+
+	/**
+	 * Same as {@link #writeTraceparent(long, long, long, boolean, char[], int)}, as US-ASCII bytes.
+	 */
+	public static int writeTraceparent(long traceIdHigh, long traceId, long spanId, boolean sampled,
+									   byte[] buffer, int offset) {
+		buffer[offset] = '0';
+		buffer[offset + 1] = '0';
+		buffer[offset + 2] = '-';
+		HexCodec.writeHex(traceIdHigh, buffer, offset + TRACE_ID_OFFSET);
+		HexCodec.writeHex(traceId, buffer, offset + TRACE_ID_OFFSET + 16);
+		buffer[offset + PARENT_ID_OFFSET - 1] = '-';
+		HexCodec.writeHex(spanId, buffer, offset + PARENT_ID_OFFSET);
+		buffer[offset + FLAGS_OFFSET - 1] = '-';
+		buffer[offset + FLAGS_OFFSET] = '0';
+		buffer[offset + FLAGS_OFFSET + 1] = (byte) (sampled ? '1' : '0');
+		return offset + TRACEPARENT_LENGTH;
+	}
+}
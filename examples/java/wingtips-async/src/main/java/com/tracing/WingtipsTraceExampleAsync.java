@@ -3,13 +3,19 @@ package com.tracing;
 import com.nike.wingtips.Span;
 import com.nike.wingtips.Span.SpanPurpose;
 import com.nike.wingtips.Tracer;
-import com.nike.wingtips.http.RequestWithHeaders;
 import com.nike.wingtips.util.TracingState;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import com.tracing.load.LoadGenerator;
+import com.tracing.propagation.B3Context;
+import com.tracing.propagation.B3HeaderExtractor;
+import com.tracing.propagation.TraceHeadersInjector;
+import com.tracing.server.ExampleServers;
+import com.tracing.server.ServerExecutors;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,7 +31,6 @@ import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
-import static com.nike.wingtips.http.HttpRequestTracingUtils.fromRequestWithHeaders;
 import static com.nike.wingtips.http.HttpRequestTracingUtils.propagateTracingHeaders;
 import static com.nike.wingtips.util.AsyncWingtipsHelperStatic.executorServiceWithTracing;
 import static com.nike.wingtips.util.AsyncWingtipsHelperStatic.linkTracingToCurrentThread;
@@ -39,6 +44,9 @@ import static com.nike.wingtips.util.AsyncWingtipsHelperStatic.unlinkTracingFrom
  *
  * <p>This particular class demonstrates instrumenting asynchronous scenarios.
  *
+ * <p>Run with {@code -Dexample.executor=virtual} on Java 21+ to process the asyncWithExecutor path with one virtual
+ * thread per task instead of a cached platform thread pool.
+ *
  * @author alois.reitbauer
  * @author Nic Munroe
  *
@@ -51,6 +59,17 @@ public class WingtipsTraceExampleAsync {
 
 	private static final Tracer wingtipsTracer = Tracer.getInstance();
 
+	// Trace header formats to send in addition to Wingtips' B3 headers while migrating, e.g.
+	//		-Dtracing.propagation.additional=w3c
+	private static final TraceHeadersInjector additionalTracingHeaders =
+		TraceHeadersInjector.fromSystemProperty("tracing.propagation.additional");
+
+	// -Dexample.requestLog=false keeps the handlers from logging a line per request, e.g. under load
+	private static final boolean LOG_REQUESTS = ExampleServers.logRequests();
+
+	// -Dexample.simulatedWork=false skips the sleeps that simulate server time, e.g. to compare the tracers under load
+	private static final boolean SIMULATE_WORK = ExampleServers.simulateWork();
+
 	public static void main(String[] args) {
 
 		try {
@@ -65,44 +84,26 @@ public class WingtipsTraceExampleAsync {
 
 	private static void initClient() {
 
+		final String[] pathList = { "asyncWithExecutor", "asyncWithCompletableFuture", "asyncWithCallback" };
+		if (LoadGenerator.isEnabled()) {
+			// -Dload.rate, see LoadGenerator
+			LoadGenerator.fromSystemProperties(pathList).runInBackground(path -> callServer(path, false));
+			return;
+		}
+
 		Thread thread = new Thread(() -> {
 
 			int pos = 0;
-			String[] pathList = { "asyncWithExecutor", "asyncWithCompletableFuture", "asyncWithCallback" };
 			// call the server in a loop
 			for (;;) {
 				try {
 					pos = (pos + 1) % pathList.length;
 					String pathToCall = pathList[pos];
 					clientLogger.info("\n\n=============");
-
-					// Start the client trace
-					wingtipsTracer.startSpanInCurrentContext("clientCalling-GET_/" + pathToCall, SpanPurpose.CLIENT);
-
-					// Setup the HTTP client call
 					clientLogger.info("Client is calling: /" + pathToCall);
-					URL url = new URL("http://localhost:8000/" + pathToCall);
-					HttpURLConnection con = (HttpURLConnection) url.openConnection();
-					con.setRequestMethod("GET");
-
-					// Propagate the current span's tracing state on the HTTP client call's headers (Zipkin/B3 format)
-					propagateTracingHeaders(con::setRequestProperty, wingtipsTracer.getCurrentSpan());
-
-					// Execute the HTTP client call
-					BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-					String inputLine;
-					StringBuilder content = new StringBuilder();
-					while ((inputLine = in.readLine()) != null) {
-						content.append(inputLine);
-					}
-					clientLogger.info("Received result from server: {}", content);
-					in.close();
+					callServer(pathToCall, true);
 				} catch (Exception e) {
 					clientLogger.error("Failed to talk to server", e);
-				} finally {
-					// Complete the client request span
-					//      (which effectively completes the whole trace since there is no parent)
-					wingtipsTracer.completeRequestSpan();
 				}
 
 				sleepForMillis(1000);
@@ -111,24 +112,71 @@ public class WingtipsTraceExampleAsync {
 		thread.start();
 	}
 
+	static int callServer(String pathToCall, boolean logResponse) throws IOException {
+		// Start the client trace
+		wingtipsTracer.startSpanInCurrentContext("clientCalling-GET_/" + pathToCall, SpanPurpose.CLIENT);
+		try {
+			// Setup the HTTP client call
+			URL url = new URL("http://localhost:8000/" + pathToCall);
+			HttpURLConnection con = (HttpURLConnection) url.openConnection();
+			con.setRequestMethod("GET");
+
+			// Propagate the current span's tracing state on the HTTP client call's headers (Zipkin/B3 format)
+			propagateTracingHeaders(con::setRequestProperty, wingtipsTracer.getCurrentSpan());
+			propagateAdditionalTracingHeaders(con, wingtipsTracer.getCurrentSpan());
+
+			// Execute the HTTP client call
+			BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
+			String inputLine;
+			StringBuilder content = new StringBuilder();
+			while ((inputLine = in.readLine()) != null) {
+				content.append(inputLine);
+			}
+			if (logResponse) {
+				clientLogger.info("Received result from server: {}", content);
+			}
+			in.close();
+			return con.getResponseCode();
+		} finally {
+			// Complete the client request span
+			//      (which effectively completes the whole trace since there is no parent)
+			wingtipsTracer.completeRequestSpan();
+		}
+	}
+
 	private static void initServer() throws Exception {
-		HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
+		// -Dexample.server.type=nio runs the handlers on an NIO event-loop server instead of the JDK's HttpServer
+		HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(8000));
 		server.createContext("/asyncWithExecutor", new AsyncWithExecutorPathHandler());
 		server.createContext("/asyncWithCompletableFuture", new AsyncWithCompletableFuturePathHandler());
 		server.createContext("/asyncWithCallback", new AsyncWithCallbackPathHandler());
-		server.setExecutor(null); // creates a default executor
+		// -Dexample.server.executor, see ServerExecutors
+		server.setExecutor(ServerExecutors.fromSystemProperties(WingtipsTraceExampleAsync::unregisterLeakedSpans));
 		server.start();
 	}
 
+	/**
+	 * Runs on the server thread after every request. Wingtips keeps the span stack in a thread-local; a span that was
+	 * not completed would otherwise become the parent of the next request handled by the same pooled thread.
+	 */
+	static boolean unregisterLeakedSpans() {
+		if (wingtipsTracer.getCurrentSpan() == null) {
+			return false;
+		}
+		wingtipsTracer.unregisterFromThread();
+		return true;
+	}
+
 	// server side handlers
 
 	static class AsyncWithExecutorPathHandler implements HttpHandler {
 
 		// This is an Executor you control. You can wrap it or replace it with a different Executor.
 		// Surround the executor with a Wingtips ExecutorServiceWithTracing so that tracing state will automatically
-		//		hop threads when execute() is called.
+		//		hop threads when execute() is called. This works the same for virtual threads, since the tracing
+		//		state is captured when the task is submitted and restored on whichever thread runs it.
 		private static final Executor requestProcessingExecutorYouControl =
-			executorServiceWithTracing(Executors.newCachedThreadPool());
+			executorServiceWithTracing(ServerExecutors.newRequestProcessingExecutor());
 
 		@Override
 		public void handle(HttpExchange t) {
@@ -136,7 +184,9 @@ public class WingtipsTraceExampleAsync {
 				// Start an overall request span based on the incoming request.
 				//      If the request has tracing headers then create a child span, otherwise start a root span.
 				startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(t);
-				serverLogger.info("/asyncWithExecutor path was called.");
+				if (LOG_REQUESTS) {
+					serverLogger.info("/asyncWithExecutor path was called.");
+				}
 
 				TracingState requestTracingState = TracingState.getCurrentThreadTracingState();
 
@@ -144,9 +194,13 @@ public class WingtipsTraceExampleAsync {
 				//		shows how it's done using a tracing-aware wrapped Executor.
 				requestProcessingExecutorYouControl.execute(() -> {
 					try {
-						sleepForMillis(5);
+						if (SIMULATE_WORK) {
+							sleepForMillis(5);
+						}
 
-						serverLogger.info("In async thread - about to respond to caller.");
+						if (LOG_REQUESTS) {
+							serverLogger.info("In async thread - about to respond to caller.");
+						}
 
 						String response = "This is the asyncWithExecutor path";
 						t.sendResponseHeaders(200, response.length());
@@ -190,7 +244,9 @@ public class WingtipsTraceExampleAsync {
 				// Start an overall request span based on the incoming request.
 				//      If the request has tracing headers then create a child span, otherwise start a root span.
 				startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(t);
-				serverLogger.info("/asyncWithCompletableFuture path was called.");
+				if (LOG_REQUESTS) {
+					serverLogger.info("/asyncWithCompletableFuture path was called.");
+				}
 
 				TracingState requestTracingState = TracingState.getCurrentThreadTracingState();
 
@@ -199,11 +255,15 @@ public class WingtipsTraceExampleAsync {
 				//		example this shows how to easily wrap using a SupplierWithTracing.
 				CompletableFuture.supplyAsync(supplierWithTracing(
 					() -> {
-						sleepForMillis(5);
+						if (SIMULATE_WORK) {
+							sleepForMillis(5);
+						}
 
 						String dataForResponse = "cf-data_" + UUID.randomUUID().toString();
-						serverLogger.info("In async CompletableFuture, about to respond with data: {}",
-										  dataForResponse);
+						if (LOG_REQUESTS) {
+							serverLogger.info("In async CompletableFuture, about to respond with data: {}",
+											  dataForResponse);
+						}
 
 						try {
 							String response = "This is the asyncWithCompletableFuture path - "
@@ -242,12 +302,16 @@ public class WingtipsTraceExampleAsync {
 				// Start an overall request span based on the incoming request.
 				//      If the request has tracing headers then create a child span, otherwise start a root span.
 				startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(t);
-				serverLogger.info("/asyncWithCallback path was called.");
+				if (LOG_REQUESTS) {
+					serverLogger.info("/asyncWithCallback path was called.");
+				}
 
 				TracingState requestTracingState = TracingState.getCurrentThreadTracingState();
 				SomeThirdPartyFramework.executeSomeAsyncFunctionWithNoThreadGuarantees(
 					(data) -> {
-						sleepForMillis(5);
+						if (SIMULATE_WORK) {
+							sleepForMillis(5);
+						}
 
 						// At this point we don't know what thread we'll be on thanks to the lack of guarantees
 						// 		by the third party framework, so we have to reattach the correct requestTracingState
@@ -256,6 +320,9 @@ public class WingtipsTraceExampleAsync {
 						// NOTE: This could technically be done with a delegated Wingtips ConsumerWithTracing,
 						//		but there are cases where this manual linking/unlinking is necessary so for the sake
 						//		of example we'll do it manually.
+						// NOTE: When running with the optional context-agent (-javaagent), the tracing state is already
+						//		attached here because the agent instruments executorYouCannotWrap. Linking it again
+						//		is harmless.
 						TracingState originalThreadTracingState = null;
 						try {
 							// This links requestTracingState to the current thread, and returns the TracingState
@@ -264,7 +331,9 @@ public class WingtipsTraceExampleAsync {
 							originalThreadTracingState = linkTracingToCurrentThread(requestTracingState);
 
 							try {
-								serverLogger.info("In async callback, about to respond with data: {}", data);
+								if (LOG_REQUESTS) {
+									serverLogger.info("In async callback, about to respond with data: {}", data);
+								}
 								String response = "This is the asyncWithCallback path - "
 												  + "data supplied by the third party framework: " + data;
 								t.sendResponseHeaders(200, response.length());
@@ -326,33 +395,34 @@ public class WingtipsTraceExampleAsync {
 		}
 	}
 
+	// Only the client calls out, and it starts every trace, so there is no tracestate to pass on. The servers read an
+	//		incoming tracestate but make no outgoing calls - and Wingtips spans have no field to keep it in.
+	static void propagateAdditionalTracingHeaders(HttpURLConnection con, Span span) {
+		additionalTracingHeaders.inject(span.getTraceId(), span.getSpanId(), span.getParentSpanId(),
+										span.isSampleable(), null, con, HttpURLConnection::setRequestProperty);
+	}
+
 	static void startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(HttpExchange t) {
-		Span parentSpan = fromRequestWithHeaders(new RequestWithHeadersForHttpExchange(t), null);
+		// Read the B3 headers in a single pass over the request headers, instead of one Headers lookup per header
+		//		as HttpRequestTracingUtils.fromRequestWithHeaders() does. Callers that already switched to W3C Trace
+		//		Context are accepted as well.
+		B3Context incomingContext = new B3Context();
 		String spanName = "serverHandling-" + t.getRequestMethod() + "_" + t.getRequestURI().getPath();
-		if (parentSpan == null) {
+		boolean continued = B3HeaderExtractor.extractB3OrTraceparent(t.getRequestHeaders(), incomingContext);
+		if (!continued) {
 			wingtipsTracer.startRequestWithRootSpan(spanName);
 		}
 		else {
-			wingtipsTracer.startRequestWithChildSpan(parentSpan, spanName);
+			wingtipsTracer.startRequestWithChildSpan(toParentSpan(incomingContext), spanName);
 		}
 	}
 
-	static class RequestWithHeadersForHttpExchange implements RequestWithHeaders {
-
-		private final HttpExchange request;
-
-		RequestWithHeadersForHttpExchange(HttpExchange request) {
-			this.request = request;
-		}
-
-		@Override
-		public String getHeader(String headerName) {
-			return request.getRequestHeaders().getFirst(headerName);
-		}
-
-		@Override
-		public Object getAttribute(String name) {
-			return request.getAttribute(name);
-		}
+	static Span toParentSpan(B3Context incomingContext) {
+		return Span.newBuilder("UNSPECIFIED", SpanPurpose.UNKNOWN)
+				   .withTraceId(incomingContext.traceIdString())
+				   .withSpanId(incomingContext.spanIdString())
+				   .withParentSpanId(incomingContext.parentIdString())
+				   .withSampleable(incomingContext.isSampled())
+				   .build();
 	}
 }
@@ -3,12 +3,21 @@ package com.tracing;
 import com.nike.wingtips.Span;
 import com.nike.wingtips.Span.SpanPurpose;
 import com.nike.wingtips.Tracer;
-import com.nike.wingtips.http.RequestWithHeaders;
 
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
+import com.tracing.db.DatabaseConnection;
+import com.tracing.db.ExampleDatabase;
+import com.tracing.db.QueryResult;
+import com.tracing.load.LoadGenerator;
+import com.tracing.propagation.B3Context;
+import com.tracing.propagation.B3HeaderExtractor;
+import com.tracing.propagation.TraceHeadersInjector;
+import com.tracing.server.ExampleServers;
+import com.tracing.server.ServerExecutors;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,8 +28,8 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.InetSocketAddress;
 import java.net.URL;
+import java.sql.SQLException;
 
-import static com.nike.wingtips.http.HttpRequestTracingUtils.fromRequestWithHeaders;
 import static com.nike.wingtips.http.HttpRequestTracingUtils.propagateTracingHeaders;
 
 /**
@@ -39,6 +48,18 @@ public class WingtipsTraceExampleBasic {
 
 	private static final Tracer wingtipsTracer = Tracer.getInstance();
 
+	// In-process stand-in for the database PathBHandler queries, with a connection pool and per-statement latencies,
+	//		e.g. -Dexample.db.poolSize=4 -Dexample.db.latency=lognormal:5ms:0.8, see ExampleDatabase
+	private static final ExampleDatabase database = ExampleDatabase.fromSystemProperties();
+
+	// Trace header formats to send in addition to Wingtips' B3 headers while migrating, e.g.
+	//		-Dtracing.propagation.additional=w3c
+	private static final TraceHeadersInjector additionalTracingHeaders =
+		TraceHeadersInjector.fromSystemProperty("tracing.propagation.additional");
+
+	// -Dexample.requestLog=false keeps the handlers from logging a line per request, e.g. under load
+	private static final boolean LOG_REQUESTS = ExampleServers.logRequests();
+
 	public static void main(String[] args) {
 
 		try {
@@ -53,47 +74,29 @@ public class WingtipsTraceExampleBasic {
 
 	private static void initClient() {
 
+		final String[] pathList = { "pathA", "pathB" };
+		if (LoadGenerator.isEnabled()) {
+			// -Dload.rate, see LoadGenerator
+			LoadGenerator.fromSystemProperties(pathList).runInBackground(path -> callServer(path, false));
+			return;
+		}
+
 		Thread thread = new Thread(new Runnable() {
 
 			@Override
 			public void run() {
 
 				int pos = 0;
-				String[] pathList = { "pathA", "pathB" };
 				for (;;) {
 					try {
 						// call the server in a loop
 						pos = (pos + 1) % 2;
 						String pathToCall = pathList[pos];
 						clientLogger.info("\n\n=============");
-
-						// Start the client trace
-						wingtipsTracer.startSpanInCurrentContext("clientCalling-GET_/" + pathToCall, SpanPurpose.CLIENT);
-
-						// Setup the HTTP client call
 						clientLogger.info("Client is calling: /" + pathToCall);
-						URL url = new URL("http://localhost:8000/" + pathToCall);
-						HttpURLConnection con = (HttpURLConnection) url.openConnection();
-						con.setRequestMethod("GET");
-
-						// Propagate the current span's tracing state on the HTTP client call's headers (Zipkin/B3 format)
-						propagateTracingHeaders(con::setRequestProperty, wingtipsTracer.getCurrentSpan());
-
-						// Execute the HTTP client call
-						BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
-						String inputLine;
-						StringBuffer content = new StringBuffer();
-						while ((inputLine = in.readLine()) != null) {
-							content.append(inputLine);
-						}
-						clientLogger.info("Received result from server: {}", content);
-						in.close();
+						callServer(pathToCall, true);
 					} catch (Exception e) {
 						clientLogger.error("Failed to talk to server", e);
-					} finally {
-						// Complete the client request span
-						//      (which effectively completes the whole trace since there is no parent)
-						wingtipsTracer.completeRequestSpan();
 					}
 
 					try {
@@ -108,14 +111,60 @@ public class WingtipsTraceExampleBasic {
 		thread.start();
 	}
 
+	static int callServer(String pathToCall, boolean logResponse) throws IOException {
+		// Start the client trace
+		wingtipsTracer.startSpanInCurrentContext("clientCalling-GET_/" + pathToCall, SpanPurpose.CLIENT);
+		try {
+			// Setup the HTTP client call
+			URL url = new URL("http://localhost:8000/" + pathToCall);
+			HttpURLConnection con = (HttpURLConnection) url.openConnection();
+			con.setRequestMethod("GET");
+
+			// Propagate the current span's tracing state on the HTTP client call's headers (Zipkin/B3 format)
+			propagateTracingHeaders(con::setRequestProperty, wingtipsTracer.getCurrentSpan());
+			propagateAdditionalTracingHeaders(con, wingtipsTracer.getCurrentSpan());
+
+			// Execute the HTTP client call
+			BufferedReader in = new BufferedReader(new InputStreamReader(con.getInputStream()));
+			String inputLine;
+			StringBuilder content = new StringBuilder();
+			while ((inputLine = in.readLine()) != null) {
+				content.append(inputLine);
+			}
+			if (logResponse) {
+				clientLogger.info("Received result from server: {}", content);
+			}
+			in.close();
+			return con.getResponseCode();
+		} finally {
+			// Complete the client request span
+			//      (which effectively completes the whole trace since there is no parent)
+			wingtipsTracer.completeRequestSpan();
+		}
+	}
+
 	private static void initServer() throws Exception {
-		HttpServer server = HttpServer.create(new InetSocketAddress(8000), 0);
+		// -Dexample.server.type=nio runs the handlers on an NIO event-loop server instead of the JDK's HttpServer
+		HttpServer server = ExampleServers.fromSystemProperties(new InetSocketAddress(8000));
 		server.createContext("/pathA", new PathAHandler());
 		server.createContext("/pathB", new PathBHandler());
-		server.setExecutor(null); // creates a default executor
+		// -Dexample.server.executor, see ServerExecutors
+		server.setExecutor(ServerExecutors.fromSystemProperties(WingtipsTraceExampleBasic::unregisterLeakedSpans));
 		server.start();
 	}
 
+	/**
+	 * Runs on the server thread after every request. Wingtips keeps the span stack in a thread-local; a span that was
+	 * not completed would otherwise become the parent of the next request handled by the same pooled thread.
+	 */
+	static boolean unregisterLeakedSpans() {
+		if (wingtipsTracer.getCurrentSpan() == null) {
+			return false;
+		}
+		wingtipsTracer.unregisterFromThread();
+		return true;
+	}
+
 	// server side handlers
 
 	static class PathAHandler implements HttpHandler {
@@ -125,7 +174,9 @@ public class WingtipsTraceExampleBasic {
 				// Start an overall request span based on the incoming request.
 				//      If the request has tracing headers then create a child span, otherwise start a root span.
 				startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(t);
-				serverLogger.info("Path A was called");
+				if (LOG_REQUESTS) {
+					serverLogger.info("Path A was called");
+				}
 
 				String response = "This is path A";
 				t.sendResponseHeaders(200, response.length());
@@ -147,7 +198,9 @@ public class WingtipsTraceExampleBasic {
 				// Start an overall request span based on the incoming request.
 				//      If the request has tracing headers then create a child span, otherwise start a root span.
 				startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(t);
-				serverLogger.info("Path B was called");
+				if (LOG_REQUESTS) {
+					serverLogger.info("Path B was called");
+				}
 
 				this.fakeDBCall("select * from table");
 
@@ -165,6 +218,21 @@ public class WingtipsTraceExampleBasic {
 
 		public void fakeDBCall(String statement) {
 
+			// Waiting for a pooled connection gets a subspan of its own, so an exhausted pool shows up as such
+			//      instead of as a slow query.
+			DatabaseConnection connection;
+			try {
+				wingtipsTracer.startSubSpan("databasePoolWait", SpanPurpose.LOCAL_ONLY);
+				connection = database.getConnection();
+			}
+			catch (SQLException e) {
+				serverLogger.error("No connection for statement " + statement, e);
+				return;
+			}
+			finally {
+				wingtipsTracer.completeSubSpan();
+			}
+
 			// this is just to simulate a fake database call
 			try {
 				// Start a subspan (child span) for the database call. This way we get timing info for the database
@@ -172,9 +240,17 @@ public class WingtipsTraceExampleBasic {
 				wingtipsTracer.startSubSpan("fakeDatabaseCall", SpanPurpose.CLIENT);
 
 				// Execute the database call
-				serverLogger.info("Fake DB was called with statement " + statement);
+				QueryResult result = connection.query(statement);
+				if (LOG_REQUESTS) {
+					serverLogger.info("Fake DB was called with statement " + statement + ", " + result.rowCount()
+									  + " rows returned");
+				}
+			}
+			catch (SQLException e) {
+				serverLogger.error("Fake DB call failed for statement " + statement, e);
 			}
 			finally {
+				connection.close();
 				// Complete the subspan around the database call.
 				wingtipsTracer.completeSubSpan();
 			}
@@ -182,33 +258,34 @@ public class WingtipsTraceExampleBasic {
 
 	}
 
+	// Only the client calls out, and it starts every trace, so there is no tracestate to pass on. The servers read an
+	//		incoming tracestate but make no outgoing calls - and Wingtips spans have no field to keep it in.
+	static void propagateAdditionalTracingHeaders(HttpURLConnection con, Span span) {
+		additionalTracingHeaders.inject(span.getTraceId(), span.getSpanId(), span.getParentSpanId(),
+										span.isSampleable(), null, con, HttpURLConnection::setRequestProperty);
+	}
+
 	static void startOverallRequestSpanAppropriatelyBasedOnIncomingRequest(HttpExchange t) {
-		Span parentSpan = fromRequestWithHeaders(new RequestWithHeadersForHttpExchange(t), null);
+		// Read the B3 headers in a single pass over the request headers, instead of one Headers lookup per header
+		//		as HttpRequestTracingUtils.fromRequestWithHeaders() does. Callers that already switched to W3C Trace
+		//		Context are accepted as well.
+		B3Context incomingContext = new B3Context();
 		String spanName = "serverHandling-" + t.getRequestMethod() + "_" + t.getRequestURI().getPath();
-		if (parentSpan == null) {
+		boolean continued = B3HeaderExtractor.extractB3OrTraceparent(t.getRequestHeaders(), incomingContext);
+		if (!continued) {
 			wingtipsTracer.startRequestWithRootSpan(spanName);
 		}
 		else {
-			wingtipsTracer.startRequestWithChildSpan(parentSpan, spanName);
+			wingtipsTracer.startRequestWithChildSpan(toParentSpan(incomingContext), spanName);
 		}
 	}
 
-	static class RequestWithHeadersForHttpExchange implements RequestWithHeaders {
-
-		private final HttpExchange request;
-
-		RequestWithHeadersForHttpExchange(HttpExchange request) {
-			this.request = request;
-		}
-
-		@Override
-		public String getHeader(String headerName) {
-			return request.getRequestHeaders().getFirst(headerName);
-		}
-
-		@Override
-		public Object getAttribute(String name) {
-			return request.getAttribute(name);
-		}
+	static Span toParentSpan(B3Context incomingContext) {
+		return Span.newBuilder("UNSPECIFIED", SpanPurpose.UNKNOWN)
+				   .withTraceId(incomingContext.traceIdString())
+				   .withSpanId(incomingContext.spanIdString())
+				   .withParentSpanId(incomingContext.parentIdString())
+				   .withSampleable(incomingContext.isSampled())
+				   .build();
 	}
 }